@@ -32,22 +32,33 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.groupon.ml;
 
-import com.groupon.nakala.analysis.Analysis;
+import com.groupon.nakala.analysis.RecordAnalysis;
 import com.groupon.nakala.core.Id;
 import com.groupon.nakala.db.DataStore;
 import com.groupon.nakala.db.FlatFileStore;
+import com.groupon.nakala.db.RecordIo;
+import com.groupon.nakala.db.RecordStore;
 import com.groupon.nakala.exceptions.StoreException;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * @author npendar@groupon.com
  */
-public class ClassificationAnalysis implements Analysis {
+public class ClassificationAnalysis implements RecordAnalysis {
+    private static final long serialVersionUID = -8916172522013855352L;
+
     private Id id;
     private Map<String, Double> classifications;
 
+    public ClassificationAnalysis() {
+        classifications = new HashMap<String, Double>();
+    }
+
     public ClassificationAnalysis(Id id) {
         this.id = id;
         classifications = new HashMap<String, Double>();
@@ -78,9 +89,30 @@ public class ClassificationAnalysis implements Analysis {
         return classifications.get(category);
     }
 
+    @Override
+    public void writeRecord(DataOutput out) throws IOException {
+        RecordIo.writeString(out, id.toString());
+        RecordIo.writeVarInt(out, classifications.size());
+        for (Map.Entry<String, Double> classification : classifications.entrySet()) {
+            RecordIo.writeString(out, classification.getKey());
+            out.writeDouble(classification.getValue());
+        }
+    }
+
+    @Override
+    public void readRecord(DataInput in) throws IOException {
+        id = new Id(RecordIo.readString(in));
+        classifications = new HashMap<String, Double>();
+        for (int i = RecordIo.readVarInt(in); i > 0; --i) {
+            classifications.put(RecordIo.readString(in), in.readDouble());
+        }
+    }
+
     @Override
     public void store(DataStore ds) throws StoreException {
-        if (ds instanceof FlatFileStore) {
+        if (ds instanceof RecordStore) {
+            ((RecordStore) ds).write(this);
+        } else if (ds instanceof FlatFileStore) {
             ((FlatFileStore) ds).getPrintStream().println(getTsv());
         } else {
             throw new StoreException("Unsupported data store " + ds.getClass().getName());
@@ -0,0 +1,118 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml;
+
+import com.groupon.nakala.core.SparseRepresentation;
+import com.groupon.nakala.core.SparseVector;
+import de.bwaldvogel.liblinear.Feature;
+import libsvm.svm_node;
+
+import java.util.Arrays;
+
+/**
+ * Converts sparse representations to libsvm and liblinear vectors sorted by index, reusing the node objects from
+ * one call to the next. Representations built by representers are already sorted. A returned vector is only valid until the next call, and a buffer
+ * must not be shared between threads.
+ *
+ * @author npendar@groupon.com
+ */
+public class SparseVectorBuffer {
+    private svm_node[] svmNodes = new svm_node[0];
+    private MutableFeature[] features = new MutableFeature[0];
+
+    /**
+     * @return the same nodes as SparseRepresentation.toSvmNodes()
+     */
+    public svm_node[] toSvmNodes(SparseRepresentation rep) {
+        SparseVector v = rep.toSparseVector();
+        int n = v.size();
+        if (svmNodes.length < n) {
+            svm_node[] larger = Arrays.copyOf(svmNodes, Math.max(n, 2 * svmNodes.length));
+            for (int i = svmNodes.length; i < larger.length; ++i) {
+                larger[i] = new svm_node();
+            }
+            svmNodes = larger;
+        }
+        svm_node[] vector = new svm_node[n];
+        for (int i = 0; i < n; ++i) {
+            svm_node node = svmNodes[i];
+            node.index = v.getIndex(i) + 1; // lib_svm assumes 1-based indices
+            node.value = v.getValue(i);
+            vector[i] = node;
+        }
+        return vector;
+    }
+
+    /**
+     * @return the same features as LibLinearUtils.toLibLinear(rep.toSvmNodes())
+     */
+    public Feature[] toLibLinear(SparseRepresentation rep) {
+        SparseVector v = rep.toSparseVector();
+        int n = v.size();
+        if (features.length < n) {
+            MutableFeature[] larger = Arrays.copyOf(features, Math.max(n, 2 * features.length));
+            for (int i = features.length; i < larger.length; ++i) {
+                larger[i] = new MutableFeature();
+            }
+            features = larger;
+        }
+        Feature[] vector = new Feature[n];
+        for (int i = 0; i < n; ++i) {
+            MutableFeature feature = features[i];
+            feature.index = v.getIndex(i) + 1;
+            feature.value = v.getValue(i);
+            vector[i] = feature;
+        }
+        return vector;
+    }
+
+    private static class MutableFeature implements Feature {
+        int index;
+        double value;
+
+        @Override
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public double getValue() {
+            return value;
+        }
+
+        @Override
+        public void setValue(double value) {
+            this.value = value;
+        }
+    }
+}
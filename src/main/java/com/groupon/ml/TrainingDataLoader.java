@@ -0,0 +1,332 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml;
+
+import com.groupon.ml.liblinear.LibLinearUtils;
+import com.groupon.ml.svm.ValueScaler;
+import com.groupon.nakala.core.*;
+import com.groupon.nakala.db.CollectionReader;
+import com.groupon.nakala.exceptions.AnalyzerFailureException;
+import de.bwaldvogel.liblinear.Feature;
+import de.bwaldvogel.liblinear.Problem;
+import libsvm.svm_node;
+import libsvm.svm_problem;
+import org.apache.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads a categorized collection into libsvm and liblinear training problems. Documents are represented in
+ * batches on number_of_threads threads and converted, in collection order, straight into growable arrays of
+ * libsvm nodes and labels, which are scaled in place once the collection is read. Every document gets one
+ * training record per label, and all records of a document share the same node array.
+ * Label ids are the positions of the labels in the sorted label list.
+ *
+ * @author npendar@groupon.com
+ */
+public class TrainingDataLoader {
+    private static final Logger logger = Logger.getLogger(TrainingDataLoader.class);
+
+    public static final int BATCH_SIZE = 256;
+    public static final String OTHER = "other";
+
+    private final TextRepresenter representer;
+    private final int numberOfThreads;
+    private String targetClass;
+
+    // Document i has the nodes vectors[i] and the labels [labelOffsets[i], labelOffsets[i + 1]).
+    private int numberOfDocuments;
+    private int[] labelOffsets;
+    private int[] labels;
+    private int numberOfRecords;
+    private Map<String, Integer> labelIds;
+    private List<String> labelNames;
+
+    private List<String> labelList;
+    private ValueScaler scaler;
+    private svm_node[][] vectors;
+    private int[] recordDocs;
+    private double[] recordLabels;
+
+    public TrainingDataLoader(TextRepresenter representer, int numberOfThreads) {
+        if (numberOfThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be >= 1");
+        }
+        this.representer = representer;
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    /**
+     * @param targetClass if not null, documents in targetClass are labeled targetClass and all others "other"
+     */
+    public void setTargetClass(String targetClass) {
+        this.targetClass = targetClass;
+    }
+
+    public void load(CollectionReader cr) throws AnalyzerFailureException {
+        logger.debug("Loading " + cr.getSize() + " documents on " + numberOfThreads + " threads.");
+        reset();
+
+        ExecutorService executorService = numberOfThreads > 1 ? Executors.newFixedThreadPool(numberOfThreads) : null;
+        LinkedList<Future<Batch>> pending = new LinkedList<Future<Batch>>();
+        try {
+            Batch batch = new Batch(representer);
+            for (Analyzable a : cr) {
+                batch.items.add((CategorizedTextContent) a);
+                if (batch.items.size() == BATCH_SIZE) {
+                    submit(batch, executorService, pending);
+                    batch = new Batch(representer);
+                }
+            }
+            if (!batch.items.isEmpty()) {
+                submit(batch, executorService, pending);
+            }
+            while (!pending.isEmpty()) {
+                append(get(pending.removeFirst()));
+            }
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+        }
+
+        finish();
+    }
+
+    private void submit(Batch batch, ExecutorService executorService, LinkedList<Future<Batch>> pending) {
+        if (executorService == null) {
+            append(batch.call());
+            return;
+        }
+        pending.add(executorService.submit(batch));
+        // Bound the number of represented batches waiting to be appended.
+        while (pending.size() > 2 * numberOfThreads) {
+            append(get(pending.removeFirst()));
+        }
+    }
+
+    private static Batch get(Future<Batch> future) throws AnalyzerFailureException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalyzerFailureException("Interrupted while loading data.", e);
+        } catch (ExecutionException e) {
+            throw new AnalyzerFailureException("Failed to represent documents.", e.getCause());
+        }
+    }
+
+    private void reset() {
+        numberOfDocuments = 0;
+        vectors = new svm_node[16][];
+        labelOffsets = new int[17];
+        labels = new int[16];
+        numberOfRecords = 0;
+        labelIds = new HashMap<String, Integer>();
+        labelNames = new ArrayList<String>();
+    }
+
+    private void append(Batch batch) {
+        for (int i = 0; i < batch.items.size(); ++i) {
+            if (numberOfDocuments == vectors.length) {
+                vectors = Arrays.copyOf(vectors, 2 * vectors.length);
+                labelOffsets = Arrays.copyOf(labelOffsets, 2 * vectors.length + 1);
+            }
+
+            for (String label : getCategories(batch.items.get(i))) {
+                Integer id = labelIds.get(label);
+                if (id == null) {
+                    id = labelNames.size();
+                    labelIds.put(label, id);
+                    labelNames.add(label);
+                }
+                if (numberOfRecords == labels.length) {
+                    labels = Arrays.copyOf(labels, 2 * labels.length);
+                }
+                labels[numberOfRecords++] = id;
+            }
+
+            // Unscaled until the ranges of the whole collection are known.
+            SparseVector vector = batch.vectors[i];
+            batch.vectors[i] = null;
+            svm_node[] nodes = new svm_node[vector.size()];
+            for (int k = 0; k < nodes.length; ++k) {
+                svm_node node = new svm_node();
+                node.index = vector.getIndex(k) + 1; // lib_svm assumes 1-based indices
+                node.value = vector.getValue(k);
+                nodes[k] = node;
+            }
+            vectors[numberOfDocuments++] = nodes;
+            labelOffsets[numberOfDocuments] = numberOfRecords;
+        }
+    }
+
+    private Set<String> getCategories(CategorizedTextContent ctc) {
+        if (targetClass == null) {
+            return ctc.getCategories();
+        }
+        // Not adding any other categories if item belongs to targetClass as well as some other category.
+        return Collections.singleton(ctc.getCategories().contains(targetClass) ? targetClass : OTHER);
+    }
+
+    private void finish() {
+        labelList = new ArrayList<String>(labelNames);
+        Collections.sort(labelList);
+        int[] sortedIds = new int[labelNames.size()];
+        for (int i = 0; i < sortedIds.length; ++i) {
+            sortedIds[labelIds.get(labelList.get(i))] = i;
+        }
+        logger.debug("Total labels: " + labelList.size());
+        logger.trace("Labels: " + labelList);
+
+        logger.debug("Scaling data.");
+        vectors = Arrays.copyOf(vectors, numberOfDocuments);
+        scaler = new ValueScaler(0, 1, vectors, numberOfDocuments);
+        for (svm_node[] vector : vectors) {
+            for (svm_node node : vector) {
+                node.value = scaler.getScaledValue(node.index, node.value);
+            }
+        }
+
+        logger.debug("Generating " + numberOfRecords + " records.");
+        recordDocs = new int[numberOfRecords];
+        recordLabels = new double[numberOfRecords];
+        for (int i = 0; i < numberOfDocuments; ++i) {
+            for (int r = labelOffsets[i]; r < labelOffsets[i + 1]; ++r) {
+                recordDocs[r] = i;
+                recordLabels[r] = sortedIds[labels[r]];
+            }
+        }
+
+        // Release the raw buffers.
+        labelOffsets = labels = null;
+        labelIds = null;
+        labelNames = null;
+    }
+
+    /**
+     * @return one record per document and label. Records of the same document share their node array.
+     */
+    public svm_problem toSvmProblem() {
+        svm_problem problem = new svm_problem();
+        problem.l = recordLabels.length;
+        problem.x = new svm_node[problem.l][];
+        for (int r = 0; r < problem.l; ++r) {
+            problem.x[r] = vectors[recordDocs[r]];
+        }
+        problem.y = recordLabels.clone();
+        return problem;
+    }
+
+    /**
+     * @return one record per document, labeled positiveY if the document has the label and negativeY otherwise.
+     *         The node arrays are shared with all other problems of this loader.
+     */
+    public svm_problem toBinarySvmProblem(String label, double positiveY, double negativeY) {
+        int id = labelList.indexOf(label);
+        svm_problem problem = new svm_problem();
+        problem.l = vectors.length;
+        problem.x = vectors.clone();
+        problem.y = new double[problem.l];
+        Arrays.fill(problem.y, negativeY);
+        for (int r = 0; r < recordLabels.length; ++r) {
+            if (recordLabels[r] == id) {
+                problem.y[recordDocs[r]] = positiveY;
+            }
+        }
+        return problem;
+    }
+
+    /**
+     * @return one record per document and label. Records of the same document share their feature array.
+     */
+    public Problem toLibLinearProblem() {
+        Feature[][] features = new Feature[vectors.length][];
+        for (int i = 0; i < vectors.length; ++i) {
+            features[i] = LibLinearUtils.toLibLinear(vectors[i]);
+        }
+        Problem problem = new Problem();
+        problem.l = recordLabels.length;
+        problem.n = representer.getDimension();
+        problem.x = new Feature[problem.l][];
+        for (int r = 0; r < problem.l; ++r) {
+            problem.x[r] = features[recordDocs[r]];
+        }
+        problem.y = recordLabels.clone();
+        return problem;
+    }
+
+    public int getNumberOfDocuments() {
+        return vectors.length;
+    }
+
+    public List<String> getLabelList() {
+        return labelList;
+    }
+
+    public ValueScaler getScaler() {
+        return scaler;
+    }
+
+    private static class Batch implements Callable<Batch> {
+        final TextRepresenter representer;
+        final List<CategorizedTextContent> items = new ArrayList<CategorizedTextContent>(BATCH_SIZE);
+        SparseVector[] vectors;
+
+        Batch(TextRepresenter representer) {
+            this.representer = representer;
+        }
+
+        @Override
+        public Batch call() {
+            vectors = new SparseVector[items.size()];
+            for (int i = 0; i < vectors.length; ++i) {
+                vectors[i] = represent(items.get(i)).toSparseVector();
+            }
+            return this;
+        }
+
+        private SparseRepresentation represent(CategorizedTextContent ctc) {
+            if (ctc instanceof TokenizedTextContent) {
+                // Read from a tokenized corpus, skip text processing.
+                return representer.represent(((TokenizedTextContent) ctc).getTokens());
+            }
+            return representer.represent(ctc.getText());
+        }
+    }
+}
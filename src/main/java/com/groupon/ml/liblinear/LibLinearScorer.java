@@ -0,0 +1,164 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml.liblinear;
+
+import com.groupon.nakala.core.SparseRepresentation;
+import com.groupon.nakala.core.SparseVector;
+import de.bwaldvogel.liblinear.Model;
+
+/**
+ * Scores logistic regression models like Linear.predictProbability, from a flat copy of the model's weights.
+ * The weights of all decision functions for a feature are adjacent, so scoring a document reads one
+ * contiguous block per non-zero feature. Features may come in any order, so representations are scored
+ * without sorting them or converting them to Feature arrays, and with a reused Buffer scoring allocates
+ * nothing. A scorer is immutable and can be shared between threads.
+ *
+ * @author npendar@groupon.com
+ */
+public final class LibLinearScorer {
+    private final double[] weights;
+    private final int nrClass;
+    // Number of decision functions: one for two classes, one per class otherwise.
+    private final int nrW;
+    // Features with larger 0-based indices are unknown to the model and ignored.
+    private final int nrFeature;
+    private final int[] labels;
+
+    public LibLinearScorer(Model model) {
+        if (!model.isProbabilityModel()) {
+            throw new IllegalArgumentException("Probability output is only supported for logistic regression.");
+        }
+        nrClass = model.getNrClass();
+        nrW = nrClass == 2 ? 1 : nrClass;
+        weights = model.getFeatureWeights().clone();
+        // With a bias, liblinear treats it as one more feature, which it uses like any other if a vector has it.
+        nrFeature = weights.length / nrW;
+        labels = model.getLabels().clone();
+    }
+
+    public int getNrClass() {
+        return nrClass;
+    }
+
+    /**
+     * @return the model's labels, in the order of the probabilities
+     */
+    public int[] getLabels() {
+        return labels.clone();
+    }
+
+    /**
+     * @param indices 0-based feature indices, as in SparseRepresentation, in any order
+     * @param values  the values of the features
+     * @param n       number of features to use from indices and values
+     * @param probs   receives the probability of every label, in the order of getLabels()
+     */
+    public void score(int[] indices, double[] values, int n, double[] probs) {
+        clear(probs);
+        for (int i = 0; i < n; ++i) {
+            add(indices[i], values[i], probs);
+        }
+        toProbabilities(probs);
+    }
+
+    /**
+     * Same as score(indices, values, n, probs) for the non-zero values of vector.
+     */
+    public void score(SparseVector vector, double[] probs) {
+        clear(probs);
+        for (int i = 0; i < vector.size(); ++i) {
+            add(vector.getIndex(i), vector.getValue(i), probs);
+        }
+        toProbabilities(probs);
+    }
+
+    /**
+     * Same as score(SparseVector, probs) for the vector of rep.
+     *
+     * @return the probabilities in the buffer
+     */
+    public double[] score(SparseRepresentation rep, Buffer buffer) {
+        score(rep.toSparseVector(), buffer.probs);
+        return buffer.probs;
+    }
+
+    /**
+     * @return a buffer for score(SparseRepresentation, Buffer), to be reused by one thread
+     */
+    public Buffer newBuffer() {
+        return new Buffer(nrClass);
+    }
+
+    private void clear(double[] probs) {
+        for (int i = 0; i < nrW; ++i) {
+            probs[i] = 0d;
+        }
+    }
+
+    private void add(int index, double value, double[] probs) {
+        if (index < 0 || index >= nrFeature) {
+            return;
+        }
+        for (int i = 0, w = index * nrW; i < nrW; ++i, ++w) {
+            probs[i] += weights[w] * value;
+        }
+    }
+
+    private void toProbabilities(double[] probs) {
+        for (int i = 0; i < nrW; ++i) {
+            probs[i] = 1d / (1d + Math.exp(-probs[i]));
+        }
+        if (nrClass == 2) {
+            probs[1] = 1d - probs[0];
+        } else {
+            double sum = 0d;
+            for (int i = 0; i < nrClass; ++i) {
+                sum += probs[i];
+            }
+            for (int i = 0; i < nrClass; ++i) {
+                probs[i] /= sum;
+            }
+        }
+    }
+
+    /**
+     * Probability array of one thread.
+     */
+    public static final class Buffer {
+        private final double[] probs;
+
+        private Buffer(int nrClass) {
+            probs = new double[nrClass];
+        }
+    }
+}
@@ -35,34 +35,62 @@ package com.groupon.ml.liblinear;
 import com.groupon.ml.ClassificationAnalysis;
 import com.groupon.ml.TextClassifier;
 import com.groupon.nakala.analysis.Analysis;
+import com.groupon.nakala.analysis.BatchAnalyzer;
 import com.groupon.nakala.core.*;
 import com.groupon.nakala.exceptions.AnalyzerFailureException;
 import com.groupon.nakala.exceptions.ResourceInitializationException;
-import de.bwaldvogel.liblinear.Feature;
-import de.bwaldvogel.liblinear.Linear;
 import de.bwaldvogel.liblinear.Model;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * @author npendar@groupon.com
  */
-public class LibLinearTextClassifier extends TextClassifier {
+public class LibLinearTextClassifier extends TextClassifier implements BatchAnalyzer {
 
     private int[] labelIndeces;
+    // Label names in the order of the model's labels.
+    private String[] modelLabelNames;
     private Model model;
+    private LibLinearScorer scorer;
 
     @Override
     public void initialize(Parameters params) throws ResourceInitializationException {
         super.initialize(params);
-        try {
-            model = Model.load(((ResourceReader) params.get(Constants.MODEL)).getReader());
-        } catch (IOException e) {
-            throw new ResourceInitializationException("Failed to load SVM model.", e);
-        }
+        final ResourceReader modelReader = (ResourceReader) params.get(Constants.MODEL);
+        model = ResourceRegistry.get(Model.class, modelReader.getPath(), new Callable<Model>() {
+            @Override
+            public Model call() {
+                try {
+                    return Model.load(modelReader.getReader());
+                } catch (IOException e) {
+                    throw new ResourceInitializationException("Failed to load SVM model.", e);
+                }
+            }
+        });
+
+        final Model loaded = model;
+        scorer = ResourceRegistry.get(LibLinearScorer.class, modelReader.getPath(), new Callable<LibLinearScorer>() {
+            @Override
+            public LibLinearScorer call() {
+                try {
+                    return new LibLinearScorer(loaded);
+                } catch (IllegalArgumentException e) {
+                    throw new ResourceInitializationException("Cannot score model.", e);
+                }
+            }
+        });
 
         labelIndeces = new int[labels.size()];
         labelIndeces = model.getLabels();
+        modelLabelNames = new String[labelIndeces.length];
+        for (int i = 0; i < labelIndeces.length; ++i) {
+            modelLabelNames[i] = labels.get(labelIndeces[i]);
+        }
         representer = (TextRepresenter) params.get(Constants.REPRESENTER);
     }
 
@@ -70,7 +98,23 @@ public class LibLinearTextClassifier extends TextClassifier {
     @Override
     public Analysis analyze(Analyzable a) throws AnalyzerFailureException {
         if (a == null) return null;
+        return classify(a, scorer.newBuffer());
+    }
+
+    /**
+     * Classifies the batch reusing the scorer's buffer.
+     */
+    @Override
+    public List<Analysis> analyzeBatch(List<Analyzable> batch) throws AnalyzerFailureException {
+        List<Analysis> analyses = new ArrayList<Analysis>(batch.size());
+        LibLinearScorer.Buffer buffer = scorer.newBuffer();
+        for (Analyzable a : batch) {
+            analyses.add(a == null ? null : classify(a, buffer));
+        }
+        return analyses;
+    }
 
+    private Analysis classify(Analyzable a, LibLinearScorer.Buffer buffer) throws AnalyzerFailureException {
         if (!(a instanceof IdentifiableTextContent)) {
             throw new AnalyzerFailureException("Analyzable not identifiable. This analyzer requires an IdentifiableTextContent.");
         }
@@ -78,12 +122,11 @@ public class LibLinearTextClassifier extends TextClassifier {
         IdentifiableTextContent tc = (IdentifiableTextContent) a;
 
         try {
-            Feature[] vector = LibLinearUtils.toLibLinear(representer.represent(tc.getText()).toSvmNodes());
-            double[] probs = new double[labels.size()];
-            Linear.predictProbability(model, vector, probs);
-            ClassificationAnalysis analysis = new ClassificationAnalysis(tc.getId());
+            double[] probs = scorer.score(representer.represent(tc.getText()), buffer);
+            ClassificationAnalysis analysis = new ClassificationAnalysis(tc.getId(),
+                    new HashMap<String, Double>(2 * modelLabelNames.length));
             for (int i = 0; i < labelIndeces.length; ++i) {
-                analysis.addClassification(labels.get(labelIndeces[i]), probs[i] >= threshold ? probs[i] : 0d);
+                analysis.addClassification(modelLabelNames[i], probs[i] >= threshold ? probs[i] : 0d);
             }
             return analysis;
         } catch (Exception e) {
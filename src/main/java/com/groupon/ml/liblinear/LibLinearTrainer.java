@@ -32,6 +32,7 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.groupon.ml.liblinear;
 
+import com.groupon.ml.TrainingDataLoader;
 import com.groupon.ml.svm.ValueScaler;
 import com.groupon.nakala.analysis.AbstractCollectionAnalyzer;
 import com.groupon.nakala.analysis.AnalysisCollector;
@@ -41,7 +42,6 @@ import com.groupon.nakala.db.CollectionReader;
 import com.groupon.nakala.exceptions.AnalyzerFailureException;
 import com.groupon.nakala.exceptions.ResourceInitializationException;
 import de.bwaldvogel.liblinear.*;
-import libsvm.svm_node;
 import libsvm.svm_parameter;
 
 import java.util.*;
@@ -59,6 +59,7 @@ public class LibLinearTrainer extends AbstractCollectionAnalyzer {
     private ValueScaler scaler;
 
     private List<String> labelList;
+    private int numberOfThreads = 1;
 
     @Override
     public void initialize(Parameters params) throws ResourceInitializationException {
@@ -72,6 +73,13 @@ public class LibLinearTrainer extends AbstractCollectionAnalyzer {
         if (params.contains(Constants.C)) {
             c = params.getDouble(Constants.C);
         }
+
+        if (params.contains(Constants.NUMBER_OF_THREADS)) {
+            numberOfThreads = params.getInt(Constants.NUMBER_OF_THREADS);
+            if (numberOfThreads < 1) {
+                throw new ResourceInitializationException(Constants.NUMBER_OF_THREADS + " must be >= 1");
+            }
+        }
     }
 
 
@@ -80,55 +88,12 @@ public class LibLinearTrainer extends AbstractCollectionAnalyzer {
     }
 
     public Problem loadData(CollectionReader cr) {
-        logger.debug("Loading " + cr.getSize() + " documents.");
-        List<svm_node[]> data = new LinkedList<svm_node[]>();
-        List<Set<String>> labels = new LinkedList<Set<String>>();
-        Set<String> allLabels = new HashSet<String>();
-
-        for (Analyzable a : cr) {
-            CategorizedTextContent ctc = (CategorizedTextContent) a;
-            labels.add(ctc.getCategories());
-            allLabels.addAll(ctc.getCategories());
-            data.add(representer.represent(ctc.getText()).toSvmNodes());
-        }
-
-        labelList = new ArrayList<String>(allLabels);
-        Collections.sort(labelList);
-
-        logger.debug("Total labels: " + labelList.size());
-        logger.trace("Labels: " + labelList);
-
-        int numberOfExpandedData = 0;
-        for (Set<String> ls : labels) {
-            numberOfExpandedData += ls.size();
-        }
-
-        // Scale data
-        logger.debug("Scaling data.");
-        scaler = new ValueScaler(0, 1, data.toArray(new svm_node[0][]));
-        svm_node[][] scaledData = scaler.getScaledData();
-
-        // For every label, generate a copy of the data item.
-        logger.debug("Generating " + numberOfExpandedData + " records.");
-        svm_node[][] expandedData = new svm_node[numberOfExpandedData][];
-        double[] expandedLabels = new double[numberOfExpandedData];
-        int i = 0;
-        int xi = 0;
-        for (svm_node[] dataItem : scaledData) {
-            Set<String> trueLabels = labels.get(i++);
-            for (String label : trueLabels) {
-                double labelIndex = labelList.indexOf(label);
-                expandedData[xi] = dataItem.clone();
-                expandedLabels[xi++] = labelIndex;
-            }
-        }
-        Problem problem = new Problem();
-        problem.l = numberOfExpandedData;
-        problem.n = representer.getFeatures().size();
-        problem.x = LibLinearUtils.toLibLinearDataSet(expandedData);
-        problem.y = expandedLabels;
+        TrainingDataLoader loader = new TrainingDataLoader(representer, numberOfThreads);
+        loader.load(cr);
 
-        return problem;
+        labelList = loader.getLabelList();
+        scaler = loader.getScaler();
+        return loader.toLibLinearProblem();
     }
 
     public List<String> getLabelList() {
@@ -0,0 +1,223 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml.sgd;
+
+import com.groupon.nakala.core.SparseVector;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Linear one-vs-rest model with one weight vector and bias per label. Weights are stored feature-major, so
+ * the weights of all labels for a feature are adjacent. Model files are text, in the spirit of liblinear's:
+ * a header followed by one line per non-zero feature holding the feature index and its weight per label.
+ * Labels are in the order of the accompanying labels file.
+ *
+ * @author npendar@groupon.com
+ */
+public class SgdModel {
+    public static final String LOGISTIC = "logistic";
+    public static final String HINGE = "hinge";
+
+    private static final String SOLVER_TYPE = "SGD";
+
+    private final String loss;
+    private final int nrClass;
+    private final int nrFeature;
+    private final double[] weights;
+    private final double[] bias;
+
+    /**
+     * @param weights feature-major weights, nrFeature * nrClass values
+     */
+    public SgdModel(String loss, int nrClass, int nrFeature, double[] weights, double[] bias) {
+        if (weights.length != nrClass * nrFeature || bias.length != nrClass) {
+            throw new IllegalArgumentException("Expected " + nrFeature + " x " + nrClass + " weights and " +
+                    nrClass + " biases.");
+        }
+        this.loss = loss;
+        this.nrClass = nrClass;
+        this.nrFeature = nrFeature;
+        this.weights = weights;
+        this.bias = bias;
+    }
+
+    public String getLoss() {
+        return loss;
+    }
+
+    public int getNrClass() {
+        return nrClass;
+    }
+
+    public int getNrFeature() {
+        return nrFeature;
+    }
+
+    public double getWeight(int feature, int label) {
+        return weights[feature * nrClass + label];
+    }
+
+    public double getBias(int label) {
+        return bias[label];
+    }
+
+    /**
+     * Computes the probability of every label as the logistic function of its margin. With hinge loss the
+     * margins are not calibrated, so the values order documents but are not true probabilities.
+     *
+     * @param x     vector with 0-based indices; indices beyond the model's features are ignored
+     * @param probs receives nrClass probabilities
+     */
+    public void predictProbabilities(SparseVector x, double[] probs) {
+        System.arraycopy(bias, 0, probs, 0, nrClass);
+        for (int k = 0; k < x.size(); ++k) {
+            int index = x.getIndex(k);
+            if (index >= nrFeature) {
+                continue;
+            }
+            double value = x.getValue(k);
+            for (int l = 0, w = index * nrClass; l < nrClass; ++l, ++w) {
+                probs[l] += weights[w] * value;
+            }
+        }
+        for (int l = 0; l < nrClass; ++l) {
+            probs[l] = sigmoid(probs[l]);
+        }
+    }
+
+    static double sigmoid(double margin) {
+        return margin >= 0 ? 1d / (1d + Math.exp(-margin)) : Math.exp(margin) / (1d + Math.exp(margin));
+    }
+
+    public void save(PrintStream out) {
+        out.println("solver_type " + SOLVER_TYPE);
+        out.println("loss " + loss);
+        out.println("nr_class " + nrClass);
+        out.println("nr_feature " + nrFeature);
+        StringBuilder sb = new StringBuilder("bias");
+        for (double b : bias) {
+            sb.append(' ').append(b);
+        }
+        out.println(sb);
+        out.println("w");
+        for (int f = 0; f < nrFeature; ++f) {
+            int w = f * nrClass;
+            boolean zero = true;
+            for (int l = 0; l < nrClass && zero; ++l) {
+                zero = weights[w + l] == 0d;
+            }
+            if (zero) {
+                continue;
+            }
+            sb.setLength(0);
+            sb.append(f);
+            for (int l = 0; l < nrClass; ++l) {
+                sb.append(' ').append(weights[w + l]);
+            }
+            out.println(sb);
+        }
+    }
+
+    public static SgdModel load(BufferedReader reader) throws ResourceInitializationException {
+        String line = null;
+        try {
+            String loss = null;
+            int nrClass = -1;
+            int nrFeature = -1;
+            double[] bias = null;
+            while ((line = reader.readLine()) != null && !line.equals("w")) {
+                String[] pieces = line.trim().split(" ");
+                if (pieces[0].equals("solver_type")) {
+                    if (!pieces[1].equals(SOLVER_TYPE)) {
+                        throw new ResourceInitializationException("Not an SGD model: " + line);
+                    }
+                } else if (pieces[0].equals("loss")) {
+                    loss = pieces[1];
+                } else if (pieces[0].equals("nr_class")) {
+                    nrClass = Integer.parseInt(pieces[1]);
+                } else if (pieces[0].equals("nr_feature")) {
+                    nrFeature = Integer.parseInt(pieces[1]);
+                } else if (pieces[0].equals("bias")) {
+                    bias = new double[pieces.length - 1];
+                    for (int i = 1; i < pieces.length; ++i) {
+                        bias[i - 1] = Double.parseDouble(pieces[i]);
+                    }
+                } else {
+                    throw new ResourceInitializationException("Unknown model header " + line);
+                }
+            }
+            if (line == null || loss == null || nrClass < 0 || nrFeature < 0 || bias == null) {
+                throw new ResourceInitializationException("Incomplete model header.");
+            }
+
+            double[] weights = new double[nrClass * nrFeature];
+            while ((line = reader.readLine()) != null) {
+                String[] pieces = line.trim().split(" ");
+                if (pieces.length != nrClass + 1) {
+                    throw new ResourceInitializationException("Expected " + nrClass + " weights in " + line);
+                }
+                int w = Integer.parseInt(pieces[0]) * nrClass;
+                for (int l = 0; l < nrClass; ++l) {
+                    weights[w + l] = Double.parseDouble(pieces[l + 1]);
+                }
+            }
+            return new SgdModel(loss, nrClass, nrFeature, weights, bias);
+        } catch (IOException e) {
+            throw new ResourceInitializationException("Failed to read SGD model.", e);
+        } catch (RuntimeException e) {
+            if (e instanceof ResourceInitializationException) {
+                throw e;
+            }
+            throw new ResourceInitializationException("Invalid model line " + line, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SgdModel)) {
+            return false;
+        }
+        SgdModel other = (SgdModel) o;
+        return loss.equals(other.loss) && nrClass == other.nrClass && nrFeature == other.nrFeature &&
+                Arrays.equals(weights, other.weights) && Arrays.equals(bias, other.bias);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(weights) + Arrays.hashCode(bias);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml.sgd;
+
+import com.groupon.ml.ClassificationAnalysis;
+import com.groupon.ml.TextClassifier;
+import com.groupon.nakala.analysis.Analysis;
+import com.groupon.nakala.analysis.BatchAnalyzer;
+import com.groupon.nakala.core.*;
+import com.groupon.nakala.exceptions.AnalyzerFailureException;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Classifies texts with a model trained by SgdTrainer.
+ *
+ * @author npendar@groupon.com
+ */
+public class SgdTextClassifier extends TextClassifier implements BatchAnalyzer {
+
+    private String[] labelNames;
+    private SgdModel model;
+
+    @Override
+    public void initialize(Parameters params) throws ResourceInitializationException {
+        super.initialize(params);
+        final ResourceReader modelReader = (ResourceReader) params.get(Constants.MODEL);
+        model = ResourceRegistry.get(SgdModel.class, modelReader.getPath(), new Callable<SgdModel>() {
+            @Override
+            public SgdModel call() {
+                return SgdModel.load(modelReader.getReader());
+            }
+        });
+        if (model.getNrClass() != labels.size()) {
+            throw new ResourceInitializationException("Model has " + model.getNrClass() + " labels, but " +
+                    labels.size() + " labels provided.");
+        }
+        labelNames = labels.toArray(new String[labels.size()]);
+    }
+
+    public SgdModel getModel() {
+        return model;
+    }
+
+    @Override
+    public Analysis analyze(Analyzable a) throws AnalyzerFailureException {
+        if (a == null) return null;
+        return classify(a, new double[labelNames.length]);
+    }
+
+    /**
+     * Classifies the batch reusing the probability buffer.
+     */
+    @Override
+    public List<Analysis> analyzeBatch(List<Analyzable> batch) throws AnalyzerFailureException {
+        List<Analysis> analyses = new ArrayList<Analysis>(batch.size());
+        double[] probs = new double[labelNames.length];
+        for (Analyzable a : batch) {
+            analyses.add(a == null ? null : classify(a, probs));
+        }
+        return analyses;
+    }
+
+    private Analysis classify(Analyzable a, double[] probs) throws AnalyzerFailureException {
+        if (!(a instanceof IdentifiableTextContent)) {
+            throw new AnalyzerFailureException("Analyzable not identifiable. This analyzer requires an IdentifiableTextContent.");
+        }
+
+        IdentifiableTextContent tc = (IdentifiableTextContent) a;
+
+        try {
+            model.predictProbabilities(representer.represent(tc.getText()).toSparseVector(), probs);
+            ClassificationAnalysis analysis = new ClassificationAnalysis(tc.getId(),
+                    new HashMap<String, Double>(2 * labelNames.length));
+            for (int i = 0; i < labelNames.length; ++i) {
+                analysis.addClassification(labelNames[i], probs[i] >= threshold ? probs[i] : 0d);
+            }
+            return analysis;
+        } catch (Exception e) {
+            throw new AnalyzerFailureException("Classifier failed on record " + tc.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml.sgd;
+
+import com.groupon.nakala.analysis.AbstractCollectionAnalyzer;
+import com.groupon.nakala.analysis.AnalysisCollector;
+import com.groupon.nakala.analysis.SingletonAnalysisCollector;
+import com.groupon.nakala.core.*;
+import com.groupon.nakala.db.CollectionReader;
+import com.groupon.nakala.exceptions.AnalyzerFailureException;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+
+import java.util.*;
+
+/**
+ * Trains a one-vs-rest linear classifier with L2 regularization by stochastic gradient descent, streaming
+ * epochs passes over the collection. Only the weights, and with AdaGrad the squared gradient sums, are kept in
+ * memory, so memory is O(features x labels) regardless of the collection size. Documents are visited in
+ * collection order, so the collection should not be sorted by label.
+ * <p/>
+ * Labels are discovered during the first pass. A label first seen late in the first pass has missed the
+ * negative updates of the documents before it, which later passes make up for.
+ * <p/>
+ * Parameters: representer (required), loss (logistic or hinge, default logistic), optimizer (sgd or adagrad,
+ * default adagrad), epochs (default 5), learning_rate (default 0.1) and l2 (default 1e-6).
+ *
+ * @author npendar@groupon.com
+ */
+public class SgdTrainer extends AbstractCollectionAnalyzer {
+    public static final String SGD = "sgd";
+    public static final String ADAGRAD = "adagrad";
+
+    public static final int DEFAULT_EPOCHS = 5;
+    public static final double DEFAULT_LEARNING_RATE = 0.1;
+    public static final double DEFAULT_L2 = 1e-6;
+
+    private static final double ADAGRAD_EPSILON = 1e-8;
+
+    private TextRepresenter representer;
+    private String loss = SgdModel.LOGISTIC;
+    private String optimizer = ADAGRAD;
+    private int epochs = DEFAULT_EPOCHS;
+    private double learningRate = DEFAULT_LEARNING_RATE;
+    private double l2 = DEFAULT_L2;
+
+    private int dimension;
+    private Map<String, Integer> labelIds;
+    private List<String> labelNames;
+    private List<double[]> weights;
+    private List<double[]> squaredGradients;
+    private double[] bias;
+    private double[] squaredBiasGradients;
+    private long t;
+
+    @Override
+    public void initialize(Parameters params) throws ResourceInitializationException {
+        super.initialize(params);
+        if (params.contains(Constants.REPRESENTER)) {
+            representer = (TextRepresenter) params.get(Constants.REPRESENTER);
+        } else {
+            throw new ResourceInitializationException("No text representer specified.");
+        }
+
+        if (params.contains(Constants.LOSS)) {
+            loss = params.getString(Constants.LOSS);
+            if (!loss.equals(SgdModel.LOGISTIC) && !loss.equals(SgdModel.HINGE)) {
+                throw new ResourceInitializationException("Invalid " + Constants.LOSS + " " + loss +
+                        ". Expected " + SgdModel.LOGISTIC + " or " + SgdModel.HINGE + ".");
+            }
+        }
+
+        if (params.contains(Constants.OPTIMIZER)) {
+            optimizer = params.getString(Constants.OPTIMIZER);
+            if (!optimizer.equals(SGD) && !optimizer.equals(ADAGRAD)) {
+                throw new ResourceInitializationException("Invalid " + Constants.OPTIMIZER + " " + optimizer +
+                        ". Expected " + SGD + " or " + ADAGRAD + ".");
+            }
+        }
+
+        if (params.contains(Constants.EPOCHS)) {
+            epochs = params.getInt(Constants.EPOCHS);
+            if (epochs < 1) {
+                throw new ResourceInitializationException(Constants.EPOCHS + " must be >= 1");
+            }
+        }
+
+        if (params.contains(Constants.LEARNING_RATE)) {
+            learningRate = params.getDouble(Constants.LEARNING_RATE);
+            if (learningRate <= 0) {
+                throw new ResourceInitializationException(Constants.LEARNING_RATE + " must be > 0");
+            }
+        }
+
+        if (params.contains(Constants.L2)) {
+            l2 = params.getDouble(Constants.L2);
+            if (l2 < 0) {
+                throw new ResourceInitializationException(Constants.L2 + " must be >= 0");
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public AnalysisCollector analyze(CollectionReader cr) throws AnalyzerFailureException {
+        dimension = representer.getDimension();
+        labelIds = new HashMap<String, Integer>();
+        labelNames = new ArrayList<String>();
+        weights = new ArrayList<double[]>();
+        squaredGradients = new ArrayList<double[]>();
+        bias = new double[0];
+        squaredBiasGradients = new double[0];
+        t = 0;
+
+        for (int epoch = 0; epoch < epochs; ++epoch) {
+            if (epoch > 0) {
+                cr.reset();
+            }
+            logger.debug("Epoch " + (epoch + 1) + " of " + epochs + ".");
+            int documents = 0;
+            for (Analyzable a : cr) {
+                CategorizedTextContent ctc = (CategorizedTextContent) a;
+                if (passFilter != null && !passFilter.passes(ctc))
+                    continue;
+                if (blockFilter != null && blockFilter.blocks(ctc))
+                    continue;
+                update(represent(ctc).toSparseVector(), getLabelIds(ctc.getCategories()));
+                ++documents;
+            }
+            logger.debug("Trained on " + documents + " documents.");
+        }
+        representer.shutdown();
+
+        logger.debug("Total labels: " + labelNames.size());
+        return new SingletonAnalysisCollector(new SgdTrainerAnalysis(getModel(), getSortedLabels()));
+    }
+
+    private SparseRepresentation represent(CategorizedTextContent ctc) {
+        if (ctc instanceof TokenizedTextContent) {
+            // Read from a tokenized corpus, skip text processing.
+            return representer.represent(((TokenizedTextContent) ctc).getTokens());
+        }
+        return representer.represent(ctc.getText());
+    }
+
+    private boolean[] getLabelIds(Set<String> categories) {
+        for (String category : categories) {
+            if (!labelIds.containsKey(category)) {
+                labelIds.put(category, labelNames.size());
+                labelNames.add(category);
+                weights.add(new double[dimension]);
+                bias = Arrays.copyOf(bias, bias.length + 1);
+                if (optimizer.equals(ADAGRAD)) {
+                    squaredGradients.add(new double[dimension]);
+                    squaredBiasGradients = Arrays.copyOf(squaredBiasGradients, squaredBiasGradients.length + 1);
+                }
+            }
+        }
+        boolean[] positive = new boolean[labelNames.size()];
+        for (String category : categories) {
+            positive[labelIds.get(category)] = true;
+        }
+        return positive;
+    }
+
+    /**
+     * Takes one gradient step per label on document x, which is positive for the labels set in positive. The L2
+     * penalty is applied to the weights of the features present in x only, which keeps updates sparse.
+     */
+    void update(SparseVector x, boolean[] positive) {
+        ++t;
+        double eta = learningRate / (1d + learningRate * l2 * t);
+        boolean adagrad = optimizer.equals(ADAGRAD);
+        for (int l = 0; l < positive.length; ++l) {
+            double[] w = weights.get(l);
+            double y = positive[l] ? 1d : -1d;
+            double margin = bias[l];
+            for (int k = 0; k < x.size(); ++k) {
+                margin += w[x.getIndex(k)] * x.getValue(k);
+            }
+            double g = lossGradient(y, margin);
+
+            double[] gsq = adagrad ? squaredGradients.get(l) : null;
+            for (int k = 0; k < x.size(); ++k) {
+                int j = x.getIndex(k);
+                double gradient = g * x.getValue(k) + l2 * w[j];
+                if (adagrad) {
+                    gsq[j] += gradient * gradient;
+                    w[j] -= learningRate * gradient / (Math.sqrt(gsq[j]) + ADAGRAD_EPSILON);
+                } else {
+                    w[j] -= eta * gradient;
+                }
+            }
+            if (g != 0d) {
+                if (adagrad) {
+                    squaredBiasGradients[l] += g * g;
+                    bias[l] -= learningRate * g / (Math.sqrt(squaredBiasGradients[l]) + ADAGRAD_EPSILON);
+                } else {
+                    bias[l] -= eta * g;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return derivative of the loss with respect to the margin
+     */
+    private double lossGradient(double y, double margin) {
+        if (loss.equals(SgdModel.HINGE)) {
+            return y * margin < 1d ? -y : 0d;
+        }
+        return -y * SgdModel.sigmoid(-y * margin);
+    }
+
+    private List<String> getSortedLabels() {
+        List<String> sorted = new ArrayList<String>(labelNames);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * @return the model with labels in sorted order
+     */
+    SgdModel getModel() {
+        List<String> sorted = getSortedLabels();
+        int nrClass = sorted.size();
+        double[] modelWeights = new double[dimension * nrClass];
+        double[] modelBias = new double[nrClass];
+        for (int l = 0; l < nrClass; ++l) {
+            int id = labelIds.get(sorted.get(l));
+            double[] w = weights.get(id);
+            for (int f = 0; f < dimension; ++f) {
+                modelWeights[f * nrClass + l] = w[f];
+            }
+            modelBias[l] = bias[id];
+        }
+        return new SgdModel(loss, nrClass, dimension, modelWeights, modelBias);
+    }
+}
@@ -33,8 +33,10 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.groupon.ml.svm;
 
 import com.groupon.ml.ClassificationAnalysis;
+import com.groupon.ml.SparseVectorBuffer;
 import com.groupon.ml.TextClassifier;
 import com.groupon.nakala.analysis.Analysis;
+import com.groupon.nakala.analysis.BatchAnalyzer;
 import com.groupon.nakala.core.*;
 import com.groupon.nakala.exceptions.AnalyzerFailureException;
 import com.groupon.nakala.exceptions.ResourceInitializationException;
@@ -43,39 +45,93 @@ import libsvm.svm_model;
 import libsvm.svm_node;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * @author npendar@groupon.com
  */
-public final class LibSvmTextClassifier extends TextClassifier {
+public final class LibSvmTextClassifier extends TextClassifier implements BatchAnalyzer {
 
     private int[] labelIndeces;
+    private String[] labelNames;
+    // Label names in the order of the model's labels.
+    private String[] modelLabelNames;
     private svm_model model;
     private boolean predictProbabilities = true;
 
+    public LibSvmTextClassifier() {
+    }
+
+    /**
+     * Creates a classifier for an already loaded model, e.g. one of an SvmModelBundle.
+     */
+    public LibSvmTextClassifier(svm_model model, List<String> labels, TextRepresenter representer,
+                                double threshold) {
+        this.model = model;
+        this.labels = labels;
+        this.representer = representer;
+        this.threshold = threshold;
+        setLabelIndeces();
+    }
+
     @Override
     public void initialize(Parameters params) throws ResourceInitializationException {
         super.initialize(params);
-        try {
-            model = svm.svm_load_model(((ResourceReader) params.get(Constants.MODEL)).getReader());
-        } catch (IOException e) {
-            throw new ResourceInitializationException("Failed to load SVM model.", e);
-        }
+        final ResourceReader modelReader = (ResourceReader) params.get(Constants.MODEL);
+        model = ResourceRegistry.get(svm_model.class, modelReader.getPath(), new Callable<svm_model>() {
+            @Override
+            public svm_model call() {
+                try {
+                    return svm.svm_load_model(modelReader.getReader());
+                } catch (IOException e) {
+                    throw new ResourceInitializationException("Failed to load SVM model.", e);
+                }
+            }
+        });
 
         if (params.contains(Constants.PREDICT_PROBABILITIES)){
             predictProbabilities = params.getBoolean(Constants.PREDICT_PROBABILITIES);
         }
 
+        setLabelIndeces();
+        representer = (TextRepresenter) params.get(Constants.REPRESENTER);
+    }
+
+    private void setLabelIndeces() {
         labelIndeces = new int[labels.size()];
         svm.svm_get_labels(model, labelIndeces);
-        representer = (TextRepresenter) params.get(Constants.REPRESENTER);
+        labelNames = labels.toArray(new String[labels.size()]);
+        modelLabelNames = new String[labelIndeces.length];
+        for (int i = 0; i < labelIndeces.length; ++i) {
+            modelLabelNames[i] = labelNames[labelIndeces[i]];
+        }
     }
 
     @Override
     public Analysis analyze(Analyzable a) throws AnalyzerFailureException {
         if (a == null) return null;
+        return classify(a, new SparseVectorBuffer(), new double[labels.size()]);
+    }
+
+    /**
+     * Classifies the batch reusing the probability and vector buffers.
+     */
+    @Override
+    public List<Analysis> analyzeBatch(List<Analyzable> batch) throws AnalyzerFailureException {
+        List<Analysis> analyses = new ArrayList<Analysis>(batch.size());
+        SparseVectorBuffer buffer = new SparseVectorBuffer();
+        double[] probs = new double[labels.size()];
+        for (Analyzable a : batch) {
+            analyses.add(a == null ? null : classify(a, buffer, probs));
+        }
+        return analyses;
+    }
 
+    private Analysis classify(Analyzable a, SparseVectorBuffer buffer, double[] probs)
+            throws AnalyzerFailureException {
         if (!(a instanceof IdentifiableTextContent)) {
             throw new AnalyzerFailureException("Analyzable not identifiable. This analyzer requires an IdentifiableTextContent.");
         }
@@ -84,19 +140,19 @@ public final class LibSvmTextClassifier extends TextClassifier {
 
         try {
             SparseRepresentation sparseRepresentation = representer.represent(tc.getText());
-            svm_node[] rep = sparseRepresentation.toSvmNodes();
-            ClassificationAnalysis analysis = new ClassificationAnalysis(tc.getId());
+            svm_node[] rep = buffer.toSvmNodes(sparseRepresentation);
+            ClassificationAnalysis analysis = new ClassificationAnalysis(tc.getId(),
+                    new HashMap<String, Double>(2 * labelNames.length));
             if (predictProbabilities) {
                 // Calculate probabilities of class membership
-                double[] probs = new double[labels.size()];
                 svm.svm_predict_probability(model, rep, probs);
                 for (int i = 0; i < labelIndeces.length; ++i) {
-                    analysis.addClassification(labels.get(labelIndeces[i]), probs[i] >= threshold ? probs[i] : 0d);
+                    analysis.addClassification(modelLabelNames[i], probs[i] >= threshold ? probs[i] : 0d);
                 }
             } else {
                 int classIndex = (int) svm.svm_predict(model, rep);
-                for (int i = 0; i < labels.size(); ++i){
-                    analysis.addClassification(labels.get(i), i == classIndex ? 1d : 0d);
+                for (int i = 0; i < labelNames.length; ++i){
+                    analysis.addClassification(labelNames[i], i == classIndex ? 1d : 0d);
                 }
             }
             return analysis;
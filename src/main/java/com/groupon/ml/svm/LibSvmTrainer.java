@@ -32,6 +32,7 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.groupon.ml.svm;
 
+import com.groupon.ml.TrainingDataLoader;
 import com.groupon.nakala.analysis.AbstractCollectionAnalyzer;
 import com.groupon.nakala.analysis.AnalysisCollector;
 import com.groupon.nakala.analysis.SingletonAnalysisCollector;
@@ -48,7 +49,10 @@ import java.util.concurrent.Executors;
 /**
  * @author npendar@groupon.com
  */
-public class LibSvmTrainer extends AbstractCollectionAnalyzer {
+public class LibSvmTrainer extends AbstractCollectionAnalyzer implements MetricsAware {
+
+    public static final String GRID = "grid";
+    public static final String HALVING = "halving";
 
     private boolean findBestParameters = false;
     private int nrFold = 5;
@@ -57,6 +61,7 @@ public class LibSvmTrainer extends AbstractCollectionAnalyzer {
     private TextRepresenter representer;
     private ValueScaler scaler;
     private double sample = 1d;
+    private double refineSample = -1d;
     private Map<Integer, Double> weights;
 
     private double log2cBegin = -5;
@@ -71,6 +76,8 @@ public class LibSvmTrainer extends AbstractCollectionAnalyzer {
 
     private int numberOfThreads = 1;
     private String targetClass;
+    private String searchStrategy = GRID;
+    private JobFlowMetrics metrics;
 
     @Override
     public void initialize(Parameters params) throws ResourceInitializationException {
@@ -85,7 +92,7 @@ public class LibSvmTrainer extends AbstractCollectionAnalyzer {
         if (params.contains(Constants.FIND_BEST_PARAMETERS)) {
             findBestParameters = params.getBoolean(Constants.FIND_BEST_PARAMETERS);
         } else {
-            gamma = 1.0 / (double) representer.getFeatures().size();
+            gamma = 1.0 / (double) representer.getDimension();
         }
 
         if (params.contains(Constants.C)) {
@@ -135,6 +142,19 @@ public class LibSvmTrainer extends AbstractCollectionAnalyzer {
             }
         }
 
+        if (params.contains(Constants.REFINE_SAMPLE)) {
+            if (findBestParameters) {
+                refineSample = params.getDouble(Constants.REFINE_SAMPLE);
+                if (refineSample < sample || refineSample > 1) {
+                    throw new ResourceInitializationException("Invalid " + Constants.REFINE_SAMPLE + " value " +
+                            refineSample + ". Expected a value between " + Constants.SAMPLE + " and 1.");
+                }
+            } else {
+                logger.warn("Refine sample value valid for parameter optimization only. " +
+                        "Provided refine sample value will be ignored.");
+            }
+        }
+
         if (params.contains(Constants.NUMBER_OF_THREADS)) {
             numberOfThreads = params.getInt(Constants.NUMBER_OF_THREADS);
             if (numberOfThreads < 1) {
@@ -142,6 +162,14 @@ public class LibSvmTrainer extends AbstractCollectionAnalyzer {
             }
         }
 
+        if (params.contains(Constants.SEARCH_STRATEGY)) {
+            searchStrategy = params.getString(Constants.SEARCH_STRATEGY);
+            if (!searchStrategy.equals(GRID) && !searchStrategy.equals(HALVING)) {
+                throw new ResourceInitializationException("Invalid " + Constants.SEARCH_STRATEGY + " " +
+                        searchStrategy + ". Expected " + GRID + " or " + HALVING + ".");
+            }
+        }
+
         if (params.contains(Constants.TARGET_CLASS)) {
             targetClass = params.getString(Constants.TARGET_CLASS);
             logger.debug("Target Class: " + targetClass);
@@ -152,6 +180,31 @@ public class LibSvmTrainer extends AbstractCollectionAnalyzer {
     public void shutdown() {
     }
 
+    @Override
+    public void setMetrics(JobFlowMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    private JobFlowMetrics.Stage getSearchStage() {
+        return metrics == null ? null : metrics.getStage("param_search");
+    }
+
+    private void do_search_parameters(svm_problem coarseProblem, svm_problem fineProblem) {
+        svm_parameter svmParam = getDefaultSvmParameters();
+        setWeights(svmParam);
+
+        SvmParameterSearch search = new SvmParameterSearch(svmParam, nrFold, numberOfThreads);
+        search.setStage(getSearchStage());
+        CvParams best = search.search(coarseProblem, fineProblem,
+                log2cBegin, log2cEnd, log2cStep, log2gBegin, log2gEnd, log2gStep);
+        logger.debug("Trained " + search.getTrainings() + " models.");
+        logger.debug("Best accuracy: " + best.accuracy);
+        logger.debug("Best C:        " + best.c);
+        logger.debug("Best Gamma:    " + best.gamma);
+        c = best.c;
+        gamma = best.gamma;
+    }
+
     private void do_find_best_parameters(svm_problem svmProblem) {
         svm_parameter svmParam = getDefaultSvmParameters();
         setWeights(svmParam);
@@ -182,7 +235,8 @@ public class LibSvmTrainer extends AbstractCollectionAnalyzer {
                 svmParam1.C = c1;
                 svmParam1.gamma = gamma1;
 
-                executorService.execute(new RunnableSvmCrossValidator(svmProblem, svmParam1, nrFold, cvParamsList));
+                executorService.execute(new RunnableSvmCrossValidator(svmProblem, svmParam1, nrFold, cvParamsList,
+                        getSearchStage()));
             }
         }
 
@@ -258,70 +312,14 @@ public class LibSvmTrainer extends AbstractCollectionAnalyzer {
     }
 
     public svm_problem loadData(CollectionReader cr) {
-        logger.debug("Loading " + cr.getSize() + " documents.");
-        List<svm_node[]> data = new LinkedList<svm_node[]>();
-        List<Set<String>> labels = new LinkedList<Set<String>>();
-        Set<String> allLabels = new HashSet<String>();
-
-        for (Analyzable a : cr) {
-            CategorizedTextContent ctc = (CategorizedTextContent) a;
-
-            Set<String> categories;
-            if (targetClass == null) {
-                categories = ctc.getCategories();
-            } else {
-                categories = new HashSet<String>();
-                if (ctc.getCategories().contains(targetClass)) {
-                    // Not adding any other categories if item belongs to targetClass as well as some other category.
-                    categories.add(targetClass);
-                } else {
-                    categories.add("other");
-                }
-            }
-
-            labels.add(categories);
-            allLabels.addAll(categories);
-            data.add(representer.represent(ctc.getText()).toSvmNodes());
-        }
+        TrainingDataLoader loader = new TrainingDataLoader(representer, numberOfThreads);
+        loader.setTargetClass(targetClass);
+        loader.load(cr);
         representer.shutdown();
 
-        labelList = new ArrayList<String>(allLabels);
-        Collections.sort(labelList);
-
-        logger.debug("Total labels: " + labelList.size());
-        logger.trace("Labels: " + labelList);
-
-        int numberOfExpandedData = 0;
-        for (Set<String> ls : labels) {
-            numberOfExpandedData += ls.size();
-        }
-
-        // Scale data
-        logger.debug("Scaling data.");
-        scaler = new ValueScaler(0, 1, data.toArray(new svm_node[0][]));
-        svm_node[][] scaledData = scaler.getScaledData();
-
-        // For every label, generate a copy of the data item.
-        logger.debug("Generating " + numberOfExpandedData + " records.");
-        svm_node[][] expandedData = new svm_node[numberOfExpandedData][];
-        double[] expandedLabels = new double[numberOfExpandedData];
-        int i = 0;
-        int xi = 0;
-        for (svm_node[] dataItem : scaledData) {
-            Set<String> trueLabels = labels.get(i++);
-            for (String label : trueLabels) {
-                double labelIndex = labelList.indexOf(label);
-                expandedData[xi] = dataItem.clone();
-                expandedLabels[xi++] = labelIndex;
-            }
-        }
-
-        svm_problem svmProblem = new svm_problem();
-        svmProblem.l = numberOfExpandedData;
-        svmProblem.x = expandedData;
-        svmProblem.y = expandedLabels;
-
-        return svmProblem;
+        labelList = loader.getLabelList();
+        scaler = loader.getScaler();
+        return loader.toSvmProblem();
     }
 
     public List<String> getLabelList() {
@@ -350,6 +348,10 @@ public class LibSvmTrainer extends AbstractCollectionAnalyzer {
     }
 
     public svm_problem do_sample(svm_problem svmProblem) {
+        return do_sample(svmProblem, sample);
+    }
+
+    private svm_problem do_sample(svm_problem svmProblem, double sample) {
         logger.debug("Creating " + sample + " sample");
         Map<Double, List<Integer>> label2index = new HashMap<Double, List<Integer>>();
         for (int i = 0; i < svmProblem.l; ++i) {
@@ -434,8 +436,20 @@ public class LibSvmTrainer extends AbstractCollectionAnalyzer {
                 logger.debug("Sampling.");
                 sampled = do_sample(svmProblem);
             }
-            logger.debug("Performing grid search.");
-            do_find_best_parameters(sampled != null ? sampled : svmProblem);
+            if (searchStrategy.equals(GRID)) {
+                logger.debug("Performing grid search.");
+                do_find_best_parameters(sampled != null ? sampled : svmProblem);
+            } else {
+                logger.debug("Performing coarse-to-fine search.");
+                svm_problem coarse = sampled != null ? sampled : svmProblem;
+                svm_problem fine = coarse;
+                if (refineSample == 1d) {
+                    fine = svmProblem;
+                } else if (refineSample > sample) {
+                    fine = do_sample(svmProblem, refineSample);
+                }
+                do_search_parameters(coarse, fine);
+            }
         }
         svm_parameter svmParam = getDefaultSvmParameters();
         svmParam.probability = 1;
@@ -451,39 +465,35 @@ public class LibSvmTrainer extends AbstractCollectionAnalyzer {
     }
 }
 
-class CvParams {
-    double gamma;
-    double c;
-    double accuracy;
-
-    CvParams(double gamma, double c, double accuracy) {
-        this.gamma = gamma;
-        this.accuracy = accuracy;
-        this.c = c;
-    }
-}
-
 class RunnableSvmCrossValidator implements Runnable {
 
     svm_problem svmProblem;
     svm_parameter svmParam;
     int nrFold;
     List<CvParams> cvParamsList;
+    JobFlowMetrics.Stage stage;
 
     public RunnableSvmCrossValidator(final svm_problem svmProblem,
                                      final svm_parameter svmParam,
                                      int nrFold,
-                                     List<CvParams> cvParamsList) {
+                                     List<CvParams> cvParamsList,
+                                     JobFlowMetrics.Stage stage) {
         this.svmProblem = svmProblem;
         this.svmParam = svmParam;
         this.nrFold = nrFold;
         this.cvParamsList = cvParamsList;
+        this.stage = stage;
     }
 
     @Override
     public void run() {
         double[] target = new double[svmProblem.l];
+        long start = stage == null ? 0L : stage.start();
         svm.svm_cross_validation(svmProblem, svmParam, nrFold, target);
+        if (stage != null) {
+            // One cross validation trains a model per fold.
+            stage.stop(start, nrFold);
+        }
         int totalCorrect = 0;
         for (int i = 0; i < svmProblem.l; ++i) {
             if (target[i] == svmProblem.y[i]) {
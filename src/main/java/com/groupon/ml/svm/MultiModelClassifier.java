@@ -35,10 +35,7 @@ package com.groupon.ml.svm;
 import com.groupon.ml.ClassificationAnalysis;
 import com.groupon.ml.Classifier;
 import com.groupon.nakala.analysis.Analysis;
-import com.groupon.nakala.core.Analyzable;
-import com.groupon.nakala.core.Constants;
-import com.groupon.nakala.core.Identifiable;
-import com.groupon.nakala.core.Parameters;
+import com.groupon.nakala.core.*;
 import com.groupon.nakala.exceptions.AnalyzerFailureException;
 import com.groupon.nakala.exceptions.ResourceInitializationException;
 
@@ -56,6 +53,8 @@ import java.util.concurrent.Future;
  *         This convenience class wraps around a number of smaller classifiers. The output is
  *         an aggregation of the output of all the smaller classifiers.
  *         The label "other" from the wrapped classifiers is ignored.
+ *         Instead of a list of classifiers, the model parameter can point to an SvmModelBundle
+ *         written by OneVsRestTrainer.
  */
 
 public class MultiModelClassifier extends Classifier {
@@ -67,6 +66,8 @@ public class MultiModelClassifier extends Classifier {
     public void initialize(Parameters params) throws ResourceInitializationException {
         if (params.contains(Constants.ANALYZERS)) {
             classifiers = (List<Classifier>) params.get(Constants.ANALYZERS);
+        } else if (params.contains(Constants.MODEL)) {
+            classifiers = loadBundle(params);
         } else {
             throw new ResourceInitializationException("No classifiers specified.");
         }
@@ -84,6 +85,37 @@ public class MultiModelClassifier extends Classifier {
         executorService = Executors.newFixedThreadPool(numberOfThreads);
     }
 
+    /**
+     * Creates a LibSvmTextClassifier for every model of the SvmModelBundle in the model parameter, as written by
+     * OneVsRestTrainer. All of them share the representer parameter.
+     */
+    private List<Classifier> loadBundle(Parameters params) throws ResourceInitializationException {
+        if (!params.contains(Constants.REPRESENTER)) {
+            throw new ResourceInitializationException("No representer specified.");
+        }
+        TextRepresenter representer = (TextRepresenter) params.get(Constants.REPRESENTER);
+        double threshold = params.contains(Constants.THRESHOLD) ? params.getDouble(Constants.THRESHOLD) : 0d;
+
+        final ResourceReader modelReader = (ResourceReader) params.get(Constants.MODEL);
+        SvmModelBundle bundle = ResourceRegistry.get(SvmModelBundle.class, modelReader.getPath(),
+                new Callable<SvmModelBundle>() {
+                    @Override
+                    public SvmModelBundle call() {
+                        return SvmModelBundle.load(modelReader.getReader());
+                    }
+                });
+        if (bundle.size() == 0) {
+            throw new ResourceInitializationException("Empty model bundle.");
+        }
+
+        List<Classifier> bundled = new ArrayList<Classifier>(bundle.size());
+        for (int i = 0; i < bundle.size(); ++i) {
+            bundled.add(new LibSvmTextClassifier(bundle.getModel(i), SvmModelBundle.getLabels(bundle.getTarget(i)),
+                    representer, threshold));
+        }
+        return bundled;
+    }
+
     @Override
     public void shutdown() {
         executorService.shutdown();
@@ -0,0 +1,180 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml.svm;
+
+import com.groupon.ml.TrainingDataLoader;
+import com.groupon.nakala.analysis.AbstractCollectionAnalyzer;
+import com.groupon.nakala.analysis.AnalysisCollector;
+import com.groupon.nakala.analysis.SingletonAnalysisCollector;
+import com.groupon.nakala.core.*;
+import com.groupon.nakala.db.CollectionReader;
+import com.groupon.nakala.exceptions.AnalyzerFailureException;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_parameter;
+import libsvm.svm_problem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Trains one binary libsvm model per label, separating the label from "other" as LibSvmTrainer does with
+ * target_class. The collection is read, represented and scaled once, and the binary models are trained
+ * concurrently on number_of_threads threads over the same read-only node arrays. The result is an
+ * SvmModelBundle that MultiModelClassifier loads as its model.
+ *
+ * @author npendar@groupon.com
+ */
+public class OneVsRestTrainer extends AbstractCollectionAnalyzer implements MetricsAware {
+
+    private TextRepresenter representer;
+    private double c = 1d;
+    private double gamma;
+    private int numberOfThreads = 1;
+    private JobFlowMetrics metrics;
+
+    @Override
+    public void initialize(Parameters params) throws ResourceInitializationException {
+        super.initialize(params);
+
+        if (params.contains(Constants.REPRESENTER)) {
+            representer = (TextRepresenter) params.get(Constants.REPRESENTER);
+        } else {
+            throw new ResourceInitializationException("No text representer specified.");
+        }
+
+        if (params.contains(Constants.C)) {
+            c = params.getDouble(Constants.C);
+        }
+
+        if (params.contains(Constants.GAMMA)) {
+            gamma = params.getDouble(Constants.GAMMA);
+        } else {
+            gamma = 1.0 / (double) representer.getDimension();
+        }
+
+        if (params.contains(Constants.NUMBER_OF_THREADS)) {
+            numberOfThreads = params.getInt(Constants.NUMBER_OF_THREADS);
+            if (numberOfThreads < 1) {
+                throw new ResourceInitializationException(Constants.NUMBER_OF_THREADS + " must be >= 1");
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public void setMetrics(JobFlowMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public AnalysisCollector analyze(CollectionReader cr) throws AnalyzerFailureException {
+        TrainingDataLoader loader = new TrainingDataLoader(representer, numberOfThreads);
+        loader.load(cr);
+        representer.shutdown();
+
+        List<String> targets = new ArrayList<String>(loader.getLabelList());
+        if (targets.remove(SvmModelBundle.OTHER)) {
+            logger.warn("Not training a model for label " + SvmModelBundle.OTHER + ". It is used for negatives.");
+        }
+        logger.debug("Training " + targets.size() + " models with C=" + c + "  gamma=" + gamma + " on " +
+                numberOfThreads + " threads.");
+
+        final JobFlowMetrics.Stage stage = metrics == null ? null : metrics.getStage("train");
+        ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+        List<Future<svm_model>> futures = new ArrayList<Future<svm_model>>(targets.size());
+        try {
+            for (String target : targets) {
+                List<String> labels = SvmModelBundle.getLabels(target);
+                final svm_problem problem = loader.toBinarySvmProblem(target,
+                        labels.indexOf(target), labels.indexOf(SvmModelBundle.OTHER));
+                final svm_parameter svmParam = getDefaultSvmParameters();
+                futures.add(executorService.submit(new Callable<svm_model>() {
+                    @Override
+                    public svm_model call() {
+                        long start = stage == null ? 0L : stage.start();
+                        svm_model model = svm.svm_train(problem, svmParam);
+                        if (stage != null) {
+                            stage.stop(start);
+                        }
+                        return model;
+                    }
+                }));
+            }
+
+            SvmModelBundle bundle = new SvmModelBundle();
+            for (int i = 0; i < targets.size(); ++i) {
+                bundle.add(targets.get(i), futures.get(i).get());
+                logger.debug("Trained model " + (i + 1) + " of " + targets.size() + ": " + targets.get(i));
+            }
+            logger.debug("Done!");
+            return new SingletonAnalysisCollector(new OneVsRestTrainerAnalysis(bundle, loader.getScaler(), targets));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalyzerFailureException("Interrupted while training.", e);
+        } catch (ExecutionException e) {
+            throw new AnalyzerFailureException("Failed to train model.", e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private svm_parameter getDefaultSvmParameters() {
+        svm_parameter param = new svm_parameter();
+        param.svm_type = svm_parameter.C_SVC;
+        param.kernel_type = svm_parameter.RBF;
+        param.degree = 3;
+        param.gamma = gamma;
+        param.coef0 = 0;
+        param.nu = 0.5;
+        param.cache_size = 100;
+        param.C = c;
+        param.eps = 1e-3;
+        param.p = 0.1;
+        param.shrinking = 1;
+        param.probability = 1;
+        param.nr_weight = 0;
+        param.weight_label = new int[0];
+        param.weight = new double[0];
+        return param;
+    }
+}
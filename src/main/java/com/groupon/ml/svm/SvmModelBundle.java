@@ -0,0 +1,157 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml.svm;
+
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.util.io.IoUtil;
+import libsvm.svm;
+import libsvm.svm_model;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One-vs-rest libsvm models in a single text file. Each model separates one target class from "other". The
+ * file starts with the line "svm_model_bundle", then has for every model a "target" line with the class name,
+ * an "svm_model" line with the number of lines of the model and the model as written by libsvm.
+ *
+ * @author npendar@groupon.com
+ */
+public class SvmModelBundle {
+    public static final String OTHER = "other";
+
+    private static final String HEADER = "svm_model_bundle";
+    private static final String TARGET = "target ";
+    private static final String SVM_MODEL = "svm_model ";
+
+    private final List<String> targets = new ArrayList<String>();
+    private final List<svm_model> models = new ArrayList<svm_model>();
+
+    public void add(String target, svm_model model) {
+        targets.add(target);
+        models.add(model);
+    }
+
+    public int size() {
+        return targets.size();
+    }
+
+    public String getTarget(int i) {
+        return targets.get(i);
+    }
+
+    public svm_model getModel(int i) {
+        return models.get(i);
+    }
+
+    /**
+     * @return labels of the target's model, as in the labels file LibSvmTrainer writes with target_class
+     */
+    public static List<String> getLabels(String target) {
+        List<String> labels = new ArrayList<String>(2);
+        labels.add(target);
+        labels.add(OTHER);
+        Collections.sort(labels);
+        return labels;
+    }
+
+    public void save(String fileName) throws IOException {
+        // libsvm only writes models to files, so every model goes through a temporary file.
+        File tmp = File.createTempFile("svm_model", ".tmp");
+        PrintStream out = new PrintStream(new FileOutputStream(fileName), false, "UTF-8");
+        try {
+            out.println(HEADER);
+            for (int i = 0; i < targets.size(); ++i) {
+                svm.svm_save_model(tmp.getPath(), models.get(i));
+                Reader modelReader = IoUtil.read(tmp);
+                List<String> lines;
+                try {
+                    lines = IoUtil.readCollection(modelReader, new ArrayList<String>());
+                } finally {
+                    modelReader.close();
+                }
+                out.println(TARGET + targets.get(i));
+                out.println(SVM_MODEL + lines.size());
+                for (String line : lines) {
+                    out.println(line);
+                }
+            }
+        } finally {
+            out.close();
+            tmp.delete();
+        }
+        if (out.checkError()) {
+            throw new IOException("Failed to write " + fileName);
+        }
+    }
+
+    public static SvmModelBundle load(BufferedReader reader) throws ResourceInitializationException {
+        SvmModelBundle bundle = new SvmModelBundle();
+        try {
+            String line = reader.readLine();
+            if (line == null || !line.equals(HEADER)) {
+                throw new ResourceInitializationException("Not an SVM model bundle.");
+            }
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (!line.startsWith(TARGET)) {
+                    throw new ResourceInitializationException("Expected target line instead of " + line);
+                }
+                String target = line.substring(TARGET.length());
+                line = reader.readLine();
+                if (line == null || !line.startsWith(SVM_MODEL)) {
+                    throw new ResourceInitializationException("Expected model of " + target);
+                }
+                int n = Integer.parseInt(line.substring(SVM_MODEL.length()).trim());
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < n; ++i) {
+                    line = reader.readLine();
+                    if (line == null) {
+                        throw new ResourceInitializationException("Truncated model of " + target);
+                    }
+                    sb.append(line).append('\n');
+                }
+                bundle.add(target, svm.svm_load_model(new BufferedReader(new StringReader(sb.toString()))));
+            }
+        } catch (IOException e) {
+            throw new ResourceInitializationException("Failed to read SVM model bundle.", e);
+        } catch (NumberFormatException e) {
+            throw new ResourceInitializationException("Invalid SVM model bundle.", e);
+        }
+        return bundle;
+    }
+}
@@ -0,0 +1,298 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml.svm;
+
+import com.groupon.nakala.core.JobFlowMetrics;
+import com.groupon.nakala.exceptions.AnalyzerFailureException;
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+import libsvm.svm_problem;
+import org.apache.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Searches C and gamma by successive halving: every candidate is trained on all but one fold and tested on that
+ * fold, after which the worse half of the candidates is dropped, until one candidate or no fold is left. A
+ * candidate's accuracy is the fraction of correct predictions over the folds it survived. search() runs halving
+ * on a coarse grid, then again on the neighbors of the coarse winner on the full log2 grid.
+ *
+ * @author npendar@groupon.com
+ */
+public class SvmParameterSearch {
+    private static final Logger logger = Logger.getLogger(SvmParameterSearch.class);
+
+    private static final long SEED = 17L;
+
+    private final svm_parameter svmParam;
+    private final int nrFold;
+    private final int numberOfThreads;
+    private JobFlowMetrics.Stage stage;
+    private int trainings;
+
+    /**
+     * @param svmParam parameters other than C and gamma, e.g. kernel and class weights
+     */
+    public SvmParameterSearch(svm_parameter svmParam, int nrFold, int numberOfThreads) {
+        if (nrFold < 2) {
+            throw new IllegalArgumentException("Number of folds must be >= 2");
+        }
+        this.svmParam = svmParam;
+        this.nrFold = nrFold;
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    /**
+     * @param stage records the latency of every fold training, or null
+     */
+    public void setStage(JobFlowMetrics.Stage stage) {
+        this.stage = stage;
+    }
+
+    /**
+     * @return number of models trained so far
+     */
+    public int getTrainings() {
+        return trainings;
+    }
+
+    /**
+     * Runs halving on the grid with twice the given steps on coarseProblem, e.g. a sample, then on the best pair
+     * and its neighbors at the given steps on fineProblem.
+     */
+    public CvParams search(svm_problem coarseProblem, svm_problem fineProblem,
+                           double log2cBegin, double log2cEnd, double log2cStep,
+                           double log2gBegin, double log2gEnd, double log2gStep) throws AnalyzerFailureException {
+        List<double[]> coarse = new ArrayList<double[]>();
+        for (double log2c : range(log2cBegin, log2cEnd, 2 * log2cStep)) {
+            for (double log2g : range(log2gBegin, log2gEnd, 2 * log2gStep)) {
+                coarse.add(new double[]{log2c, log2g});
+            }
+        }
+        logger.debug("Coarse search over " + coarse.size() + " pairs on " + coarseProblem.l + " records.");
+        Candidate best = halve(coarseProblem, coarse);
+
+        List<double[]> fine = new ArrayList<double[]>();
+        for (double log2c : neighbors(best.log2c, log2cBegin, log2cEnd, log2cStep)) {
+            for (double log2g : neighbors(best.log2g, log2gBegin, log2gEnd, log2gStep)) {
+                fine.add(new double[]{log2c, log2g});
+            }
+        }
+        logger.debug("Refining around log2(C)=" + best.log2c + ", log2(gamma)=" + best.log2g + " over " +
+                fine.size() + " pairs on " + fineProblem.l + " records.");
+        best = halve(fineProblem, fine);
+        return new CvParams(Math.pow(2, best.log2g), Math.pow(2, best.log2c), best.getAccuracy());
+    }
+
+    /**
+     * Runs successive halving over the given (log2(C), log2(gamma)) pairs.
+     *
+     * @return the surviving candidate
+     */
+    Candidate halve(svm_problem problem, List<double[]> pairs) throws AnalyzerFailureException {
+        List<Candidate> candidates = new ArrayList<Candidate>(pairs.size());
+        for (double[] pair : pairs) {
+            candidates.add(new Candidate(pair[0], pair[1]));
+        }
+        int folds = Math.min(nrFold, problem.l);
+        if (folds < 2) {
+            return candidates.get(0);
+        }
+
+        int[] foldOf = assignFolds(problem, folds);
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(numberOfThreads, candidates.size()));
+        try {
+            for (int fold = 0; fold < folds && candidates.size() > 1; ++fold) {
+                final svm_problem train = subProblem(problem, foldOf, fold, false);
+                final svm_problem test = subProblem(problem, foldOf, fold, true);
+                List<Future<?>> futures = new ArrayList<Future<?>>(candidates.size());
+                for (final Candidate candidate : candidates) {
+                    futures.add(executorService.submit(new Callable<Object>() {
+                        @Override
+                        public Object call() {
+                            candidate.evaluate(train, test, getParameters(candidate));
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    get(future);
+                }
+                trainings += candidates.size();
+
+                // Stable sort, so ties keep the grid order.
+                Collections.sort(candidates);
+                logger.debug(String.format("Fold %d: %d candidates, best accuracy %.4f with C=%s gamma=%s",
+                        fold + 1, candidates.size(), candidates.get(0).getAccuracy(),
+                        Math.pow(2, candidates.get(0).log2c), Math.pow(2, candidates.get(0).log2g)));
+                candidates = new ArrayList<Candidate>(candidates.subList(0, (candidates.size() + 1) / 2));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        return candidates.get(0);
+    }
+
+    private svm_parameter getParameters(Candidate candidate) {
+        svm_parameter param = (svm_parameter) svmParam.clone();
+        param.C = Math.pow(2, candidate.log2c);
+        param.gamma = Math.pow(2, candidate.log2g);
+        return param;
+    }
+
+    private static void get(Future<?> future) throws AnalyzerFailureException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalyzerFailureException("Interrupted during parameter search.", e);
+        } catch (ExecutionException e) {
+            throw new AnalyzerFailureException("Cross validation failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Shuffles the records of every label and deals them to the folds in turn, so each fold has about the same
+     * label distribution.
+     */
+    static int[] assignFolds(svm_problem problem, int folds) {
+        Map<Double, List<Integer>> label2index = new TreeMap<Double, List<Integer>>();
+        for (int i = 0; i < problem.l; ++i) {
+            List<Integer> indices = label2index.get(problem.y[i]);
+            if (indices == null) {
+                indices = new ArrayList<Integer>();
+                label2index.put(problem.y[i], indices);
+            }
+            indices.add(i);
+        }
+        Random random = new Random(SEED);
+        int[] foldOf = new int[problem.l];
+        int next = 0;
+        for (List<Integer> indices : label2index.values()) {
+            Collections.shuffle(indices, random);
+            for (int i : indices) {
+                foldOf[i] = next;
+                next = (next + 1) % folds;
+            }
+        }
+        return foldOf;
+    }
+
+    private static svm_problem subProblem(svm_problem problem, int[] foldOf, int fold, boolean inFold) {
+        int l = 0;
+        for (int i = 0; i < problem.l; ++i) {
+            if ((foldOf[i] == fold) == inFold) {
+                ++l;
+            }
+        }
+        svm_problem sub = new svm_problem();
+        sub.l = l;
+        sub.x = new svm_node[l][];
+        sub.y = new double[l];
+        for (int i = 0, j = 0; i < problem.l; ++i) {
+            if ((foldOf[i] == fold) == inFold) {
+                sub.x[j] = problem.x[i];
+                sub.y[j++] = problem.y[i];
+            }
+        }
+        return sub;
+    }
+
+    /**
+     * @return the values from begin towards end by step, as in the grid search
+     */
+    static List<Double> range(double begin, double end, double step) {
+        List<Double> values = new ArrayList<Double>();
+        for (double v = begin; (begin < end && v <= end) || (begin >= end && v >= end); v += step) {
+            values.add(v);
+        }
+        return values;
+    }
+
+    /**
+     * @return center and its neighbors at step distance that are between begin and end
+     */
+    static List<Double> neighbors(double center, double begin, double end, double step) {
+        double min = Math.min(begin, end);
+        double max = Math.max(begin, end);
+        List<Double> values = new ArrayList<Double>();
+        for (double v : new double[]{center - Math.abs(step), center, center + Math.abs(step)}) {
+            if (v >= min && v <= max) {
+                values.add(v);
+            }
+        }
+        return values;
+    }
+
+    class Candidate implements Comparable<Candidate> {
+        final double log2c;
+        final double log2g;
+        int correct;
+        int evaluated;
+
+        Candidate(double log2c, double log2g) {
+            this.log2c = log2c;
+            this.log2g = log2g;
+        }
+
+        void evaluate(svm_problem train, svm_problem test, svm_parameter param) {
+            long start = stage == null ? 0L : stage.start();
+            svm_model model = svm.svm_train(train, param);
+            if (stage != null) {
+                stage.stop(start);
+            }
+            for (int i = 0; i < test.l; ++i) {
+                if (svm.svm_predict(model, test.x[i]) == test.y[i]) {
+                    ++correct;
+                }
+            }
+            evaluated += test.l;
+        }
+
+        double getAccuracy() {
+            return evaluated == 0 ? 0d : correct / (double) evaluated;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return Double.compare(other.getAccuracy(), getAccuracy());
+        }
+    }
+}
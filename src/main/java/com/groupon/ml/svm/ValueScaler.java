@@ -35,6 +35,7 @@ package com.groupon.ml.svm;
 import com.groupon.nakala.analysis.Initializable;
 import com.groupon.nakala.core.Constants;
 import com.groupon.nakala.core.Parameters;
+import com.groupon.nakala.core.SharedResource;
 import com.groupon.nakala.exceptions.ResourceInitializationException;
 import com.groupon.util.io.IoUtil;
 import libsvm.svm_node;
@@ -47,7 +48,7 @@ import java.util.*;
  * @author npendar@groupon.com
  */
 
-public class ValueScaler implements Initializable {
+public class ValueScaler implements Initializable, SharedResource {
 
     private static final Logger logger = Logger.getLogger(ValueScaler.class);
 
@@ -62,22 +63,10 @@ public class ValueScaler implements Initializable {
     }
 
     public ValueScaler(double targetMin, double targetMax, svm_node[][] dataSet) {
-        this.targetMin = targetMin;
-        this.targetMax = targetMax;
-        this.targetRange = this.targetMax - this.targetMin;
-        ranges = new HashMap<Integer, Range>();
+        this(targetMin, targetMax);
         for (int i = 0; i < dataSet.length; ++i) {
             for (int j = 0; j < dataSet[i].length; ++j) {
-                Range range = ranges.get(dataSet[i][j].index);
-                if (range == null) {
-                    ranges.put(dataSet[i][j].index, new Range(dataSet[i][j].value, dataSet[i][j].value));
-                } else {
-                    if (range.getMax() < dataSet[i][j].value) {
-                        range.setMax(dataSet[i][j].value);
-                    } else if (range.getMin() > dataSet[i][j].value) {
-                        range.setMin(dataSet[i][j].value);
-                    }
-                }
+                updateRange(dataSet[i][j].index, dataSet[i][j].value);
             }
         }
 
@@ -92,6 +81,39 @@ public class ValueScaler implements Initializable {
         }
     }
 
+    /**
+     * Computes the ranges from the first size vectors of dataSet, without keeping a scaled copy of the data.
+     * getScaledData() returns null for such a scaler.
+     */
+    public ValueScaler(double targetMin, double targetMax, svm_node[][] dataSet, int size) {
+        this(targetMin, targetMax);
+        for (int i = 0; i < size; ++i) {
+            for (svm_node node : dataSet[i]) {
+                updateRange(node.index, node.value);
+            }
+        }
+    }
+
+    private ValueScaler(double targetMin, double targetMax) {
+        this.targetMin = targetMin;
+        this.targetMax = targetMax;
+        this.targetRange = this.targetMax - this.targetMin;
+        ranges = new HashMap<Integer, Range>();
+    }
+
+    private void updateRange(int index, double value) {
+        Range range = ranges.get(index);
+        if (range == null) {
+            ranges.put(index, new Range(value, value));
+        } else {
+            if (range.getMax() < value) {
+                range.setMax(value);
+            } else if (range.getMin() > value) {
+                range.setMin(value);
+            }
+        }
+    }
+
     @Override
     public void initialize(Parameters params) throws ResourceInitializationException {
         if (params.contains(Constants.FILE_NAME)) {
@@ -40,6 +40,7 @@ import com.groupon.nakala.normalization.StringNormalizer;
 import com.groupon.util.collections.CollectionUtil;
 import com.groupon.util.collections.Histogram;
 import com.groupon.util.math.StatUtil;
+import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.*;
@@ -47,7 +48,7 @@ import java.util.*;
 /**
  * @author npendar@groupon.com
  */
-public class BnsWeightCalculator extends AbstractCollectionAnalyzer {
+public class BnsWeightCalculator extends AbstractCollectionAnalyzer implements ParallelCollectionAnalyzer, TokenizingAnalyzer {
 
     private static final String OTHER_CATEGORY = "other_category";
 
@@ -139,14 +140,30 @@ public class BnsWeightCalculator extends AbstractCollectionAnalyzer {
     }
 
     @Override
-    public AnalysisCollector analyze(CollectionReader cr) throws AnalyzerFailureException {
+    public TokenizerStream getTokenizer() {
+        return tokenizer;
+    }
 
-        Map<String, Histogram<String>> word2categoryCount = new HashMap<String, Histogram<String>>();
-        Histogram<String> docCountInCategory = new Histogram<String>();
+    @Override
+    public List<StringNormalizer> getNormalizers() {
+        return normalizers;
+    }
 
+    @Override
+    public AnalysisCollector analyze(CollectionReader cr) throws AnalyzerFailureException {
         logger.debug("processing " + cr.getSize() + " documents.");
+        return complete(analyzePartition(cr));
+    }
+
+    @Override
+    public PartialResult analyzePartition(Iterable<Analyzable> partition) throws AnalyzerFailureException {
+        TokenizerStream partitionTokenizer = SerializationUtils.clone(tokenizer);
+        CategoryDocumentFrequencies partial = new CategoryDocumentFrequencies();
+        Map<String, Histogram<String>> word2categoryCount = partial.word2categoryCount;
+        Histogram<String> docCountInCategory = partial.docCountInCategory;
+
         // get word dfs per category
-        for (Analyzable a : cr) {
+        for (Analyzable a : partition) {
             CategorizedTextContent ctc = (CategorizedTextContent) a;
             if (passFilter != null && !passFilter.passes(ctc))
                 continue;
@@ -172,7 +189,11 @@ public class BnsWeightCalculator extends AbstractCollectionAnalyzer {
                 docCountInCategory.add(category);
             }
 
-            for (String word : tokenizer.getUniqueTokens(ctc.getText(), normalizers)) {
+            List<String> tokens = SharedTokens.get(a, tokenizer, normalizers);
+            Set<String> words = tokens == null ?
+                    partitionTokenizer.getUniqueTokens(ctc.getText(), normalizers) :
+                    new HashSet<String>(tokens);
+            for (String word : words) {
                 if (stopwords != null && stopwords.contains(word)) {
                     continue;
                 }
@@ -189,6 +210,14 @@ public class BnsWeightCalculator extends AbstractCollectionAnalyzer {
                 }
             }
         }
+        return partial;
+    }
+
+    @Override
+    public AnalysisCollector complete(PartialResult merged) {
+        CategoryDocumentFrequencies partial = (CategoryDocumentFrequencies) merged;
+        Map<String, Histogram<String>> word2categoryCount = partial.word2categoryCount;
+        Histogram<String> docCountInCategory = partial.docCountInCategory;
 
         KeyValueListAnalysisCollector<String, Double> analysisCollector =
                 new KeyValueListAnalysisCollector<String, Double>();
@@ -223,6 +252,28 @@ public class BnsWeightCalculator extends AbstractCollectionAnalyzer {
         return n;
     }
 
+    /**
+     * Per category document counts and word document frequencies of one partition.
+     */
+    private static final class CategoryDocumentFrequencies implements PartialResult {
+        Map<String, Histogram<String>> word2categoryCount = new HashMap<String, Histogram<String>>();
+        Histogram<String> docCountInCategory = new Histogram<String>();
+
+        @Override
+        public void merge(PartialResult other) {
+            CategoryDocumentFrequencies cdf = (CategoryDocumentFrequencies) other;
+            docCountInCategory.merge(cdf.docCountInCategory);
+            for (Map.Entry<String, Histogram<String>> e : cdf.word2categoryCount.entrySet()) {
+                Histogram<String> categoryCount = word2categoryCount.get(e.getKey());
+                if (categoryCount == null) {
+                    word2categoryCount.put(e.getKey(), e.getValue());
+                } else {
+                    categoryCount.merge(e.getValue());
+                }
+            }
+        }
+    }
+
     private interface BnsCalculator {
         public double calculate(Histogram<String> docCountInCategories, int totalDocs, Histogram<String> wordDfs,
                                 boolean useAbsoluteValues);
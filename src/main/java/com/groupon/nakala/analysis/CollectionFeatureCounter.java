@@ -42,16 +42,14 @@ import com.groupon.nakala.exceptions.ResourceInitializationException;
 /**
  * @author npendar@groupon.com
  */
-public class CollectionFeatureCounter extends AbstractCollectionAnalyzer {
+public class CollectionFeatureCounter extends AbstractCollectionAnalyzer implements ParallelCollectionAnalyzer {
     private FeatureCounterAnalyzer featureCounterAnalyzer;
-    private StringCountsAnalysisCollector counts;
 
     @Override
     public void initialize(Parameters params) throws ResourceInitializationException {
         super.initialize(params);
         featureCounterAnalyzer = new FeatureCounterAnalyzer();
         featureCounterAnalyzer.initialize(params);
-        counts = new StringCountsAnalysisCollector();
     }
 
     @Override
@@ -60,7 +58,14 @@ public class CollectionFeatureCounter extends AbstractCollectionAnalyzer {
 
     @Override
     public AnalysisCollector analyze(CollectionReader cr) throws AnalyzerFailureException {
-        for (Analyzable a : cr) {
+        return complete(analyzePartition(cr));
+    }
+
+    @Override
+    public MergeableAnalysisCollector analyzePartition(Iterable<Analyzable> partition) throws AnalyzerFailureException {
+        FeatureCounterAnalyzer partitionAnalyzer = featureCounterAnalyzer.copy();
+        StringCountsAnalysisCollector counts = new StringCountsAnalysisCollector();
+        for (Analyzable a : partition) {
             TextContent textContent = (TextContent) a;
             if (passFilter != null && !passFilter.passes(textContent))
                 continue;
@@ -68,9 +73,14 @@ public class CollectionFeatureCounter extends AbstractCollectionAnalyzer {
             if (blockFilter != null && blockFilter.blocks(textContent))
                 continue;
 
-            Analysis unitCounts = featureCounterAnalyzer.analyze(a);
+            Analysis unitCounts = partitionAnalyzer.analyze(a);
             counts.addAnalysis(unitCounts);
         }
         return counts;
     }
+
+    @Override
+    public AnalysisCollector complete(PartialResult merged) {
+        return (AnalysisCollector) merged;
+    }
 }
@@ -83,7 +83,9 @@ public class CorpusSparseFormatRepresenter extends AbstractCollectionAnalyzer {
 
         for (Analyzable a : cr) {
             CategorizedTextContent ctc = (CategorizedTextContent) a;
-            SparseRepresentation rep = representer.represent(ctc.getText());
+            SparseRepresentation rep = ctc instanceof TokenizedTextContent ?
+                    representer.represent(((TokenizedTextContent) ctc).getTokens()) :
+                    representer.represent(ctc.getText());
             String repStr = rep.toSparseFormat();
 
             for (String category : ctc.getCategories()) {
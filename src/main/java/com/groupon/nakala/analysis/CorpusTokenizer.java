@@ -0,0 +1,72 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.analysis;
+
+import com.groupon.nakala.core.*;
+import com.groupon.nakala.exceptions.AnalyzerFailureException;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tokenizes and normalizes documents the way the given text representer does. Stored in a
+ * TokenizedCorpusStore, the results can be read back with TokenizedCorpusReader and given to trainers using the
+ * same kind of representer, which then skip the text processing.
+ *
+ * @author npendar@groupon.com
+ */
+public class CorpusTokenizer implements Analyzer {
+    private TextRepresenter representer;
+
+    @Override
+    public void initialize(Parameters params) throws ResourceInitializationException {
+        if (params.contains(Constants.REPRESENTER)) {
+            representer = (TextRepresenter) params.get(Constants.REPRESENTER);
+        } else {
+            throw new ResourceInitializationException("No text representer specified.");
+        }
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public Analysis analyze(Analyzable a) throws AnalyzerFailureException {
+        IdentifiableTextContent itc = (IdentifiableTextContent) a;
+        Set<String> categories = a instanceof CategorizedTextContent ?
+                ((CategorizedTextContent) a).getCategories() : new HashSet<String>();
+        return new TokenizedTextAnalysis(itc.getId(), categories, representer.getTokens(itc.getText()));
+    }
+}
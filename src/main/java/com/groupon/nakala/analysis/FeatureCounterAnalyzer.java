@@ -35,18 +35,21 @@ package com.groupon.nakala.analysis;
 import com.groupon.nakala.core.*;
 import com.groupon.nakala.exceptions.AnalyzerFailureException;
 import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.normalization.NormalizerChain;
 import com.groupon.nakala.normalization.StringNormalizer;
+import org.apache.commons.lang3.SerializationUtils;
 
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 
 /**
  * @author npendar@groupon.com
  */
-public class FeatureCounterAnalyzer implements Analyzer {
-    private StringCountAnalysis counts;
+public class FeatureCounterAnalyzer implements BatchAnalyzer {
+    private static final String NO_TOKEN = new String();
+
     private TokenizerStream tokenizer;
     private List<StringNormalizer> normalizers;
+    private StringNormalizer normalizerChain;
     private StringSet stopwords;
 
     @Override
@@ -61,6 +64,7 @@ public class FeatureCounterAnalyzer implements Analyzer {
 
             if (params.contains(Constants.NORMALIZERS)) {
                 normalizers = (List<StringNormalizer>) params.get(Constants.NORMALIZERS);
+                normalizerChain = normalizers == null || normalizers.isEmpty() ? null : new NormalizerChain(normalizers);
             }
 
             if (params.contains(Constants.STOPWORDS)) {
@@ -76,17 +80,28 @@ public class FeatureCounterAnalyzer implements Analyzer {
 
     }
 
+    /**
+     * Returns an analyzer with the same normalizers and stopwords but its own tokenizer, so that the copy can be
+     * used on a different thread than this analyzer.
+     */
+    public FeatureCounterAnalyzer copy() {
+        FeatureCounterAnalyzer copy = new FeatureCounterAnalyzer();
+        copy.tokenizer = SerializationUtils.clone(tokenizer);
+        copy.normalizers = normalizers;
+        copy.normalizerChain = normalizerChain;
+        copy.stopwords = stopwords;
+        return copy;
+    }
+
     @Override
     public Analysis analyze(Analyzable a) throws AnalyzerFailureException {
         TextContent textContent = (TextContent) a;
-        counts = new StringCountAnalysis();
-        tokenizer.setText(textContent.getText());
+        StringCountAnalysis counts = new StringCountAnalysis();
+        TokenCursor cursor = AbstractTokenizerStream.open(tokenizer, textContent.getText());
         String tok = null;
-        while ((tok = tokenizer.next()) != null) {
-            if (normalizers != null) {
-                for (StringNormalizer sn : normalizers) {
-                    tok = sn.normalize(tok);
-                }
+        while ((tok = cursor.next()) != null) {
+            if (normalizerChain != null) {
+                tok = normalizerChain.normalize(tok);
             }
             if (stopwords != null && stopwords.contains(tok)) {
                 continue;
@@ -95,4 +110,38 @@ public class FeatureCounterAnalyzer implements Analyzer {
         }
         return counts;
     }
+
+    /**
+     * Counts the batch normalizing and checking each distinct token of the batch only once.
+     */
+    @Override
+    public List<Analysis> analyzeBatch(List<Analyzable> batch) throws AnalyzerFailureException {
+        List<Analysis> analyses = new ArrayList<Analysis>(batch.size());
+        // Token to normalized token, or to NO_TOKEN for stopwords.
+        Map<String, String> normalized = new HashMap<String, String>();
+        for (Analyzable a : batch) {
+            TextContent textContent = (TextContent) a;
+            StringCountAnalysis counts = new StringCountAnalysis();
+            TokenCursor cursor = AbstractTokenizerStream.open(tokenizer, textContent.getText());
+            String tok = null;
+            while ((tok = cursor.next()) != null) {
+                String norm = normalized.get(tok);
+                if (norm == null) {
+                    norm = tok;
+                    if (normalizerChain != null) {
+                        norm = normalizerChain.normalize(norm);
+                    }
+                    if (stopwords != null && stopwords.contains(norm)) {
+                        norm = NO_TOKEN;
+                    }
+                    normalized.put(tok, norm);
+                }
+                if (norm != NO_TOKEN) {
+                    counts.add(norm);
+                }
+            }
+            analyses.add(counts);
+        }
+        return analyses;
+    }
 }
@@ -41,6 +41,7 @@ import com.groupon.nakala.normalization.RegexpBasedCleanerNormalizer;
 import com.groupon.nakala.normalization.StringNormalizer;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -61,10 +62,9 @@ public class FuzzyFinderAnalyzer implements Analyzer {
     public static final String PHONE = "phone";
     public static final String DOMAIN_NAME_SIMILARITY = "domain_name_similarity";
 
-    private static final int SHINGLE_SIZE = 4;
+    public static final int SHINGLE_SIZE = 4;
     private static final String[] TAILS = new String[]{"ltd", "llc", "limited", "ltda", "inc"};
 
-    private ShinglesTokenizerStream shinglesTokenizer;
     private TokenizerStream wordTokenizer;
     private StringNormalizer deaccentNormalizer;
     private StringNormalizer parensRemover;
@@ -73,8 +73,6 @@ public class FuzzyFinderAnalyzer implements Analyzer {
 
     @Override
     public void initialize(Parameters params) throws ResourceInitializationException {
-        shinglesTokenizer = new ShinglesTokenizerStream();
-        ((ShinglesTokenizerStream) shinglesTokenizer).setShingleSize(SHINGLE_SIZE);
         wordTokenizer = new RegexpTokenizerStream();
         deaccentNormalizer = new DeaccentNormalizer();
         // Remove text between parentheses and ** from name, e.g., Hyatt (San Diego), or Hyatt **dupe**
@@ -90,9 +88,9 @@ public class FuzzyFinderAnalyzer implements Analyzer {
 
         StringBuilder sb = new StringBuilder();
         boolean lastTokenEndsInDigit = false;
-        wordTokenizer.setText(deaccentNormalizer.normalize(s.toLowerCase()));
+        TokenCursor cursor = AbstractTokenizerStream.open(wordTokenizer, deaccentNormalizer.normalize(s.toLowerCase()));
         String token;
-        while ((token = wordTokenizer.next()) != null) {
+        while ((token = cursor.next()) != null) {
             if (token.isEmpty()) continue;
             boolean tokenBeginsWithDigit = Character.isDigit(token.charAt(0));
             if (lastTokenEndsInDigit && tokenBeginsWithDigit) {
@@ -112,6 +110,16 @@ public class FuzzyFinderAnalyzer implements Analyzer {
         return intersection.size() / (double) shortShingles.size();
     }
 
+    /**
+     * @param shortShingles sorted distinct shingle hashes, see ShingleHashes
+     * @param longShingles  sorted distinct shingle hashes, see ShingleHashes
+     * @return fraction of shortShingles also found in longShingles
+     */
+    public double shinglesFound(long[] shortShingles, long[] longShingles) {
+        if (shortShingles.length == 0) return 0d;
+        return ShingleHashes.intersectionSize(shortShingles, longShingles) / (double) shortShingles.length;
+    }
+
     public Place cleanPlace(Place place) {
         TitledContentArray tca = new TitledContentArray();
         for (SimpleTitledTextContent sttc : place.getDescriptions()) {
@@ -147,6 +155,31 @@ public class FuzzyFinderAnalyzer implements Analyzer {
         return outPlace;
     }
 
+    /**
+     * Text used to look a place up in a MinHashIndex: its cleaned name, address, locality and postal code. Other
+     * text content is cleaned as is.
+     */
+    public String getMatchKey(TextContent content) {
+        if (!(content instanceof Place)) {
+            return clean(content.getText());
+        }
+        Place place = (Place) content;
+        Place cleaned = cleanPlace(new Place().setId(place.getId())
+                .setName(place.getName() == null ? "" : place.getName())
+                .setAddress(place.getAddress())
+                .setLocality(place.getLocality())
+                .setPostalCode(place.getPostalCode())
+                .setDescriptions(new TitledContentArray()));
+        StringBuilder sb = new StringBuilder();
+        for (String field : new String[]{cleaned.getName(), cleaned.getAddress(), cleaned.getLocality(),
+                cleaned.getPostalCode()}) {
+            if (!field.isEmpty()) {
+                sb.append(' ').append(field);
+            }
+        }
+        return sb.toString().trim();
+    }
+
     /**
      * For each attribute/value pair, if value is non-empty check to see if the length of the value is longer than or
      * equal to shingle size. If it is, store the set of shingles for that value for fuzzy matching, otherwise, store
@@ -159,7 +192,7 @@ public class FuzzyFinderAnalyzer implements Analyzer {
     private void addAttrib(String key, String value, Map<String, Object> map) {
         if (!value.isEmpty()) {
             if (value.length() >= SHINGLE_SIZE) {
-                map.put(key, new ShinglesSizePair(shinglesTokenizer.getUniqueTokens(value), value.length()));
+                map.put(key, new ShinglesSizePair(ShingleHashes.uniqueSorted(value, SHINGLE_SIZE), value.length()));
             } else {
                 map.put(key, Pattern.compile(String.format("\\b%s\\b", value)));
             }
@@ -195,6 +228,7 @@ public class FuzzyFinderAnalyzer implements Analyzer {
         for (SimpleTitledTextContent sttc : place.getDescriptions()) {
             String text = clean(sttc.getTitle() + ' ' + sttc.getText());
             Set<String> found = new HashSet<String>();
+            long[] textShingles = null; // shingled on first use, then shared by all attributes
             for (Map.Entry<String, Object> attributeValue : placeAttributes.entrySet()) {
 
                 String attribute = attributeValue.getKey();
@@ -204,7 +238,10 @@ public class FuzzyFinderAnalyzer implements Analyzer {
 
                 if (value instanceof ShinglesSizePair) {
                     // Value has been shingled; fuzzy find
-                    score = shinglesFound(((ShinglesSizePair) value).shingles, shinglesTokenizer.getUniqueTokens(text));
+                    if (textShingles == null) {
+                        textShingles = ShingleHashes.uniqueSorted(text, SHINGLE_SIZE);
+                    }
+                    score = shinglesFound(((ShinglesSizePair) value).shingles, textShingles);
                     addBestText = true;
                 } else {
                     // Value is string; regexp match
@@ -260,45 +297,56 @@ public class FuzzyFinderAnalyzer implements Analyzer {
 
         if (shingleSize == 0) return 0d;
 
-        int oldShingleSize = shinglesTokenizer.getShingleSize();
-        shinglesTokenizer.setShingleSize(shingleSize);
-        Set<String> nameShingles = shinglesTokenizer.getUniqueTokens(name);
-        Set<String> domainShingles = shinglesTokenizer.getUniqueTokens(domainName);
-        shinglesTokenizer.setShingleSize(oldShingleSize);
-
-        double score = 0d;
-        Set<String> union = new HashSet<String>(nameShingles);
-        if (!union.isEmpty()) {
-            Set<String> intersection = new HashSet<String>(nameShingles);
-            intersection.retainAll(domainShingles);
-            score = intersection.size() / (double) union.size();
-        }
-        return score;
+        return shinglesFound(ShingleHashes.uniqueSorted(name, shingleSize),
+                ShingleHashes.uniqueSorted(domainName, shingleSize));
     }
 
+    /**
+     * Slides a window a little wider than the attribute value over text and returns the best fraction of the
+     * value's shingles found in any one window. Text is hashed once; the window keeps a count of each value
+     * shingle it contains, so moving it by one character costs two lookups.
+     */
     private double linearSearch(ShinglesSizePair shinglesSizePair, String text) {
         if (StringUtils.isEmpty(text)) return 0d;
 
-        double maxScore = 0d;
+        long[] shingles = shinglesSizePair.shingles;
+        if (shingles.length == 0) return 0d;
+
         int windowSize = (int) (shinglesSizePair.size * 1.3); // Add some slack for additional characters in text
-        if (windowSize < text.length()) {
-            for (int i = 0; i < text.length() - windowSize; ++i) {
-                double score = shinglesFound(shinglesSizePair.shingles,
-                        shinglesTokenizer.getUniqueTokens(text.substring(i, i + windowSize)));
-                if (score > maxScore)
-                    maxScore = score;
-            }
-        } else {
-            maxScore = shinglesFound(shinglesSizePair.shingles, shinglesTokenizer.getUniqueTokens(text));
+        if (windowSize >= text.length()) {
+            return shinglesFound(shingles, ShingleHashes.uniqueSorted(text, SHINGLE_SIZE));
+        }
+        if (windowSize < SHINGLE_SIZE) return 0d;
+
+        // For each position in text, the index of the shingle starting there in the value's shingles, or -1.
+        long[] hashes = ShingleHashes.hashes(text, SHINGLE_SIZE);
+        int[] index = new int[hashes.length];
+        for (int p = 0; p < hashes.length; ++p) {
+            index[p] = Math.max(-1, Arrays.binarySearch(shingles, hashes[p]));
+        }
+
+        int shinglesPerWindow = windowSize - SHINGLE_SIZE + 1;
+        int[] counts = new int[shingles.length];
+        int found = 0;
+        for (int p = 0; p < shinglesPerWindow; ++p) {
+            if (index[p] >= 0 && counts[index[p]]++ == 0) ++found;
+        }
+
+        int maxFound = 0;
+        for (int i = 0; i < text.length() - windowSize; ++i) {
+            if (found > maxFound) maxFound = found;
+            if (index[i] >= 0 && --counts[index[i]] == 0) --found;
+            int p = i + shinglesPerWindow;
+            if (index[p] >= 0 && counts[index[p]]++ == 0) ++found;
         }
-        return maxScore;
+        return maxFound / (double) shingles.length;
     }
 
     private class ShinglesSizePair {
-        Set<String> shingles;
+        long[] shingles; // sorted distinct shingle hashes
         int size; // The size of the original string from which shingles were generated.
 
-        private ShinglesSizePair(Set<String> shingles, int size) {
+        private ShinglesSizePair(long[] shingles, int size) {
             this.shingles = shingles;
             this.size = size;
         }
@@ -39,16 +39,20 @@ import com.groupon.nakala.exceptions.ResourceInitializationException;
 import com.groupon.nakala.normalization.CaseNormalizer;
 import com.groupon.nakala.normalization.NumberNormalizer;
 import com.groupon.nakala.normalization.StringNormalizer;
+import org.apache.commons.lang3.SerializationUtils;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
 /**
  * @author npendar@groupon.com
  */
-public final class IdfCollectionAnalyzer extends AbstractCollectionAnalyzer {
+public final class IdfCollectionAnalyzer extends AbstractCollectionAnalyzer implements ParallelCollectionAnalyzer, TokenizingAnalyzer {
 
     TokenizerStream tokenizer;
     List<StringNormalizer> normalizers;
@@ -80,11 +84,26 @@ public final class IdfCollectionAnalyzer extends AbstractCollectionAnalyzer {
     public void shutdown() {
     }
 
+    @Override
+    public TokenizerStream getTokenizer() {
+        return tokenizer;
+    }
+
+    @Override
+    public List<StringNormalizer> getNormalizers() {
+        return normalizers;
+    }
+
     @Override
     public AnalysisCollector analyze(CollectionReader as) throws AnalyzerFailureException {
-        long D = 0;
-        KeyValueMapAnalysisCollector<String, Double> idf = new KeyValueMapAnalysisCollector<String, Double>();
-        for (Analyzable a : as) {
+        return complete(analyzePartition(as));
+    }
+
+    @Override
+    public PartialResult analyzePartition(Iterable<Analyzable> partition) throws AnalyzerFailureException {
+        TokenizerStream partitionTokenizer = SerializationUtils.clone(tokenizer);
+        DocumentFrequencies df = new DocumentFrequencies();
+        for (Analyzable a : partition) {
             TextContent textContent = (TextContent) a;
             if (passFilter != null && !passFilter.passes(textContent))
                 continue;
@@ -92,24 +111,30 @@ public final class IdfCollectionAnalyzer extends AbstractCollectionAnalyzer {
             if (blockFilter != null && blockFilter.blocks(textContent))
                 continue;
 
-            ++D;
-
-            String text = ((TextContent) a).getText();
-            for (StringNormalizer normalizer : normalizers)
-                text = normalizer.normalize(text);
+            ++df.numberOfDocuments;
 
-            Set<String> words = TextUtils.getWordSet(text, tokenizer);
-            addWords(words, idf);
+            List<String> tokens = SharedTokens.get(a, tokenizer, normalizers);
+            Set<String> words = tokens == null ?
+                    partitionTokenizer.getUniqueTokens(textContent.getText(), normalizers) :
+                    new HashSet<String>(tokens);
+            addWords(words, df.counts);
         }
+        return df;
+    }
 
-        for (Entry<String, Double> e : idf.entrySet()) {
+    @Override
+    public AnalysisCollector complete(PartialResult merged) {
+        DocumentFrequencies df = (DocumentFrequencies) merged;
+        long D = df.numberOfDocuments;
+        KeyValueMapAnalysisCollector<String, Double> idf = new KeyValueMapAnalysisCollector<String, Double>();
+        for (Entry<String, Double> e : df.counts.entrySet()) {
             idf.put(e.getKey(), Math.log(D / e.getValue()));
         }
 
         return idf;
     }
 
-    private void addWords(Set<String> words, KeyValueMapAnalysisCollector<String, Double> df) {
+    private void addWords(Set<String> words, Map<String, Double> df) {
         for (String w : words) {
             if (stopwords != null && stopwords.contains(w))
                 continue;
@@ -119,4 +144,22 @@ public final class IdfCollectionAnalyzer extends AbstractCollectionAnalyzer {
             df.put(w, c + 1);
         }
     }
+
+    /**
+     * Document count and word document frequencies of one partition.
+     */
+    private static final class DocumentFrequencies implements PartialResult {
+        long numberOfDocuments;
+        Map<String, Double> counts = new HashMap<String, Double>();
+
+        @Override
+        public void merge(PartialResult other) {
+            DocumentFrequencies df = (DocumentFrequencies) other;
+            numberOfDocuments += df.numberOfDocuments;
+            for (Entry<String, Double> e : df.counts.entrySet()) {
+                Double c = counts.get(e.getKey());
+                counts.put(e.getKey(), c == null ? e.getValue() : c + e.getValue());
+            }
+        }
+    }
 }
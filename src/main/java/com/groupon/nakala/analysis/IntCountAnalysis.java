@@ -0,0 +1,123 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.analysis;
+
+import com.groupon.nakala.core.TermDictionary;
+import com.groupon.nakala.db.DataStore;
+import com.groupon.nakala.db.FlatFileStore;
+import com.groupon.nakala.exceptions.StoreException;
+
+import java.util.Arrays;
+
+/**
+ * Term counts of one document, keyed by TermDictionary ids. Ids are sorted in increasing order.
+ *
+ * @author npendar@groupon.com
+ */
+public class IntCountAnalysis implements Analysis {
+    private final TermDictionary dictionary;
+    private final int[] ids;
+    private final int[] counts;
+    private final int size;
+
+    /**
+     * Counts the ids of a document's tokens. Sorts tokenIds in place.
+     */
+    public IntCountAnalysis(TermDictionary dictionary, int[] tokenIds, int length) {
+        this.dictionary = dictionary;
+        Arrays.sort(tokenIds, 0, length);
+        int distinct = 0;
+        for (int i = 0; i < length; ++i) {
+            if (i == 0 || tokenIds[i] != tokenIds[i - 1]) {
+                ++distinct;
+            }
+        }
+        ids = new int[distinct];
+        counts = new int[distinct];
+        int n = -1;
+        for (int i = 0; i < length; ++i) {
+            if (i == 0 || tokenIds[i] != tokenIds[i - 1]) {
+                ids[++n] = tokenIds[i];
+            }
+            ++counts[n];
+        }
+        size = distinct;
+    }
+
+    public TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return the number of distinct terms
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getId(int i) {
+        return ids[i];
+    }
+
+    public int getCount(int i) {
+        return counts[i];
+    }
+
+    /**
+     * @return the count of the term with the given id
+     */
+    public int get(int id) {
+        int i = Arrays.binarySearch(ids, 0, size, id);
+        return i < 0 ? 0 : counts[i];
+    }
+
+    public String getTsv() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; ++i) {
+            if (i > 0) {
+                sb.append('\t');
+            }
+            sb.append(dictionary.getTerm(ids[i])).append(':').append(counts[i]);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void store(DataStore ds) throws StoreException {
+        if (ds instanceof FlatFileStore) {
+            ((FlatFileStore) ds).getPrintStream().println(getTsv());
+        } else {
+            throw new StoreException("Unsupported data store " + ds.getClass().getName());
+        }
+    }
+}
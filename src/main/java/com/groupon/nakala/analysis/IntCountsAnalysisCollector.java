@@ -0,0 +1,142 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.analysis;
+
+import com.groupon.nakala.core.TermDictionary;
+import com.groupon.nakala.db.DataStore;
+import com.groupon.nakala.exceptions.StoreException;
+import com.groupon.nakala.exceptions.TextminingException;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Collection-wide term counts in an array indexed by TermDictionary id. Stored like StringCountsAnalysisCollector,
+ * most frequent terms first.
+ *
+ * @author npendar@groupon.com
+ */
+public final class IntCountsAnalysisCollector implements MergeableAnalysisCollector {
+    private final TermDictionary dictionary;
+    private int[] counts;
+
+    public IntCountsAnalysisCollector(TermDictionary dictionary) {
+        this.dictionary = dictionary;
+        counts = new int[Math.max(16, dictionary.size())];
+    }
+
+    public TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    public void add(int id, int count) {
+        if (id >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(id + 1, 2 * counts.length));
+        }
+        counts[id] += count;
+    }
+
+    /**
+     * @return the count of the term with the given id
+     */
+    public int get(int id) {
+        return id < counts.length ? counts[id] : 0;
+    }
+
+    /**
+     * @return the count of the term, 0 if it was never seen
+     */
+    public int get(String term) {
+        int id = dictionary.getId(term);
+        return id < 0 ? 0 : get(id);
+    }
+
+    @Override
+    public void addAnalysis(Analysis a) {
+        if (a instanceof IntCountAnalysis) {
+            IntCountAnalysis ica = (IntCountAnalysis) a;
+            if (ica.getDictionary() == dictionary) {
+                for (int i = 0; i < ica.size(); ++i) {
+                    add(ica.getId(i), ica.getCount(i));
+                }
+            } else {
+                for (int i = 0; i < ica.size(); ++i) {
+                    add(dictionary.intern(ica.getDictionary().getTerm(ica.getId(i))), ica.getCount(i));
+                }
+            }
+        } else {
+            throw new TextminingException("Unsupported analysis type.");
+        }
+    }
+
+    @Override
+    public void merge(PartialResult other) {
+        IntCountsAnalysisCollector ic = (IntCountsAnalysisCollector) other;
+        for (int id = 0; id < ic.counts.length; ++id) {
+            if (ic.counts[id] == 0) {
+                continue;
+            }
+            if (ic.dictionary == dictionary) {
+                add(id, ic.counts[id]);
+            } else {
+                add(dictionary.intern(ic.dictionary.getTerm(id)), ic.counts[id]);
+            }
+        }
+    }
+
+    @Override
+    public void store(DataStore ds) throws StoreException {
+        int n = 0;
+        for (int c : counts) {
+            if (c > 0) {
+                ++n;
+            }
+        }
+        Integer[] ids = new Integer[n];
+        n = 0;
+        for (int id = 0; id < counts.length; ++id) {
+            if (counts[id] > 0) {
+                ids[n++] = id;
+            }
+        }
+        Arrays.sort(ids, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return counts[b] < counts[a] ? -1 : (counts[b] == counts[a] ? 0 : 1);
+            }
+        });
+        for (Integer id : ids) {
+            new KeyValuePairAnalysis<String, Integer>(dictionary.getTerm(id), counts[id]).store(ds);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.analysis;
+
+import com.groupon.nakala.core.*;
+import com.groupon.nakala.exceptions.AnalyzerFailureException;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.normalization.NormalizerChain;
+import com.groupon.nakala.normalization.StringNormalizer;
+import org.apache.commons.lang3.SerializationUtils;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Counts the terms of a document like FeatureCounterAnalyzer, but interns each normalized token into a
+ * TermDictionary and counts ids. Stopwords are interned once at initialization, so each token costs a single
+ * dictionary lookup. Analyzers given the same dictionary produce comparable ids.
+ *
+ * @author npendar@groupon.com
+ */
+public class IntFeatureCounterAnalyzer implements Analyzer {
+    private TokenizerStream tokenizer;
+    private StringNormalizer normalizerChain;
+    private TermDictionary dictionary;
+    private BitSet stopIds;
+    private int[] buffer = new int[256];
+
+    @Override
+    public void initialize(Parameters params) throws ResourceInitializationException {
+        Collection<String> unset = params.ensureSet(Constants.TOKENIZER);
+        if (unset.contains(Constants.TOKENIZER)) {
+            throw new ResourceInitializationException("Tokenizer not set.");
+        }
+        tokenizer = (TokenizerStream) params.get(Constants.TOKENIZER);
+
+        if (params.contains(Constants.NORMALIZERS)) {
+            List<StringNormalizer> normalizers = (List<StringNormalizer>) params.get(Constants.NORMALIZERS);
+            normalizerChain = normalizers == null || normalizers.isEmpty() ? null : new NormalizerChain(normalizers);
+        }
+
+        dictionary = params.contains(Constants.TERM_DICTIONARY) ?
+                (TermDictionary) params.get(Constants.TERM_DICTIONARY) : new TermDictionary();
+
+        if (params.contains(Constants.STOPWORDS)) {
+            stopIds = new BitSet();
+            for (String stopword : (StringSet) params.get(Constants.STOPWORDS)) {
+                stopIds.set(dictionary.intern(stopword));
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    public TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns an analyzer sharing the dictionary, normalizers and stopwords but with its own tokenizer, so that
+     * the copy can be used on a different thread than this analyzer.
+     */
+    public IntFeatureCounterAnalyzer copy() {
+        IntFeatureCounterAnalyzer copy = new IntFeatureCounterAnalyzer();
+        copy.tokenizer = SerializationUtils.clone(tokenizer);
+        copy.normalizerChain = normalizerChain;
+        copy.dictionary = dictionary;
+        copy.stopIds = stopIds;
+        return copy;
+    }
+
+    @Override
+    public Analysis analyze(Analyzable a) throws AnalyzerFailureException {
+        return new IntCountAnalysis(dictionary, buffer, tokenize(((TextContent) a).getText()));
+    }
+
+    /**
+     * Interns the tokens of text into the reusable buffer, leaving out stopwords.
+     *
+     * @return the number of ids in the buffer
+     */
+    private int tokenize(String text) {
+        TokenCursor cursor = AbstractTokenizerStream.open(tokenizer, text);
+        int n = 0;
+        String tok;
+        while ((tok = cursor.next()) != null) {
+            if (normalizerChain != null) {
+                tok = normalizerChain.normalize(tok);
+            }
+            int id = dictionary.intern(tok);
+            if (stopIds != null && stopIds.get(id)) {
+                continue;
+            }
+            if (n == buffer.length) {
+                int[] grown = new int[2 * n];
+                System.arraycopy(buffer, 0, grown, 0, n);
+                buffer = grown;
+            }
+            buffer[n++] = id;
+        }
+        return n;
+    }
+}
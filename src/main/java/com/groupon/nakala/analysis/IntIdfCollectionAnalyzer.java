@@ -0,0 +1,188 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.analysis;
+
+import com.groupon.nakala.core.*;
+import com.groupon.nakala.db.CollectionReader;
+import com.groupon.nakala.exceptions.AnalyzerFailureException;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.normalization.CaseNormalizer;
+import com.groupon.nakala.normalization.NumberNormalizer;
+import com.groupon.nakala.normalization.StringNormalizer;
+import org.apache.commons.lang3.SerializationUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * IdfCollectionAnalyzer keeping document frequencies in an array indexed by TermDictionary id. A word is counted
+ * once per document by remembering the last document each id was seen in, so no per-document set is built.
+ * Produces the same idfs as IdfCollectionAnalyzer.
+ *
+ * @author npendar@groupon.com
+ */
+public final class IntIdfCollectionAnalyzer extends AbstractCollectionAnalyzer implements ParallelCollectionAnalyzer, TokenizingAnalyzer {
+
+    TokenizerStream tokenizer;
+    List<StringNormalizer> normalizers;
+    StringSet stopwords;
+    TermDictionary dictionary;
+
+    @Override
+    public void initialize(Parameters params) throws ResourceInitializationException {
+        super.initialize(params);
+        if (params.contains(Constants.TOKENIZER)) {
+            tokenizer = (TokenizerStream) params.get(Constants.TOKENIZER);
+        } else {
+            tokenizer = new RegexpTokenizerStream();
+        }
+
+        if (params.contains(Constants.NORMALIZERS)) {
+            normalizers = (List<StringNormalizer>) params.get(Constants.NORMALIZERS);
+        } else {
+            normalizers = new ArrayList<StringNormalizer>(2);
+            normalizers.add(new CaseNormalizer());
+            normalizers.add(new NumberNormalizer());
+        }
+
+        if (params.contains(Constants.STOPWORDS)) {
+            stopwords = (StringSet) params.get(Constants.STOPWORDS);
+        }
+
+        dictionary = params.contains(Constants.TERM_DICTIONARY) ?
+                (TermDictionary) params.get(Constants.TERM_DICTIONARY) : new TermDictionary();
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public TokenizerStream getTokenizer() {
+        return tokenizer;
+    }
+
+    @Override
+    public List<StringNormalizer> getNormalizers() {
+        return normalizers;
+    }
+
+    @Override
+    public AnalysisCollector analyze(CollectionReader as) throws AnalyzerFailureException {
+        return complete(analyzePartition(as));
+    }
+
+    @Override
+    public PartialResult analyzePartition(Iterable<Analyzable> partition) throws AnalyzerFailureException {
+        TokenizerStream partitionTokenizer = SerializationUtils.clone(tokenizer);
+        DocumentFrequencies df = new DocumentFrequencies(dictionary);
+        for (Analyzable a : partition) {
+            TextContent textContent = (TextContent) a;
+            if (passFilter != null && !passFilter.passes(textContent))
+                continue;
+
+            if (blockFilter != null && blockFilter.blocks(textContent))
+                continue;
+
+            int document = (int) ++df.numberOfDocuments;
+
+            List<String> tokens = SharedTokens.get(a, tokenizer, normalizers);
+            if (tokens == null) {
+                tokens = partitionTokenizer.getTokens(textContent.getText(), normalizers);
+            }
+            for (String token : tokens) {
+                if (stopwords != null && stopwords.contains(token))
+                    continue;
+                df.add(dictionary.intern(token), document);
+            }
+        }
+        return df;
+    }
+
+    @Override
+    public AnalysisCollector complete(PartialResult merged) {
+        DocumentFrequencies df = (DocumentFrequencies) merged;
+        long D = df.numberOfDocuments;
+        KeyValueMapAnalysisCollector<String, Double> idf = new KeyValueMapAnalysisCollector<String, Double>();
+        for (int id = 0; id < df.counts.length; ++id) {
+            if (df.counts[id] > 0) {
+                idf.put(dictionary.getTerm(id), Math.log(D / (double) df.counts[id]));
+            }
+        }
+        return idf;
+    }
+
+    /**
+     * Document count and document frequencies by term id of one partition.
+     */
+    private static final class DocumentFrequencies implements PartialResult {
+        final TermDictionary dictionary;
+        long numberOfDocuments;
+        int[] counts;
+        // Number of the last document of the partition each id was counted for.
+        int[] lastDocument;
+
+        DocumentFrequencies(TermDictionary dictionary) {
+            this.dictionary = dictionary;
+            int capacity = Math.max(16, dictionary.size());
+            counts = new int[capacity];
+            lastDocument = new int[capacity];
+        }
+
+        void add(int id, int document) {
+            if (id >= counts.length) {
+                int capacity = Math.max(id + 1, 2 * counts.length);
+                counts = Arrays.copyOf(counts, capacity);
+                lastDocument = Arrays.copyOf(lastDocument, capacity);
+            }
+            if (lastDocument[id] != document) {
+                lastDocument[id] = document;
+                ++counts[id];
+            }
+        }
+
+        @Override
+        public void merge(PartialResult other) {
+            DocumentFrequencies df = (DocumentFrequencies) other;
+            numberOfDocuments += df.numberOfDocuments;
+            if (df.counts.length > counts.length) {
+                counts = Arrays.copyOf(counts, df.counts.length);
+                lastDocument = Arrays.copyOf(lastDocument, df.counts.length);
+            }
+            for (int id = 0; id < df.counts.length; ++id) {
+                counts[id] += df.counts[id];
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.analysis;
+
+import com.groupon.nakala.core.*;
+import com.groupon.nakala.db.CollectionReader;
+import com.groupon.nakala.exceptions.AnalyzerFailureException;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+
+import java.util.List;
+
+/**
+ * Looks every place, or identifiable text content, of a collection up in a MinHashIndex of reference places built
+ * by MinHashIndexBuilder. For each document with candidates it emits a MultiScoreAnalysis mapping the ids of the
+ * candidate reference places to their estimated Jaccard similarity. These scores are estimates of the match key
+ * similarity only, and the index keeps no reference texts, so this analyzer does not decide matches: a following
+ * job flow has to score every candidate pair exactly, by running FuzzyFinderAnalyzer on the incoming place with
+ * the candidate reference place as its description, see jobFlowSpecsDefinition.yml.
+ * <p/>
+ * Required parameter: minhash_index. Optional parameter: min_similarity, the smallest estimated similarity of a
+ * candidate (default 0.3). The default is kept below the similarity the default index is shaped for, so that
+ * estimation error does not drop pairs the index found; raise it only to trade recall for fewer exact scorings.
+ *
+ * @author npendar@groupon.com
+ */
+public class MinHashCandidateAnalyzer extends AbstractCollectionAnalyzer implements ParallelCollectionAnalyzer {
+    public static final double DEFAULT_MIN_SIMILARITY = 0.3;
+
+    private MinHashIndex index;
+    private double minSimilarity = DEFAULT_MIN_SIMILARITY;
+    private FuzzyFinderAnalyzer fuzzyFinder;
+
+    @Override
+    public void initialize(Parameters params) throws ResourceInitializationException {
+        super.initialize(params);
+        if (params.contains(Constants.MINHASH_INDEX)) {
+            index = (MinHashIndex) params.get(Constants.MINHASH_INDEX);
+        } else {
+            throw new ResourceInitializationException("No MinHash index specified.");
+        }
+        if (params.contains(Constants.MIN_SIMILARITY)) {
+            minSimilarity = params.getDouble(Constants.MIN_SIMILARITY);
+        }
+        fuzzyFinder = new FuzzyFinderAnalyzer();
+        fuzzyFinder.initialize(params);
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public AnalysisCollector analyze(CollectionReader cr) throws AnalyzerFailureException {
+        return complete(analyzePartition(cr));
+    }
+
+    @Override
+    public MergeableAnalysisCollector analyzePartition(Iterable<Analyzable> partition) throws AnalyzerFailureException {
+        MergeableListAnalysisCollector candidates = new MergeableListAnalysisCollector();
+        for (Analyzable a : partition) {
+            TextContent content = (TextContent) a;
+            if (passFilter != null && !passFilter.passes(content))
+                continue;
+
+            if (blockFilter != null && blockFilter.blocks(content))
+                continue;
+
+            long[] shingles = ShingleHashes.uniqueSorted(fuzzyFinder.getMatchKey(content),
+                    FuzzyFinderAnalyzer.SHINGLE_SIZE);
+            List<MinHashIndex.Candidate> found = index.query(shingles, minSimilarity);
+            if (!found.isEmpty()) {
+                MultiScoreAnalysis analysis = new MultiScoreAnalysis(new Id(getId(content)));
+                for (MinHashIndex.Candidate candidate : found) {
+                    analysis.put(candidate.getId(), candidate.getSimilarity());
+                }
+                candidates.addAnalysis(analysis);
+            }
+        }
+        return candidates;
+    }
+
+    @Override
+    public AnalysisCollector complete(PartialResult merged) {
+        return (AnalysisCollector) merged;
+    }
+
+    static String getId(Analyzable a) throws AnalyzerFailureException {
+        Id id;
+        if (a instanceof Place) {
+            id = ((Place) a).getId();
+        } else if (a instanceof Identifiable) {
+            id = ((Identifiable) a).getId();
+        } else {
+            throw new AnalyzerFailureException("Analyzable must be a Place or Identifiable.");
+        }
+        if (id == null) {
+            throw new AnalyzerFailureException("Analyzable has no id.");
+        }
+        return id.toString();
+    }
+}
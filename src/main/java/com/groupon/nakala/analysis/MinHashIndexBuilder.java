@@ -0,0 +1,176 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.analysis;
+
+import com.groupon.nakala.core.*;
+import com.groupon.nakala.db.CollectionReader;
+import com.groupon.nakala.db.DataStore;
+import com.groupon.nakala.db.FlatFileStore;
+import com.groupon.nakala.exceptions.AnalyzerFailureException;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.exceptions.StoreException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds a MinHashIndex of a reference collection of places, or of any identifiable text content, from the match
+ * keys FuzzyFinderAnalyzer uses. Signatures are computed in parallel over partitions; the index is sorted once
+ * at the end. The index is stored, with a FlatFileStore, to the store's file name followed by .minhash, from where
+ * MinHashIndex can load it for MinHashCandidateAnalyzer.
+ * <p/>
+ * Optional parameters: bands and rows, see MinHashIndex.
+ *
+ * @author npendar@groupon.com
+ */
+public class MinHashIndexBuilder extends AbstractCollectionAnalyzer implements ParallelCollectionAnalyzer {
+    public static final String FILE_EXTENSION = ".minhash";
+
+    private int bands = MinHashIndex.DEFAULT_BANDS;
+    private int rows = MinHashIndex.DEFAULT_ROWS;
+    private FuzzyFinderAnalyzer fuzzyFinder;
+
+    @Override
+    public void initialize(Parameters params) throws ResourceInitializationException {
+        super.initialize(params);
+        if (params.contains(Constants.BANDS)) {
+            bands = params.getInt(Constants.BANDS);
+        }
+        if (params.contains(Constants.ROWS)) {
+            rows = params.getInt(Constants.ROWS);
+        }
+        fuzzyFinder = new FuzzyFinderAnalyzer();
+        fuzzyFinder.initialize(params);
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public AnalysisCollector analyze(CollectionReader cr) throws AnalyzerFailureException {
+        return complete(analyzePartition(cr));
+    }
+
+    @Override
+    public PartialResult analyzePartition(Iterable<Analyzable> partition) throws AnalyzerFailureException {
+        // Only used to compute signatures; documents are collected in the partial result.
+        MinHashIndex hasher = new MinHashIndex(bands, rows, MinHashIndex.DEFAULT_SEED);
+        Signatures signatures = new Signatures(hasher.getNumberOfHashes());
+        for (Analyzable a : partition) {
+            TextContent content = (TextContent) a;
+            if (passFilter != null && !passFilter.passes(content))
+                continue;
+
+            if (blockFilter != null && blockFilter.blocks(content))
+                continue;
+
+            long[] shingles = ShingleHashes.uniqueSorted(fuzzyFinder.getMatchKey(content),
+                    FuzzyFinderAnalyzer.SHINGLE_SIZE);
+            if (shingles.length > 0) {
+                signatures.add(MinHashCandidateAnalyzer.getId(content), hasher.signature(shingles));
+            }
+        }
+        return signatures;
+    }
+
+    @Override
+    public AnalysisCollector complete(PartialResult merged) {
+        Signatures signatures = (Signatures) merged;
+        MinHashIndex index = new MinHashIndex(bands, rows, MinHashIndex.DEFAULT_SEED);
+        int k = signatures.numberOfHashes;
+        for (int i = 0; i < signatures.ids.size(); ++i) {
+            index.add(signatures.ids.get(i), Arrays.copyOfRange(signatures.values, i * k, (i + 1) * k));
+        }
+        index.build();
+        logger.debug("Built MinHash index of " + index.size() + " documents.");
+        return new SingletonAnalysisCollector(new MinHashIndexAnalysis(index));
+    }
+
+    /**
+     * Ids and signatures of the documents of one partition.
+     */
+    private static final class Signatures implements PartialResult {
+        final int numberOfHashes;
+        final List<String> ids = new ArrayList<String>();
+        int[] values = new int[0];
+
+        Signatures(int numberOfHashes) {
+            this.numberOfHashes = numberOfHashes;
+        }
+
+        void add(String id, int[] signature) {
+            append(signature, 1);
+            ids.add(id);
+        }
+
+        private void append(int[] signatures, int n) {
+            int offset = ids.size() * numberOfHashes;
+            if (offset + n * numberOfHashes > values.length) {
+                values = Arrays.copyOf(values, Math.max(offset + n * numberOfHashes, 2 * values.length));
+            }
+            System.arraycopy(signatures, 0, values, offset, n * numberOfHashes);
+        }
+
+        @Override
+        public void merge(PartialResult other) {
+            Signatures s = (Signatures) other;
+            append(s.values, s.ids.size());
+            ids.addAll(s.ids);
+        }
+    }
+
+    /**
+     * Saves the index next to the FlatFileStore's file.
+     */
+    public static final class MinHashIndexAnalysis implements Analysis {
+        private final MinHashIndex index;
+
+        public MinHashIndexAnalysis(MinHashIndex index) {
+            this.index = index;
+        }
+
+        public MinHashIndex getIndex() {
+            return index;
+        }
+
+        @Override
+        public void store(DataStore ds) throws StoreException {
+            if (!(ds instanceof FlatFileStore)) {
+                throw new StoreException("Only FlatFileStore is supported.");
+            }
+            index.save(((FlatFileStore) ds).getFileName() + FILE_EXTENSION);
+        }
+    }
+}
@@ -35,8 +35,13 @@ package com.groupon.nakala.analysis;
 import com.groupon.nakala.core.Id;
 import com.groupon.nakala.db.DataStore;
 import com.groupon.nakala.db.FlatFileStore;
+import com.groupon.nakala.db.RecordIo;
+import com.groupon.nakala.db.RecordStore;
 import com.groupon.nakala.exceptions.StoreException;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -45,10 +50,16 @@ import java.util.Map;
 /**
  * @author npendar@groupon.com
  */
-public class MultiScoreAnalysis implements Analysis, Iterable<Map.Entry<String, Double>> {
+public class MultiScoreAnalysis implements RecordAnalysis, Iterable<Map.Entry<String, Double>> {
+    private static final long serialVersionUID = -6787654268429031953L;
+
     Id id;
     Map<String, Double> scores;
 
+    public MultiScoreAnalysis() {
+        scores = new HashMap<String, Double>();
+    }
+
     public MultiScoreAnalysis(Id id) {
         this.id = id;
         scores = new HashMap<String, Double>();
@@ -62,9 +73,30 @@ public class MultiScoreAnalysis implements Analysis, Iterable<Map.Entry<String,
         return scores.get(key);
     }
 
+    @Override
+    public void writeRecord(DataOutput out) throws IOException {
+        RecordIo.writeString(out, id.toString());
+        RecordIo.writeVarInt(out, scores.size());
+        for (Map.Entry<String, Double> e : scores.entrySet()) {
+            RecordIo.writeString(out, e.getKey());
+            out.writeDouble(e.getValue());
+        }
+    }
+
+    @Override
+    public void readRecord(DataInput in) throws IOException {
+        id = new Id(RecordIo.readString(in));
+        scores.clear();
+        for (int i = RecordIo.readVarInt(in); i > 0; --i) {
+            scores.put(RecordIo.readString(in), in.readDouble());
+        }
+    }
+
     @Override
     public void store(DataStore ds) throws StoreException {
-        if (ds instanceof FlatFileStore) {
+        if (ds instanceof RecordStore) {
+            ((RecordStore) ds).write(this);
+        } else if (ds instanceof FlatFileStore) {
             PrintStream printStream = ((FlatFileStore) ds).getPrintStream();
             for (Map.Entry<String, Double> e : scores.entrySet()) {
                 printStream.println(id.toString() + '\t' + e.getKey() + '\t' + e.getValue());
@@ -0,0 +1,56 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.analysis;
+
+import com.groupon.nakala.core.Analyzable;
+import com.groupon.nakala.exceptions.AnalyzerFailureException;
+
+/**
+ * A collection analyzer whose work can be split over partitions of a collection. Each partition is analyzed
+ * into a partial result, the partial results are merged, and the merged result is completed into the final
+ * analysis. analyze(cr) must return the same result as complete(analyzePartition(cr)).
+ *
+ * @author npendar@groupon.com
+ */
+public interface ParallelCollectionAnalyzer extends CollectionAnalyzer {
+    /**
+     * Analyzes one partition of a collection. Called concurrently from several threads, each with its own
+     * partition, so implementations must not keep per-document state in instance fields.
+     */
+    public PartialResult analyzePartition(Iterable<Analyzable> partition) throws AnalyzerFailureException;
+
+    /**
+     * Turns the merged partial results of all partitions into the final result.
+     */
+    public AnalysisCollector complete(PartialResult merged) throws AnalyzerFailureException;
+}
@@ -34,12 +34,20 @@ package com.groupon.nakala.analysis;
 
 import com.groupon.nakala.db.DataStore;
 import com.groupon.nakala.db.FlatFileStore;
+import com.groupon.nakala.db.RecordIo;
+import com.groupon.nakala.db.RecordStore;
 import com.groupon.nakala.exceptions.StoreException;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * @author npendar@groupon.com
  */
-public class PlainTextAnalysis implements Analysis {
+public class PlainTextAnalysis implements RecordAnalysis {
+    private static final long serialVersionUID = 4826460322840794617L;
+
     String text;
 
     public PlainTextAnalysis() {
@@ -66,9 +74,21 @@ public class PlainTextAnalysis implements Analysis {
         return toString();
     }
 
+    @Override
+    public void writeRecord(DataOutput out) throws IOException {
+        RecordIo.writeString(out, text);
+    }
+
+    @Override
+    public void readRecord(DataInput in) throws IOException {
+        text = RecordIo.readString(in);
+    }
+
     @Override
     public void store(DataStore ds) throws StoreException {
-        if (ds instanceof FlatFileStore) {
+        if (ds instanceof RecordStore) {
+            ((RecordStore) ds).write(this);
+        } else if (ds instanceof FlatFileStore) {
             ((FlatFileStore) ds).getPrintStream().println(getText());
         } else {
             throw new StoreException("Unsupported data store " + ds.getClass().getName());
@@ -34,14 +34,25 @@ package com.groupon.nakala.analysis;
 
 import com.groupon.nakala.db.DataStore;
 import com.groupon.nakala.db.FlatFileStore;
+import com.groupon.nakala.db.RecordIo;
+import com.groupon.nakala.db.RecordStore;
 import com.groupon.nakala.exceptions.StoreException;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * @author npendar@groupon.com
  */
-public class ScoreAnalysis implements Analysis {
+public class ScoreAnalysis implements RecordAnalysis {
+    private static final long serialVersionUID = -5270610862725809657L;
+
     double score;
 
+    public ScoreAnalysis() {
+    }
+
     public ScoreAnalysis(double score) {
         this.score = score;
     }
@@ -50,9 +61,21 @@ public class ScoreAnalysis implements Analysis {
         return score;
     }
 
+    @Override
+    public void writeRecord(DataOutput out) throws IOException {
+        out.writeDouble(score);
+    }
+
+    @Override
+    public void readRecord(DataInput in) throws IOException {
+        score = in.readDouble();
+    }
+
     @Override
     public void store(DataStore ds) throws StoreException {
-        if (ds instanceof FlatFileStore) {
+        if (ds instanceof RecordStore) {
+            ((RecordStore) ds).write(this);
+        } else if (ds instanceof FlatFileStore) {
             ((FlatFileStore) ds).getPrintStream().println(getScore());
         } else {
             throw new StoreException("Unsupported data store " + ds.getClass().getName());
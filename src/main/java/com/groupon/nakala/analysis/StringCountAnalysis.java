@@ -34,15 +34,22 @@ package com.groupon.nakala.analysis;
 
 import com.groupon.nakala.db.DataStore;
 import com.groupon.nakala.db.FlatFileStore;
+import com.groupon.nakala.db.RecordIo;
+import com.groupon.nakala.db.RecordStore;
 import com.groupon.nakala.exceptions.StoreException;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 /**
  * @author npendar@groupon.com
  */
-public class StringCountAnalysis implements Analysis {
+public class StringCountAnalysis implements RecordAnalysis {
+    private static final long serialVersionUID = -7946677856327879411L;
+
     Map<String, Integer> counts;
 
     public StringCountAnalysis() {
@@ -76,9 +83,28 @@ public class StringCountAnalysis implements Analysis {
         return StringUtils.join(fields, '\t');
     }
 
+    @Override
+    public void writeRecord(DataOutput out) throws IOException {
+        RecordIo.writeVarInt(out, counts.size());
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            RecordIo.writeString(out, e.getKey());
+            RecordIo.writeVarInt(out, e.getValue());
+        }
+    }
+
+    @Override
+    public void readRecord(DataInput in) throws IOException {
+        counts.clear();
+        for (int i = RecordIo.readVarInt(in); i > 0; --i) {
+            counts.put(RecordIo.readString(in), RecordIo.readVarInt(in));
+        }
+    }
+
     @Override
     public void store(DataStore ds) throws StoreException {
-        if (ds instanceof FlatFileStore) {
+        if (ds instanceof RecordStore) {
+            ((RecordStore) ds).write(this);
+        } else if (ds instanceof FlatFileStore) {
             ((FlatFileStore) ds).getPrintStream().println(getTsv());
         } else {
             throw new StoreException("Unsupported data store " + ds.getClass().getName());
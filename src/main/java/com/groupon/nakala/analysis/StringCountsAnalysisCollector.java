@@ -42,7 +42,7 @@ import java.util.*;
 /**
  * @author npendar@groupon.com
  */
-public final class StringCountsAnalysisCollector implements AnalysisCollector {
+public final class StringCountsAnalysisCollector implements MergeableAnalysisCollector {
     Map<String, Integer> counts;
 
     public StringCountsAnalysisCollector() {
@@ -61,7 +61,8 @@ public final class StringCountsAnalysisCollector implements AnalysisCollector {
         return counts;
     }
 
-    public void merge(AnalysisCollector other) {
+    @Override
+    public void merge(PartialResult other) {
         StringCountsAnalysisCollector sc = (StringCountsAnalysisCollector) other;
         for (Map.Entry<String, Integer> e : sc.counts.entrySet()) {
             Integer c = counts.get(e.getKey());
@@ -34,6 +34,7 @@ package com.groupon.nakala.core;
 
 import com.groupon.ml.svm.ValueScaler;
 import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.normalization.NormalizerChain;
 import com.groupon.nakala.normalization.StringNormalizer;
 import com.groupon.util.collections.CollectionUtil;
 
@@ -44,26 +45,76 @@ import java.util.List;
  * @author npendar@groupon.com
  */
 public abstract class AbstractTextRepresenter implements TextRepresenter {
+    private static final ThreadLocal<SparseVector.Builder> builders = new ThreadLocal<SparseVector.Builder>() {
+        @Override
+        protected SparseVector.Builder initialValue() {
+            return new SparseVector.Builder(0);
+        }
+    };
+
     protected TokenizerStream tokenizer;
     protected Features features;
     protected List<StringNormalizer> normalizers;
     protected ValueScaler scaler;
+    // Built on first use rather than serialized, so models saved before it existed still load.
+    private transient StringNormalizer normalizerChain;
 
     @Override
     public void initialize(Parameters params) throws ResourceInitializationException {
-        Collection<String> unset = params.ensureSet(Constants.FEATURES, Constants.TOKENIZER, Constants.NORMALIZERS);
+        Collection<String> unset = usesFeatures() ?
+                params.ensureSet(Constants.FEATURES, Constants.TOKENIZER, Constants.NORMALIZERS) :
+                params.ensureSet(Constants.TOKENIZER, Constants.NORMALIZERS);
         if (!unset.isEmpty()) {
             throw new ResourceInitializationException("Unspecified parameters: " + CollectionUtil.join(", ", unset));
         }
         tokenizer = (TokenizerStream) params.get(Constants.TOKENIZER);
-        features = (Features) params.get(Constants.FEATURES);
+        if (usesFeatures()) {
+            features = (Features) params.get(Constants.FEATURES);
+        }
         normalizers = (List<StringNormalizer>) params.get(Constants.NORMALIZERS);
+        normalizerChain = null;
 
         if (params.contains(Constants.SCALER)) {
             scaler = (ValueScaler) params.get(Constants.SCALER);
         }
     }
 
+    /**
+     * @return whether the representer maps tokens to dimensions through a Features dictionary, which is then a
+     *         required parameter
+     */
+    protected boolean usesFeatures() {
+        return true;
+    }
+
+    @Override
+    public int getDimension() {
+        return features.size();
+    }
+
+    /**
+     * @return the builder of the current thread, cleared for a vector of the given dimension. Representers fill it
+     *         instead of allocating a vector per text.
+     */
+    protected static SparseVector.Builder builder(int dimension) {
+        return builders.get().reset(dimension);
+    }
+
+    /**
+     * Applies the normalizers to s in a single NormalizerChain.
+     */
+    protected String normalize(String s) {
+        if (normalizers == null || normalizers.isEmpty()) {
+            return s;
+        }
+        StringNormalizer chain = normalizerChain;
+        if (chain == null) {
+            chain = new NormalizerChain(normalizers);
+            normalizerChain = chain;
+        }
+        return chain.normalize(s);
+    }
+
     @Override
     public void shutdown() {
 
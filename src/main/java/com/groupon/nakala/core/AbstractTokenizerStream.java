@@ -1,9 +1,11 @@
 package com.groupon.nakala.core;
 
+import com.groupon.nakala.normalization.NormalizerChain;
 import com.groupon.nakala.normalization.StringNormalizer;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
@@ -11,56 +13,84 @@ import java.util.Set;
  * Created by nickp on 1/29/14.
  */
 public abstract class AbstractTokenizerStream implements TokenizerStream {
+    private transient volatile CompiledNormalizers compiled;
+
+    /**
+     * Opens a cursor over text. Cursors of a CursorTokenizer are independent of each other; for other tokenizers
+     * the cursor drives setText and next, so the tokenizer must not be used for anything else until it is done.
+     */
+    public static TokenCursor open(final TokenizerStream tokenizer, CharSequence text) {
+        if (tokenizer instanceof CursorTokenizer) {
+            return ((CursorTokenizer) tokenizer).open(text);
+        }
+        tokenizer.setText(text.toString());
+        return new TokenCursor() {
+            @Override
+            public String next() {
+                return tokenizer.next();
+            }
+
+            @Override
+            public int start() {
+                return -1;
+            }
+
+            @Override
+            public int end() {
+                return -1;
+            }
+        };
+    }
 
     @Override
     public Set<String> getUniqueTokens(String s) {
-        setText(s);
-        Set<String> uniques = new HashSet<String>();
-        String tok = null;
-        while ((tok = next()) != null)
-            uniques.add(tok);
-        return uniques;
+        return collect(s, new HashSet<String>());
     }
 
     @Override
     public List<String> getTokens(String s) {
-        setText(s);
-        List<String> tokens = new LinkedList<String>();
-        String tok = null;
-        while ((tok = next()) != null)
-            tokens.add(tok);
-        return tokens;
+        return collect(s, new ArrayList<String>());
     }
 
     @Override
     public Set<String> getUniqueTokens(String s, List<StringNormalizer> normalizers) {
-        if (normalizers != null) {
-            for(StringNormalizer normalizer: normalizers) {
-                s = normalizer.normalize(s);
-            }
-        }
-        setText(s);
-        Set<String> uniques = new HashSet<String>();
-        String tok;
-        while ((tok = next()) != null) {
-            uniques.add(tok);
-        }
-        return uniques;
+        return collect(normalize(s, normalizers), new HashSet<String>());
     }
 
     @Override
     public List<String> getTokens(String s, List<StringNormalizer> normalizers) {
-        if (normalizers != null) {
-            for(StringNormalizer normalizer: normalizers) {
-                s = normalizer.normalize(s);
-            }
-        }
-        setText(s);
-        List<String> tokens = new LinkedList<String>();
+        return collect(normalize(s, normalizers), new ArrayList<String>());
+    }
+
+    private <T extends Collection<String>> T collect(String s, T tokens) {
+        TokenCursor cursor = open(this, s);
         String tok;
-        while ((tok = next()) != null) {
+        while ((tok = cursor.next()) != null) {
             tokens.add(tok);
         }
         return tokens;
     }
+
+    private String normalize(String s, List<StringNormalizer> normalizers) {
+        if (normalizers == null || normalizers.isEmpty()) {
+            return s;
+        }
+        // Callers pass the same list for every text, so the chain is kept until the list changes.
+        CompiledNormalizers c = compiled;
+        if (c == null || c.source != normalizers) {
+            c = new CompiledNormalizers(normalizers);
+            compiled = c;
+        }
+        return c.chain.normalize(s);
+    }
+
+    private static final class CompiledNormalizers {
+        final List<StringNormalizer> source;
+        final NormalizerChain chain;
+
+        CompiledNormalizers(List<StringNormalizer> source) {
+            this.source = source;
+            this.chain = new NormalizerChain(source);
+        }
+    }
 }
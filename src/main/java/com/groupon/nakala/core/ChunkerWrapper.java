@@ -38,6 +38,7 @@ import opennlp.tools.chunker.ChunkerModel;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * @author npendar@groupon.com
@@ -53,8 +54,13 @@ public final class ChunkerWrapper {
         String sep = File.separator;
         String chunkerModelFile = sep + "nakala" + sep + "opennlp_models" + sep
                 + "en-chunker.bin";
-        cw.chunker = new ChunkerME(new ChunkerModel(cw.getClass()
-                .getResourceAsStream(chunkerModelFile)));
+        final String modelFile = chunkerModelFile;
+        cw.chunker = new ChunkerME(ResourceRegistry.get(ChunkerModel.class, modelFile, new Callable<ChunkerModel>() {
+            @Override
+            public ChunkerModel call() throws IOException {
+                return new ChunkerModel(ChunkerWrapper.class.getResourceAsStream(modelFile));
+            }
+        }));
         return cw;
     }
 
@@ -38,6 +38,7 @@ package com.groupon.nakala.core;
 public class Constants {
     public static final String ANALYZER = "analyzer";
     public static final String ANALYZERS = "analyzers";
+    public static final String BANDS = "bands";
     public static final String BATCH_SIZE = "batch_size";
     public static final String BLOCK_FILTER = "block_filter";
     public static final String C = "c";
@@ -46,39 +47,53 @@ public class Constants {
     public static final String COLLECTION_READER = "collection_reader";
     public static final String DATA_STORES = "data_stores";
     public static final String DOMAINS = "domains";
+    public static final String EPOCHS = "epochs";
     public static final String FEATURES = "features";
     public static final String FILE_NAME = "file_name";
     public static final String FILTER_QUERIES = "filter_queries";
     public static final String FIND_BEST_PARAMETERS = "find_best_parameters";
     public static final String GAMMA = "gamma";
     public static final String GENERATE_NEGATIVE_QUERIES = "generate_negative_queries";
+    public static final String HASH_BITS = "hash_bits";
     public static final String INDEX_DIR = "index_dir";
+    public static final String L2 = "l2";
     public static final String LABELS = "labels";
+    public static final String LEARNING_RATE = "learning_rate";
+    public static final String LOSS = "loss";
+    public static final String MAPPED_FILE = "mapped_file";
     public static final String MAX_FEATURE_SIZE = "max_feature_size";
     public static final String MAX_THRESHOLD = "max_threshold";
     public static final String MIN_DF = "min_df";
     public static final String MIN_FEATURE_WEIGHT = "min_feature_weight";
+    public static final String MINHASH_INDEX = "minhash_index";
     public static final String MIN_PRECISION = "min_precision";
+    public static final String MIN_SIMILARITY = "min_similarity";
     public static final String MIN_THRESHOLD = "min_threshold";
     public static final String MIN_TP = "min_tp";
     public static final String MODEL = "model";
     public static final String MODELS = "models";
+    public static final String NGRAMS = "ngrams";
     public static final String NORMALIZE_BY_LENGTH = "normalize_by_length";
     public static final String NORMALIZERS = "normalizers";
     public static final String NUMBER_OF_THREADS = "number_of_threads";
+    public static final String OPTIMIZER = "optimizer";
     public static final String OVERWRITE = "overwrite";
     public static final String PARAMETERS = "parameters";
     public static final String PASS_FILTER = "pass_filter";
     public static final String POLITE = "polite";
     public static final String PREDICT_PROBABILITIES = "predict_probabilities";
     public static final String QUERY = "query";
+    public static final String REFINE_SAMPLE = "refine_sample";
     public static final String REPRESENTER = "representer";
     public static final String RESOURCE = "resource";
     public static final String REUSE_INDEX = "reuse_index";
+    public static final String ROWS = "rows";
     public static final String SAMPLE = "sample";
     public static final String SCALER = "scaler";
+    public static final String SEARCH_STRATEGY = "search_strategy";
     public static final String STOPWORDS = "stopwords";
     public static final String TARGET_CLASS = "target_class";
+    public static final String TERM_DICTIONARY = "term_dictionary";
     public static final String THRESHOLD = "threshold";
     public static final String THRESHOLD_STEP = "threshold_step";
     public static final String TOKENIZER = "tokenizer";
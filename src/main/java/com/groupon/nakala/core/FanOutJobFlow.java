@@ -0,0 +1,402 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.analysis.AnalysisCollector;
+import com.groupon.nakala.analysis.CollectionAnalyzer;
+import com.groupon.nakala.analysis.TokenizingAnalyzer;
+import com.groupon.nakala.db.CollectionParameters;
+import com.groupon.nakala.db.CollectionReader;
+import com.groupon.nakala.db.DataStore;
+import com.groupon.nakala.exceptions.TextminingException;
+import com.groupon.nakala.normalization.StringNormalizer;
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Runs several collection analyzers over a single pass of a collection. One thread reads the collection and
+ * hands every document to each branch through the branch's bounded queue; each branch analyzes on its own
+ * thread and stores its result in its own data stores.
+ * <p/>
+ * Branches whose analyzers are TokenizingAnalyzers with equal tokenizers and normalizers share the tokens:
+ * the reader thread tokenizes each document once for all of them and the analyzers find the tokens in
+ * SharedTokens. Tokenizers are equal if they serialize to the same bytes, normalizers if they are of the same
+ * classes in the same order, which holds for every normalizer a job flow can configure.
+ * <p/>
+ * With metrics, reading is timed per document, and each branch's analysis per document and its storing as a
+ * whole, in stages named after the branch's position, e.g. branch_0_analyze.
+ *
+ * @author npendar@groupon.com
+ */
+public class FanOutJobFlow implements MetricsAware {
+    protected static final Logger logger = Logger.getLogger(FanOutJobFlow.class);
+
+    protected CollectionReader collectionReader;
+    protected List<JobFlowBranch> branches;
+    protected int queueSize = MultiThreadedJobFlow.DEFAULT_QUEUE_SIZE;
+    protected JobFlowMetrics metrics;
+
+    public FanOutJobFlow(CollectionReader collectionReader, List<JobFlowBranch> branches) {
+        if (branches.isEmpty()) {
+            throw new TextminingException("No branches in job flow.");
+        }
+        this.collectionReader = collectionReader;
+        this.branches = branches;
+    }
+
+    /**
+     * @param queueSize maximum number of documents read but not yet analyzed by a branch
+     */
+    public void setQueueSize(int queueSize) {
+        if (queueSize < 1) {
+            throw new TextminingException("Queue size must be >= 1");
+        }
+        this.queueSize = queueSize;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @param metrics collects the latencies of reading and of each branch, or null
+     */
+    @Override
+    public void setMetrics(JobFlowMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void process() throws TextminingException {
+        int numberOfBranches = branches.size();
+
+        // Group branches by tokenization. Only groups of two or more are worth tokenizing on the reader thread.
+        Map<Tokenization, List<Integer>> groups = new LinkedHashMap<Tokenization, List<Integer>>();
+        for (int i = 0; i < numberOfBranches; ++i) {
+            CollectionAnalyzer analyzer = branches.get(i).getCollectionAnalyzer();
+            if (analyzer instanceof TokenizingAnalyzer) {
+                Tokenization tokenization = new Tokenization((TokenizingAnalyzer) analyzer);
+                List<Integer> members = groups.get(tokenization);
+                if (members == null) {
+                    members = new ArrayList<Integer>();
+                    groups.put(tokenization, members);
+                }
+                members.add(i);
+            }
+        }
+        List<Tokenization> shared = new ArrayList<Tokenization>();
+        int[] tokenizationOfBranch = new int[numberOfBranches];
+        Arrays.fill(tokenizationOfBranch, -1);
+        for (Map.Entry<Tokenization, List<Integer>> e : groups.entrySet()) {
+            if (e.getValue().size() > 1) {
+                for (int i : e.getValue()) {
+                    tokenizationOfBranch[i] = shared.size();
+                }
+                shared.add(e.getKey());
+            }
+        }
+        logger.debug(numberOfBranches + " branches, " + shared.size() + " shared tokenizations");
+
+        List<BlockingQueue<Document>> queues = new ArrayList<BlockingQueue<Document>>(numberOfBranches);
+        for (int i = 0; i < numberOfBranches; ++i) {
+            queues.add(new ArrayBlockingQueue<Document>(queueSize));
+            if (metrics != null) {
+                metrics.watchQueue("branch_" + i + "_queue", queues.get(i));
+            }
+        }
+
+        PipelineStage[] stages = new PipelineStage[numberOfBranches + 1];
+        stages[0] = new Reader(queues, shared, tokenizationOfBranch);
+        for (int i = 0; i < numberOfBranches; ++i) {
+            stages[i + 1] = new Branch(i, queues.get(i), tokenizationOfBranch[i] >= 0);
+        }
+
+        Thread[] threads = new Thread[stages.length];
+        for (int i = 0; i < stages.length; ++i) {
+            threads[i] = new Thread(stages[i]);
+            threads[i].start();
+        }
+
+        Throwable failure = null;
+        int nAlive = threads.length;
+        while (nAlive > 0) {
+            for (int i = 0; i < threads.length; ++i) {
+                if (threads[i] != null) {
+                    try {
+                        threads[i].join(1000L);
+                        if (!threads[i].isAlive()) {
+                            threads[i] = null;
+                            --nAlive;
+
+                            if (failure == null && stages[i].getFailure() != null) {
+                                // One stage failed. Stop the others so nobody blocks on a queue forever.
+                                failure = stages[i].getFailure();
+                                for (Thread t : threads) {
+                                    if (t != null) t.interrupt();
+                                }
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                    }
+                }
+            }
+        }
+
+        for (JobFlowBranch branch : branches) {
+            branch.getCollectionAnalyzer().shutdown();
+            for (DataStore ds : branch.getDataStores()) {
+                ds.close();
+            }
+        }
+
+        if (failure != null) {
+            throw new TextminingException("Job flow failed.", failure);
+        }
+        logger.debug("Done!");
+    }
+
+    public void setLogLevel(Level l) {
+        logger.setLevel(l);
+    }
+
+    /**
+     * A document on its way to one branch, with its tokens if the reader tokenized it for that branch.
+     */
+    private static final class Document {
+        final Analyzable analyzable;
+        final List<String> tokens;
+
+        Document(Analyzable analyzable, List<String> tokens) {
+            this.analyzable = analyzable;
+            this.tokens = tokens;
+        }
+    }
+
+    private static final Document END_OF_DOCUMENTS = new Document(PipelineStage.END_OF_INPUT, null);
+
+    private static final class Tokenization {
+        final TokenizerStream tokenizer;
+        final List<StringNormalizer> normalizers;
+        final byte[] tokenizerBytes;
+        final List<Class> normalizerClasses = new ArrayList<Class>();
+
+        Tokenization(TokenizingAnalyzer analyzer) {
+            // The reader thread gets its own tokenizer; the analyzer's may be in use on the branch thread.
+            tokenizer = SerializationUtils.clone(analyzer.getTokenizer());
+            normalizers = analyzer.getNormalizers();
+            tokenizerBytes = SerializationUtils.serialize(analyzer.getTokenizer());
+            if (normalizers != null) {
+                for (StringNormalizer normalizer : normalizers) {
+                    normalizerClasses.add(normalizer.getClass());
+                }
+            }
+        }
+
+        List<String> tokenize(Analyzable a) {
+            return a instanceof TextContent ? tokenizer.getTokens(((TextContent) a).getText(), normalizers) : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Tokenization)) {
+                return false;
+            }
+            Tokenization other = (Tokenization) o;
+            return Arrays.equals(tokenizerBytes, other.tokenizerBytes)
+                    && normalizerClasses.equals(other.normalizerClasses);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(tokenizerBytes) + normalizerClasses.hashCode();
+        }
+    }
+
+    private class Reader extends PipelineStage {
+        private List<BlockingQueue<Document>> queues;
+        private List<Tokenization> shared;
+        private int[] tokenizationOfBranch;
+
+        Reader(List<BlockingQueue<Document>> queues, List<Tokenization> shared, int[] tokenizationOfBranch) {
+            this.queues = queues;
+            this.shared = shared;
+            this.tokenizationOfBranch = tokenizationOfBranch;
+        }
+
+        @Override
+        protected void process() throws InterruptedException {
+            List<List<String>> tokens = new ArrayList<List<String>>(shared.size());
+            CollectionReader reader = metrics == null ? collectionReader :
+                    new TimedCollectionReader(collectionReader, metrics.getStage("read"));
+            for (Analyzable a : reader) {
+                if (a == null) {
+                    continue;
+                }
+                tokens.clear();
+                for (Tokenization tokenization : shared) {
+                    tokens.add(tokenization.tokenize(a));
+                }
+                for (int i = 0; i < queues.size(); ++i) {
+                    int t = tokenizationOfBranch[i];
+                    // Blocks while the branch is behind, so the slowest branch sets the pace.
+                    queues.get(i).put(new Document(a, t < 0 ? null : tokens.get(t)));
+                }
+            }
+
+            for (BlockingQueue<Document> queue : queues) {
+                queue.put(END_OF_DOCUMENTS);
+            }
+        }
+    }
+
+    private class Branch extends PipelineStage {
+        private String name;
+        private JobFlowBranch branch;
+        private BlockingQueue<Document> queue;
+        private boolean sharesTokens;
+
+        Branch(int index, BlockingQueue<Document> queue, boolean sharesTokens) {
+            this.name = "branch_" + index;
+            this.branch = branches.get(index);
+            this.queue = queue;
+            this.sharesTokens = sharesTokens;
+        }
+
+        @Override
+        protected void process() throws InterruptedException {
+            CollectionAnalyzer analyzer = branch.getCollectionAnalyzer();
+            if (sharesTokens) {
+                TokenizingAnalyzer tokenizingAnalyzer = (TokenizingAnalyzer) analyzer;
+                SharedTokens.register(tokenizingAnalyzer.getTokenizer(), tokenizingAnalyzer.getNormalizers());
+            }
+            try {
+                CollectionReader reader = new QueueCollectionReader(queue);
+                if (metrics != null) {
+                    reader = new TimedCollectionReader(reader, null, metrics.getStage(name + "_analyze"));
+                }
+                AnalysisCollector analysisCollector = analyzer.analyze(reader);
+
+                JobFlowMetrics.Stage store = metrics == null ? null : metrics.getTimer(name + "_store");
+                long start = store == null ? 0L : store.start();
+                for (DataStore ds : branch.getDataStores()) {
+                    analysisCollector.store(ds);
+                }
+                if (store != null) {
+                    store.stop(start);
+                }
+            } finally {
+                SharedTokens.unregister();
+            }
+        }
+    }
+
+    /**
+     * Presents a branch queue to a collection analyzer as a collection that can be iterated once.
+     */
+    private class QueueCollectionReader implements CollectionReader {
+        private BlockingQueue<Document> queue;
+        private boolean iterated;
+
+        QueueCollectionReader(BlockingQueue<Document> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void initialize(CollectionParameters ps) {
+        }
+
+        @Override
+        public int getSize() {
+            return collectionReader.getSize();
+        }
+
+        @Override
+        public void reset() throws TextminingException {
+            throw new TextminingException("Branches of a fan-out job flow can only read the collection once.");
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public Iterator<Analyzable> iterator() {
+            if (iterated) {
+                throw new TextminingException("Branches of a fan-out job flow can only read the collection once.");
+            }
+            iterated = true;
+            return new Iterator<Analyzable>() {
+                private Analyzable next;
+                private boolean done;
+
+                @Override
+                public boolean hasNext() {
+                    if (next == null && !done) {
+                        Document d;
+                        try {
+                            d = queue.take();
+                        } catch (InterruptedException e) {
+                            throw new TextminingException("Interrupted while waiting for input.", e);
+                        }
+                        if (d == END_OF_DOCUMENTS) {
+                            done = true;
+                        } else {
+                            next = d.analyzable;
+                            SharedTokens.set(d.analyzable, d.tokens);
+                        }
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public Analyzable next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Analyzable a = next;
+                    next = null;
+                    return a;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.exceptions.StoreException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Immutable feature dictionary in a single ByteBuffer: an open addressing hash table over the UTF-8 bytes of the
+ * features, dense int ids and a weight per id. Lookups decode nothing and allocate nothing. The weights are also
+ * copied to a double[] when a table is built or mapped, so a weight is one array read at the cost of 8 heap bytes
+ * per feature. A table can be written to a file and memory mapped from it, so processes using the same features
+ * share the keys and texts through the page cache and start without parsing. Layout, all numbers big endian:
+ * <pre>
+ * header:  int MAGIC, int VERSION, int number of features n, int capacity c, int number of text bytes
+ * slots:   int[c] id + 1 of the feature hashed to each slot, 0 if empty
+ * hashes:  int[n] hash of each feature
+ * offsets: int[n + 1] start of each feature in the text bytes
+ * weights: double[n], 8 byte aligned
+ * text:    UTF-8 bytes of all features, one after the other
+ * </pre>
+ * Absolute reads do not move a ByteBuffer, so one table can be used by any number of threads.
+ *
+ * @author npendar@groupon.com
+ */
+public final class FeatureTable {
+    static final int MAGIC = 0x4e4b4654;
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int mask;
+    private final int slotsOffset;
+    private final int hashesOffset;
+    private final int offsetsOffset;
+    private final int weightsOffset;
+    private final int textOffset;
+    private final double[] weights;
+
+    private FeatureTable(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new ResourceInitializationException("Not a feature table.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new ResourceInitializationException("Unsupported feature table version " + buffer.getInt(4));
+        }
+        size = buffer.getInt(8);
+        int capacity = buffer.getInt(12);
+        mask = capacity - 1;
+        slotsOffset = HEADER_SIZE;
+        hashesOffset = slotsOffset + 4 * capacity;
+        offsetsOffset = hashesOffset + 4 * size;
+        weightsOffset = align8(offsetsOffset + 4 * (size + 1));
+        textOffset = weightsOffset + 8 * size;
+        if (textOffset + buffer.getInt(16) > buffer.limit()) {
+            throw new ResourceInitializationException("Truncated feature table.");
+        }
+        weights = new double[size];
+        for (int i = 0; i < size; ++i) {
+            weights[i] = buffer.getDouble(weightsOffset + 8 * i);
+        }
+    }
+
+    /**
+     * @param features features in id order, without duplicates
+     * @param weights  weight of each feature
+     */
+    public static FeatureTable build(List<String> features, double[] weights) {
+        int n = features.size();
+        byte[][] bytes = new byte[n][];
+        int textLength = 0;
+        for (int i = 0; i < n; ++i) {
+            bytes[i] = features.get(i).getBytes(UTF8);
+            textLength += bytes[i].length;
+        }
+        int capacity = 2;
+        while (capacity < 2 * n) {
+            capacity <<= 1;
+        }
+
+        int weightsOffset = align8(HEADER_SIZE + 4 * capacity + 4 * n + 4 * (n + 1));
+        ByteBuffer buffer = ByteBuffer.allocate(weightsOffset + 8 * n + textLength);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, n);
+        buffer.putInt(12, capacity);
+        buffer.putInt(16, textLength);
+        FeatureTable table = new FeatureTable(buffer);
+
+        int position = 0;
+        for (int i = 0; i < n; ++i) {
+            buffer.putInt(table.offsetsOffset + 4 * i, position);
+            buffer.putDouble(table.weightsOffset + 8 * i, weights[i]);
+            table.weights[i] = weights[i];
+            for (byte b : bytes[i]) {
+                buffer.put(table.textOffset + position++, b);
+            }
+        }
+        buffer.putInt(table.offsetsOffset + 4 * n, position);
+
+        for (int i = 0; i < n; ++i) {
+            String feature = features.get(i);
+            if (table.getIndex(feature) >= 0) {
+                throw new ResourceInitializationException("Duplicate feature " + feature);
+            }
+            int h = hash(feature, 0, feature.length());
+            buffer.putInt(table.hashesOffset + 4 * i, h);
+            int slot = h & table.mask;
+            while (buffer.getInt(table.slotsOffset + 4 * slot) != 0) {
+                slot = (slot + 1) & table.mask;
+            }
+            buffer.putInt(table.slotsOffset + 4 * slot, i + 1);
+        }
+        return table;
+    }
+
+    /**
+     * Maps a table written by write into memory, read only.
+     */
+    public static FeatureTable map(String fileName) throws ResourceInitializationException {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(fileName, "r");
+            FileChannel channel = file.getChannel();
+            // The mapping stays valid after the channel is closed.
+            return new FeatureTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new ResourceInitializationException("Failed to map feature table " + fileName, e);
+        } finally {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    public void write(String fileName) throws StoreException {
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(fileName);
+            ByteBuffer copy = buffer.duplicate();
+            copy.clear();
+            FileChannel channel = out.getChannel();
+            while (copy.hasRemaining()) {
+                channel.write(copy);
+            }
+            out.close();
+        } catch (IOException e) {
+            throw new StoreException("Failed to write feature table " + fileName, e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getIndex(CharSequence s) {
+        return getIndex(s, 0, s.length());
+    }
+
+    /**
+     * @return the id of the feature spelled by text from start, inclusive, to end, exclusive, or -1
+     */
+    public int getIndex(CharSequence text, int start, int end) {
+        int h = hash(text, start, end);
+        for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+            int id = buffer.getInt(slotsOffset + 4 * slot) - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (buffer.getInt(hashesOffset + 4 * id) == h && textEquals(id, text, start, end)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * @return the weight of feature id, or 0 if there is no such feature
+     */
+    public double getWeight(int id) {
+        return id < 0 || id >= size ? 0d : weights[id];
+    }
+
+    /**
+     * @return the text of feature id, or null if there is no such feature
+     */
+    public String getText(int id) {
+        if (id < 0 || id >= size) {
+            return null;
+        }
+        int from = buffer.getInt(offsetsOffset + 4 * id);
+        byte[] bytes = new byte[buffer.getInt(offsetsOffset + 4 * id + 4) - from];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = buffer.get(textOffset + from + i);
+        }
+        return new String(bytes, UTF8);
+    }
+
+    private boolean textEquals(int id, CharSequence text, int start, int end) {
+        int position = textOffset + buffer.getInt(offsetsOffset + 4 * id);
+        int limit = textOffset + buffer.getInt(offsetsOffset + 4 * id + 4);
+        for (int i = start; i < end; ++i) {
+            int cp = codePoint(text, i, end);
+            if (cp > 0xffff) {
+                ++i;
+            }
+            int length = utf8Length(cp);
+            if (position + length > limit) {
+                return false;
+            }
+            for (int k = 0; k < length; ++k) {
+                if (buffer.get(position++) != utf8Byte(cp, length, k)) {
+                    return false;
+                }
+            }
+        }
+        return position == limit;
+    }
+
+    /**
+     * FNV-1a hash of the UTF-8 bytes of text from start to end, computed from the characters.
+     */
+    private static int hash(CharSequence text, int start, int end) {
+        int h = 0x811c9dc5;
+        for (int i = start; i < end; ++i) {
+            int cp = codePoint(text, i, end);
+            if (cp > 0xffff) {
+                ++i;
+            }
+            int length = utf8Length(cp);
+            for (int k = 0; k < length; ++k) {
+                h = (h ^ (utf8Byte(cp, length, k) & 0xff)) * 0x01000193;
+            }
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the code point at i, or '?' for an unpaired surrogate, as String.getBytes encodes it
+     */
+    private static int codePoint(CharSequence text, int i, int end) {
+        char c = text.charAt(i);
+        if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+            return Character.toCodePoint(c, text.charAt(i + 1));
+        }
+        return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE ? '?' : c;
+    }
+
+    private static int utf8Length(int cp) {
+        return cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+    }
+
+    private static byte utf8Byte(int cp, int length, int k) {
+        if (length == 1) {
+            return (byte) cp;
+        }
+        if (k == 0) {
+            return (byte) ((0xf00 >> length) | (cp >> (6 * (length - 1))));
+        }
+        return (byte) (0x80 | ((cp >> (6 * (length - 1 - k))) & 0x3f));
+    }
+
+    private static int align8(int offset) {
+        return (offset + 7) & ~7;
+    }
+}
@@ -35,6 +35,7 @@ package com.groupon.nakala.core;
 import com.groupon.nakala.normalization.StringNormalizer;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -44,22 +45,28 @@ public class FeatureWeightTextRepresenter extends AbstractTextRepresenter implem
 
     @Override
     public SparseRepresentation represent(String text) {
-        SparseRepresentation rep = new SparseRepresentation(features.size());
+        return represent(getTokens(text));
+    }
+
+    @Override
+    public List<String> getTokens(String text) {
+        return new ArrayList<String>(tokenizer.getUniqueTokens(text, normalizers));
+    }
 
-        for (String word : tokenizer.getUniqueTokens(text, normalizers)) {
+    @Override
+    public SparseRepresentation represent(List<String> tokens) {
+        SparseVector.Builder builder = builder(features.size());
+
+        for (String word : tokens) {
             Feature feature = features.getFeature(word);
             if (feature == null) {
                 continue;
             }
-            rep.setEntry(feature.getIndex(), feature.getWeight());
+            builder.set(feature.getIndex(), feature.getWeight());
         }
 
         // Scale
-        if (scaler != null) {
-            rep = rep.scale(scaler);
-        }
-
-        return rep;
+        return new SparseRepresentation(builder.build(scaler));
     }
 
     @Override
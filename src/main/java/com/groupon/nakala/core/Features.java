@@ -34,23 +34,34 @@ package com.groupon.nakala.core;
 
 import com.groupon.nakala.analysis.Initializable;
 import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.exceptions.StoreException;
 import com.groupon.util.io.IoUtil;
 
 import java.io.*;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 /**
+ * Dictionary of features, read one per line with an optional tab separated weight (1 by default), giving each
+ * feature its line number as index. Features are kept in a FeatureTable, so lookups allocate nothing and
+ * getWeight(int) is a single read. With mapped_file, the features are memory mapped from a file written by
+ * writeMapped instead of being parsed.
+ *
  * @author npendar@groupon.com
  */
-public class Features implements Serializable, Initializable {
-    Map<String, Feature> word2feature;
-    String[] strings; // For reverse lookup
+public class Features implements Serializable, Initializable, SharedResource {
+    // The UID and fields of the class before FeatureTable, so features serialized by it still load.
+    private static final long serialVersionUID = -3923806191983537734L;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("word2feature", Map.class),
+            new ObjectStreamField("strings", String[].class)};
+
+    private transient FeatureTable table;
 
     @Override
     public void initialize(Parameters params) throws ResourceInitializationException {
-        if (params.contains(Constants.FILE_NAME)) {
+        if (params.contains(Constants.MAPPED_FILE)) {
+            table = FeatureTable.map(params.getString(Constants.MAPPED_FILE));
+        } else if (params.contains(Constants.FILE_NAME)) {
             initialize(params.getString(Constants.FILE_NAME));
         } else if (params.contains(Constants.RESOURCE)) {
             initialize(getClass(), params.getString(params.getString(Constants.RESOURCE)));
@@ -82,9 +93,9 @@ public class Features implements Serializable, Initializable {
     }
 
     public void initialize(Reader reader) {
-        word2feature = new HashMap<String, Feature>();
+        List<String> words = new ArrayList<String>();
+        double[] weights = new double[16];
         try {
-            int index = 0;
             for (String line : IoUtil.readLines(reader)) {
                 //Trim new line but not white space as space may be part of feature
                 while (line.length() > 0 && (line.endsWith("\n") || line.endsWith("\r"))) {
@@ -95,50 +106,63 @@ public class Features implements Serializable, Initializable {
                 if (pieces.length > 1) {
                     weight = Double.parseDouble(pieces[1]);
                 }
-                word2feature.put(pieces[0], new Feature(index++, weight));
+                if (words.size() == weights.length) {
+                    weights = Arrays.copyOf(weights, 2 * weights.length);
+                }
+                weights[words.size()] = weight;
+                words.add(pieces[0]);
             }
         } catch (IOException e) {
             throw new ResourceInitializationException("Loading features failed.", e);
         }
+        table = FeatureTable.build(words, weights);
+    }
 
-        strings = new String[word2feature.size()];
-        for (Map.Entry<String, Feature> entry : word2feature.entrySet()) {
-            strings[entry.getValue().getIndex()] = entry.getKey();
-        }
+    /**
+     * Writes the features to fileName in the form the mapped_file parameter maps into memory.
+     */
+    public void writeMapped(String fileName) throws StoreException {
+        table.write(fileName);
     }
 
     public int getIndex(String s) {
-        Feature f = word2feature.get(s);
-        return f == null ? -1 : f.getIndex();
+        return table.getIndex(s);
+    }
+
+    /**
+     * Looks up the feature spelled by the characters of text from start, inclusive, to end, exclusive, without
+     * creating a String.
+     *
+     * @return the index of the feature or -1 if there is no such feature
+     */
+    public int getIndex(CharSequence text, int start, int end) {
+        return table.getIndex(text, start, end);
     }
 
     public double getWeight(String s) {
-        Feature f = word2feature.get(s);
-        return f == null ? 0d : f.getWeight();
+        return table.getWeight(table.getIndex(s));
     }
 
     public double getWeight(int i) {
-        String text = getFeatureText(i);
-        return text == null ? 0d : getWeight(text);
+        return table.getWeight(i);
     }
 
     public Feature getFeature(String s) {
-        return word2feature.get(s);
+        int i = table.getIndex(s);
+        return i < 0 ? null : new Feature(i, table.getWeight(i));
     }
 
     public String getFeatureText(int i) {
-        if (i < 0 || i >= strings.length)
-            return null;
-        return strings[i];
+        return table.getText(i);
     }
 
     public int size() {
-        return strings.length;
+        return table.size();
     }
 
     @Override
     public String toString() {
-        return word2feature.toString();
+        return toMap().toString();
     }
 
     @Override
@@ -150,6 +174,43 @@ public class Features implements Serializable, Initializable {
     public boolean equals(Object o) {
         if (!(o instanceof Features)) return false;
         Features other = (Features) o;
-        return word2feature.equals(other.word2feature) && Arrays.equals(strings, other.strings);
+        if (size() != other.size()) return false;
+        for (int i = 0; i < size(); ++i) {
+            if (getWeight(i) != other.getWeight(i) || !getFeatureText(i).equals(other.getFeatureText(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<String, Feature> toMap() {
+        Map<String, Feature> map = new HashMap<String, Feature>();
+        for (int i = 0; i < size(); ++i) {
+            map.put(getFeatureText(i), new Feature(i, getWeight(i)));
+        }
+        return map;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        String[] strings = new String[size()];
+        for (int i = 0; i < strings.length; ++i) {
+            strings[i] = getFeatureText(i);
+        }
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("word2feature", toMap());
+        fields.put("strings", strings);
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        Map<String, Feature> word2feature = (Map<String, Feature>) fields.get("word2feature", null);
+        String[] strings = (String[]) fields.get("strings", null);
+        double[] weights = new double[strings.length];
+        for (int i = 0; i < strings.length; ++i) {
+            weights[i] = word2feature.get(strings[i]).getWeight();
+        }
+        table = FeatureTable.build(Arrays.asList(strings), weights);
     }
 }
@@ -0,0 +1,206 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.normalization.StringNormalizer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents text without a feature dictionary by hashing each normalized token, and optionally each run of up
+ * to ngrams consecutive tokens, into one of 2^hash_bits dimensions. A second bit of the hash picks the sign the
+ * term adds, so colliding terms tend to cancel out instead of piling up. Memory does not depend on the vocabulary
+ * and no feature selection pass is needed before training, at the cost of occasional collisions.
+ * <p/>
+ * Parameters: tokenizer and normalizers as for other representers; optional hash_bits (default 18, at most 30),
+ * ngrams (default 1), normalize_by_length and scaler.
+ *
+ * @author npendar@groupon.com
+ */
+public class HashingTextRepresenter extends AbstractTextRepresenter implements Serializable {
+    private static final long serialVersionUID = 3582745157373562351L;
+
+    public static final int DEFAULT_HASH_BITS = 18;
+    public static final int MAX_HASH_BITS = 30;
+
+    private static final ThreadLocal<TokenSpans> spans = new ThreadLocal<TokenSpans>() {
+        @Override
+        protected TokenSpans initialValue() {
+            return new TokenSpans();
+        }
+    };
+
+    private int hashBits = DEFAULT_HASH_BITS;
+    private int ngrams = 1;
+    private boolean normalizeByLength = false;
+
+    @Override
+    public void initialize(Parameters params) throws ResourceInitializationException {
+        super.initialize(params);
+        if (params.contains(Constants.HASH_BITS)) {
+            hashBits = params.getInt(Constants.HASH_BITS);
+            if (hashBits < 1 || hashBits > MAX_HASH_BITS) {
+                throw new ResourceInitializationException("hash_bits must be between 1 and " + MAX_HASH_BITS);
+            }
+        }
+        if (params.contains(Constants.NGRAMS)) {
+            ngrams = params.getInt(Constants.NGRAMS);
+            if (ngrams < 1) {
+                throw new ResourceInitializationException("ngrams must be >= 1");
+            }
+        }
+        if (params.contains(Constants.NORMALIZE_BY_LENGTH)) {
+            normalizeByLength = params.getBoolean(Constants.NORMALIZE_BY_LENGTH);
+        }
+    }
+
+    @Override
+    protected boolean usesFeatures() {
+        return false;
+    }
+
+    @Override
+    public int getDimension() {
+        return 1 << hashBits;
+    }
+
+    public int getHashBits() {
+        return hashBits;
+    }
+
+    public int getNgrams() {
+        return ngrams;
+    }
+
+    @Override
+    public SparseRepresentation represent(String text) {
+        if ((normalizers == null || normalizers.isEmpty()) && tokenizer instanceof OffsetTokenizer) {
+            // Without token normalization, tokens can be hashed directly from the text.
+            TokenSpans ts = spans.get();
+            ((OffsetTokenizer) tokenizer).tokenize(text, ts);
+            int[] hashes = new int[ts.size()];
+            for (int i = 0; i < hashes.length; ++i) {
+                hashes[i] = hash(text, ts.start(i), ts.end(i));
+            }
+            return represent(hashes);
+        }
+        return represent(getTokens(text));
+    }
+
+    @Override
+    public List<String> getTokens(String text) {
+        List<String> tokens = new ArrayList<String>();
+        TokenCursor cursor = AbstractTokenizerStream.open(tokenizer, text);
+        String tok;
+        while ((tok = cursor.next()) != null) {
+            tokens.add(normalize(tok));
+        }
+        return tokens;
+    }
+
+    @Override
+    public SparseRepresentation represent(List<String> tokens) {
+        int[] hashes = new int[tokens.size()];
+        for (int i = 0; i < hashes.length; ++i) {
+            String token = tokens.get(i);
+            hashes[i] = hash(token, 0, token.length());
+        }
+        return represent(hashes);
+    }
+
+    private SparseRepresentation represent(int[] tokenHashes) {
+        int mask = getDimension() - 1;
+        SparseVector.Builder builder = builder(getDimension());
+        for (int i = 0; i < tokenHashes.length; ++i) {
+            int h = tokenHashes[i];
+            for (int n = 1; n <= ngrams && i + n <= tokenHashes.length; ++n) {
+                if (n > 1) {
+                    h = (h ^ n) * 0x01000193 + tokenHashes[i + n - 1];
+                }
+                int bucket = mix(h);
+                // hash_bits is at most 30, so the top bit is independent of the index bits.
+                builder.add(bucket & mask, bucket < 0 ? -1 : 1);
+            }
+        }
+
+        if (!normalizeByLength || tokenHashes.length == 0) {
+            return new SparseRepresentation(builder.build(scaler));
+        }
+        SparseVector vector = builder.build().multiply(1d / tokenHashes.length);
+        if (scaler != null) {
+            vector = vector.scale(scaler);
+        }
+        return new SparseRepresentation(vector);
+    }
+
+    /**
+     * FNV-1a hash of the characters of s from start to end.
+     */
+    private static int hash(CharSequence s, int start, int end) {
+        int h = 0x811c9dc5;
+        for (int i = start; i < end; ++i) {
+            h = (h ^ s.charAt(i)) * 0x01000193;
+        }
+        return h;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    @Override
+    public TokenizerStream getTokenizer() {
+        return tokenizer;
+    }
+
+    @Override
+    public List<StringNormalizer> getNormalizers() {
+        return normalizers;
+    }
+
+    /**
+     * @return null; hashed dimensions have no feature dictionary
+     */
+    @Override
+    public Features getFeatures() {
+        return null;
+    }
+}
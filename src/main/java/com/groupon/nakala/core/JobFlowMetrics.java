@@ -0,0 +1,324 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.util.LatencyHistogram;
+import org.apache.log4j.Logger;
+import org.json.simple.JSONObject;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects per-stage latencies and queue depths of a job flow. Each thread records to its own histogram per
+ * stage, so instrumented calls cost two System.nanoTime() calls and a few uncontended atomic updates.
+ * Histograms of all threads are merged when reporting. Stages time one item per call, e.g. a document; timers
+ * time calls that handle a whole collection and only report their count and total time. Once reporting is started, a daemon thread samples the
+ * watched queues and periodically logs a summary and writes it as JSON to the metrics file, if one is set.
+ *
+ * @author npendar@groupon.com
+ */
+public class JobFlowMetrics {
+    private static final Logger logger = Logger.getLogger(JobFlowMetrics.class);
+
+    public static final int DEFAULT_REPORT_INTERVAL = 60;
+    private static final long SAMPLE_INTERVAL = 100L;
+
+    private final long startTime = System.nanoTime();
+    private final Map<String, Stage> stages = new LinkedHashMap<String, Stage>();
+    private final Map<String, QueueGauge> queues = new LinkedHashMap<String, QueueGauge>();
+
+    private Thread reporter;
+    private volatile boolean stopped;
+    private String metricsFile;
+
+    /**
+     * @return the stage with the given name, created on first use
+     */
+    public synchronized Stage getStage(String name) {
+        return getStage(name, true);
+    }
+
+    /**
+     * @return the timer with the given name, created on first use. Its percentiles are not reported.
+     */
+    public synchronized Stage getTimer(String name) {
+        return getStage(name, false);
+    }
+
+    private Stage getStage(String name, boolean percentiles) {
+        Stage stage = stages.get(name);
+        if (stage == null) {
+            stage = new Stage(percentiles);
+            stages.put(name, stage);
+        }
+        return stage;
+    }
+
+    /**
+     * Samples the size of the queue while reporting.
+     */
+    public synchronized void watchQueue(String name, Collection<?> queue) {
+        queues.put(name, new QueueGauge(queue));
+    }
+
+    /**
+     * Starts reporting every interval seconds. The summary is logged, and written as JSON to metricsFile unless
+     * it is null.
+     */
+    public synchronized void startReporting(final int interval, String metricsFile) {
+        if (reporter != null) {
+            return;
+        }
+        this.metricsFile = metricsFile;
+        reporter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long nextReport = System.currentTimeMillis() + interval * 1000L;
+                while (!stopped) {
+                    try {
+                        Thread.sleep(SAMPLE_INTERVAL);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    sampleQueues();
+                    if (System.currentTimeMillis() >= nextReport) {
+                        report();
+                        nextReport += interval * 1000L;
+                    }
+                }
+            }
+        }, "JobFlowMetrics reporter");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    /**
+     * Stops reporting and writes the final report.
+     */
+    public void stopReporting() {
+        Thread t;
+        synchronized (this) {
+            t = reporter;
+        }
+        if (t != null) {
+            stopped = true;
+            t.interrupt();
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        report();
+    }
+
+    private synchronized void sampleQueues() {
+        for (QueueGauge gauge : queues.values()) {
+            gauge.sample();
+        }
+    }
+
+    private void report() {
+        logger.info(getSummary());
+        if (metricsFile != null) {
+            try {
+                writeJson(metricsFile);
+            } catch (IOException e) {
+                logger.warn("Failed to write metrics to " + metricsFile, e);
+            }
+        }
+    }
+
+    /**
+     * Writes the JSON report to a temporary file first so that readers never see a partial report.
+     */
+    public void writeJson(String fileName) throws IOException {
+        File file = new File(fileName);
+        File tmp = new File(fileName + ".tmp");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+        try {
+            writer.write(toJson());
+        } finally {
+            writer.close();
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Failed to rename " + tmp + " to " + file);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized String toJson() {
+        double elapsed = (System.nanoTime() - startTime) / 1e9;
+        JSONObject json = new JSONObject();
+        json.put("elapsed_seconds", elapsed);
+
+        JSONObject stagesJson = new JSONObject();
+        for (Map.Entry<String, Stage> e : stages.entrySet()) {
+            LatencyHistogram h = e.getValue().getHistogram();
+            JSONObject stage = new JSONObject();
+            stage.put("count", h.getCount());
+            stage.put("total_seconds", h.getTotal() / 1e9);
+            stagesJson.put(e.getKey(), stage);
+            if (!e.getValue().percentiles) {
+                continue;
+            }
+            stage.put("per_second", elapsed > 0 ? h.getCount() / elapsed : 0d);
+            stage.put("mean_us", h.getMean() / 1e3);
+            stage.put("p50_us", h.getValueAtPercentile(50) / 1e3);
+            stage.put("p99_us", h.getValueAtPercentile(99) / 1e3);
+            stage.put("p999_us", h.getValueAtPercentile(99.9) / 1e3);
+            stage.put("max_us", h.getMax() / 1e3);
+        }
+        json.put("stages", stagesJson);
+
+        JSONObject queuesJson = new JSONObject();
+        for (Map.Entry<String, QueueGauge> e : queues.entrySet()) {
+            QueueGauge gauge = e.getValue();
+            JSONObject queue = new JSONObject();
+            queue.put("depth", gauge.queue.size());
+            queue.put("max_depth", gauge.maxDepth);
+            queue.put("mean_depth", gauge.samples == 0 ? 0d : gauge.totalDepth / (double) gauge.samples);
+            queuesJson.put(e.getKey(), queue);
+        }
+        json.put("queues", queuesJson);
+        return json.toJSONString();
+    }
+
+    public synchronized String getSummary() {
+        double elapsed = (System.nanoTime() - startTime) / 1e9;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Job flow metrics after %.1fs:", elapsed));
+        for (Map.Entry<String, Stage> e : stages.entrySet()) {
+            LatencyHistogram h = e.getValue().getHistogram();
+            if (!e.getValue().percentiles) {
+                sb.append(String.format("%n  %-12s %10d calls  total %8.1fs", e.getKey(), h.getCount(),
+                        h.getTotal() / 1e9));
+                continue;
+            }
+            sb.append(String.format("%n  %-12s %10d calls %10.1f/s  total %8.1fs  p50 %9.1fus  p99 %9.1fus  " +
+                    "p999 %9.1fus  max %9.1fus",
+                    e.getKey(), h.getCount(), elapsed > 0 ? h.getCount() / elapsed : 0d, h.getTotal() / 1e9,
+                    h.getValueAtPercentile(50) / 1e3, h.getValueAtPercentile(99) / 1e3,
+                    h.getValueAtPercentile(99.9) / 1e3, h.getMax() / 1e3));
+        }
+        for (Map.Entry<String, QueueGauge> e : queues.entrySet()) {
+            QueueGauge gauge = e.getValue();
+            sb.append(String.format("%n  %-12s depth %d, max %d, mean %.1f", e.getKey(), gauge.queue.size(),
+                    gauge.maxDepth, gauge.samples == 0 ? 0d : gauge.totalDepth / (double) gauge.samples));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Latencies of one stage. Use as
+     * <pre>
+     * long start = stage.start();
+     * ...
+     * stage.stop(start);
+     * </pre>
+     */
+    public static class Stage {
+        private final boolean percentiles;
+        private final List<LatencyHistogram> histograms = new CopyOnWriteArrayList<LatencyHistogram>();
+        private final ThreadLocal<LatencyHistogram> histogram = new ThreadLocal<LatencyHistogram>() {
+            @Override
+            protected LatencyHistogram initialValue() {
+                LatencyHistogram h = new LatencyHistogram();
+                histograms.add(h);
+                return h;
+            }
+        };
+
+        private Stage(boolean percentiles) {
+            this.percentiles = percentiles;
+        }
+
+        public long start() {
+            return System.nanoTime();
+        }
+
+        public void stop(long start) {
+            record(System.nanoTime() - start);
+        }
+
+        /**
+         * Records a call that took the given nanoseconds.
+         */
+        public void record(long nanos) {
+            histogram.get().record(nanos);
+        }
+
+        /**
+         * Records a call that handled n items as n calls of equal latency.
+         */
+        public void stop(long start, int n) {
+            if (n > 0) {
+                histogram.get().record((System.nanoTime() - start) / n, n);
+            }
+        }
+
+        /**
+         * @return the latencies recorded by all threads
+         */
+        public LatencyHistogram getHistogram() {
+            LatencyHistogram merged = new LatencyHistogram();
+            for (LatencyHistogram h : histograms) {
+                merged.merge(h);
+            }
+            return merged;
+        }
+    }
+
+    private static class QueueGauge {
+        final Collection<?> queue;
+        long samples;
+        long totalDepth;
+        int maxDepth;
+
+        QueueGauge(Collection<?> queue) {
+            this.queue = queue;
+        }
+
+        void sample() {
+            int depth = queue.size();
+            ++samples;
+            totalDepth += depth;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+    }
+}
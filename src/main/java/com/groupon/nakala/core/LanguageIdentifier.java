@@ -37,6 +37,7 @@ import opennlp.tools.doccat.DocumentCategorizerME;
 import opennlp.tools.util.InvalidFormatException;
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
 
 /**
  * @author npendar@groupon.com
@@ -50,7 +51,12 @@ public class LanguageIdentifier {
 
     public static LanguageIdentifier getInstance() throws InvalidFormatException, IOException {
         LanguageIdentifier li = new LanguageIdentifier();
-        DoccatModel model = new DoccatModel(li.getClass().getResourceAsStream("/nakala/lang.model"));
+        DoccatModel model = ResourceRegistry.get(DoccatModel.class, "/nakala/lang.model", new Callable<DoccatModel>() {
+            @Override
+            public DoccatModel call() throws IOException {
+                return new DoccatModel(LanguageIdentifier.class.getResourceAsStream("/nakala/lang.model"));
+            }
+        });
         li.doccat = new DocumentCategorizerME(model);
         return li;
     }
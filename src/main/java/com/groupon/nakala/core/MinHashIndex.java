@@ -0,0 +1,441 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.analysis.Initializable;
+import com.groupon.nakala.db.RecordIo;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.exceptions.StoreException;
+import com.groupon.nakala.exceptions.TextminingException;
+import com.groupon.util.io.IoUtil;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * MinHash signatures of shingle sets (see ShingleHashes) with a banded locality sensitive hashing index over them.
+ * Each signature is cut into bands of rows values; two documents become candidates when any band is identical,
+ * which happens with probability 1 - (1 - J^rows)^bands for Jaccard similarity J. The default 40 bands of 3 rows
+ * are shaped for the match keys of places, where the same place written two ways is often only 0.4 similar: pairs
+ * of similarity 0.5 or more are found 99% of the time or more, pairs of 0.4 about 93% of the time, pairs of 0.3
+ * about 66% of the time and pairs of 0.2 about 27% of the time. Fewer bands of more rows find fewer unrelated
+ * pairs but miss more matches. The fraction of equal signature values estimates the Jaccard similarity of a
+ * candidate.
+ * <p/>
+ * Documents are added in bulk, from any number of threads, and become searchable when build is called. Each band
+ * is a sorted array of (band hash, document) pairs, so the index takes two longs per band and document in memory
+ * and on disk. A built index does not change while it is queried and can be shared by threads. File format, all
+ * numbers big endian:
+ * <pre>
+ * header:     int MAGIC, int VERSION, int bands, int rows, long seed, int number of documents
+ * documents:  string[] ids, int[] signatures, one after the other
+ * bands:      long[] sorted (band hash, document) pairs of each band
+ * </pre>
+ * Can be initialized from an index file with file_name.
+ *
+ * @author npendar@groupon.com
+ */
+public class MinHashIndex implements Initializable, SharedResource {
+    public static final int DEFAULT_BANDS = 40;
+    public static final int DEFAULT_ROWS = 3;
+    public static final long DEFAULT_SEED = 0x2545f4914f6cdd1dL;
+
+    static final int MAGIC = 0x4e4b4d48;
+    static final int VERSION = 1;
+
+    private int bands;
+    private int rows;
+    private long seed;
+    private long[] hashSeeds;
+
+    private volatile Snapshot built;
+
+    // Documents added since the last build.
+    private final List<String> pendingIds = new ArrayList<String>();
+    private int[] pendingSignatures = new int[0];
+
+    public MinHashIndex() {
+        this(DEFAULT_BANDS, DEFAULT_ROWS, DEFAULT_SEED);
+    }
+
+    public MinHashIndex(int bands, int rows, long seed) {
+        setShape(bands, rows, seed);
+        built = new Snapshot(new String[0], new int[0], new long[bands][0]);
+    }
+
+    private void setShape(int bands, int rows, long seed) {
+        if (bands < 1 || rows < 1) {
+            throw new TextminingException("MinHash index needs at least one band of one row.");
+        }
+        this.bands = bands;
+        this.rows = rows;
+        this.seed = seed;
+        Random random = new Random(seed);
+        hashSeeds = new long[bands * rows];
+        for (int i = 0; i < hashSeeds.length; ++i) {
+            hashSeeds[i] = random.nextLong();
+        }
+    }
+
+    @Override
+    public void initialize(Parameters params) throws ResourceInitializationException {
+        if (params.contains(Constants.FILE_NAME)) {
+            load(params.getString(Constants.FILE_NAME));
+        } else {
+            throw new ResourceInitializationException("No file name specified for MinHash index.");
+        }
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    public int getBands() {
+        return bands;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getNumberOfHashes() {
+        return hashSeeds.length;
+    }
+
+    /**
+     * @return number of searchable documents
+     */
+    public int size() {
+        return built.ids.length;
+    }
+
+    public String getId(int document) {
+        return built.ids[document];
+    }
+
+    /**
+     * @param shingles distinct shingle hashes
+     * @return the MinHash signature of the shingles
+     */
+    public int[] signature(long[] shingles) {
+        int[] signature = new int[hashSeeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (long shingle : shingles) {
+            for (int i = 0; i < hashSeeds.length; ++i) {
+                int h = (int) (mix(shingle ^ hashSeeds[i]) >>> 33);
+                if (h < signature[i]) {
+                    signature[i] = h;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Adds a document, searchable after the next build. Documents without shingles are ignored, since they
+     * would all look alike.
+     */
+    public void add(String id, long[] shingles) {
+        if (shingles.length > 0) {
+            add(id, signature(shingles));
+        }
+    }
+
+    public synchronized void add(String id, int[] signature) {
+        checkSignature(signature);
+        int offset = pendingIds.size() * signature.length;
+        if (offset + signature.length > pendingSignatures.length) {
+            pendingSignatures = Arrays.copyOf(pendingSignatures,
+                    Math.max(offset + signature.length, 2 * pendingSignatures.length));
+        }
+        System.arraycopy(signature, 0, pendingSignatures, offset, signature.length);
+        pendingIds.add(id);
+    }
+
+    /**
+     * Makes the documents added so far searchable. Queries running meanwhile keep seeing the previous state.
+     */
+    public synchronized void build() {
+        if (pendingIds.isEmpty()) {
+            return;
+        }
+        Snapshot old = built;
+        int k = hashSeeds.length;
+        int n = old.ids.length + pendingIds.size();
+        String[] ids = Arrays.copyOf(old.ids, n);
+        for (int i = old.ids.length; i < n; ++i) {
+            ids[i] = pendingIds.get(i - old.ids.length);
+        }
+        int[] signatures = Arrays.copyOf(old.signatures, n * k);
+        System.arraycopy(pendingSignatures, 0, signatures, old.signatures.length, pendingIds.size() * k);
+
+        long[][] buckets = new long[bands][n];
+        for (int b = 0; b < bands; ++b) {
+            for (int d = 0; d < n; ++d) {
+                buckets[b][d] = ((long) bandHash(signatures, d * k, b) << 32) | d;
+            }
+            Arrays.sort(buckets[b]);
+        }
+
+        built = new Snapshot(ids, signatures, buckets);
+        pendingIds.clear();
+        pendingSignatures = new int[0];
+    }
+
+    /**
+     * @param shingles      distinct shingle hashes
+     * @param minSimilarity smallest estimated Jaccard similarity of the candidates returned
+     * @return candidates sharing at least one band with the shingles, most similar first
+     */
+    public List<Candidate> query(long[] shingles, double minSimilarity) {
+        if (shingles.length == 0) {
+            return Collections.emptyList();
+        }
+        return query(signature(shingles), minSimilarity);
+    }
+
+    public List<Candidate> query(int[] signature, double minSimilarity) {
+        checkSignature(signature);
+        Snapshot index = built;
+        int k = hashSeeds.length;
+        Set<Integer> seen = new HashSet<Integer>();
+        List<Candidate> candidates = new ArrayList<Candidate>();
+        for (int b = 0; b < bands; ++b) {
+            long[] bucket = index.buckets[b];
+            long key = bandHash(signature, 0, b);
+            for (int i = lowerBound(bucket, key << 32); i < bucket.length && bucket[i] >> 32 == key; ++i) {
+                int d = (int) bucket[i];
+                if (seen.add(d)) {
+                    double similarity = similarity(signature, 0, index.signatures, d * k, k);
+                    if (similarity >= minSimilarity) {
+                        candidates.add(new Candidate(d, index.ids[d], similarity));
+                    }
+                }
+            }
+        }
+        Collections.sort(candidates);
+        return candidates;
+    }
+
+    /**
+     * @return estimated Jaccard similarity of the documents with the two signatures
+     */
+    public double estimateSimilarity(int[] a, int[] b) {
+        checkSignature(a);
+        checkSignature(b);
+        return similarity(a, 0, b, 0, a.length);
+    }
+
+    private static double similarity(int[] a, int aOffset, int[] b, int bOffset, int k) {
+        int equal = 0;
+        for (int i = 0; i < k; ++i) {
+            if (a[aOffset + i] == b[bOffset + i]) {
+                ++equal;
+            }
+        }
+        return equal / (double) k;
+    }
+
+    private int bandHash(int[] signatures, int offset, int band) {
+        long h = band + 1;
+        for (int r = band * rows, end = r + rows; r < end; ++r) {
+            h = (h + signatures[offset + r]) * 0x9e3779b97f4a7c15L;
+        }
+        return (int) (mix(h) >>> 32);
+    }
+
+    private static int lowerBound(long[] a, long key) {
+        int low = 0;
+        int high = a.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (a[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private void checkSignature(int[] signature) {
+        if (signature.length != hashSeeds.length) {
+            throw new TextminingException("Signature has " + signature.length + " values, index uses " +
+                    hashSeeds.length);
+        }
+    }
+
+    /**
+     * Writes the built part of the index to fileName.
+     */
+    public void save(String fileName) throws StoreException {
+        Snapshot index = built;
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(IoUtil.output(fileName), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(bands);
+            out.writeInt(rows);
+            out.writeLong(seed);
+            out.writeInt(index.ids.length);
+            for (String id : index.ids) {
+                RecordIo.writeString(out, id);
+            }
+            for (int value : index.signatures) {
+                out.writeInt(value);
+            }
+            for (long[] bucket : index.buckets) {
+                for (long entry : bucket) {
+                    out.writeLong(entry);
+                }
+            }
+            out.close();
+        } catch (IOException e) {
+            throw new StoreException("Failed to save MinHash index to " + fileName, e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Replaces the contents of this index with the index saved in fileName.
+     */
+    public synchronized void load(String fileName) throws ResourceInitializationException {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(IoUtil.input(fileName), 1 << 16));
+            if (in.readInt() != MAGIC) {
+                throw new ResourceInitializationException(fileName + " is not a MinHash index.");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new ResourceInitializationException("Unsupported MinHash index version " + version);
+            }
+            setShape(in.readInt(), in.readInt(), in.readLong());
+            int n = in.readInt();
+            String[] ids = new String[n];
+            for (int i = 0; i < n; ++i) {
+                ids[i] = RecordIo.readString(in);
+            }
+            int[] signatures = new int[n * hashSeeds.length];
+            for (int i = 0; i < signatures.length; ++i) {
+                signatures[i] = in.readInt();
+            }
+            long[][] buckets = new long[bands][n];
+            for (long[] bucket : buckets) {
+                for (int i = 0; i < n; ++i) {
+                    bucket[i] = in.readLong();
+                }
+            }
+            pendingIds.clear();
+            pendingSignatures = new int[0];
+            built = new Snapshot(ids, signatures, buckets);
+        } catch (IOException e) {
+            throw new ResourceInitializationException("Failed to load MinHash index " + fileName, e);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /**
+     * A document of the index found by a query.
+     */
+    public static final class Candidate implements Comparable<Candidate> {
+        private final int document;
+        private final String id;
+        private final double similarity;
+
+        Candidate(int document, String id, double similarity) {
+            this.document = document;
+            this.id = id;
+            this.similarity = similarity;
+        }
+
+        public int getDocument() {
+            return document;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return estimated Jaccard similarity to the query
+         */
+        public double getSimilarity() {
+            return similarity;
+        }
+
+        @Override
+        public int compareTo(Candidate o) {
+            int c = Double.compare(o.similarity, similarity);
+            return c != 0 ? c : document - o.document;
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + similarity;
+        }
+    }
+
+    private static final class Snapshot {
+        final String[] ids;
+        final int[] signatures;
+        final long[][] buckets;
+
+        Snapshot(String[] ids, int[] signatures, long[][] buckets) {
+            this.ids = ids;
+            this.signatures = signatures;
+            this.buckets = buckets;
+        }
+    }
+}
@@ -32,6 +32,7 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.groupon.nakala.core;
 
+import com.groupon.nakala.analysis.Analysis;
 import com.groupon.nakala.analysis.Analyzer;
 import com.groupon.nakala.db.CollectionReader;
 import com.groupon.nakala.db.DataStore;
@@ -42,18 +43,34 @@ import com.groupon.util.io.LogWriter;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
+ * Runs a job flow as a three stage pipeline: one thread reads the collection, one thread per analyzer
+ * analyzes, and one thread stores the analyses. Stages are connected by bounded queues, so a slow stage
+ * blocks the stage feeding it instead of letting work pile up in memory.
+ *
  * @author npendar@groupon.com
  */
 public class MultiThreadedJobFlow {
     protected static final Logger logger = Logger.getLogger(MultiThreadedJobFlow.class);
 
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
     protected CollectionReader collectionReader;
     protected DataStore[] dataStores;
     protected Analyzer[] analyzers;
 
     protected int numberOfThreads = 1;
+    protected int queueSize = DEFAULT_QUEUE_SIZE;
+    protected int batchSize = DEFAULT_BATCH_SIZE;
     protected Progress progress;
+    protected JobFlowMetrics metrics;
+    protected int metricsInterval = JobFlowMetrics.DEFAULT_REPORT_INTERVAL;
+    protected String metricsFile;
 
     public MultiThreadedJobFlow(CollectionReader collectionReader,
                                 Analyzer[] analyzers,
@@ -66,37 +83,115 @@ public class MultiThreadedJobFlow {
         this.numberOfThreads = analyzers.length;
     }
 
+    /**
+     * @param queueSize maximum number of items waiting between two stages of the pipeline
+     */
+    public void setQueueSize(int queueSize) {
+        if (queueSize < 1) {
+            throw new TextminingException("Queue size must be >= 1");
+        }
+        this.queueSize = queueSize;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @param batchSize maximum number of waiting items an analyzer thread takes at once
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new TextminingException("Batch size must be >= 1");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Measures the latency of each stage and the depth of the queues, and reports them every metricsInterval
+     * seconds and at the end of the run.
+     *
+     * @param metricsFile file the report is written to as JSON, or null to only log it
+     */
+    public void enableMetrics(int metricsInterval, String metricsFile) {
+        if (metricsInterval < 1) {
+            throw new TextminingException("Metrics interval must be >= 1");
+        }
+        this.metrics = new JobFlowMetrics();
+        this.metricsInterval = metricsInterval;
+        this.metricsFile = metricsFile;
+    }
+
+    public JobFlowMetrics getMetrics() {
+        return metrics;
+    }
+
     public void process() throws TextminingException {
         progress = new Progress("Performing analysis", collectionReader.getSize());
-        Thread[] threads = new Thread[numberOfThreads];
         TextProgressListener tpl = new TextProgressListener(new LogWriter(logger, Level.INFO));
         tpl.setWholeNumbers(true);
         tpl.setUpdateFrequency(1000L);
-        progress.setAutoStart();
+        progress.start();
+
+        BlockingQueue<Analyzable> inputQueue = new ArrayBlockingQueue<Analyzable>(queueSize);
+        BlockingQueue<Analysis> outputQueue = new ArrayBlockingQueue<Analysis>(queueSize);
+        AtomicInteger processed = new AtomicInteger();
 
+        PipelineStage[] stages = new PipelineStage[numberOfThreads + 2];
+        stages[0] = new RunnableCollectionReader(collectionReader, inputQueue, numberOfThreads);
         for (int i = 0; i < numberOfThreads; ++i) {
-            Analyzer a = analyzers[i];
-            threads[i] = new Thread(new RunnableTextMiner(a, collectionReader, dataStores));
+            stages[i + 1] = new RunnableTextMiner(analyzers[i], inputQueue, outputQueue, processed, batchSize);
+        }
+        stages[numberOfThreads + 1] = new RunnableAnalysisWriter(outputQueue, dataStores, numberOfThreads);
+
+        if (metrics != null) {
+            for (PipelineStage stage : stages) {
+                stage.setMetrics(metrics);
+            }
+            metrics.watchQueue("input_queue", inputQueue);
+            metrics.watchQueue("output_queue", outputQueue);
+            metrics.startReporting(metricsInterval, metricsFile);
+        }
+
+        logger.debug("Starting pipeline with " + numberOfThreads + " analyzer threads, queue size " + queueSize +
+                " and batch size " + batchSize);
+        Thread[] threads = new Thread[stages.length];
+        for (int i = 0; i < stages.length; ++i) {
+            threads[i] = new Thread(stages[i]);
             threads[i].start();
         }
 
+        Throwable failure = null;
         int nAlive = threads.length;
         while (nAlive > 0) {
             for (int i = 0; i < threads.length; ++i) {
                 if (threads[i] != null) {
                     try {
                         threads[i].join(1000L);
+                        progress.advanceTo(processed.get());
                         tpl.progressUpdated(progress);
                         if (!threads[i].isAlive()) {
                             threads[i] = null;
                             logger.debug("Thread finished...");
                             --nAlive;
-                        }
 
+                            if (failure == null && stages[i].getFailure() != null) {
+                                // One stage failed. Stop the others so nobody blocks on a queue forever.
+                                failure = stages[i].getFailure();
+                                for (Thread t : threads) {
+                                    if (t != null) t.interrupt();
+                                }
+                            }
+                        }
                     } catch (InterruptedException e) {
                     }
                 }
             }
+            logger.trace("Input queue: " + inputQueue.size() + ", output queue: " + outputQueue.size());
         }
         progress.stop();
         tpl.progressUpdated(progress);
@@ -105,6 +200,13 @@ public class MultiThreadedJobFlow {
         for (DataStore ds : dataStores) {
             ds.close();
         }
+        if (metrics != null) {
+            metrics.stopReporting();
+        }
+
+        if (failure != null) {
+            throw new TextminingException("Job flow failed.", failure);
+        }
         logger.debug("Done!");
     }
 
@@ -52,9 +52,13 @@ import java.util.Map;
 public class MultiThreadedJobFlowSpecs extends SimpleJobFlowSpecs {
     private static final String ANALYZER = "analyzer";
     private static final String NUMBER_OF_THREADS = "number_of_threads";
+    private static final String QUEUE_SIZE = "queue_size";
+    private static final String BATCH_SIZE = "batch_size";
     private static final String definitionFile = "/nakala/multithreadedJobFlowSpecsDefinition.yml";
 
     private Analyzer[] analyzers;
+    private int queueSize = MultiThreadedJobFlow.DEFAULT_QUEUE_SIZE;
+    private int batchSize = MultiThreadedJobFlow.DEFAULT_BATCH_SIZE;
 
     @Override
     public void initialize(InputStream inputStream) throws ResourceInitializationException {
@@ -76,6 +80,23 @@ public class MultiThreadedJobFlowSpecs extends SimpleJobFlowSpecs {
             int numberOfThreads = (Integer) specs.get(NUMBER_OF_THREADS);
 
             logger.debug("Number of threads: " + numberOfThreads);
+
+            if (specs.containsKey(QUEUE_SIZE)) {
+                queueSize = (Integer) specs.get(QUEUE_SIZE);
+                if (queueSize < 1) {
+                    throw new ResourceInitializationException(QUEUE_SIZE + " must be >= 1");
+                }
+            }
+            logger.debug("Queue size: " + queueSize);
+
+            if (specs.containsKey(BATCH_SIZE)) {
+                batchSize = (Integer) specs.get(BATCH_SIZE);
+                if (batchSize < 1) {
+                    throw new ResourceInitializationException(BATCH_SIZE + " must be >= 1");
+                }
+            }
+            logger.debug("Batch size: " + batchSize);
+            parseMetrics(specs);
             logger.debug("Initializing collection reader.");
 
             collectionReader = (CollectionReader) parseSpecs(
@@ -113,4 +134,12 @@ public class MultiThreadedJobFlowSpecs extends SimpleJobFlowSpecs {
     public Analyzer[] getAnalyzers() {
         return analyzers;
     }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
 }
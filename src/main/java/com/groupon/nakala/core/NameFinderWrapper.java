@@ -42,6 +42,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * @author npendar@groupon.com
@@ -100,9 +101,15 @@ public final class NameFinderWrapper {
     }
 
     @SuppressWarnings("rawtypes")
-    private static NameFinderME nerFromFile(Class c, String modelFile) throws InvalidFormatException, IOException {
-        InputStream in = c.getResourceAsStream(modelFile);
-        TokenNameFinderModel model = new TokenNameFinderModel(in);
+    private static NameFinderME nerFromFile(final Class c, final String modelFile) throws InvalidFormatException, IOException {
+        TokenNameFinderModel model = ResourceRegistry.get(TokenNameFinderModel.class, modelFile,
+                new Callable<TokenNameFinderModel>() {
+                    @Override
+                    public TokenNameFinderModel call() throws IOException {
+                        InputStream in = c.getResourceAsStream(modelFile);
+                        return new TokenNameFinderModel(in);
+                    }
+                });
         return new NameFinderME(model);
     }
 
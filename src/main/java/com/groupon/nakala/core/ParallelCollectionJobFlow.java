@@ -0,0 +1,226 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.analysis.AnalysisCollector;
+import com.groupon.nakala.analysis.ParallelCollectionAnalyzer;
+import com.groupon.nakala.analysis.PartialResult;
+import com.groupon.nakala.db.CollectionReader;
+import com.groupon.nakala.db.SplittableCollectionReader;
+import com.groupon.nakala.exceptions.TextminingException;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs a parallel collection analyzer over a collection. A splittable collection reader is split into one
+ * partition per thread. Otherwise one thread reads the collection into a bounded queue and each of the
+ * partition threads analyzes whatever it takes from that queue. The partial results are merged pairwise, in
+ * parallel, and the merged result is completed by the analyzer. With metrics, reading and analysis are timed per
+ * item and merging and completion as a whole.
+ *
+ * @author npendar@groupon.com
+ */
+public class ParallelCollectionJobFlow implements MetricsAware {
+    protected static final Logger logger = Logger.getLogger(ParallelCollectionJobFlow.class);
+
+    protected CollectionReader collectionReader;
+    protected ParallelCollectionAnalyzer analyzer;
+    protected int parallelism;
+    protected int queueSize = MultiThreadedJobFlow.DEFAULT_QUEUE_SIZE;
+    protected JobFlowMetrics metrics;
+
+    public ParallelCollectionJobFlow(CollectionReader collectionReader,
+                                     ParallelCollectionAnalyzer analyzer,
+                                     int parallelism) {
+        if (parallelism < 1) {
+            throw new TextminingException("Parallelism must be >= 1");
+        }
+        this.collectionReader = collectionReader;
+        this.analyzer = analyzer;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param queueSize maximum number of items read but not yet taken by a partition thread
+     */
+    public void setQueueSize(int queueSize) {
+        if (queueSize < 1) {
+            throw new TextminingException("Queue size must be >= 1");
+        }
+        this.queueSize = queueSize;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @param metrics collects the latencies of reading, analysis, merging and completion, or null
+     */
+    @Override
+    public void setMetrics(JobFlowMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public AnalysisCollector process() throws TextminingException {
+        PipelineStage[] stages;
+        if (collectionReader instanceof SplittableCollectionReader) {
+            List<Iterable<Analyzable>> splits = ((SplittableCollectionReader) collectionReader).split(parallelism);
+            stages = new PipelineStage[splits.size()];
+            for (int i = 0; i < stages.length; ++i) {
+                stages[i] = new RunnablePartitionAnalyzer(analyzer, splits.get(i));
+            }
+            logger.debug("Analyzing " + stages.length + " splits");
+        } else {
+            BlockingQueue<Analyzable> inputQueue = new ArrayBlockingQueue<Analyzable>(queueSize);
+            stages = new PipelineStage[parallelism + 1];
+            stages[0] = new RunnableCollectionReader(collectionReader, inputQueue, parallelism);
+            for (int i = 0; i < parallelism; ++i) {
+                stages[i + 1] = new RunnablePartitionAnalyzer(analyzer, inputQueue);
+            }
+            logger.debug("Analyzing " + parallelism + " partitions with queue size " + queueSize);
+            if (metrics != null) {
+                metrics.watchQueue("input_queue", inputQueue);
+            }
+        }
+        for (PipelineStage stage : stages) {
+            stage.setMetrics(metrics);
+        }
+
+        Thread[] threads = new Thread[stages.length];
+        for (int i = 0; i < stages.length; ++i) {
+            threads[i] = new Thread(stages[i]);
+            threads[i].start();
+        }
+
+        Throwable failure = null;
+        int nAlive = threads.length;
+        while (nAlive > 0) {
+            for (int i = 0; i < threads.length; ++i) {
+                if (threads[i] != null) {
+                    try {
+                        threads[i].join(1000L);
+                        if (!threads[i].isAlive()) {
+                            threads[i] = null;
+                            --nAlive;
+
+                            if (failure == null && stages[i].getFailure() != null) {
+                                // One stage failed. Stop the others so nobody blocks on the queue forever.
+                                failure = stages[i].getFailure();
+                                for (Thread t : threads) {
+                                    if (t != null) t.interrupt();
+                                }
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                    }
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw new TextminingException("Job flow failed.", failure);
+        }
+
+        List<PartialResult> partials = new ArrayList<PartialResult>(parallelism);
+        for (PipelineStage stage : stages) {
+            if (stage instanceof RunnablePartitionAnalyzer) {
+                partials.add(((RunnablePartitionAnalyzer) stage).getResult());
+            }
+        }
+
+        logger.debug("Merging " + partials.size() + " partial results.");
+        JobFlowMetrics.Stage merge = metrics == null ? null : metrics.getTimer("merge");
+        long start = merge == null ? 0L : merge.start();
+        PartialResult merged = merge(partials);
+        if (merge != null) {
+            merge.stop(start);
+        }
+
+        JobFlowMetrics.Stage complete = metrics == null ? null : metrics.getTimer("complete");
+        start = complete == null ? 0L : complete.start();
+        AnalysisCollector result = analyzer.complete(merged);
+        if (complete != null) {
+            complete.stop(start);
+        }
+        return result;
+    }
+
+    /**
+     * Merges the partial results as a binary tree: each round merges disjoint pairs in parallel, halving the
+     * number of partial results, so the merge takes log2(parallelism) rounds instead of parallelism - 1.
+     */
+    protected PartialResult merge(List<PartialResult> partials) throws TextminingException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, partials.size() / 2));
+        try {
+            while (partials.size() > 1) {
+                List<Future<PartialResult>> merged = new ArrayList<Future<PartialResult>>(partials.size() / 2);
+                for (int i = 0; i + 1 < partials.size(); i += 2) {
+                    final PartialResult left = partials.get(i);
+                    final PartialResult right = partials.get(i + 1);
+                    merged.add(executor.submit(new Callable<PartialResult>() {
+                        @Override
+                        public PartialResult call() {
+                            left.merge(right);
+                            return left;
+                        }
+                    }));
+                }
+
+                List<PartialResult> next = new ArrayList<PartialResult>(merged.size() + 1);
+                for (Future<PartialResult> f : merged) {
+                    next.add(f.get());
+                }
+                if (partials.size() % 2 == 1) {
+                    next.add(partials.get(partials.size() - 1));
+                }
+                partials = next;
+            }
+        } catch (InterruptedException e) {
+            throw new TextminingException("Interrupted while merging partial results.", e);
+        } catch (ExecutionException e) {
+            throw new TextminingException("Merging partial results failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return partials.get(0);
+    }
+
+    public void setLogLevel(Level l) {
+        logger.setLevel(l);
+    }
+}
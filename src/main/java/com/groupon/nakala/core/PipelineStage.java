@@ -0,0 +1,95 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.analysis.Analysis;
+import com.groupon.nakala.db.DataStore;
+import com.groupon.nakala.exceptions.StoreException;
+import org.apache.log4j.Logger;
+
+/**
+ * Base class for the reader, analyzer and writer stages of a multithreaded job flow.
+ * A stage that fails records the cause so the job flow can stop the rest of the pipeline.
+ *
+ * @author npendar@groupon.com
+ */
+public abstract class PipelineStage implements Runnable {
+    protected static final Logger logger = Logger.getLogger(PipelineStage.class);
+
+    // Marks the end of the input queue. One is queued per analyzer thread.
+    protected static final Analyzable END_OF_INPUT = new Analyzable() {
+        @Override
+        public Analysis getAnalysis() {
+            return null;
+        }
+
+        @Override
+        public void setAnalysis(Analysis a) {
+        }
+    };
+
+    // Marks the end of the output of one analyzer thread.
+    protected static final Analysis END_OF_OUTPUT = new Analysis() {
+        @Override
+        public void store(DataStore ds) throws StoreException {
+        }
+    };
+
+    private volatile Throwable failure;
+    protected JobFlowMetrics metrics;
+
+    /**
+     * @param metrics collects the latencies of this stage, or null to not measure them
+     */
+    public void setMetrics(JobFlowMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public final void run() {
+        try {
+            process();
+        } catch (InterruptedException e) {
+            logger.debug(getClass().getSimpleName() + " interrupted.");
+        } catch (Throwable t) {
+            logger.error(getClass().getSimpleName() + " failed.", t);
+            failure = t;
+        }
+    }
+
+    protected abstract void process() throws InterruptedException;
+
+    public Throwable getFailure() {
+        return failure;
+    }
+}
@@ -38,6 +38,7 @@ import opennlp.tools.postag.POSTaggerME;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * @author npendar@groupon.com
@@ -54,7 +55,13 @@ public final class PosTaggerWrapper {
         PosTaggerWrapper t = new PosTaggerWrapper();
         String sep = File.separator;
         String taggerModelFile = sep + "nakala" + sep + "opennlp_models" + sep + "en-pos-maxent.bin";
-        t.tagger = new POSTaggerME(new POSModel(t.getClass().getResourceAsStream(taggerModelFile)));
+        final String modelFile = taggerModelFile;
+        t.tagger = new POSTaggerME(ResourceRegistry.get(POSModel.class, modelFile, new Callable<POSModel>() {
+            @Override
+            public POSModel call() throws IOException {
+                return new POSModel(PosTaggerWrapper.class.getResourceAsStream(modelFile));
+            }
+        }));
         return t;
     }
 
@@ -36,43 +36,163 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
+ * Tokenizer returning the matches of a regular expression, \w+ by default. The default pattern is matched
+ * by a hand-written scanner rather than the regex engine. One instance can be shared by threads through open
+ * and tokenize; setText and next keep a cursor in the instance and are for single threaded use.
+ *
  * @author npendar@groupon.com
  */
-public final class RegexpTokenizerStream extends AbstractTokenizerStream {
+public final class RegexpTokenizerStream extends AbstractTokenizerStream implements CursorTokenizer, OffsetTokenizer {
+    private static final String WORD_PATTERN = "\\w+";
 
     private Pattern pat;
-    private transient String text = "";
-    private transient int offset = 0;
-    private transient Matcher m;
+    private transient Boolean words;
+    private transient TokenCursor cursor;
 
     public RegexpTokenizerStream() {
-        pat = Pattern.compile("\\w+");
-        m = pat.matcher(text);
+        this(WORD_PATTERN);
     }
 
     public RegexpTokenizerStream(String regexp) {
         pat = Pattern.compile(regexp);
-        m = pat.matcher(text);
     }
 
     public void setText(final String s) {
-        text = s;
-        offset = 0;
-        if (m == null)
-            m = pat.matcher("");
-        m.reset(text);
+        cursor = open(s);
     }
 
     @Override
     public String next() {
-        if (offset >= text.length())
+        return cursor == null ? null : cursor.next();
+    }
+
+    @Override
+    public TokenCursor open(CharSequence text) {
+        return isWords() ? new WordCursor(text) : new MatcherCursor(text, pat.matcher(text));
+    }
+
+    @Override
+    public void tokenize(CharSequence s, TokenSpans spans) {
+        spans.clear();
+        int length = s.length();
+        if (isWords()) {
+            int i = skipNonWord(s, 0);
+            while (i < length) {
+                int end = skipWord(s, i);
+                spans.add(i, end);
+                i = skipNonWord(s, end);
+            }
+            return;
+        }
+
+        Matcher matcher = pat.matcher(s);
+        int i = 0;
+        while (i < length && matcher.find(i)) {
+            spans.add(matcher.start(), matcher.end());
+            // Step over empty matches so they are not found again.
+            i = matcher.end() > matcher.start() ? matcher.end() : matcher.end() + 1;
+        }
+    }
+
+    private boolean isWords() {
+        // Computed lazily because transient fields are not restored when deserializing.
+        if (words == null) {
+            words = WORD_PATTERN.equals(pat.pattern()) && pat.flags() == 0;
+        }
+        return words;
+    }
+
+    /**
+     * @return true if c is matched by \w without the UNICODE_CHARACTER_CLASS flag, i.e. [a-zA-Z_0-9]
+     */
+    static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static int skipNonWord(CharSequence s, int i) {
+        int length = s.length();
+        while (i < length && !isWordChar(s.charAt(i))) {
+            ++i;
+        }
+        return i;
+    }
+
+    private static int skipWord(CharSequence s, int i) {
+        int length = s.length();
+        while (i < length && isWordChar(s.charAt(i))) {
+            ++i;
+        }
+        return i;
+    }
+
+    private static final class WordCursor implements TokenCursor {
+        private final CharSequence text;
+        private int start = -1;
+        private int end;
+
+        WordCursor(CharSequence text) {
+            this.text = text;
+        }
+
+        @Override
+        public String next() {
+            int i = skipNonWord(text, end);
+            if (i == text.length()) {
+                end = i;
+                return null;
+            }
+            start = i;
+            end = skipWord(text, i);
+            return text.subSequence(start, end).toString();
+        }
+
+        @Override
+        public int start() {
+            return start;
+        }
+
+        @Override
+        public int end() {
+            return end;
+        }
+    }
+
+    private static final class MatcherCursor implements TokenCursor {
+        private final CharSequence text;
+        private final Matcher m;
+        private int offset;
+        private int start = -1;
+        private int end = -1;
+
+        MatcherCursor(CharSequence text, Matcher m) {
+            this.text = text;
+            this.m = m;
+        }
+
+        @Override
+        public String next() {
+            if (offset >= text.length())
+                return null;
+
+            if (m.find(offset)) {
+                offset = m.end();
+                start = m.start();
+                end = m.end();
+                return text.subSequence(start, end).toString();
+            }
+
+            offset = text.length();
             return null;
+        }
 
-        if (m.find(offset)) {
-            offset = m.end();
-            return text.substring(m.start(), m.end());
+        @Override
+        public int start() {
+            return start;
         }
 
-        return null;
+        @Override
+        public int end() {
+            return end;
+        }
     }
 }
@@ -37,29 +37,30 @@ import com.groupon.nakala.exceptions.ResourceInitializationException;
 import com.groupon.util.io.IoUtil;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 
 /**
+ * Reads a file, a class path resource or a stream. Files and resources are opened on the first call to
+ * getReader(), so a component that finds its resource in the ResourceRegistry never opens it.
+ *
  * @author npendar@groupon.com
  */
 public class ResourceReader implements Initializable {
+    private String fileName;
+    private String resource;
     private BufferedReader reader;
 
     @Override
     public void initialize(Parameters params) throws ResourceInitializationException {
         if (params.contains(Constants.FILE_NAME)) {
-            try {
-                reader = new BufferedReader(IoUtil.read(params.getString(Constants.FILE_NAME)));
-            } catch (IOException e) {
-                throw new ResourceInitializationException("Failed to initialize resource loader.", e);
-            }
+            fileName = params.getString(Constants.FILE_NAME);
         } else if (params.contains(Constants.RESOURCE)) {
-            try {
-                reader = new BufferedReader(IoUtil.read(getClass(), params.getString(Constants.RESOURCE)));
-            } catch (IOException e) {
-                throw new ResourceInitializationException("Failed to initialize resource loader.", e);
+            resource = params.getString(Constants.RESOURCE);
+            if (getClass().getResource(resource) == null) {
+                throw new ResourceInitializationException("Resource " + resource + " not found.");
             }
         } else if (params.contains(Constants.RESOURCE_STREAM)) {
             Object streamObj = params.get(Constants.RESOURCE_STREAM);
@@ -75,13 +76,39 @@ public class ResourceReader implements Initializable {
     @Override
     public void shutdown() {
         try {
-            reader.close();
+            if (reader != null) {
+                reader.close();
+            }
         } catch (Exception e) {
 
         }
     }
 
-    public BufferedReader getReader() {
+    public BufferedReader getReader() throws ResourceInitializationException {
+        if (reader == null) {
+            try {
+                if (fileName != null) {
+                    reader = new BufferedReader(IoUtil.read(fileName));
+                } else {
+                    reader = new BufferedReader(IoUtil.read(getClass(), resource));
+                }
+            } catch (IOException e) {
+                throw new ResourceInitializationException("Failed to initialize resource loader.", e);
+            }
+        }
         return reader;
     }
+
+    /**
+     * @return a key identifying the file or resource read, for the ResourceRegistry, or null if the content
+     * cannot be identified, as with streams and standard input
+     */
+    public String getPath() {
+        if (fileName != null && !fileName.equals("-")) {
+            return "file:" + new File(fileName).getAbsolutePath();
+        } else if (resource != null) {
+            return "resource:" + resource;
+        }
+        return null;
+    }
 }
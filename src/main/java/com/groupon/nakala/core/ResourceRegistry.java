@@ -0,0 +1,128 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.*;
+
+/**
+ * Process-wide registry of immutable resources such as models, feature sets and vocabularies, keyed by type
+ * and path. Each resource is loaded once, by the first thread asking for it; threads asking for the same
+ * resource meanwhile wait for that load, and different resources load concurrently. Whatever is shared through
+ * the registry must not change after it is loaded.
+ *
+ * @author npendar@groupon.com
+ */
+public final class ResourceRegistry {
+    private static final Logger logger = Logger.getLogger(ResourceRegistry.class);
+
+    private static final ConcurrentMap<Key, FutureTask<?>> resources = new ConcurrentHashMap<Key, FutureTask<?>>();
+
+    private ResourceRegistry() {
+    }
+
+    /**
+     * Returns the resource of the given type and path, loading it with loader if it has not been loaded yet.
+     * A null path means the resource cannot be identified; it is then loaded and not registered.
+     */
+    public static <T> T get(Class<T> type, Object path, Callable<T> loader) throws ResourceInitializationException {
+        if (path == null) {
+            try {
+                return loader.call();
+            } catch (ResourceInitializationException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new ResourceInitializationException("Failed to load " + type.getName(), e);
+            }
+        }
+
+        Key key = new Key(type, path);
+        FutureTask<?> task = resources.get(key);
+        if (task == null) {
+            FutureTask<T> newTask = new FutureTask<T>(loader);
+            task = resources.putIfAbsent(key, newTask);
+            if (task == null) {
+                logger.debug("Loading " + type.getName() + " " + path);
+                task = newTask;
+                newTask.run();
+            }
+        }
+
+        try {
+            return type.cast(task.get());
+        } catch (ExecutionException e) {
+            // Let a later request try again.
+            resources.remove(key, task);
+            if (e.getCause() instanceof ResourceInitializationException) {
+                throw (ResourceInitializationException) e.getCause();
+            }
+            throw new ResourceInitializationException("Failed to load " + type.getName() + " " + path, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceInitializationException("Interrupted while loading " + type.getName() + " " + path, e);
+        }
+    }
+
+    /**
+     * Forgets all resources. Resources already handed out stay valid.
+     */
+    public static void clear() {
+        resources.clear();
+    }
+
+    private static final class Key {
+        private final Class<?> type;
+        private final Object path;
+
+        Key(Class<?> type, Object path) {
+            this.type = type;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return type.equals(other.type) && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + path.hashCode();
+        }
+    }
+}
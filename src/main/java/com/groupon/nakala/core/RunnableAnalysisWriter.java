@@ -0,0 +1,79 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.analysis.Analysis;
+import com.groupon.nakala.db.DataStore;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writer stage of a multithreaded job flow. All analyses are stored from this one thread, so data stores
+ * don't need to be thread safe.
+ *
+ * @author npendar@groupon.com
+ */
+public class RunnableAnalysisWriter extends PipelineStage {
+    protected BlockingQueue<Analysis> outputQueue;
+    protected DataStore[] dataStores;
+    protected int numberOfProducers;
+
+    public RunnableAnalysisWriter(BlockingQueue<Analysis> outputQueue,
+                                  DataStore[] dataStores,
+                                  int numberOfProducers) {
+        this.outputQueue = outputQueue;
+        this.dataStores = dataStores;
+        this.numberOfProducers = numberOfProducers;
+    }
+
+    @Override
+    protected void process() throws InterruptedException {
+        JobFlowMetrics.Stage store = metrics == null ? null : metrics.getStage("store");
+        int running = numberOfProducers;
+        while (running > 0) {
+            Analysis analysis = outputQueue.take();
+            if (analysis == END_OF_OUTPUT) {
+                --running;
+                continue;
+            }
+
+            long start = store == null ? 0L : store.start();
+            for (DataStore ds : dataStores) {
+                analysis.store(ds);
+            }
+            if (store != null) {
+                store.stop(start);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.db.CollectionReader;
+
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the collection on a single thread and feeds the analyzer threads through a bounded queue.
+ *
+ * @author npendar@groupon.com
+ */
+public class RunnableCollectionReader extends PipelineStage {
+    protected CollectionReader dataSource;
+    protected BlockingQueue<Analyzable> inputQueue;
+    protected int numberOfConsumers;
+
+    public RunnableCollectionReader(CollectionReader dataSource,
+                                    BlockingQueue<Analyzable> inputQueue,
+                                    int numberOfConsumers) {
+        this.dataSource = dataSource;
+        this.inputQueue = inputQueue;
+        this.numberOfConsumers = numberOfConsumers;
+    }
+
+    @Override
+    protected void process() throws InterruptedException {
+        JobFlowMetrics.Stage read = metrics == null ? null : metrics.getStage("read");
+        Iterator<Analyzable> it = dataSource.iterator();
+        while (true) {
+            long start = read == null ? 0L : read.start();
+            if (!it.hasNext()) {
+                break;
+            }
+            Analyzable a = it.next();
+            if (read != null) {
+                read.stop(start);
+            }
+            if (a == null) {
+                continue;
+            }
+            // Blocks while the queue is full, so the reader never runs ahead of the analyzers.
+            inputQueue.put(a);
+        }
+
+        for (int i = 0; i < numberOfConsumers; ++i) {
+            inputQueue.put(END_OF_INPUT);
+        }
+    }
+}
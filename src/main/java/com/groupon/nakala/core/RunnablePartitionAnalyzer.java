@@ -0,0 +1,125 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.analysis.ParallelCollectionAnalyzer;
+import com.groupon.nakala.analysis.PartialResult;
+import com.groupon.nakala.exceptions.TextminingException;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Analyzes one partition of a collection: either a split of a splittable collection reader, or whatever this
+ * stage takes from a shared input queue until it sees the end of input marker.
+ *
+ * @author npendar@groupon.com
+ */
+public class RunnablePartitionAnalyzer extends PipelineStage {
+    protected ParallelCollectionAnalyzer analyzer;
+    protected BlockingQueue<Analyzable> inputQueue;
+    protected Iterable<Analyzable> partition;
+    private volatile PartialResult result;
+
+    public RunnablePartitionAnalyzer(ParallelCollectionAnalyzer analyzer, BlockingQueue<Analyzable> inputQueue) {
+        this.analyzer = analyzer;
+        this.inputQueue = inputQueue;
+        this.partition = new Iterable<Analyzable>() {
+            @Override
+            public Iterator<Analyzable> iterator() {
+                return new QueueIterator();
+            }
+        };
+    }
+
+    public RunnablePartitionAnalyzer(ParallelCollectionAnalyzer analyzer, Iterable<Analyzable> partition) {
+        this.analyzer = analyzer;
+        this.partition = partition;
+    }
+
+    @Override
+    protected void process() throws InterruptedException {
+        if (metrics == null) {
+            result = analyzer.analyzePartition(partition);
+        } else {
+            // Items taken from the queue were timed by the reader; only the wait for them would be timed here.
+            JobFlowMetrics.Stage read = inputQueue == null ? metrics.getStage("read") : null;
+            JobFlowMetrics.Stage analyze = metrics.getStage("analyze");
+            result = analyzer.analyzePartition(TimedCollectionReader.time(partition, read, analyze));
+        }
+    }
+
+    /**
+     * @return the partial result of this partition, or null if the stage has not finished successfully
+     */
+    public PartialResult getResult() {
+        return result;
+    }
+
+    private class QueueIterator implements Iterator<Analyzable> {
+        private Analyzable next;
+        private boolean done;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    next = inputQueue.take();
+                } catch (InterruptedException e) {
+                    throw new TextminingException("Interrupted while waiting for input.", e);
+                }
+                if (next == END_OF_INPUT) {
+                    next = null;
+                    done = true;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Analyzable next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Analyzable a = next;
+            next = null;
+            return a;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -34,39 +34,103 @@ package com.groupon.nakala.core;
 
 import com.groupon.nakala.analysis.Analysis;
 import com.groupon.nakala.analysis.Analyzer;
-import com.groupon.nakala.db.CollectionReader;
-import com.groupon.nakala.db.DataStore;
-import org.apache.log4j.Logger;
+import com.groupon.nakala.analysis.BatchAnalyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Analyzer stage of a multithreaded job flow. Takes items off the input queue until it sees the end of input
+ * and hands the resulting analyses to the writer stage. Items already waiting in the queue are taken together,
+ * up to the batch size, and given to a BatchAnalyzer as one batch.
+ *
  * @author npendar@groupon.com
  */
-public class RunnableTextMiner implements Runnable {
-    protected static final Logger logger = Logger.getLogger(RunnableTextMiner.class);
+public class RunnableTextMiner extends PipelineStage {
     protected Analyzer analyzer;
-    protected Parameters analyzerParameters;
-    protected CollectionReader dataSource;
-    protected DataStore[] dataStores;
+    protected BlockingQueue<Analyzable> inputQueue;
+    protected BlockingQueue<Analysis> outputQueue;
+    protected AtomicInteger processed;
+    protected int batchSize = 1;
 
     public RunnableTextMiner(Analyzer analyzer,
-                             CollectionReader dataSource,
-                             DataStore[] dataStores) {
+                             BlockingQueue<Analyzable> inputQueue,
+                             BlockingQueue<Analysis> outputQueue,
+                             AtomicInteger processed) {
         this.analyzer = analyzer;
-        this.dataSource = dataSource;
-        this.dataStores = dataStores;
+        this.inputQueue = inputQueue;
+        this.outputQueue = outputQueue;
+        this.processed = processed;
+    }
+
+    public RunnableTextMiner(Analyzer analyzer,
+                             BlockingQueue<Analyzable> inputQueue,
+                             BlockingQueue<Analysis> outputQueue,
+                             AtomicInteger processed,
+                             int batchSize) {
+        this(analyzer, inputQueue, outputQueue, processed);
+        this.batchSize = batchSize;
     }
 
     @Override
-    public void run() {
-        for (Analyzable a : dataSource) {
-            Analysis analysis = analyzer.analyze(a);
-            if (analysis == null) {
+    protected void process() throws InterruptedException {
+        JobFlowMetrics.Stage analyze = metrics == null ? null : metrics.getStage("analyze");
+        List<Analyzable> batch = new ArrayList<Analyzable>(batchSize);
+        boolean done = false;
+        while (!done) {
+            batch.clear();
+            batch.add(inputQueue.take());
+            if (batchSize > 1) {
+                inputQueue.drainTo(batch, batchSize - 1);
+            }
+
+            // Every consumer gets its own end of input marker. Put back the ones meant for other consumers.
+            int endMarkers = 0;
+            for (int i = batch.size() - 1; i >= 0; --i) {
+                if (batch.get(i) == END_OF_INPUT) {
+                    batch.remove(i);
+                    ++endMarkers;
+                }
+            }
+            if (endMarkers > 0) {
+                done = true;
+                for (int i = 1; i < endMarkers; ++i) {
+                    inputQueue.put(END_OF_INPUT);
+                }
+            }
+            if (batch.isEmpty()) {
                 continue;
             }
 
-            for (DataStore ds : dataStores) {
-                analysis.store(ds);
+            long start = analyze == null ? 0L : analyze.start();
+            List<Analysis> analyses = analyzeEach(analyzer, batch);
+            if (analyze != null) {
+                analyze.stop(start, batch.size());
+            }
+            for (Analysis analysis : analyses) {
+                processed.incrementAndGet();
+                if (analysis == null) {
+                    continue;
+                }
+                outputQueue.put(analysis);
             }
         }
+        outputQueue.put(END_OF_OUTPUT);
+    }
+
+    /**
+     * Analyzes the batch in one call if the analyzer is a BatchAnalyzer, otherwise one item at a time.
+     */
+    public static List<Analysis> analyzeEach(Analyzer analyzer, List<Analyzable> batch) {
+        if (analyzer instanceof BatchAnalyzer) {
+            return ((BatchAnalyzer) analyzer).analyzeBatch(batch);
+        }
+        List<Analysis> analyses = new ArrayList<Analysis>(batch.size());
+        for (Analyzable a : batch) {
+            analyses.add(analyzer.analyze(a));
+        }
+        return analyses;
     }
 }
@@ -38,6 +38,7 @@ import opennlp.tools.util.InvalidFormatException;
 import opennlp.tools.util.Span;
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
 
 /**
  * @author npendar@groupon.com
@@ -50,8 +51,13 @@ public final class SentenceBreakerWrapper {
 
     public static SentenceBreakerWrapper getInstance() throws InvalidFormatException, IOException {
         SentenceBreakerWrapper sb = new SentenceBreakerWrapper();
-        String modelFile = "/nakala/opennlp_models/en-sent.bin";
-        SentenceModel model = new SentenceModel(sb.getClass().getResourceAsStream(modelFile));
+        final String modelFile = "/nakala/opennlp_models/en-sent.bin";
+        SentenceModel model = ResourceRegistry.get(SentenceModel.class, modelFile, new Callable<SentenceModel>() {
+            @Override
+            public SentenceModel call() throws IOException {
+                return new SentenceModel(SentenceBreakerWrapper.class.getResourceAsStream(modelFile));
+            }
+        });
         sb.sdetector = new SentenceDetectorME(model);
         return sb;
     }
@@ -0,0 +1,92 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import java.util.List;
+
+/**
+ * Tokens of the document a thread is currently analyzing, computed once by a job flow and shared by all the
+ * analyzers that would otherwise tokenize the document the same way. Analyzers call get() with their own
+ * tokenizer and normalizers and tokenize the document themselves when it returns null.
+ *
+ * @author npendar@groupon.com
+ */
+public final class SharedTokens {
+    private static final ThreadLocal<SharedTokens> current = new ThreadLocal<SharedTokens>();
+
+    private final TokenizerStream tokenizer;
+    private final List<?> normalizers;
+    private Analyzable document;
+    private List<String> tokens;
+
+    private SharedTokens(TokenizerStream tokenizer, List<?> normalizers) {
+        this.tokenizer = tokenizer;
+        this.normalizers = normalizers;
+    }
+
+    /**
+     * Declares that tokens set on this thread are those the given tokenizer and normalizers produce.
+     */
+    public static void register(TokenizerStream tokenizer, List<?> normalizers) {
+        current.set(new SharedTokens(tokenizer, normalizers));
+    }
+
+    public static void unregister() {
+        current.remove();
+    }
+
+    /**
+     * Sets the tokens of the document about to be analyzed on this thread. Null tokens mean the document was not
+     * tokenized in advance.
+     */
+    public static void set(Analyzable document, List<String> tokens) {
+        SharedTokens shared = current.get();
+        if (shared != null) {
+            shared.document = document;
+            shared.tokens = tokens;
+        }
+    }
+
+    /**
+     * @return the tokens of the document if it was tokenized in advance with the same tokenizer and normalizers
+     * instances, null otherwise
+     */
+    public static List<String> get(Analyzable document, TokenizerStream tokenizer, List<?> normalizers) {
+        SharedTokens shared = current.get();
+        if (shared == null || shared.document != document || shared.tokenizer != tokenizer
+                || shared.normalizers != normalizers) {
+            return null;
+        }
+        return shared.tokens;
+    }
+}
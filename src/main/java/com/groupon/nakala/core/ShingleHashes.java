@@ -0,0 +1,135 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import java.util.Arrays;
+
+/**
+ * Character shingles as 64-bit rolling hashes. Shingles of up to four characters are packed losslessly into the
+ * hash, so for those equal hashes mean equal shingles; longer shingles use a polynomial hash and may, very
+ * rarely, collide. Sets of shingles are kept as sorted long arrays, so intersecting two of them is a linear merge
+ * with no allocation.
+ *
+ * @author npendar@groupon.com
+ */
+public final class ShingleHashes {
+    private static final long BASE = 0x100000001b3L;
+
+    private ShingleHashes() {
+    }
+
+    /**
+     * @return the hash of the shingle starting at every position of s, in order; empty if s is shorter than size
+     */
+    public static long[] hashes(CharSequence s, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Shingle size must be >= 1");
+        }
+        int n = s.length() - size + 1;
+        if (n <= 0) {
+            return new long[0];
+        }
+        long[] hashes = new long[n];
+        long h = 0;
+        if (size <= 4) {
+            long mask = size == 4 ? -1L : (1L << (16 * size)) - 1;
+            for (int i = 0; i < s.length(); ++i) {
+                h = ((h << 16) | s.charAt(i)) & mask;
+                if (i >= size - 1) {
+                    hashes[i - size + 1] = h;
+                }
+            }
+        } else {
+            long outFactor = 1;
+            for (int i = 1; i < size; ++i) {
+                outFactor *= BASE;
+            }
+            for (int i = 0; i < s.length(); ++i) {
+                if (i >= size) {
+                    h -= s.charAt(i - size) * outFactor;
+                }
+                h = h * BASE + s.charAt(i);
+                if (i >= size - 1) {
+                    hashes[i - size + 1] = h;
+                }
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * @return the distinct shingles of s, sorted
+     */
+    public static long[] uniqueSorted(CharSequence s, int size) {
+        long[] hashes = hashes(s, size);
+        return uniqueSorted(hashes, 0, hashes.length);
+    }
+
+    /**
+     * @return the distinct values of hashes[from, to), sorted
+     */
+    public static long[] uniqueSorted(long[] hashes, int from, int to) {
+        long[] sorted = Arrays.copyOfRange(hashes, from, to);
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; ++i) {
+            if (i == 0 || sorted[i] != sorted[n - 1]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+    }
+
+    /**
+     * @param a sorted distinct shingles
+     * @param b sorted distinct shingles
+     * @return number of shingles in both a and b
+     */
+    public static int intersectionSize(long[] a, long[] b) {
+        int i = 0;
+        int j = 0;
+        int common = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                ++i;
+            } else if (a[i] > b[j]) {
+                ++j;
+            } else {
+                ++common;
+                ++i;
+                ++j;
+            }
+        }
+        return common;
+    }
+}
@@ -33,12 +33,14 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.groupon.nakala.core;
 
 /**
+ * Tokenizer returning every substring of shingleSize characters. One instance can be shared by threads through
+ * open; setText and next keep a cursor in the instance and are for single threaded use.
+ *
  * @author npendar@groupon.com
  */
-public class ShinglesTokenizerStream extends AbstractTokenizerStream {
+public class ShinglesTokenizerStream extends AbstractTokenizerStream implements CursorTokenizer {
     private int shingleSize = 4;
-    private String text;
-    private int index;
+    private transient TokenCursor cursor;
 
     public void setShingleSize(int shingleSize) {
         this.shingleSize = shingleSize;
@@ -50,17 +52,39 @@ public class ShinglesTokenizerStream extends AbstractTokenizerStream {
 
     @Override
     public void setText(String s) {
-        text = s;
-        index = 0;
+        cursor = open(s);
     }
 
     @Override
     public String next() {
-        String token = null;
-        if (index <= text.length() - shingleSize) {
-            token = text.substring(index, index + shingleSize);
-            ++index;
-        }
-        return token;
+        return cursor == null ? null : cursor.next();
+    }
+
+    @Override
+    public TokenCursor open(final CharSequence text) {
+        final int size = shingleSize;
+        return new TokenCursor() {
+            private int index;
+
+            @Override
+            public String next() {
+                String token = null;
+                if (index <= text.length() - size) {
+                    token = text.subSequence(index, index + size).toString();
+                    ++index;
+                }
+                return token;
+            }
+
+            @Override
+            public int start() {
+                return index - 1;
+            }
+
+            @Override
+            public int end() {
+                return index == 0 ? -1 : index - 1 + size;
+            }
+        };
     }
 }
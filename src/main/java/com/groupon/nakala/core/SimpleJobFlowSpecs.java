@@ -43,10 +43,12 @@ import org.apache.log4j.Logger;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * @author npendar@groupon.com
@@ -57,6 +59,10 @@ public class SimpleJobFlowSpecs implements JobFlowSpecs {
     protected static final String COLLECTION_READER = "collection_reader";
     protected static final String COLLECTION_ANALYZER = "collection_analyzer";
     protected static final String DATA_STORES = "data_stores";
+    protected static final String PARALLELISM = "parallelism";
+    protected static final String BRANCHES = "branches";
+    protected static final String METRICS_FILE = "metrics_file";
+    protected static final String METRICS_INTERVAL = "metrics_interval";
 
     private static final String definitionFile = "/nakala/jobFlowSpecsDefinition.yml";
 
@@ -64,6 +70,10 @@ public class SimpleJobFlowSpecs implements JobFlowSpecs {
     protected DataStore[] dataStores;
 
     private CollectionAnalyzer collectionAnalyzer;
+    private int parallelism = 1;
+    private List<JobFlowBranch> branches;
+    protected String metricsFile;
+    protected int metricsInterval;
 
     @Override
     public void initialize(InputStream inputStream) throws ResourceInitializationException {
@@ -75,29 +85,74 @@ public class SimpleJobFlowSpecs implements JobFlowSpecs {
             Map<String, Object> specs = (Map<String, Object>) yaml.load(inputStream);
             List<String> errors = new LinkedList<String>();
             validate(specsDefinition, specs, JobFlowSpecsDefinition.TOP, errors);
+            validateBranches(specs, errors);
 
             if (!errors.isEmpty()) {
                 throw new ResourceInitializationException("Job flow specification validation failed.\n" +
                         StringUtils.join(errors, "\n"));
             }
+            if (specs.containsKey(PARALLELISM)) {
+                parallelism = (Integer) specs.get(PARALLELISM);
+                if (parallelism < 1) {
+                    throw new ResourceInitializationException(PARALLELISM + " must be >= 1");
+                }
+            }
+            logger.debug("Parallelism: " + parallelism);
+            parseMetrics(specs);
             collectionReader = (CollectionReader) parseSpecs(
                     specsDefinition,
                     specs.get(SimpleJobFlowSpecs.COLLECTION_READER),
                     SimpleJobFlowSpecs.COLLECTION_READER);
-            collectionAnalyzer = (CollectionAnalyzer) parseSpecs(
-                    specsDefinition,
-                    specs.get(SimpleJobFlowSpecs.COLLECTION_ANALYZER),
-                    SimpleJobFlowSpecs.COLLECTION_ANALYZER);
-            List<DataStore> dataStoreList = (List<DataStore>) parseSpecs(
-                    specsDefinition,
-                    specs.get(SimpleJobFlowSpecs.DATA_STORES),
-                    SimpleJobFlowSpecs.DATA_STORES);
-            dataStores = dataStoreList.toArray(new DataStore[1]);
+            if (specs.containsKey(BRANCHES)) {
+                branches = new ArrayList<JobFlowBranch>();
+                for (Map<String, Object> branchSpecs : (List<Map<String, Object>>) specs.get(BRANCHES)) {
+                    CollectionAnalyzer branchAnalyzer = (CollectionAnalyzer) parseSpecs(
+                            specsDefinition,
+                            branchSpecs.get(SimpleJobFlowSpecs.COLLECTION_ANALYZER),
+                            SimpleJobFlowSpecs.COLLECTION_ANALYZER);
+                    List<DataStore> branchDataStores = (List<DataStore>) parseSpecs(
+                            specsDefinition,
+                            branchSpecs.get(SimpleJobFlowSpecs.DATA_STORES),
+                            SimpleJobFlowSpecs.DATA_STORES);
+                    branches.add(new JobFlowBranch(branchAnalyzer, branchDataStores.toArray(new DataStore[1])));
+                }
+                logger.debug("Branches: " + branches.size());
+            } else {
+                collectionAnalyzer = (CollectionAnalyzer) parseSpecs(
+                        specsDefinition,
+                        specs.get(SimpleJobFlowSpecs.COLLECTION_ANALYZER),
+                        SimpleJobFlowSpecs.COLLECTION_ANALYZER);
+                List<DataStore> dataStoreList = (List<DataStore>) parseSpecs(
+                        specsDefinition,
+                        specs.get(SimpleJobFlowSpecs.DATA_STORES),
+                        SimpleJobFlowSpecs.DATA_STORES);
+                dataStores = dataStoreList.toArray(new DataStore[1]);
+            }
         } catch (Exception e) {
             throw new ResourceInitializationException(e);
         }
     }
 
+    /**
+     * Metrics are turned on when either metrics_file or metrics_interval is given.
+     */
+    protected void parseMetrics(Map<String, Object> specs) throws ResourceInitializationException {
+        if (specs.containsKey(METRICS_FILE)) {
+            metricsFile = (String) specs.get(METRICS_FILE);
+            metricsInterval = JobFlowMetrics.DEFAULT_REPORT_INTERVAL;
+        }
+        if (specs.containsKey(METRICS_INTERVAL)) {
+            metricsInterval = (Integer) specs.get(METRICS_INTERVAL);
+            if (metricsInterval < 1) {
+                throw new ResourceInitializationException(METRICS_INTERVAL + " must be >= 1");
+            }
+        }
+        if (isMetricsEnabled()) {
+            logger.debug("Metrics every " + metricsInterval + "s" +
+                    (metricsFile == null ? "" : " to " + metricsFile));
+        }
+    }
+
     protected Object parseSpecs(JobFlowSpecsDefinition definition, Object specs, String key) {
         logger.trace("Parsing key " + key);
         Object ret = null;
@@ -130,8 +185,30 @@ public class SimpleJobFlowSpecs implements JobFlowSpecs {
         return items;
     }
 
-    protected Object parseMapValue(JobFlowSpecsDefinition definition, Map<String, Object> map) {
+    protected Object parseMapValue(final JobFlowSpecsDefinition definition, final Map<String, Object> map) {
         logger.debug("Parsing map " + map);
+
+        if (map.containsKey(JobFlowSpecsDefinition.CLASS_NAME)) {
+            Class<?> cls;
+            try {
+                cls = Class.forName((String) map.get(JobFlowSpecsDefinition.CLASS_NAME));
+            } catch (ClassNotFoundException ex) {
+                throw new ResourceInitializationException(ex);
+            }
+            if (SharedResource.class.isAssignableFrom(cls)) {
+                // Every component configured with the same specs gets the same instance.
+                return ResourceRegistry.get((Class<Object>) cls, map, new Callable<Object>() {
+                    @Override
+                    public Object call() {
+                        return createMapValue(definition, map);
+                    }
+                });
+            }
+        }
+        return createMapValue(definition, map);
+    }
+
+    private Object createMapValue(JobFlowSpecsDefinition definition, Map<String, Object> map) {
         Object ret = null;
 
         // class_name is parsed here; other required attributes are handled in the initialize method above
@@ -178,6 +255,40 @@ public class SimpleJobFlowSpecs implements JobFlowSpecs {
         return ret;
     }
 
+    /**
+     * A job flow has either a single collection analyzer with its data stores or a list of branches, each with a
+     * collection analyzer and its data stores.
+     */
+    private void validateBranches(Map<String, Object> specs, List<String> errors) {
+        if (!specs.containsKey(BRANCHES)) {
+            for (String r : new String[]{COLLECTION_ANALYZER, DATA_STORES}) {
+                if (!specs.containsKey(r)) {
+                    errors.add("Required key " + r + " is missing in " + JobFlowSpecsDefinition.TOP);
+                }
+            }
+            return;
+        }
+
+        if (specs.containsKey(COLLECTION_ANALYZER) || specs.containsKey(DATA_STORES)) {
+            errors.add(BRANCHES + " cannot be combined with top level " + COLLECTION_ANALYZER + " or " + DATA_STORES);
+        }
+        if (!(specs.get(BRANCHES) instanceof List) || ((List) specs.get(BRANCHES)).isEmpty()) {
+            errors.add(BRANCHES + " must be a non-empty list.");
+            return;
+        }
+        for (Object branch : (List) specs.get(BRANCHES)) {
+            if (!(branch instanceof Map)) {
+                errors.add("Items of " + BRANCHES + " must be maps.");
+                continue;
+            }
+            for (String r : new String[]{COLLECTION_ANALYZER, DATA_STORES}) {
+                if (!((Map) branch).containsKey(r)) {
+                    errors.add("Required key " + r + " is missing in " + BRANCHES);
+                }
+            }
+        }
+    }
+
     protected void validate(JobFlowSpecsDefinition specsDefinition, Object specs, String key, List<String> errors) {
         String valueType = specsDefinition.getValueType(key);
         if (valueType == null) {
@@ -266,4 +377,27 @@ public class SimpleJobFlowSpecs implements JobFlowSpecs {
     public DataStore[] getDataStores() {
         return dataStores;
     }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return the branches of a fan-out job flow, or null if the job flow has a single collection analyzer
+     */
+    public List<JobFlowBranch> getBranches() {
+        return branches;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsInterval > 0;
+    }
+
+    public int getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    public String getMetricsFile() {
+        return metricsFile;
+    }
 }
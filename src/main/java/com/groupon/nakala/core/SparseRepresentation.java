@@ -34,17 +34,24 @@ package com.groupon.nakala.core;
 
 import com.groupon.ml.svm.ValueScaler;
 import com.groupon.nakala.exceptions.ResourceInitializationException;
+import de.bwaldvogel.liblinear.Feature;
 import libsvm.svm_node;
 import org.apache.commons.math3.linear.OpenMapRealVector;
 import org.apache.commons.math3.linear.RealVector;
 
-import java.util.*;
+import java.util.Iterator;
 
 
 /**
+ * Sparse vector returned by representers. Representers build a SparseVector and wrap it, so toSparseVector()
+ * returns it without sorting until the representation is changed.
+ *
  * @author npendar@groupon.com
  */
 public class SparseRepresentation extends OpenMapRealVector {
+    // The same values sorted by index, or null once the map has changed.
+    private transient SparseVector sorted;
+
     public static SparseRepresentation fromSparseFormat(int size, String s) throws ResourceInitializationException {
         SparseRepresentation rep = new SparseRepresentation(size);
         try {
@@ -72,13 +79,42 @@ public class SparseRepresentation extends OpenMapRealVector {
         super(vector);
     }
 
+    public SparseRepresentation(SparseVector vector) {
+        super(vector.getDimension(), vector.size());
+        for (int i = 0; i < vector.size(); ++i) {
+            super.setEntry(vector.getIndex(i), vector.getValue(i));
+        }
+        sorted = vector;
+    }
+
+    @Override
+    public void setEntry(int index, double value) {
+        sorted = null;
+        super.setEntry(index, value);
+    }
+
+    @Override
+    public void unitize() {
+        sorted = null;
+        super.unitize();
+    }
+
+    /**
+     * The entries can be changed through the iterator.
+     */
+    @Override
+    public Iterator<Entry> sparseIterator() {
+        sorted = null;
+        return super.sparseIterator();
+    }
+
     public SparseRepresentation mapMultiply(double d) {
         return new SparseRepresentation(super.mapMultiply(d));
     }
 
     public SparseRepresentation multiplyByFeatureWeights(Features features) {
         SparseRepresentation rep = new SparseRepresentation(getDimension());
-        Iterator<Entry> iterator = sparseIterator();
+        Iterator<Entry> iterator = super.sparseIterator();
         while (iterator.hasNext()) {
             Entry e = iterator.next();
             int index = e.getIndex();
@@ -90,20 +126,38 @@ public class SparseRepresentation extends OpenMapRealVector {
 
     public SparseRepresentation scale(ValueScaler scaler) {
         SparseRepresentation rep = new SparseRepresentation(getDimension());
-        for (int i = 0; i < getDimension(); ++i) {
-            double unscaled = getEntry(i);
-            if (unscaled != 0) rep.setEntry(i, scaler.getScaledValue(i, getEntry(i)));
+        Iterator<Entry> iterator = super.sparseIterator();
+        while (iterator.hasNext()) {
+            Entry e = iterator.next();
+            rep.setEntry(e.getIndex(), scaler.getScaledValue(e.getIndex(), e.getValue()));
         }
         return rep;
     }
 
+    /**
+     * @return the same vector as a compact SparseVector
+     */
+    public SparseVector toSparseVector() {
+        if (sorted != null) {
+            return sorted;
+        }
+        SparseVector.Builder builder = new SparseVector.Builder(getDimension());
+        Iterator<Entry> iterator = super.sparseIterator();
+        while (iterator.hasNext()) {
+            Entry e = iterator.next();
+            builder.add(e.getIndex(), e.getValue());
+        }
+        sorted = builder.build();
+        return sorted;
+    }
+
     /**
      * @return the number of non-zero values
      */
 
     public int getNonZeroSize() {
         int count = 0;
-        Iterator<Entry> iterator = sparseIterator();
+        Iterator<Entry> iterator = super.sparseIterator();
         while (iterator.hasNext()) {
             iterator.next();
             ++count;
@@ -111,11 +165,51 @@ public class SparseRepresentation extends OpenMapRealVector {
         return count;
     }
 
+    /**
+     * Copies the indices of the non-zero values, in no particular order, to the start of the given array, as many
+     * as fit.
+     *
+     * @return the number of non-zero values, which is more than the array holds if it is too small
+     */
+    public int getIndices(int[] indices) {
+        int count = 0;
+        Iterator<Entry> iterator = super.sparseIterator();
+        while (iterator.hasNext()) {
+            int index = iterator.next().getIndex();
+            if (count < indices.length) {
+                indices[count] = index;
+            }
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Copies the non-zero values and their indices, in no particular order, to the start of the given arrays, as
+     * many as fit.
+     *
+     * @return the number of non-zero values, which is more than the arrays hold if they are too small
+     */
+    public int getEntries(int[] indices, double[] values) {
+        int count = 0;
+        int capacity = Math.min(indices.length, values.length);
+        Iterator<Entry> iterator = super.sparseIterator();
+        while (iterator.hasNext()) {
+            Entry e = iterator.next();
+            if (count < capacity) {
+                indices[count] = e.getIndex();
+                values[count] = e.getValue();
+            }
+            ++count;
+        }
+        return count;
+    }
+
     /**
      * @return if all values are zeros
      */
     public boolean isZeroVector() {
-        Iterator<Entry> iterator = sparseIterator();
+        Iterator<Entry> iterator = super.sparseIterator();
         if (iterator.hasNext()) {
             return false;
         } else {
@@ -124,38 +218,14 @@ public class SparseRepresentation extends OpenMapRealVector {
     }
 
     public svm_node[] toSvmNodes() {
-        List<svm_node> nodes = new ArrayList<svm_node>(getNonZeroSize());
-        Iterator<Entry> iterator = sparseIterator();
-        while (iterator.hasNext()) {
-            Entry e = iterator.next();
-            svm_node node = new svm_node();
-            node.index = e.getIndex() + 1; // lib_svm assumes 1-based indices
-            node.value = e.getValue();
-            nodes.add(node);
-        }
-        Collections.sort(nodes, new SvmNodeComparator());
-        return nodes.toArray(new svm_node[0]);
+        return toSparseVector().toSvmNodes();
     }
 
-    public String toSparseFormat() {
-        List<Integer> keys = new LinkedList<Integer>();
-        Iterator<Entry> iterator = sparseIterator();
-        while (iterator.hasNext()) {
-            keys.add(iterator.next().getIndex());
-        }
-        Collections.sort(keys);
-
-        StringBuilder sb = new StringBuilder();
-        for (Integer index : keys) {
-            sb.append(index + 1).append(':').append(getEntry(index)).append(' ');
-        }
-        return sb.toString();
+    public Feature[] toLibLinear() {
+        return toSparseVector().toLibLinear();
     }
-}
 
-class SvmNodeComparator implements Comparator<svm_node> {
-    @Override
-    public int compare(svm_node n1, svm_node n2) {
-        return n1.index - n2.index;
+    public String toSparseFormat() {
+        return toSparseVector().toSparseFormat();
     }
-}
\ No newline at end of file
+}
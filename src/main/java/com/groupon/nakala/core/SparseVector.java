@@ -0,0 +1,357 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.ml.svm.ValueScaler;
+import de.bwaldvogel.liblinear.Feature;
+import de.bwaldvogel.liblinear.FeatureNode;
+import libsvm.svm_node;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Immutable sparse vector held as parallel arrays of strictly increasing indices and their non-zero values, built
+ * with a SparseVector.Builder. Converts to libsvm nodes, liblinear features and sparse format text in one pass
+ * over the non-zeros, without sorting or boxing. SparseRepresentation wraps it.
+ *
+ * @author npendar@groupon.com
+ */
+public final class SparseVector implements Serializable {
+    private static final long serialVersionUID = 4105263379460138711L;
+
+    private final int dimension;
+    private final int[] indices;
+    private final double[] values;
+
+    private SparseVector(int dimension, int[] indices, double[] values) {
+        this.dimension = dimension;
+        this.indices = indices;
+        this.values = values;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return the number of non-zero values
+     */
+    public int size() {
+        return indices.length;
+    }
+
+    /**
+     * @return the index of the i-th non-zero value
+     */
+    public int getIndex(int i) {
+        return indices[i];
+    }
+
+    /**
+     * @return the i-th non-zero value
+     */
+    public double getValue(int i) {
+        return values[i];
+    }
+
+    /**
+     * @return the value at index, 0 if it is not set
+     */
+    public double get(int index) {
+        int i = Arrays.binarySearch(indices, index);
+        return i < 0 ? 0d : values[i];
+    }
+
+    /**
+     * @return a copy with the value at index replaced, or removed if value is 0
+     */
+    public SparseVector set(int index, double value) {
+        if (index < 0 || index >= dimension) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of [0, " + dimension + ")");
+        }
+        int i = Arrays.binarySearch(indices, index);
+        if (i >= 0) {
+            double[] newValues = values.clone();
+            newValues[i] = value;
+            return withValues(newValues);
+        }
+        if (value == 0d) {
+            return this;
+        }
+        i = -i - 1;
+        int[] newIndices = new int[indices.length + 1];
+        double[] newValues = new double[values.length + 1];
+        System.arraycopy(indices, 0, newIndices, 0, i);
+        System.arraycopy(values, 0, newValues, 0, i);
+        newIndices[i] = index;
+        newValues[i] = value;
+        System.arraycopy(indices, i, newIndices, i + 1, indices.length - i);
+        System.arraycopy(values, i, newValues, i + 1, values.length - i);
+        return new SparseVector(dimension, newIndices, newValues);
+    }
+
+    public SparseVector multiply(double d) {
+        double[] multiplied = new double[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            multiplied[i] = values[i] * d;
+        }
+        return withValues(multiplied);
+    }
+
+    public SparseVector multiplyByFeatureWeights(Features features) {
+        double[] multiplied = new double[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            multiplied[i] = values[i] * features.getWeight(indices[i]);
+        }
+        return withValues(multiplied);
+    }
+
+    public SparseVector scale(ValueScaler scaler) {
+        double[] scaled = new double[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            scaled[i] = scaler.getScaledValue(indices[i], values[i]);
+        }
+        return withValues(scaled);
+    }
+
+    /**
+     * @return the vector of the same indices with the given values, sharing the indices unless a value is 0
+     */
+    private SparseVector withValues(double[] newValues) {
+        for (double value : newValues) {
+            if (value == 0d) {
+                return compact(dimension, indices, newValues, newValues.length);
+            }
+        }
+        return new SparseVector(dimension, indices, newValues);
+    }
+
+    /**
+     * @return the vector of the first n indices and values, leaving out 0 values
+     */
+    private static SparseVector compact(int dimension, int[] indices, double[] values, int n) {
+        int nonZero = 0;
+        for (int i = 0; i < n; ++i) {
+            if (values[i] != 0d) {
+                ++nonZero;
+            }
+        }
+        int[] outIndices = new int[nonZero];
+        double[] outValues = new double[nonZero];
+        for (int i = 0, j = 0; i < n; ++i) {
+            if (values[i] != 0d) {
+                outIndices[j] = indices[i];
+                outValues[j++] = values[i];
+            }
+        }
+        return new SparseVector(dimension, outIndices, outValues);
+    }
+
+    public svm_node[] toSvmNodes() {
+        svm_node[] nodes = new svm_node[indices.length];
+        for (int i = 0; i < indices.length; ++i) {
+            svm_node node = new svm_node();
+            node.index = indices[i] + 1; // lib_svm assumes 1-based indices
+            node.value = values[i];
+            nodes[i] = node;
+        }
+        return nodes;
+    }
+
+    public Feature[] toLibLinear() {
+        Feature[] features = new Feature[indices.length];
+        for (int i = 0; i < indices.length; ++i) {
+            features[i] = new FeatureNode(indices[i] + 1, values[i]);
+        }
+        return features;
+    }
+
+    /**
+     * Appends the vector as 1-based index:value pairs, each followed by a space, like
+     * SparseRepresentation.toSparseFormat().
+     */
+    public StringBuilder appendSparseFormat(StringBuilder sb) {
+        for (int i = 0; i < indices.length; ++i) {
+            sb.append(indices[i] + 1).append(':').append(values[i]).append(' ');
+        }
+        return sb;
+    }
+
+    public String toSparseFormat() {
+        return appendSparseFormat(new StringBuilder(12 * indices.length)).toString();
+    }
+
+    public SparseRepresentation toSparseRepresentation() {
+        return new SparseRepresentation(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SparseVector)) return false;
+        SparseVector other = (SparseVector) o;
+        return dimension == other.dimension && Arrays.equals(indices, other.indices) &&
+                Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(indices) + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return "SparseVector(dimension = " + dimension + ", " + toSparseFormat().trim() + ")";
+    }
+
+    /**
+     * Collects values in any order, adding up values added more than once, and builds SparseVectors from them.
+     * A builder can be reused after build; it is not thread-safe.
+     */
+    public static final class Builder {
+        private int dimension;
+        private int size;
+        private int[] indices = new int[16];
+        private double[] values = new double[16];
+        private boolean[] replaces = new boolean[16];
+        private long[] order = new long[0];
+        private int[] sortedIndices = new int[0];
+        private double[] sortedValues = new double[0];
+
+        public Builder(int dimension) {
+            this.dimension = dimension;
+        }
+
+        /**
+         * Clears the builder for a new vector of the given dimension.
+         */
+        public Builder reset(int dimension) {
+            this.dimension = dimension;
+            size = 0;
+            return this;
+        }
+
+        public Builder add(int index, double value) {
+            return append(index, value, false);
+        }
+
+        /**
+         * Replaces the value added or set at index so far.
+         */
+        public Builder set(int index, double value) {
+            return append(index, value, true);
+        }
+
+        private Builder append(int index, double value, boolean replace) {
+            if (index < 0 || index >= dimension) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of [0, " + dimension + ")");
+            }
+            if (size == indices.length) {
+                indices = Arrays.copyOf(indices, 2 * size);
+                values = Arrays.copyOf(values, 2 * size);
+                replaces = Arrays.copyOf(replaces, 2 * size);
+            }
+            indices[size] = index;
+            values[size] = value;
+            replaces[size] = replace;
+            ++size;
+            return this;
+        }
+
+        /**
+         * @return the vector of the values added since the last reset; values adding up to 0 are left out
+         */
+        public SparseVector build() {
+            return build(null);
+        }
+
+        /**
+         * @param scaler scales the values of the vector, or null
+         * @return the vector of the values added since the last reset, scaled; values adding up to or scaled to 0
+         *         are left out
+         */
+        public SparseVector build(ValueScaler scaler) {
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; ++i) {
+                sorted = indices[i - 1] < indices[i];
+            }
+            if (sorted && scaler == null) {
+                return compact(dimension, indices, values, size);
+            }
+            if (sortedIndices.length < size) {
+                sortedIndices = new int[Math.max(size, 2 * sortedIndices.length)];
+                sortedValues = new double[sortedIndices.length];
+            }
+            if (sorted) {
+                // Scale a copy, so that building again gives the same vector.
+                System.arraycopy(indices, 0, sortedIndices, 0, size);
+                System.arraycopy(values, 0, sortedValues, 0, size);
+                return scaleAndCompact(size, scaler);
+            }
+
+            // Sort positions by index; a position fits in the low half since size is an int.
+            if (order.length < size) {
+                order = new long[Math.max(size, 2 * order.length)];
+            }
+            for (int i = 0; i < size; ++i) {
+                order[i] = ((long) indices[i] << 32) | i;
+            }
+            Arrays.sort(order, 0, size);
+            int n = 0;
+            for (int i = 0; i < size; ++i) {
+                int index = (int) (order[i] >>> 32);
+                int position = (int) order[i];
+                if (n > 0 && sortedIndices[n - 1] == index) {
+                    // Positions are in insertion order, so a later set replaces the sum so far.
+                    sortedValues[n - 1] = replaces[position] ? values[position] :
+                            sortedValues[n - 1] + values[position];
+                } else {
+                    sortedIndices[n] = index;
+                    sortedValues[n++] = values[position];
+                }
+            }
+            return scaleAndCompact(n, scaler);
+        }
+
+        private SparseVector scaleAndCompact(int n, ValueScaler scaler) {
+            if (scaler != null) {
+                for (int i = 0; i < n; ++i) {
+                    if (sortedValues[i] != 0d) {
+                        sortedValues[i] = scaler.getScaledValue(sortedIndices[i], sortedValues[i]);
+                    }
+                }
+            }
+            return compact(dimension, sortedIndices, sortedValues, n);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, thread-safe memo of Porter stems. Word frequencies are heavily skewed, so a cache holding the most
+ * common few tens of thousands of words answers almost every lookup and the Stemmer only runs once per word type.
+ * Misses are stemmed with a per-thread Stemmer, so threads never wait on each other's stemming.
+ * <p/>
+ * Three eviction policies are available:
+ * <ul>
+ * <li>LRU: evicts the least recently used word. Best hit rate when the vocabulary drifts.</li>
+ * <li>FIFO: evicts the oldest word. Hits do not reorder entries, so it is cheaper than LRU.</li>
+ * <li>FILL_ONCE: keeps the first maxSize words and never evicts. Lookups take no lock at all; a good fit
+ * for a single collection whose common words show up early.</li>
+ * </ul>
+ * LRU and FIFO split the cache into independently locked segments, so each segment evicts on its own and the
+ * bound is approximate to within one entry per segment.
+ *
+ * @author npendar@groupon.com
+ */
+public class StemCache {
+    public enum Policy {LRU, FIFO, FILL_ONCE}
+
+    public static final int DEFAULT_MAX_SIZE = 50000;
+    public static final Policy DEFAULT_POLICY = Policy.LRU;
+
+    private static final int SEGMENTS = 16;
+
+    private static final StemCache DEFAULT = new StemCache(DEFAULT_MAX_SIZE, DEFAULT_POLICY);
+
+    private static final ThreadLocal<Stemmer> STEMMER = new ThreadLocal<Stemmer>() {
+        @Override
+        protected Stemmer initialValue() {
+            return new Stemmer();
+        }
+    };
+
+    private final int maxSize;
+    private final Policy policy;
+    private final Segment[] segments;
+    private final ConcurrentHashMap<String, String> fillOnce;
+    private final AtomicInteger fillOnceSize;
+    private final AtomicLong[] hits;
+    private final AtomicLong[] misses;
+
+    public StemCache(int maxSize, Policy policy) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Stem cache size must be >= 0");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Stem cache policy must not be null");
+        }
+        this.maxSize = maxSize;
+        this.policy = policy;
+
+        if (policy == Policy.FILL_ONCE) {
+            segments = null;
+            fillOnce = new ConcurrentHashMap<String, String>(Math.min(maxSize, 1 << 16) * 4 / 3 + 1, 0.75f, SEGMENTS);
+            fillOnceSize = new AtomicInteger();
+        } else {
+            segments = new Segment[SEGMENTS];
+            int segmentSize = (maxSize + SEGMENTS - 1) / SEGMENTS;
+            for (int i = 0; i < SEGMENTS; ++i) {
+                segments[i] = new Segment(segmentSize, policy == Policy.LRU);
+            }
+            fillOnce = null;
+            fillOnceSize = null;
+        }
+
+        // Counters are striped like the segments so that threads do not all hammer the same cache line.
+        hits = new AtomicLong[SEGMENTS];
+        misses = new AtomicLong[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; ++i) {
+            hits[i] = new AtomicLong();
+            misses[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * @return the cache shared by all StemmingNormalizers created with the default constructor
+     */
+    public static StemCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return the Porter stem of word, or null if word is null
+     */
+    public String stem(String word) {
+        if (word == null) {
+            return null;
+        }
+        if (maxSize == 0) {
+            return stemUncached(word);
+        }
+
+        int h = word.hashCode();
+        int stripe = (h ^ (h >>> 16)) & (SEGMENTS - 1);
+        String stem;
+        if (fillOnce != null) {
+            stem = fillOnce.get(word);
+            if (stem == null) {
+                stem = stemUncached(word);
+                if (fillOnceSize.get() < maxSize && fillOnce.putIfAbsent(word, stem) == null) {
+                    fillOnceSize.incrementAndGet();
+                }
+                misses[stripe].incrementAndGet();
+                return stem;
+            }
+        } else {
+            Segment segment = segments[stripe];
+            synchronized (segment) {
+                stem = segment.get(word);
+            }
+            if (stem == null) {
+                // Stem outside the lock; two threads missing on the same word just both compute it.
+                stem = stemUncached(word);
+                synchronized (segment) {
+                    segment.put(word, stem);
+                }
+                misses[stripe].incrementAndGet();
+                return stem;
+            }
+        }
+        hits[stripe].incrementAndGet();
+        return stem;
+    }
+
+    private static String stemUncached(String word) {
+        String stem = STEMMER.get().stem(word);
+        // Many words are their own stem; keep the caller's instance rather than a copy.
+        return stem.equals(word) ? word : stem;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public int size() {
+        if (fillOnce != null) {
+            return fillOnce.size();
+        }
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return sum(hits);
+    }
+
+    public long getMisses() {
+        return sum(misses);
+    }
+
+    /**
+     * @return fraction of lookups answered from the cache, or 0 if there were none
+     */
+    public double getHitRate() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public void clear() {
+        if (fillOnce != null) {
+            fillOnce.clear();
+            fillOnceSize.set(0);
+        } else {
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    segment.clear();
+                }
+            }
+        }
+        for (int i = 0; i < SEGMENTS; ++i) {
+            hits[i].set(0);
+            misses[i].set(0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StemCache[policy=" + policy + ", size=" + size() + "/" + maxSize + ", hits=" + getHits() +
+                ", misses=" + getMisses() + ", hit rate=" + String.format("%.4f", getHitRate()) + "]";
+    }
+
+    private static long sum(AtomicLong[] counters) {
+        long sum = 0;
+        for (AtomicLong counter : counters) {
+            sum += counter.get();
+        }
+        return sum;
+    }
+
+    private static final class Segment extends LinkedHashMap<String, String> {
+        private static final long serialVersionUID = -802845794415664868L;
+
+        private final int maxSize;
+
+        Segment(int maxSize, boolean accessOrder) {
+            super(16, 0.75f, accessOrder);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
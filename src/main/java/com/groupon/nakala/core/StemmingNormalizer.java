@@ -35,17 +35,32 @@ package com.groupon.nakala.core;
 import com.groupon.nakala.normalization.StringNormalizer;
 
 /**
+ * Replaces a word with its Porter stem. Stems are memoized in a StemCache; by default all instances share
+ * StemCache.getDefault(), so normalizers created from job flow specs pool their work.
+ *
  * @author npendar@groupon.com
  */
 public class StemmingNormalizer implements StringNormalizer {
-    private Stemmer stemmer;
+    private final StemCache cache;
 
     public StemmingNormalizer() {
-        stemmer = new Stemmer();
+        this(StemCache.getDefault());
+    }
+
+    public StemmingNormalizer(int cacheSize, StemCache.Policy policy) {
+        this(new StemCache(cacheSize, policy));
+    }
+
+    public StemmingNormalizer(StemCache cache) {
+        this.cache = cache;
+    }
+
+    public StemCache getCache() {
+        return cache;
     }
 
     @Override
     public String normalize(String s) {
-        return stemmer.stem(s);
+        return cache.stem(s);
     }
 }
@@ -42,7 +42,7 @@ import java.util.HashSet;
 /**
  * @author npendar@groupon.com
  */
-public class StringSet extends HashSet<String> implements Initializable {
+public class StringSet extends HashSet<String> implements Initializable, SharedResource {
     public void initialize(Class cls, String resource) throws ResourceInitializationException {
         try {
             _initialize(IoUtil.readLines(IoUtil.read(cls, resource)));
@@ -36,12 +36,20 @@ import com.groupon.nakala.exceptions.ResourceInitializationException;
 import com.groupon.nakala.normalization.StringNormalizer;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * @author npendar@groupon.com
  */
 public class TFTextRepresenter extends AbstractTextRepresenter implements Serializable {
+    private static final ThreadLocal<TokenSpans> spans = new ThreadLocal<TokenSpans>() {
+        @Override
+        protected TokenSpans initialValue() {
+            return new TokenSpans();
+        }
+    };
+
     protected boolean normalizeByLength = false;
 
     @Override
@@ -54,37 +62,61 @@ public class TFTextRepresenter extends AbstractTextRepresenter implements Serial
 
     @Override
     public SparseRepresentation represent(String text) {
-        SparseRepresentation rep = new SparseRepresentation(features.size());
-        tokenizer.setText(text);
-        int textSize = 0;
-        String tok = null;
-        while ((tok = tokenizer.next()) != null) {
-            ++textSize;
-            if (normalizers != null) {
-                for (StringNormalizer sn : normalizers) {
-                    tok = sn.normalize(tok);
+        if ((normalizers == null || normalizers.isEmpty()) && tokenizer instanceof OffsetTokenizer) {
+            // Without token normalization, features can be looked up directly in the text.
+            TokenSpans ts = spans.get();
+            ((OffsetTokenizer) tokenizer).tokenize(text, ts);
+            SparseVector.Builder builder = builder(features.size());
+            for (int i = 0; i < ts.size(); ++i) {
+                int index = features.getIndex(text, ts.start(i), ts.end(i));
+                if (index != -1) {
+                    builder.add(index, 1);
                 }
             }
+            return finish(builder, ts.size());
+        }
+        return represent(getTokens(text));
+    }
 
+    @Override
+    public List<String> getTokens(String text) {
+        List<String> tokens = new ArrayList<String>();
+        TokenCursor cursor = AbstractTokenizerStream.open(tokenizer, text);
+        String tok = null;
+        while ((tok = cursor.next()) != null) {
+            tokens.add(normalize(tok));
+        }
+        return tokens;
+    }
+
+    @Override
+    public SparseRepresentation represent(List<String> tokens) {
+        SparseVector.Builder builder = builder(features.size());
+        for (String tok : tokens) {
             int index = features.getIndex(tok);
             if (index == -1) {
                 continue;
             }
 
-            rep.addToEntry(index, 1);
+            builder.add(index, 1);
         }
+        return finish(builder, tokens.size());
+    }
 
-        // Normalize tfs by number of tokens
-        if (normalizeByLength && textSize > 0) {
-            rep = rep.mapMultiply(1d / textSize);
+    private SparseRepresentation finish(SparseVector.Builder builder, int numberOfTokens) {
+        if (!normalizeByLength || numberOfTokens == 0) {
+            return new SparseRepresentation(builder.build(scaler));
         }
 
+        // Normalize tfs by number of tokens
+        SparseVector vector = builder.build().multiply(1d / numberOfTokens);
+
         // Scale
         if (scaler != null) {
-            rep = rep.scale(scaler);
+            vector = vector.scale(scaler);
         }
 
-        return rep;
+        return new SparseRepresentation(vector);
     }
 
     @Override
@@ -0,0 +1,217 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.analysis.Initializable;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Append-only dictionary assigning dense int ids, starting at 0, to terms. Lookups never block and any number of
+ * threads may add terms concurrently; a term keeps its id for the lifetime of the dictionary. Analyzers that
+ * tokenize into ids intern each token once and work on int arrays from then on.
+ * <p/>
+ * Terms are kept once, by id, in pages next to their hashes; an open addressing table of ids, at most half full,
+ * maps hashes to ids. A term costs its String and 12 to 20 bytes, instead of a map entry and a boxed id. The table
+ * is rebuilt from the pages when it grows and after deserialization.
+ *
+ * @author npendar@groupon.com
+ */
+public class TermDictionary implements Initializable, SharedResource, Serializable {
+    private static final long serialVersionUID = 6043329814721568531L;
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    // Terms and their hashes by id, in pages so that growing never copies the terms already added.
+    private volatile String[][] pages = new String[16][];
+    private transient volatile int[][] hashPages;
+    private volatile int size;
+    // id + 1 of the term hashed to each slot, 0 if empty. Replaced, never shrunk, when half full.
+    private transient volatile AtomicIntegerArray slots;
+
+    public TermDictionary() {
+        hashPages = new int[pages.length][];
+        slots = new AtomicIntegerArray(64);
+    }
+
+    @Override
+    public void initialize(Parameters params) throws ResourceInitializationException {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    /**
+     * @return the id of the term, or -1 if it is not in the dictionary
+     */
+    public int getId(String term) {
+        return find(slots, term, hash(term));
+    }
+
+    /**
+     * @return the id of the term, adding it to the dictionary if necessary
+     */
+    public int intern(String term) {
+        int h = hash(term);
+        int id = find(slots, term, h);
+        if (id >= 0) {
+            return id;
+        }
+        synchronized (this) {
+            AtomicIntegerArray s = slots;
+            id = find(s, term, h);
+            if (id >= 0) {
+                return id;
+            }
+            int newId = size;
+            int page = newId >>> PAGE_BITS;
+            String[][] p = pages;
+            int[][] hp = hashPages;
+            if (page == p.length) {
+                String[][] grown = new String[2 * p.length][];
+                System.arraycopy(p, 0, grown, 0, p.length);
+                p = grown;
+                int[][] grownHashes = new int[2 * hp.length][];
+                System.arraycopy(hp, 0, grownHashes, 0, hp.length);
+                hp = grownHashes;
+            }
+            if (p[page] == null) {
+                p[page] = new String[PAGE_SIZE];
+                hp[page] = new int[PAGE_SIZE];
+            }
+            p[page][newId & (PAGE_SIZE - 1)] = term;
+            hp[page][newId & (PAGE_SIZE - 1)] = h;
+            pages = p;
+            hashPages = hp;
+            // The term must be readable by id before other threads can find its id.
+            size = newId + 1;
+            if (2 * size > s.length()) {
+                slots = rehash(2 * s.length());
+            } else {
+                put(s, h, newId);
+            }
+            return newId;
+        }
+    }
+
+    /**
+     * Interns all the tokens of a document.
+     */
+    public int[] intern(List<String> tokens) {
+        int[] result = new int[tokens.size()];
+        int i = 0;
+        for (String token : tokens) {
+            result[i++] = intern(token);
+        }
+        return result;
+    }
+
+    /**
+     * @return the term with the given id, or null if there is no such id
+     */
+    public String getTerm(int id) {
+        if (id < 0 || id >= size) {
+            return null;
+        }
+        return pages[id >>> PAGE_BITS][id & (PAGE_SIZE - 1)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int find(AtomicIntegerArray s, String term, int h) {
+        int mask = s.length() - 1;
+        for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+            int id = s.get(slot) - 1;
+            if (id < 0) {
+                return -1;
+            }
+            int page = id >>> PAGE_BITS;
+            int offset = id & (PAGE_SIZE - 1);
+            if (hashPages[page][offset] == h && term.equals(pages[page][offset])) {
+                return id;
+            }
+        }
+    }
+
+    private static void put(AtomicIntegerArray s, int h, int id) {
+        int mask = s.length() - 1;
+        int slot = h & mask;
+        while (s.get(slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        s.set(slot, id + 1);
+    }
+
+    private AtomicIntegerArray rehash(int capacity) {
+        AtomicIntegerArray s = new AtomicIntegerArray(capacity);
+        for (int id = 0; id < size; ++id) {
+            put(s, hashPages[id >>> PAGE_BITS][id & (PAGE_SIZE - 1)], id);
+        }
+        return s;
+    }
+
+    private static int hash(String term) {
+        int h = term.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int[][] hp = new int[pages.length][];
+        for (int id = 0; id < size; ++id) {
+            int page = id >>> PAGE_BITS;
+            if (hp[page] == null) {
+                hp[page] = new int[PAGE_SIZE];
+            }
+            hp[page][id & (PAGE_SIZE - 1)] = hash(pages[page][id & (PAGE_SIZE - 1)]);
+        }
+        hashPages = hp;
+        int capacity = 64;
+        while (capacity < 2 * size) {
+            capacity <<= 1;
+        }
+        slots = rehash(capacity);
+    }
+}
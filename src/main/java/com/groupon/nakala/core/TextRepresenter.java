@@ -42,6 +42,22 @@ import java.util.List;
 public interface TextRepresenter extends Representer<String> {
     public SparseRepresentation represent(String text);
 
+    /**
+     * @return the tokens of the text after tokenization and normalization, exactly as represent(String) sees them
+     */
+    public List<String> getTokens(String text);
+
+    /**
+     * Represents a text from tokens previously returned by getTokens(String), skipping tokenization and
+     * normalization.
+     */
+    public SparseRepresentation represent(List<String> tokens);
+
+    /**
+     * @return number of dimensions of the representations
+     */
+    public int getDimension();
+
     public TokenizerStream getTokenizer();
 
     public List<StringNormalizer> getNormalizers();
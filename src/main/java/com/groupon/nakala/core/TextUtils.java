@@ -113,9 +113,9 @@ public class TextUtils {
 
     public static Set<String> getWordSet(String s, TokenizerStream tokenizer) {
         Set<String> words = new HashSet<String>();
-        tokenizer.setText(s);
+        TokenCursor cursor = AbstractTokenizerStream.open(tokenizer, s);
         String word;
-        while ((word = tokenizer.next()) != null) {
+        while ((word = cursor.next()) != null) {
             words.add(word);
         }
         return words;
@@ -34,6 +34,7 @@ package com.groupon.nakala.core;
 
 import com.groupon.nakala.normalization.StringNormalizer;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -42,35 +43,39 @@ import java.util.List;
 public class TfFeatureWeightTextRepresenter extends TFTextRepresenter {
 
     @Override
-    public SparseRepresentation represent(String text) {
-        if (normalizers != null) {
-            for (StringNormalizer sn : normalizers) {
-                text = sn.normalize(text);
-            }
-        }
+    public List<String> getTokens(String text) {
+        text = normalize(text);
 
-        SparseRepresentation rep = new SparseRepresentation(features.size());
-        tokenizer.setText(text);
-        int textSize = 0;
+        List<String> tokens = new ArrayList<String>();
+        TokenCursor cursor = AbstractTokenizerStream.open(tokenizer, text);
         String tok;
-        while ((tok = tokenizer.next()) != null) {
-            ++textSize;
+        while ((tok = cursor.next()) != null) {
+            tokens.add(tok);
+        }
+        return tokens;
+    }
+
+    @Override
+    public SparseRepresentation represent(List<String> tokens) {
+        SparseVector.Builder builder = builder(features.size());
+        for (String tok : tokens) {
             int index = features.getIndex(tok);
             if (index == -1) { continue; }
-            rep.addToEntry(index, 1);
+            builder.add(index, 1);
         }
+        SparseVector vector = builder.build();
 
         // Normalize tfs by number of tokens
-        if (normalizeByLength && textSize > 0) {
-            rep = rep.mapMultiply(1d / textSize);
+        if (normalizeByLength && !tokens.isEmpty()) {
+            vector = vector.multiply(1d / tokens.size());
         }
 
-        rep = rep.multiplyByFeatureWeights(features);
+        vector = vector.multiplyByFeatureWeights(features);
 
         // Scale
-        if (scaler != null) { rep = rep.scale(scaler); }
+        if (scaler != null) { vector = vector.scale(scaler); }
 
-        return rep;
+        return new SparseRepresentation(vector);
     }
 
     @Override
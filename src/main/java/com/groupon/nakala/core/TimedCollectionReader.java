@@ -0,0 +1,156 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.db.CollectionParameters;
+import com.groupon.nakala.db.CollectionReader;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.exceptions.TextminingException;
+
+import java.util.Iterator;
+
+/**
+ * Collection reader that records, per item of another reader, the time taken to fetch it in a read stage and the
+ * time the consumer spent on it until asking for the next one in an analyze stage. Either stage may be null.
+ *
+ * @author npendar@groupon.com
+ */
+public class TimedCollectionReader implements CollectionReader {
+    private final CollectionReader reader;
+    private final JobFlowMetrics.Stage read;
+    private final JobFlowMetrics.Stage analyze;
+
+    public TimedCollectionReader(CollectionReader reader, JobFlowMetrics.Stage read) {
+        this(reader, read, null);
+    }
+
+    public TimedCollectionReader(CollectionReader reader, JobFlowMetrics.Stage read, JobFlowMetrics.Stage analyze) {
+        this.reader = reader;
+        this.read = read;
+        this.analyze = analyze;
+    }
+
+    /**
+     * @return the items of iterable, timed like the items of a TimedCollectionReader
+     */
+    public static Iterable<Analyzable> time(final Iterable<Analyzable> iterable,
+                                            final JobFlowMetrics.Stage read,
+                                            final JobFlowMetrics.Stage analyze) {
+        return new Iterable<Analyzable>() {
+            @Override
+            public Iterator<Analyzable> iterator() {
+                return new TimedIterator(iterable.iterator(), read, analyze);
+            }
+        };
+    }
+
+    @Override
+    public void initialize(CollectionParameters ps) throws ResourceInitializationException {
+        reader.initialize(ps);
+    }
+
+    @Override
+    public int getSize() {
+        return reader.getSize();
+    }
+
+    @Override
+    public void reset() throws TextminingException {
+        reader.reset();
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+    }
+
+    @Override
+    public Iterator<Analyzable> iterator() {
+        return new TimedIterator(reader.iterator(), read, analyze);
+    }
+
+    private static final class TimedIterator implements Iterator<Analyzable> {
+        private final Iterator<Analyzable> it;
+        private final JobFlowMetrics.Stage read;
+        private final JobFlowMetrics.Stage analyze;
+        // Time spent in hasNext() since the last item, which readers often use to fetch the next item.
+        private long readTime;
+        // Whether the last item handed out is being analyzed, since when.
+        private boolean analyzing;
+        private long handedOut;
+
+        TimedIterator(Iterator<Analyzable> it, JobFlowMetrics.Stage read, JobFlowMetrics.Stage analyze) {
+            this.it = it;
+            this.read = read;
+            this.analyze = analyze;
+        }
+
+        @Override
+        public boolean hasNext() {
+            long start = System.nanoTime();
+            endAnalysis(start);
+            boolean hasNext = it.hasNext();
+            readTime += System.nanoTime() - start;
+            return hasNext;
+        }
+
+        @Override
+        public Analyzable next() {
+            long start = System.nanoTime();
+            endAnalysis(start);
+            Analyzable a = it.next();
+            long end = System.nanoTime();
+            if (read != null) {
+                read.record(readTime + end - start);
+            }
+            readTime = 0L;
+            analyzing = true;
+            handedOut = end;
+            return a;
+        }
+
+        @Override
+        public void remove() {
+            it.remove();
+        }
+
+        private void endAnalysis(long now) {
+            if (analyzing) {
+                if (analyze != null) {
+                    analyze.record(now - handedOut);
+                }
+                analyzing = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+/**
+ * Reusable buffer of token offsets. Token i spans the characters from start(i), inclusive, to end(i), exclusive,
+ * of the text it was filled from. Clearing keeps the arrays, so a buffer reused across texts stops allocating
+ * once it has grown to the longest text.
+ *
+ * @author npendar@groupon.com
+ */
+public final class TokenSpans {
+    private int[] offsets;
+    private int size;
+
+    public TokenSpans() {
+        this(64);
+    }
+
+    public TokenSpans(int capacity) {
+        offsets = new int[2 * Math.max(capacity, 1)];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(int start, int end) {
+        if (2 * size == offsets.length) {
+            int[] grown = new int[2 * offsets.length];
+            System.arraycopy(offsets, 0, grown, 0, offsets.length);
+            offsets = grown;
+        }
+        offsets[2 * size] = start;
+        offsets[2 * size + 1] = end;
+        ++size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int start(int i) {
+        return offsets[2 * i];
+    }
+
+    public int end(int i) {
+        return offsets[2 * i + 1];
+    }
+
+    /**
+     * @return the start and end offsets of the tokens, interleaved. Only the first 2 * size() entries are valid.
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+}
@@ -39,6 +39,7 @@ import opennlp.tools.util.Span;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.Callable;
 
 /**
  * @author npendar@groupon.com
@@ -54,8 +55,14 @@ public final class TokenizerWrapper {
         String sep = File.separator;
         String tokenizerModelFile = sep + "nakala" + sep + "opennlp_models" + sep
                 + "en-token.bin";
-        tw.tokenizer = new TokenizerME(new TokenizerModel(tw.getClass()
-                .getResourceAsStream(tokenizerModelFile)));
+        final String modelFile = tokenizerModelFile;
+        tw.tokenizer = new TokenizerME(ResourceRegistry.get(TokenizerModel.class, modelFile,
+                new Callable<TokenizerModel>() {
+                    @Override
+                    public TokenizerModel call() throws IOException {
+                        return new TokenizerModel(TokenizerWrapper.class.getResourceAsStream(modelFile));
+                    }
+                }));
         return tw;
     }
 
@@ -52,6 +52,11 @@ public class CollectionParameters extends Parameters {
     public static final String ID_FIELD = "id_field";
     public static final String SEPARATOR = "separator";
     public static final String OUTPUT_STREAM = "output_stream";
+    public static final String ASYNC = "async";
+    public static final String BUFFER_SIZE = "buffer_size";
+    public static final String FLUSH_INTERVAL = "flush_interval";
+    public static final String COMPRESS = "compress";
+    public static final String BLOCK_SIZE = "block_size";
 
     public CollectionParameters() {
         super();
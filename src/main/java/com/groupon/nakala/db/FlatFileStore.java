@@ -36,19 +36,51 @@ import com.groupon.nakala.exceptions.ResourceInitializationException;
 import com.groupon.nakala.exceptions.StoreException;
 import com.groupon.util.io.IoUtil;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Writes analyses to a file, or to stdout if the file name is "-".
+ * <p/>
+ * With async set, every thread gets its own print stream backed by a buffer. A thread hands its buffer to a
+ * single writer thread at the end of a line once the buffer holds buffer_size bytes or its oldest line is
+ * flush_interval milliseconds old, and the writer thread writes the buffers to the file in large batches. The
+ * lines of each thread are written in order and the bytes are the same as in the synchronous mode. Buffers are
+ * written out in full on close.
+ *
  * @author npendar@groupon.com
  */
 public class FlatFileStore implements DataStore {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000L;
+
+    private static final int MAX_PENDING_BUFFERS = 64;
+    private static final ByteBuffer END_OF_OUTPUT = ByteBuffer.allocate(0);
 
     String fileName;
     PrintStream printStream;
     OutputStream outputStream;
 
+    private boolean async = false;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+    private ThreadLocal<ThreadBuffer> threadBuffer;
+    private final List<ThreadBuffer> threadBuffers = new ArrayList<ThreadBuffer>();
+    private BlockingQueue<ByteBuffer> pending;
+    private Thread writerThread;
+    private volatile Throwable writerFailure;
 
     @Override
     public void initialize(CollectionParameters params) throws ResourceInitializationException {
@@ -57,9 +89,55 @@ public class FlatFileStore implements DataStore {
         } else {
             throw new ResourceInitializationException("Output file name not set.");
         }
+
+        if (params.contains(CollectionParameters.ASYNC)) {
+            async = params.getBoolean(CollectionParameters.ASYNC);
+        }
+
+        if (params.contains(CollectionParameters.BUFFER_SIZE)) {
+            bufferSize = params.getInt(CollectionParameters.BUFFER_SIZE);
+            if (bufferSize < 1) {
+                throw new ResourceInitializationException(CollectionParameters.BUFFER_SIZE + " must be >= 1");
+            }
+        }
+
+        if (params.contains(CollectionParameters.FLUSH_INTERVAL)) {
+            flushInterval = params.getInt(CollectionParameters.FLUSH_INTERVAL);
+            if (flushInterval < 1) {
+                throw new ResourceInitializationException(CollectionParameters.FLUSH_INTERVAL + " must be >= 1");
+            }
+        }
+
+        if (async) {
+            threadBuffer = new ThreadLocal<ThreadBuffer>() {
+                @Override
+                protected ThreadBuffer initialValue() {
+                    ThreadBuffer buffer = new ThreadBuffer();
+                    synchronized (threadBuffers) {
+                        threadBuffers.add(buffer);
+                    }
+                    return buffer;
+                }
+            };
+            pending = new ArrayBlockingQueue<ByteBuffer>(MAX_PENDING_BUFFERS);
+        }
+    }
+
+    public boolean isAsync() {
+        return async;
     }
 
+    /**
+     * In async mode, returns the calling thread's buffer stream.
+     */
     public OutputStream getOutputStream() throws StoreException {
+        if (async) {
+            return getThreadBuffer();
+        }
+        return getFileOutputStream();
+    }
+
+    private synchronized OutputStream getFileOutputStream() throws StoreException {
         if (outputStream == null) {
             try {
                 outputStream = IoUtil.output(fileName);
@@ -70,22 +148,229 @@ public class FlatFileStore implements DataStore {
         return outputStream;
     }
 
+    /**
+     * In async mode, returns the calling thread's print stream.
+     */
     public PrintStream getPrintStream() throws StoreException {
+        if (async) {
+            return getThreadBuffer().printStream;
+        }
         if (printStream == null)
             printStream = new PrintStream(getOutputStream());
         return printStream;
     }
 
+    private ThreadBuffer getThreadBuffer() throws StoreException {
+        synchronized (this) {
+            if (writerThread == null) {
+                writerThread = new Thread(new Writer(), "FlatFileStore writer " + fileName);
+                writerThread.setDaemon(true);
+                writerThread.start();
+            }
+        }
+        return threadBuffer.get();
+    }
+
     public String getFileName() {
         return fileName;
     }
 
     @Override
     public void close() {
+        if (async) {
+            closeAsync();
+            return;
+        }
         try {
             printStream.close();
         } catch (Exception e) {
 
         }
     }
+
+    private void closeAsync() {
+        synchronized (this) {
+            if (writerThread == null) {
+                return;
+            }
+        }
+        for (ThreadBuffer buffer : getThreadBuffers()) {
+            buffer.handOff();
+        }
+        enqueue(END_OF_OUTPUT);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StoreException("Interrupted while closing " + fileName, e);
+        }
+        if (writerFailure != null) {
+            throw new StoreException("Failed to write " + fileName, writerFailure);
+        }
+    }
+
+    private List<ThreadBuffer> getThreadBuffers() {
+        synchronized (threadBuffers) {
+            return new ArrayList<ThreadBuffer>(threadBuffers);
+        }
+    }
+
+    /**
+     * Queues bytes for the writer thread, waiting while the queue is full.
+     */
+    private void enqueue(ByteBuffer bytes) throws StoreException {
+        try {
+            while (!pending.offer(bytes, 100L, TimeUnit.MILLISECONDS)) {
+                if (writerFailure != null) {
+                    throw new StoreException("Failed to write " + fileName, writerFailure);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StoreException("Interrupted while writing " + fileName, e);
+        }
+    }
+
+    /**
+     * Collects the output of one thread. Buffers are only handed to the writer thread at the end of a line, so
+     * lines of different threads never mix. Only the owning thread writes to a buffer, and it does not hold the
+     * buffer's lock while it waits for room in the queue.
+     */
+    private class ThreadBuffer extends OutputStream {
+        final PrintStream printStream = new PrintStream(this);
+
+        private byte[] bytes = new byte[bufferSize];
+        private int count;
+        private long firstWrite;
+
+        @Override
+        public void write(int b) {
+            boolean full;
+            synchronized (this) {
+                reserve(1);
+                bytes[count++] = (byte) b;
+                full = isFull();
+            }
+            if (full) {
+                handOff();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            boolean full;
+            synchronized (this) {
+                reserve(len);
+                System.arraycopy(b, off, bytes, count, len);
+                count += len;
+                full = isFull();
+            }
+            if (full) {
+                handOff();
+            }
+        }
+
+        private void reserve(int len) {
+            if (count == 0) {
+                firstWrite = System.currentTimeMillis();
+            }
+            if (count + len > bytes.length) {
+                byte[] larger = new byte[Math.max(count + len, 2 * bytes.length)];
+                System.arraycopy(bytes, 0, larger, 0, count);
+                bytes = larger;
+            }
+        }
+
+        private boolean isFull() {
+            return bytes[count - 1] == '\n' &&
+                    (count >= bufferSize || System.currentTimeMillis() - firstWrite >= flushInterval);
+        }
+
+        private ByteBuffer take() {
+            ByteBuffer taken = ByteBuffer.wrap(bytes, 0, count);
+            bytes = new byte[bufferSize];
+            count = 0;
+            return taken;
+        }
+
+        /**
+         * Hands the buffered bytes to the writer thread.
+         */
+        void handOff() {
+            ByteBuffer taken;
+            synchronized (this) {
+                if (count == 0) {
+                    return;
+                }
+                taken = take();
+            }
+            enqueue(taken);
+        }
+
+        /**
+         * Called by the writer thread. Hands off complete lines that have waited longer than the flush interval,
+         * unless the queue is full.
+         */
+        synchronized void handOffIfStale(long now) {
+            if (count > 0 && bytes[count - 1] == '\n' && now - firstWrite >= flushInterval &&
+                    pending.offer(ByteBuffer.wrap(bytes, 0, count))) {
+                bytes = new byte[bufferSize];
+                count = 0;
+            }
+        }
+    }
+
+    private class Writer implements Runnable {
+        @Override
+        public void run() {
+            try {
+                OutputStream out = getFileOutputStream();
+                WritableByteChannel channel = out instanceof FileOutputStream ?
+                        ((FileOutputStream) out).getChannel() : Channels.newChannel(out);
+                List<ByteBuffer> batch = new ArrayList<ByteBuffer>();
+                boolean done = false;
+                while (!done) {
+                    ByteBuffer first = pending.poll(flushInterval, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        pending.drainTo(batch);
+                        if (batch.get(batch.size() - 1) == END_OF_OUTPUT) {
+                            batch.remove(batch.size() - 1);
+                            done = true;
+                        }
+                        write(channel, batch);
+                        batch.clear();
+                    }
+                    if (!done) {
+                        long now = System.currentTimeMillis();
+                        for (ThreadBuffer buffer : getThreadBuffers()) {
+                            buffer.handOffIfStale(now);
+                        }
+                    }
+                }
+                out.close();
+            } catch (Throwable t) {
+                writerFailure = t;
+            }
+        }
+
+        private void write(WritableByteChannel channel, List<ByteBuffer> batch) throws IOException {
+            if (channel instanceof GatheringByteChannel) {
+                ByteBuffer[] buffers = batch.toArray(new ByteBuffer[batch.size()]);
+                long remaining = 0;
+                for (ByteBuffer b : buffers) {
+                    remaining += b.remaining();
+                }
+                while (remaining > 0) {
+                    remaining -= ((GatheringByteChannel) channel).write(buffers);
+                }
+            } else {
+                for (ByteBuffer b : batch) {
+                    while (b.hasRemaining()) {
+                        channel.write(b);
+                    }
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,332 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.db;
+
+import com.groupon.nakala.core.Analyzable;
+import com.groupon.nakala.core.CategorizedTextContent;
+import com.groupon.nakala.core.Id;
+import com.groupon.nakala.core.IdentifiableTextContent;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.exceptions.TextminingException;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Reads a tab separated, UTF-8 file through memory mapped windows. Initialization scans the file once for
+ * newlines and remembers the offset of every CHECKPOINT_INTERVAL-th line, so the file can be split into parts
+ * aligned to line boundaries that separate threads read concurrently. Only the id, label and text columns of a
+ * line are decoded.
+ * <p/>
+ * Requires file_name and text_field. With label_field, lines are read as CategorizedTextContent with comma
+ * separated labels, otherwise as IdentifiableTextContent. Without id_field, the 0-based line number is the id.
+ *
+ * @author npendar@groupon.com
+ */
+public class MappedTsvCollectionReader implements SplittableCollectionReader {
+    protected static final Logger logger = Logger.getLogger(MappedTsvCollectionReader.class);
+
+    protected static final int CHECKPOINT_INTERVAL = 1024;
+    protected static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    protected String fileName;
+    protected int textField;
+    protected int idField = -1;
+    protected int labelField = -1;
+    protected int size;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long length;
+    private long[] checkpoints;
+
+    @Override
+    public void initialize(CollectionParameters ps) throws ResourceInitializationException {
+        if (ps.contains(CollectionParameters.FILE_NAME)) {
+            fileName = ps.getString(CollectionParameters.FILE_NAME);
+        } else {
+            throw new ResourceInitializationException("File name not provided for collection reader.");
+        }
+
+        if (ps.contains(CollectionParameters.TEXT_FIELD)) {
+            textField = ps.getInt(CollectionParameters.TEXT_FIELD);
+        } else {
+            throw new ResourceInitializationException("Text field not specified.");
+        }
+
+        if (ps.contains(CollectionParameters.ID_FIELD)) {
+            idField = ps.getInt(CollectionParameters.ID_FIELD);
+        }
+
+        if (ps.contains(CollectionParameters.LABEL_FIELD)) {
+            labelField = ps.getInt(CollectionParameters.LABEL_FIELD);
+        }
+
+        logger.debug("Input file: " + fileName);
+        logger.debug("Text field: " + textField + ", id field: " + idField + ", label field: " + labelField);
+
+        try {
+            file = new RandomAccessFile(fileName, "r");
+            channel = file.getChannel();
+            length = channel.size();
+            scan();
+        } catch (IOException e) {
+            close();
+            throw new ResourceInitializationException("Failed to load file " + fileName, e);
+        }
+
+        logger.debug("Number of lines: " + size);
+    }
+
+    /**
+     * Counts lines and records the start of every CHECKPOINT_INTERVAL-th line.
+     */
+    private void scan() throws IOException {
+        List<Long> offsets = new ArrayList<Long>();
+        if (length > 0) {
+            offsets.add(0L);
+        }
+
+        int lines = 0;
+        byte last = '\n';
+        for (long windowStart = 0; windowStart < length; windowStart += WINDOW_SIZE) {
+            int windowLength = (int) Math.min(WINDOW_SIZE, length - windowStart);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+            for (int i = 0; i < windowLength; ++i) {
+                if (window.get(i) == '\n') {
+                    ++lines;
+                    long next = windowStart + i + 1;
+                    if (lines % CHECKPOINT_INTERVAL == 0 && next < length) {
+                        offsets.add(next);
+                    }
+                }
+            }
+            last = window.get(windowLength - 1);
+        }
+        if (last != '\n') {
+            // Last line has no newline.
+            ++lines;
+        }
+
+        size = lines;
+        checkpoints = new long[offsets.size()];
+        for (int i = 0; i < checkpoints.length; ++i) {
+            checkpoints[i] = offsets.get(i);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public Iterator<Analyzable> iterator() {
+        return new LineIterator(0, length, 0);
+    }
+
+    /**
+     * Splits the file into at most n parts with about the same number of lines. Parts start at checkpoints, so a
+     * file has at most one part per CHECKPOINT_INTERVAL lines.
+     */
+    @Override
+    public List<Iterable<Analyzable>> split(int n) {
+        int numberOfSplits = Math.max(1, Math.min(n, checkpoints.length));
+        List<Iterable<Analyzable>> splits = new ArrayList<Iterable<Analyzable>>(numberOfSplits);
+        for (int i = 0; i < numberOfSplits; ++i) {
+            final int first = (int) ((long) i * checkpoints.length / numberOfSplits);
+            final int next = (int) ((long) (i + 1) * checkpoints.length / numberOfSplits);
+            final long start = checkpoints.length == 0 ? 0 : checkpoints[first];
+            final long end = next < checkpoints.length ? checkpoints[next] : length;
+            splits.add(new Iterable<Analyzable>() {
+                @Override
+                public Iterator<Analyzable> iterator() {
+                    return new LineIterator(start, end, first * CHECKPOINT_INTERVAL);
+                }
+            });
+        }
+        return splits;
+    }
+
+    @Override
+    public void reset() throws TextminingException {
+        // Every iterator reads the file from its own start offset.
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            if (file != null) {
+                file.close();
+            }
+        } catch (IOException e) {
+
+        }
+    }
+
+    /**
+     * Iterates the lines starting in [start, end) of the file. start must be the start of a line.
+     */
+    private class LineIterator implements Iterator<Analyzable> {
+        private long position;
+        private final long end;
+        private int lineNumber;
+
+        private MappedByteBuffer window;
+        private long windowStart;
+        private int windowLength;
+
+        private final int numberOfFields = Math.max(textField, Math.max(idField, labelField)) + 1;
+        private final int[] fieldStarts = new int[numberOfFields];
+        private final int[] fieldEnds = new int[numberOfFields];
+        private byte[] bytes = new byte[1024];
+
+        LineIterator(long start, long end, int firstLineNumber) {
+            this.position = start;
+            this.end = end;
+            this.lineNumber = firstLineNumber;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < end;
+        }
+
+        @Override
+        public Analyzable next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            int lineEnd = findLineEnd();
+            int lineStart = (int) (position - windowStart);
+            position = windowStart + lineEnd + 1;
+            if (lineEnd > lineStart && window.get(lineEnd - 1) == '\r') {
+                --lineEnd;
+            }
+
+            int field = 0;
+            fieldStarts[0] = lineStart;
+            for (int i = lineStart; i < lineEnd && field < numberOfFields; ++i) {
+                if (window.get(i) == '\t') {
+                    fieldEnds[field] = i;
+                    if (++field < numberOfFields) {
+                        fieldStarts[field] = i + 1;
+                    }
+                }
+            }
+            if (field < numberOfFields) {
+                fieldEnds[field] = lineEnd;
+                ++field;
+            }
+            if (field < numberOfFields) {
+                throw new TextminingException("Not enough fields in line " + (lineNumber + 1) + " of " + fileName);
+            }
+
+            Id id = new Id(idField >= 0 ? decode(idField) : Integer.toString(lineNumber));
+            String text = decode(textField);
+            ++lineNumber;
+
+            if (labelField < 0) {
+                return new IdentifiableTextContent(id, text);
+            }
+
+            CategorizedTextContent ctc = new CategorizedTextContent(id, text);
+            for (String l : decode(labelField).trim().split(",")) {
+                ctc.addCategory(l.trim());
+            }
+            return ctc;
+        }
+
+        /**
+         * Maps a window holding the whole line that starts at position and returns the window index of the
+         * newline ending it, or the window length if the line ends the file.
+         */
+        private int findLineEnd() {
+            long size = WINDOW_SIZE;
+            if (window == null || position >= windowStart + windowLength) {
+                map(size);
+            }
+            while (true) {
+                for (int i = (int) (position - windowStart); i < windowLength; ++i) {
+                    if (window.get(i) == '\n') {
+                        return i;
+                    }
+                }
+                if (windowStart + windowLength >= length) {
+                    return windowLength;
+                }
+                // The line runs past the window. Map a window starting at the line, growing it if needed.
+                if (windowStart == position) {
+                    size *= 2;
+                }
+                map(size);
+            }
+        }
+
+        private void map(long size) {
+            windowStart = position;
+            windowLength = (int) Math.min(Math.min(size, Integer.MAX_VALUE), length - position);
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+            } catch (IOException e) {
+                throw new TextminingException("Failed to map " + fileName, e);
+            }
+        }
+
+        private String decode(int field) {
+            int len = fieldEnds[field] - fieldStarts[field];
+            if (bytes.length < len) {
+                bytes = new byte[Math.max(len, 2 * bytes.length)];
+            }
+            window.position(fieldStarts[field]);
+            window.get(bytes, 0, len);
+            return new String(bytes, 0, len, UTF8);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
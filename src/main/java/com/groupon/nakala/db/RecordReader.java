@@ -0,0 +1,262 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.db;
+
+import com.groupon.nakala.analysis.RecordAnalysis;
+import com.groupon.nakala.analysis.SerializableAnalysis;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.exceptions.TextminingException;
+import com.groupon.util.io.IoUtil;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads back the analyses written by a RecordStore, one block at a time. Every iterator reads the file from the
+ * start.
+ * <p/>
+ * Requires file_name.
+ *
+ * @author npendar@groupon.com
+ */
+public class RecordReader implements Iterable<SerializableAnalysis> {
+    private String fileName;
+    private final List<InputStream> openStreams = new ArrayList<InputStream>();
+
+    public void initialize(CollectionParameters params) throws ResourceInitializationException {
+        if (params.contains(CollectionParameters.FILE_NAME)) {
+            fileName = params.getString(CollectionParameters.FILE_NAME);
+        } else {
+            throw new ResourceInitializationException("File name not provided for record reader.");
+        }
+        if (!new File(fileName).canRead()) {
+            throw new ResourceInitializationException("Cannot read " + fileName);
+        }
+    }
+
+    @Override
+    public Iterator<SerializableAnalysis> iterator() {
+        try {
+            return new RecordIterator();
+        } catch (IOException e) {
+            throw new TextminingException("Failed to open " + fileName, e);
+        }
+    }
+
+    public void close() {
+        synchronized (openStreams) {
+            for (InputStream in : openStreams) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+
+                }
+            }
+            openStreams.clear();
+        }
+    }
+
+    private class RecordIterator implements Iterator<SerializableAnalysis> {
+        private final DataInputStream in;
+        private final boolean compressed;
+        private final Inflater inflater;
+        private final List<Class<?>> classes = new ArrayList<Class<?>>();
+        private final List<Byte> encodings = new ArrayList<Byte>();
+
+        private Block block = new Block();
+        private final DataInputStream blockIn = new DataInputStream(block);
+        private byte[] stored = new byte[0];
+        private SerializableAnalysis next;
+        private boolean done = false;
+
+        RecordIterator() throws IOException {
+            in = new DataInputStream(new BufferedInputStream(IoUtil.input(fileName), 1 << 16));
+            synchronized (openStreams) {
+                openStreams.add(in);
+            }
+            if (in.readInt() != RecordStore.MAGIC) {
+                in.close();
+                throw new IOException(fileName + " is not a record file.");
+            }
+            int version = in.readInt();
+            if (version != RecordStore.VERSION) {
+                in.close();
+                throw new IOException("Unsupported record file version " + version);
+            }
+            compressed = (in.readByte() & RecordStore.FLAG_COMPRESSED) != 0;
+            inflater = compressed ? new Inflater() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    next = read();
+                } catch (Exception e) {
+                    finish();
+                    throw new TextminingException("Failed to read " + fileName, e);
+                }
+                if (next == null) {
+                    finish();
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public SerializableAnalysis next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            SerializableAnalysis analysis = next;
+            next = null;
+            return analysis;
+        }
+
+        private void finish() {
+            done = true;
+            if (inflater != null) {
+                inflater.end();
+            }
+            synchronized (openStreams) {
+                openStreams.remove(in);
+            }
+            try {
+                in.close();
+            } catch (IOException e) {
+
+            }
+        }
+
+        /**
+         * @return the next record, or null at the end of the file
+         */
+        private SerializableAnalysis read() throws Exception {
+            while (true) {
+                if (block.available() == 0 && !readBlock()) {
+                    return null;
+                }
+                int tag = RecordIo.readVarInt(blockIn);
+                if (tag == 0) {
+                    encodings.add(blockIn.readByte());
+                    classes.add(Class.forName(RecordIo.readString(blockIn)));
+                    continue;
+                }
+
+                int classNumber = tag - 1;
+                int length = RecordIo.readVarInt(blockIn);
+                InputStream record = block.slice(length);
+                if (encodings.get(classNumber) == RecordStore.ENCODING_RECORD) {
+                    RecordAnalysis analysis = (RecordAnalysis) classes.get(classNumber).newInstance();
+                    analysis.readRecord(new DataInputStream(record));
+                    return analysis;
+                } else {
+                    ObjectInputStream ois = new ObjectInputStream(record);
+                    return (SerializableAnalysis) ois.readObject();
+                }
+            }
+        }
+
+        /**
+         * @return false at the end of the file
+         */
+        private boolean readBlock() throws IOException, DataFormatException {
+            int rawLength;
+            try {
+                rawLength = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            int storedLength = in.readInt();
+            byte[] raw = block.getBytes(rawLength);
+            if (compressed) {
+                if (stored.length < storedLength) {
+                    stored = new byte[storedLength];
+                }
+                in.readFully(stored, 0, storedLength);
+                inflater.reset();
+                inflater.setInput(stored, 0, storedLength);
+                int inflated = 0;
+                while (inflated < rawLength) {
+                    int n = inflater.inflate(raw, inflated, rawLength - inflated);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IOException("Corrupt block in " + fileName);
+                    }
+                    inflated += n;
+                }
+            } else {
+                in.readFully(raw, 0, rawLength);
+            }
+            block.fill(rawLength);
+            return true;
+        }
+    }
+
+    /**
+     * A reusable byte array input stream that hands out records without copying them.
+     */
+    private static class Block extends ByteArrayInputStream {
+        Block() {
+            super(new byte[0]);
+        }
+
+        /**
+         * @return an array of at least length bytes to be filled before calling fill
+         */
+        byte[] getBytes(int length) {
+            if (buf.length < length) {
+                buf = new byte[length];
+            }
+            return buf;
+        }
+
+        void fill(int length) {
+            pos = 0;
+            count = length;
+        }
+
+        InputStream slice(int length) throws IOException {
+            if (length > count - pos) {
+                throw new EOFException("Record runs past the end of its block.");
+            }
+            InputStream record = new ByteArrayInputStream(buf, pos, length);
+            pos += length;
+            return record;
+        }
+    }
+}
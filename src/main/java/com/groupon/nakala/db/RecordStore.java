@@ -0,0 +1,223 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.db;
+
+import com.groupon.nakala.analysis.RecordAnalysis;
+import com.groupon.nakala.analysis.SerializableAnalysis;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.exceptions.StoreException;
+import com.groupon.util.io.IoUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes SerializableAnalysis objects as length prefixed records, to be read back with RecordReader. Unlike
+ * SerializationStore, nothing written is remembered, so memory use does not grow with the number of records.
+ * <p/>
+ * The file starts with a header (int MAGIC, int VERSION, byte flags) followed by blocks of about block_size
+ * bytes, each stored as int raw length, int stored length and the bytes, deflated if compress is set. A block
+ * holds entries, each starting with a variable length tag:
+ * <pre>
+ * 0:     schema entry, byte ENCODING_RECORD or ENCODING_JAVA, string class name; assigns the next class number
+ * n > 0: record of class number n - 1, variable length size, bytes
+ * </pre>
+ * A class is described once, before its first record. RecordAnalysis classes write their own fields; other
+ * SerializableAnalysis classes are written with a fresh ObjectOutputStream per record, which is less compact.
+ * <p/>
+ * Requires file_name. Optional: compress (default false) and block_size (default 256KB).
+ *
+ * @author npendar@groupon.com
+ */
+public class RecordStore implements DataStore {
+    static final int MAGIC = 0x4e4b5253;
+    static final int VERSION = 1;
+    static final byte FLAG_COMPRESSED = 1;
+
+    static final byte ENCODING_RECORD = 0;
+    static final byte ENCODING_JAVA = 1;
+
+    public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+    private String fileName;
+    private boolean compress = false;
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+
+    private DataOutputStream out;
+    private final Map<Class<?>, Integer> classNumbers = new HashMap<Class<?>, Integer>();
+    private final Buffer block = new Buffer();
+    private final DataOutputStream blockOut = new DataOutputStream(block);
+    private final Buffer record = new Buffer();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private Deflater deflater;
+    private byte[] deflated;
+
+    @Override
+    public void initialize(CollectionParameters params) throws ResourceInitializationException {
+        if (params.contains(CollectionParameters.FILE_NAME)) {
+            fileName = params.getString(CollectionParameters.FILE_NAME);
+        } else {
+            throw new ResourceInitializationException("Output file name not set.");
+        }
+
+        if (params.contains(CollectionParameters.COMPRESS)) {
+            compress = params.getBoolean(CollectionParameters.COMPRESS);
+        }
+
+        if (params.contains(CollectionParameters.BLOCK_SIZE)) {
+            blockSize = params.getInt(CollectionParameters.BLOCK_SIZE);
+            if (blockSize < 1) {
+                throw new ResourceInitializationException(CollectionParameters.BLOCK_SIZE + " must be >= 1");
+            }
+        }
+
+        try {
+            out = new DataOutputStream(IoUtil.output(fileName));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeByte(compress ? FLAG_COMPRESSED : 0);
+        } catch (IOException e) {
+            throw new ResourceInitializationException("Failed to open file " + fileName, e);
+        }
+
+        if (compress) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+        }
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public synchronized void write(SerializableAnalysis analysis) throws StoreException {
+        try {
+            Class<?> cls = analysis.getClass();
+            Integer classNumber = classNumbers.get(cls);
+            if (classNumber == null) {
+                classNumber = classNumbers.size();
+                classNumbers.put(cls, classNumber);
+                RecordIo.writeVarInt(blockOut, 0);
+                blockOut.writeByte(analysis instanceof RecordAnalysis ? ENCODING_RECORD : ENCODING_JAVA);
+                RecordIo.writeString(blockOut, cls.getName());
+            }
+
+            record.reset();
+            if (analysis instanceof RecordAnalysis) {
+                ((RecordAnalysis) analysis).writeRecord(recordOut);
+                recordOut.flush();
+            } else {
+                ObjectOutputStream oos = new ObjectOutputStream(record);
+                oos.writeObject(analysis);
+                oos.close();
+            }
+
+            RecordIo.writeVarInt(blockOut, classNumber + 1);
+            RecordIo.writeVarInt(blockOut, record.size());
+            record.writeTo(blockOut);
+
+            if (block.size() >= blockSize) {
+                writeBlock();
+            }
+        } catch (IOException e) {
+            throw new StoreException("Failed to write record to " + fileName, e);
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        blockOut.flush();
+        int rawLength = block.size();
+        if (rawLength == 0) {
+            return;
+        }
+        out.writeInt(rawLength);
+        if (compress) {
+            if (deflated == null || deflated.length < rawLength + 64) {
+                deflated = new byte[rawLength + rawLength / 8 + 64];
+            }
+            deflater.reset();
+            deflater.setInput(block.getBytes(), 0, rawLength);
+            deflater.finish();
+            int storedLength = 0;
+            while (!deflater.finished()) {
+                if (storedLength == deflated.length) {
+                    byte[] larger = new byte[2 * deflated.length];
+                    System.arraycopy(deflated, 0, larger, 0, storedLength);
+                    deflated = larger;
+                }
+                storedLength += deflater.deflate(deflated, storedLength, deflated.length - storedLength);
+            }
+            out.writeInt(storedLength);
+            out.write(deflated, 0, storedLength);
+        } else {
+            out.writeInt(rawLength);
+            out.write(block.getBytes(), 0, rawLength);
+        }
+        block.reset();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            writeBlock();
+            out.close();
+        } catch (IOException e) {
+            throw new StoreException("Failed to close " + fileName, e);
+        } finally {
+            out = null;
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * A byte array output stream whose bytes can be read without copying.
+     */
+    private static class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(1024);
+        }
+
+        byte[] getBytes() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.db;
+
+import com.groupon.nakala.core.Analyzable;
+import com.groupon.nakala.core.Id;
+import com.groupon.nakala.core.TokenizedTextContent;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.exceptions.TextminingException;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Reads a corpus written by TokenizedCorpusStore through memory mapped windows. Documents are returned as
+ * TokenizedTextContent, so text representers skip tokenization and normalization for them. Token and label
+ * strings are shared by all documents.
+ * <p/>
+ * Requires file_name.
+ *
+ * @author npendar@groupon.com
+ */
+public class TokenizedCorpusReader implements CollectionReader {
+    protected static final Logger logger = Logger.getLogger(TokenizedCorpusReader.class);
+
+    protected static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    protected String fileName;
+    protected int size;
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long dictionaryOffset;
+    private String[] vocabulary;
+    private String[] labels;
+
+    @Override
+    public void initialize(CollectionParameters ps) throws ResourceInitializationException {
+        if (ps.contains(CollectionParameters.FILE_NAME)) {
+            fileName = ps.getString(CollectionParameters.FILE_NAME);
+        } else {
+            throw new ResourceInitializationException("File name not provided for collection reader.");
+        }
+
+        try {
+            file = new RandomAccessFile(fileName, "r");
+            channel = file.getChannel();
+            if (channel.size() < TokenizedCorpusStore.HEADER_SIZE) {
+                throw new ResourceInitializationException(fileName + " is not a tokenized corpus.");
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, TokenizedCorpusStore.HEADER_SIZE);
+            if (header.getInt() != TokenizedCorpusStore.MAGIC) {
+                throw new ResourceInitializationException(fileName + " is not a tokenized corpus.");
+            }
+            int version = header.getInt();
+            if (version != TokenizedCorpusStore.VERSION) {
+                throw new ResourceInitializationException("Unsupported tokenized corpus version " + version);
+            }
+            size = header.getInt();
+            dictionaryOffset = header.getLong();
+            if (dictionaryOffset < TokenizedCorpusStore.HEADER_SIZE) {
+                throw new ResourceInitializationException(fileName + " was not closed properly.");
+            }
+
+            Window dictionary = new Window();
+            dictionary.position = dictionaryOffset;
+            dictionary.end = channel.size();
+            vocabulary = new String[dictionary.readInt()];
+            for (int i = 0; i < vocabulary.length; ++i) {
+                vocabulary[i] = dictionary.readString();
+            }
+            labels = new String[dictionary.readInt()];
+            for (int i = 0; i < labels.length; ++i) {
+                labels[i] = dictionary.readString();
+            }
+        } catch (IOException e) {
+            close();
+            throw new ResourceInitializationException("Failed to load file " + fileName, e);
+        } catch (ResourceInitializationException e) {
+            close();
+            throw e;
+        } catch (TextminingException e) {
+            close();
+            throw new ResourceInitializationException("Failed to load file " + fileName, e);
+        }
+
+        logger.debug("Number of documents: " + size + ", vocabulary size: " + vocabulary.length +
+                ", number of labels: " + labels.length);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    public List<String> getVocabulary() {
+        return Collections.unmodifiableList(Arrays.asList(vocabulary));
+    }
+
+    public List<String> getLabels() {
+        return Collections.unmodifiableList(Arrays.asList(labels));
+    }
+
+    @Override
+    public Iterator<Analyzable> iterator() {
+        final Window window = new Window();
+        window.position = TokenizedCorpusStore.HEADER_SIZE;
+        window.end = dictionaryOffset;
+
+        return new Iterator<Analyzable>() {
+            @Override
+            public boolean hasNext() {
+                return window.position < window.end;
+            }
+
+            @Override
+            public Analyzable next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Id id = new Id(window.readString());
+                int n = window.readInt();
+                window.ensure(4L * n);
+                Set<String> categories = new HashSet<String>();
+                for (int i = 0; i < n; ++i) {
+                    categories.add(labels[window.getInt()]);
+                }
+                n = window.readInt();
+                window.ensure(4L * n);
+                List<String> tokens = new ArrayList<String>(n);
+                for (int i = 0; i < n; ++i) {
+                    tokens.add(vocabulary[window.getInt()]);
+                }
+                return new TokenizedTextContent(id, categories, tokens);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void reset() throws TextminingException {
+        // Every iterator reads the file from the start.
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            if (file != null) {
+                file.close();
+            }
+        } catch (IOException e) {
+
+        }
+    }
+
+    /**
+     * Reads [position, end) of the file through a mapped window that is moved forward as needed.
+     */
+    private class Window {
+        long position;
+        long end;
+
+        private MappedByteBuffer buffer;
+        private long bufferStart;
+        private byte[] bytes = new byte[256];
+
+        /**
+         * Makes sure the next n bytes are mapped.
+         */
+        void ensure(long n) {
+            if (position + n > end) {
+                throw new TextminingException("Unexpected end of tokenized corpus " + fileName);
+            }
+            if (buffer == null || position + n > bufferStart + buffer.limit()) {
+                bufferStart = position;
+                int length = (int) Math.min(Math.max(WINDOW_SIZE, n), end - position);
+                try {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, bufferStart, length);
+                } catch (IOException e) {
+                    throw new TextminingException("Failed to map " + fileName, e);
+                }
+            }
+            buffer.position((int) (position - bufferStart));
+        }
+
+        /**
+         * Reads an int that has been mapped by ensure.
+         */
+        int getInt() {
+            position += 4;
+            return buffer.getInt();
+        }
+
+        int readInt() {
+            ensure(4);
+            return getInt();
+        }
+
+        String readString() {
+            int length = readInt();
+            ensure(length);
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, 2 * bytes.length)];
+            }
+            buffer.get(bytes, 0, length);
+            position += length;
+            return new String(bytes, 0, length, TokenizedCorpusStore.UTF8);
+        }
+    }
+}
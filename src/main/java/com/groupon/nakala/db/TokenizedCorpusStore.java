@@ -0,0 +1,166 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.db;
+
+import com.groupon.nakala.core.Id;
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.exceptions.StoreException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Writes tokenized, normalized documents to a binary corpus file that TokenizedCorpusReader maps back into
+ * memory. Tokens and labels are stored as int ids into a vocabulary and a label list that are written once,
+ * at the end of the file, when the store is closed. All numbers are big endian.
+ * <pre>
+ * header:     int MAGIC, int VERSION, int number of documents, long offset of the dictionary
+ * document:   string id, int number of labels, int[] label ids, int number of tokens, int[] token ids
+ * dictionary: int vocabulary size, string[] vocabulary, int number of labels, string[] labels
+ * string:     int number of bytes, UTF-8 bytes
+ * </pre>
+ * Requires file_name.
+ *
+ * @author npendar@groupon.com
+ */
+public class TokenizedCorpusStore implements DataStore {
+    static final int MAGIC = 0x4e4b5443;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 20;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private String fileName;
+    private FileOutputStream fileOutputStream;
+    private DataOutputStream out;
+    private int numberOfDocuments;
+
+    private Map<String, Integer> vocabulary = new HashMap<String, Integer>();
+    private List<String> tokens = new ArrayList<String>();
+    private Map<String, Integer> labelIds = new HashMap<String, Integer>();
+    private List<String> labels = new ArrayList<String>();
+
+    @Override
+    public void initialize(CollectionParameters params) throws ResourceInitializationException {
+        if (params.contains(CollectionParameters.FILE_NAME)) {
+            fileName = params.getString(CollectionParameters.FILE_NAME);
+        } else {
+            throw new ResourceInitializationException("Output file name not set.");
+        }
+
+        try {
+            fileOutputStream = new FileOutputStream(fileName);
+            out = new DataOutputStream(new BufferedOutputStream(fileOutputStream, 1 << 16));
+            // Document count and dictionary offset are filled in on close.
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(0);
+            out.writeLong(0L);
+        } catch (IOException e) {
+            throw new ResourceInitializationException("Failed to open file " + fileName, e);
+        }
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public synchronized void write(Id id, Collection<String> documentLabels, List<String> documentTokens)
+            throws StoreException {
+        try {
+            writeString(id.toString());
+            out.writeInt(documentLabels.size());
+            for (String label : documentLabels) {
+                out.writeInt(getId(label, labelIds, labels));
+            }
+            out.writeInt(documentTokens.size());
+            for (String token : documentTokens) {
+                out.writeInt(getId(token, vocabulary, tokens));
+            }
+            ++numberOfDocuments;
+        } catch (IOException e) {
+            throw new StoreException("Failed to write document " + id + " to " + fileName, e);
+        }
+    }
+
+    private static int getId(String s, Map<String, Integer> ids, List<String> strings) {
+        Integer id = ids.get(s);
+        if (id == null) {
+            id = strings.size();
+            ids.put(s, id);
+            strings.add(s);
+        }
+        return id;
+    }
+
+    private void writeString(String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.flush();
+            long dictionaryOffset = fileOutputStream.getChannel().position();
+
+            out.writeInt(tokens.size());
+            for (String token : tokens) {
+                writeString(token);
+            }
+            out.writeInt(labels.size());
+            for (String label : labels) {
+                writeString(label);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(12);
+            header.putInt(numberOfDocuments).putLong(dictionaryOffset).flip();
+            fileOutputStream.getChannel().write(header, 8);
+            out.close();
+        } catch (IOException e) {
+            throw new StoreException("Failed to close " + fileName, e);
+        } finally {
+            out = null;
+        }
+    }
+}
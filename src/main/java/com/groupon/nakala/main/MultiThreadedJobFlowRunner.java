@@ -95,6 +95,11 @@ public final class MultiThreadedJobFlowRunner {
         logger.info("Staring job with " + analyzers.length + " threads.");
 
         MultiThreadedJobFlow mtjf = new MultiThreadedJobFlow(input, analyzers, outputs);
+        mtjf.setQueueSize(specs.getQueueSize());
+        mtjf.setBatchSize(specs.getBatchSize());
+        if (specs.isMetricsEnabled()) {
+            mtjf.enableMetrics(specs.getMetricsInterval(), specs.getMetricsFile());
+        }
         mtjf.process();
 
         logger.info("Job complete.");
@@ -34,7 +34,14 @@ package com.groupon.nakala.main;
 
 import com.groupon.nakala.analysis.AnalysisCollector;
 import com.groupon.nakala.analysis.CollectionAnalyzer;
+import com.groupon.nakala.analysis.ParallelCollectionAnalyzer;
+import com.groupon.nakala.core.FanOutJobFlow;
+import com.groupon.nakala.core.JobFlowBranch;
+import com.groupon.nakala.core.JobFlowMetrics;
+import com.groupon.nakala.core.MetricsAware;
+import com.groupon.nakala.core.ParallelCollectionJobFlow;
 import com.groupon.nakala.core.SimpleJobFlowSpecs;
+import com.groupon.nakala.core.TimedCollectionReader;
 import com.groupon.nakala.db.CollectionReader;
 import com.groupon.nakala.db.DataStore;
 import com.groupon.util.io.IoUtil;
@@ -87,22 +94,94 @@ public final class SimpleJobFlow {
             System.exit(30);
         }
         CollectionReader input = specs.getCollectionReader();
+
+        JobFlowMetrics metrics = null;
+        if (specs.isMetricsEnabled()) {
+            metrics = new JobFlowMetrics();
+            metrics.startReporting(specs.getMetricsInterval(), specs.getMetricsFile());
+        }
+
+        if (specs.getBranches() != null) {
+            if (specs.getParallelism() > 1) {
+                logger.warn("parallelism is ignored in job flows with branches.");
+            }
+            try {
+                FanOutJobFlow jobFlow = new FanOutJobFlow(input, specs.getBranches());
+                if (metrics != null) {
+                    jobFlow.setMetrics(metrics);
+                    for (JobFlowBranch branch : specs.getBranches()) {
+                        if (branch.getCollectionAnalyzer() instanceof MetricsAware) {
+                            ((MetricsAware) branch.getCollectionAnalyzer()).setMetrics(metrics);
+                        }
+                    }
+                }
+                jobFlow.process();
+            } catch (Exception e) {
+                logger.fatal("Job flow failed.", e);
+                e.printStackTrace();
+            } finally {
+                input.close();
+                if (metrics != null) {
+                    metrics.stopReporting();
+                }
+            }
+            return;
+        }
+
         CollectionAnalyzer collectionAnalyzer = specs.getCollectionAnalyzer();
         DataStore[] outputs = specs.getDataStores();
 
+        if (metrics != null) {
+            if (collectionAnalyzer instanceof MetricsAware) {
+                ((MetricsAware) collectionAnalyzer).setMetrics(metrics);
+            }
+        }
+
         try {
-            AnalysisCollector analysisCollector = collectionAnalyzer.analyze(input);
+            AnalysisCollector analysisCollector;
+            int parallelism = specs.getParallelism();
+            if (parallelism > 1 && collectionAnalyzer instanceof ParallelCollectionAnalyzer) {
+                ParallelCollectionJobFlow jobFlow = new ParallelCollectionJobFlow(
+                        input, (ParallelCollectionAnalyzer) collectionAnalyzer, parallelism);
+                jobFlow.setMetrics(metrics);
+                analysisCollector = jobFlow.process();
+            } else {
+                if (parallelism > 1) {
+                    logger.warn(collectionAnalyzer.getClass().getName() +
+                            " cannot analyze partitions in parallel. Running single threaded.");
+                }
+                if (metrics == null) {
+                    analysisCollector = collectionAnalyzer.analyze(input);
+                } else {
+                    // Reading and analysis are timed per item; the whole call also includes work done after
+                    // the last item, e.g. training.
+                    JobFlowMetrics.Stage total = metrics.getTimer("analyze_total");
+                    long start = total.start();
+                    analysisCollector = collectionAnalyzer.analyze(new TimedCollectionReader(
+                            input, metrics.getStage("read"), metrics.getStage("analyze")));
+                    total.stop(start);
+                }
+            }
             input.close();
             collectionAnalyzer.shutdown();
 
+            JobFlowMetrics.Stage store = metrics == null ? null : metrics.getTimer("store");
             for (DataStore output : outputs) {
+                long start = store == null ? 0L : store.start();
                 analysisCollector.store(output);
                 output.close();
+                if (store != null) {
+                    store.stop(start);
+                }
             }
         } catch (Exception e) {
             collectionAnalyzer.shutdown();
             logger.fatal("Job flow failed.", e);
             e.printStackTrace();
+        } finally {
+            if (metrics != null) {
+                metrics.stopReporting();
+            }
         }
     }
 }
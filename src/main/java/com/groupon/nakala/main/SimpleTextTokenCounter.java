@@ -37,6 +37,7 @@ import com.groupon.nakala.analysis.CollectionAnalyzer;
 import com.groupon.nakala.analysis.CollectionFeatureCounter;
 import com.groupon.nakala.core.Parameters;
 import com.groupon.nakala.core.RegexpTokenizerStream;
+import com.groupon.nakala.core.StemCache;
 import com.groupon.nakala.core.StemmingNormalizer;
 import com.groupon.nakala.core.StringSet;
 import com.groupon.nakala.db.*;
@@ -66,6 +67,9 @@ public class SimpleTextTokenCounter {
         opts.addOption("s", "separator", true, "Field separator pattern.");
         opts.addOption("x", "index", true, "Index of text content in case of delimited input (starting from 1).");
         opts.addOption("m", "stem", false, "Stem incoming tokens.");
+        opts.addOption(null, "stem-cache-size", true, "Number of distinct words whose stems are cached (Default: " +
+                StemCache.DEFAULT_MAX_SIZE + ").");
+        opts.addOption(null, "stem-cache-policy", true, "Stem cache eviction policy: LRU (Default), FIFO or FILL_ONCE.");
         opts.addOption("t", "stopwords", false, "Use stop words list.");
         opts.addOption(null, "stopwords-file", true, "If specified, use the stop words list provided; otherwise, use the default stop words.");
 
@@ -117,8 +121,12 @@ public class SimpleTextTokenCounter {
         normalizers.add(new CaseNormalizer());
         normalizers.add(new SNormalizer());
 
+        StemmingNormalizer stemmer = null;
         if (cli.hasOption("stem")) {
-            normalizers.add(new StemmingNormalizer());
+            stemmer = new StemmingNormalizer(
+                    Integer.parseInt(cli.getOptionValue("stem-cache-size", Integer.toString(StemCache.DEFAULT_MAX_SIZE))),
+                    StemCache.Policy.valueOf(cli.getOptionValue("stem-cache-policy", StemCache.DEFAULT_POLICY.name())));
+            normalizers.add(stemmer);
         }
 
         analyzerParams.set("normalizers", normalizers);
@@ -145,5 +153,8 @@ public class SimpleTextTokenCounter {
         counts.store(output);
 
         output.close();
+        if (stemmer != null) {
+            System.err.println(stemmer.getCache());
+        }
     }
 }
\ No newline at end of file
@@ -32,12 +32,16 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.groupon.nakala.normalization;
 
+import java.util.regex.Pattern;
+
 /**
  * @author npendar@groupon.com
  */
 public class AllNumberNormalizer implements StringNormalizer {
+    private static final Pattern PATTERN = Pattern.compile("\\b\\d+\\b");
+
     @Override
     public String normalize(String s) {
-        return s.replaceAll("\\b\\d+\\b", "__num__");
+        return PATTERN.matcher(s).replaceAll("__num__");
     }
 }
@@ -32,13 +32,16 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.groupon.nakala.normalization;
 
+import java.util.regex.Pattern;
+
 /**
  * @author npendar@groupon.com
  */
 public class NonWordNormalizer implements StringNormalizer {
+    private static final Pattern PATTERN = Pattern.compile("\\W+");
 
     @Override
     public String normalize(String s) {
-        return s.replaceAll("\\W+", " ").trim();
+        return PATTERN.matcher(s).replaceAll(" ").trim();
     }
 }
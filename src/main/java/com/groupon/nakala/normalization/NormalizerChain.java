@@ -0,0 +1,375 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.normalization;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Applies a list of normalizers in order. Runs of consecutive CaseNormalizer, NumberNormalizer,
+ * AllNumberNormalizer, NonWordNormalizer and SNormalizer are fused: they rewrite a reusable per-thread char
+ * buffer in place and only the final result is turned into a String. Their output is the same as applying them
+ * one by one; where Unicode rules make that hard to guarantee, the fused step hands the buffer to the original
+ * normalizer. Any other normalizer is called as is.
+ *
+ * @author npendar@groupon.com
+ */
+public class NormalizerChain implements StringNormalizer {
+    private static final long serialVersionUID = -7303938783347883285L;
+
+    private static final int CASE = 0;
+    private static final int NUMBER = 1;
+    private static final int ALL_NUMBER = 2;
+    private static final int NON_WORD = 3;
+    private static final int S = 4;
+
+    private static final String NUM = "__num__";
+    private static final char[][] S_FORMS = {"'s".toCharArray(), "&apos;s".toCharArray(), "’s".toCharArray()};
+
+    private static final ThreadLocal<Buffer> buffers = new ThreadLocal<Buffer>() {
+        @Override
+        protected Buffer initialValue() {
+            return new Buffer();
+        }
+    };
+
+    private final List<StringNormalizer> normalizers;
+    private final List<Step> steps = new ArrayList<Step>();
+
+    public NormalizerChain(List<StringNormalizer> normalizers) {
+        this.normalizers = new ArrayList<StringNormalizer>(normalizers);
+        FusedStep run = null;
+        for (StringNormalizer normalizer : normalizers) {
+            int op = opOf(normalizer);
+            if (op < 0) {
+                run = null;
+                steps.add(new PlainStep(normalizer));
+            } else {
+                if (run == null) {
+                    run = new FusedStep();
+                    steps.add(run);
+                }
+                run.add(op, normalizer);
+            }
+        }
+    }
+
+    /**
+     * @return the normalizers this chain was compiled from
+     */
+    public List<StringNormalizer> getNormalizers() {
+        return normalizers;
+    }
+
+    @Override
+    public String normalize(String s) {
+        if (s == null) {
+            return null;
+        }
+        for (Step step : steps) {
+            s = step.apply(s);
+        }
+        return s;
+    }
+
+    private static int opOf(StringNormalizer normalizer) {
+        // Exact classes only: a subclass may have changed the behavior.
+        Class<?> cls = normalizer.getClass();
+        if (cls == CaseNormalizer.class) return CASE;
+        if (cls == NumberNormalizer.class) return NUMBER;
+        if (cls == AllNumberNormalizer.class) return ALL_NUMBER;
+        if (cls == NonWordNormalizer.class) return NON_WORD;
+        if (cls == SNormalizer.class) return S;
+        return -1;
+    }
+
+    private static abstract class Step implements Serializable {
+        private static final long serialVersionUID = -5531106694356511345L;
+
+        abstract String apply(String s);
+    }
+
+    private static final class PlainStep extends Step {
+        private static final long serialVersionUID = 4513614937554165036L;
+
+        private final StringNormalizer normalizer;
+
+        PlainStep(StringNormalizer normalizer) {
+            this.normalizer = normalizer;
+        }
+
+        @Override
+        String apply(String s) {
+            return normalizer.normalize(s);
+        }
+    }
+
+    private static final class FusedStep extends Step {
+        private static final long serialVersionUID = -3257981128735850385L;
+
+        private int[] ops = new int[0];
+        private StringNormalizer[] fallbacks = new StringNormalizer[0];
+
+        void add(int op, StringNormalizer normalizer) {
+            int n = ops.length;
+            int[] newOps = new int[n + 1];
+            System.arraycopy(ops, 0, newOps, 0, n);
+            newOps[n] = op;
+            StringNormalizer[] newFallbacks = new StringNormalizer[n + 1];
+            System.arraycopy(fallbacks, 0, newFallbacks, 0, n);
+            newFallbacks[n] = normalizer;
+            ops = newOps;
+            fallbacks = newFallbacks;
+        }
+
+        @Override
+        String apply(String s) {
+            Buffer buffer = buffers.get();
+            buffer.load(s);
+            for (int i = 0; i < ops.length; ++i) {
+                boolean done;
+                switch (ops[i]) {
+                    case CASE:
+                        done = buffer.lowerCase();
+                        break;
+                    case NUMBER:
+                        done = buffer.number();
+                        break;
+                    case ALL_NUMBER:
+                        done = buffer.allNumbers();
+                        break;
+                    case NON_WORD:
+                        done = buffer.nonWords();
+                        break;
+                    default:
+                        buffer.sForms();
+                        done = true;
+                }
+                if (!done) {
+                    buffer.load(fallbacks[i].normalize(buffer.toString()));
+                }
+            }
+            return buffer.toString(s);
+        }
+    }
+
+    private static final class Buffer {
+        char[] chars = new char[64];
+        char[] spare = new char[64];
+        int length;
+
+        void load(String s) {
+            length = s.length();
+            if (chars.length < length) {
+                chars = new char[Math.max(length, 2 * chars.length)];
+            }
+            s.getChars(0, length, chars, 0);
+        }
+
+        /**
+         * @return the buffer as a String, reusing original if the buffer still holds the same characters
+         */
+        String toString(String original) {
+            if (original.length() == length) {
+                int i = 0;
+                while (i < length && original.charAt(i) == chars[i]) {
+                    ++i;
+                }
+                if (i == length) {
+                    return original;
+                }
+            }
+            return toString();
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+
+        /**
+         * String.toLowerCase for ASCII text in locales without special casing rules.
+         */
+        boolean lowerCase() {
+            String language = Locale.getDefault().getLanguage();
+            if ("tr".equals(language) || "az".equals(language) || "lt".equals(language)) {
+                return false;
+            }
+            for (int i = 0; i < length; ++i) {
+                char c = chars[i];
+                if (c >= 128) {
+                    return false;
+                }
+                if (c >= 'A' && c <= 'Z') {
+                    chars[i] = (char) (c + ('a' - 'A'));
+                }
+            }
+            return true;
+        }
+
+        /**
+         * replaceAll("^\\d+$", "__num__"). Without MULTILINE, $ also matches before a final line terminator.
+         */
+        boolean number() {
+            int k = 0;
+            while (k < length && isDigit(chars[k])) {
+                ++k;
+            }
+            int rest = length - k;
+            if (k > 0 && (rest == 0 || (rest == 1 && isLineTerminator(chars[k])) ||
+                    (rest == 2 && chars[k] == '\r' && chars[k + 1] == '\n'))) {
+                char[] out = reserve(NUM.length() + rest);
+                NUM.getChars(0, NUM.length(), out, 0);
+                System.arraycopy(chars, k, out, NUM.length(), rest);
+                swap(NUM.length() + rest);
+            }
+            return true;
+        }
+
+        /**
+         * replaceAll("\\b\\d+\\b", "__num__") for ASCII text. Word boundaries next to other characters differ
+         * between JDK versions, so those are left to the regex.
+         */
+        boolean allNumbers() {
+            for (int i = 0; i < length; ++i) {
+                if (chars[i] >= 128) {
+                    return false;
+                }
+            }
+            char[] out = reserve(length + length / 2 * (NUM.length() - 1) + NUM.length());
+            int n = 0;
+            int i = 0;
+            while (i < length) {
+                if (isDigit(chars[i]) && (i == 0 || !isWordChar(chars[i - 1]))) {
+                    int end = i;
+                    while (end < length && isDigit(chars[end])) {
+                        ++end;
+                    }
+                    if (end == length || !isWordChar(chars[end])) {
+                        NUM.getChars(0, NUM.length(), out, n);
+                        n += NUM.length();
+                    } else {
+                        System.arraycopy(chars, i, out, n, end - i);
+                        n += end - i;
+                    }
+                    i = end;
+                } else {
+                    out[n++] = chars[i++];
+                }
+            }
+            swap(n);
+            return true;
+        }
+
+        /**
+         * replaceAll("\\W+", " ").trim(). \W is ASCII only, so this is exact for any text.
+         */
+        boolean nonWords() {
+            int n = 0;
+            boolean pendingSpace = false;
+            for (int i = 0; i < length; ++i) {
+                char c = chars[i];
+                if (isWordChar(c)) {
+                    if (pendingSpace) {
+                        chars[n++] = ' ';
+                        pendingSpace = false;
+                    }
+                    chars[n++] = c;
+                } else if (n > 0) {
+                    pendingSpace = true;
+                }
+            }
+            length = n;
+            return true;
+        }
+
+        /**
+         * The chained String.replace calls of SNormalizer, each a left to right pass over the previous result.
+         */
+        void sForms() {
+            for (char[] form : S_FORMS) {
+                int n = 0;
+                int i = 0;
+                while (i < length) {
+                    if (startsWith(i, form)) {
+                        chars[n++] = 's';
+                        i += form.length;
+                    } else {
+                        chars[n++] = chars[i++];
+                    }
+                }
+                length = n;
+            }
+        }
+
+        private boolean startsWith(int offset, char[] form) {
+            if (offset + form.length > length) {
+                return false;
+            }
+            for (int j = 0; j < form.length; ++j) {
+                if (chars[offset + j] != form[j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private char[] reserve(int capacity) {
+            if (spare.length < capacity) {
+                spare = new char[Math.max(capacity, 2 * spare.length)];
+            }
+            return spare;
+        }
+
+        private void swap(int newLength) {
+            char[] t = chars;
+            chars = spare;
+            spare = t;
+            length = newLength;
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private static boolean isWordChar(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+        }
+
+        private static boolean isLineTerminator(char c) {
+            return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+    }
+}
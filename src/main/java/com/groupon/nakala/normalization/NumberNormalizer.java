@@ -32,12 +32,16 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.groupon.nakala.normalization;
 
+import java.util.regex.Pattern;
+
 /**
  * @author npendar@groupon.com
  */
 public class NumberNormalizer implements StringNormalizer {
+    private static final Pattern PATTERN = Pattern.compile("^\\d+$");
+
     @Override
     public String normalize(String s) {
-        return s.replaceAll("^\\d+$", "__num__");
+        return PATTERN.matcher(s).replaceAll("__num__");
     }
 }
@@ -32,6 +32,7 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.groupon.nakala.sentiment;
 
+import com.groupon.nakala.core.ResourceRegistry;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.StopAnalyzer;
@@ -46,6 +47,7 @@ import org.apache.lucene.search.spans.Spans;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -135,7 +137,12 @@ class ReviewExtractor {
             stopWords.add(w.toString());
         }
 
-        VocabUtils vocabUtils = VocabUtils.newInstance();
+        VocabUtils vocabUtils = ResourceRegistry.get(VocabUtils.class, "vocab_utils", new Callable<VocabUtils>() {
+            @Override
+            public VocabUtils call() throws IOException {
+                return VocabUtils.newInstance();
+            }
+        });
         re.hardOverridesSQ = vocabUtils.getHardOverrides();
         re.queries = new HashMap<String, Map<Byte, SpanQuery>>();
         re.vocabs = new HashMap<String, VocabularyReview>();
@@ -149,8 +156,14 @@ class ReviewExtractor {
 
         re.loadedDomains = ds;
 
-        for (String domain : ds) {
-            VocabularyReview vocab = VocabularyReview.newInstance(domain);
+        for (final String domain : ds) {
+            VocabularyReview vocab = ResourceRegistry.get(VocabularyReview.class, domain,
+                    new Callable<VocabularyReview>() {
+                        @Override
+                        public VocabularyReview call() throws IOException {
+                            return VocabularyReview.newInstance(domain);
+                        }
+                    });
             type2query = new HashMap<Byte, SpanQuery>();
             type2query.put(PLUS_ONE, vocabUtils.getPlusOneQueries(vocab));
             type2query.put(MINUS_ONE, vocabUtils.getMinusOneQueries(vocab));
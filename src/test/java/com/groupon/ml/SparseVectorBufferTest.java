@@ -0,0 +1,76 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml;
+
+import com.groupon.ml.liblinear.LibLinearUtils;
+import com.groupon.nakala.core.SparseRepresentation;
+import de.bwaldvogel.liblinear.Feature;
+import junit.framework.TestCase;
+import libsvm.svm_node;
+
+import java.util.Random;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class SparseVectorBufferTest extends TestCase {
+
+    public void testSameVectorsAsUnbuffered() throws Exception {
+        Random random = new Random(7);
+        SparseVectorBuffer buffer = new SparseVectorBuffer();
+        for (int r = 0; r < 50; ++r) {
+            // Vectors of growing and shrinking sizes exercise buffer reuse.
+            SparseRepresentation rep = new SparseRepresentation(1000);
+            int n = random.nextInt(r % 2 == 0 ? 300 : 5);
+            for (int i = 0; i < n; ++i) {
+                rep.setEntry(random.nextInt(1000), random.nextDouble() + 0.1);
+            }
+
+            svm_node[] expected = rep.toSvmNodes();
+            svm_node[] actual = buffer.toSvmNodes(rep);
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; ++i) {
+                assertEquals(expected[i].index, actual[i].index);
+                assertEquals(expected[i].value, actual[i].value);
+            }
+
+            Feature[] expectedFeatures = LibLinearUtils.toLibLinear(expected);
+            Feature[] actualFeatures = buffer.toLibLinear(rep);
+            assertEquals(expectedFeatures.length, actualFeatures.length);
+            for (int i = 0; i < expectedFeatures.length; ++i) {
+                assertEquals(expectedFeatures[i].getIndex(), actualFeatures[i].getIndex());
+                assertEquals(expectedFeatures[i].getValue(), actualFeatures[i].getValue());
+            }
+        }
+    }
+}
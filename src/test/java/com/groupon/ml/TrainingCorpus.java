@@ -0,0 +1,90 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml;
+
+import com.groupon.nakala.core.*;
+import com.groupon.nakala.db.CollectionParameters;
+import com.groupon.nakala.db.CollectionReader;
+import com.groupon.nakala.db.TsvCategorizedTextCollectionReader;
+import com.groupon.nakala.normalization.CaseNormalizer;
+import com.groupon.nakala.normalization.StringNormalizer;
+import com.groupon.util.io.IoUtil;
+
+import java.io.StringReader;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Small categorized corpus, in the id, labels, text format of TsvCategorizedTextCollectionReader, and the
+ * representer set up for it, shared by the trainer tests.
+ *
+ * @author npendar@groupon.com
+ */
+public final class TrainingCorpus {
+
+    public static final String PLACES = "1\trestaurant,bar\tthis is a restaurant and bar.\n" +
+            "2\tbar,nightclub\tthis one is a nightclub and bar.\n" +
+            "3\tpark\twelcome to our gorgeous park\n" +
+            "4\trestaurant\tthe best restaurant in town\n";
+
+    private TrainingCorpus() {
+    }
+
+    /**
+     * @return representer, initialized with the features restaurant, bar, nightclub and park
+     */
+    public static TextRepresenter initialize(TextRepresenter representer) {
+        Features features = new Features();
+        features.initialize(new StringReader("restaurant\t1.0\nbar\t1.0\nnightclub\t1.0\npark\t1.0\n"));
+        List<StringNormalizer> normalizers = new LinkedList<StringNormalizer>();
+        normalizers.add(new CaseNormalizer());
+
+        Parameters params = new Parameters();
+        params.set(Constants.TOKENIZER, new RegexpTokenizerStream());
+        params.set(Constants.FEATURES, features);
+        params.set(Constants.NORMALIZERS, normalizers);
+        representer.initialize(params);
+        return representer;
+    }
+
+    public static CollectionReader getReader(String corpus) throws Exception {
+        CollectionParameters params = new CollectionParameters();
+        params.set(CollectionParameters.FILE_NAME, IoUtil.createTempFile(corpus));
+        params.set(CollectionParameters.ID_FIELD, 0);
+        params.set(CollectionParameters.LABEL_FIELD, 1);
+        params.set(CollectionParameters.TEXT_FIELD, 2);
+        CollectionReader reader = new TsvCategorizedTextCollectionReader();
+        reader.initialize(params);
+        return reader;
+    }
+}
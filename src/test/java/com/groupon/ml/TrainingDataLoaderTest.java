@@ -0,0 +1,130 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml;
+
+import com.groupon.nakala.core.TFTextRepresenter;
+import com.groupon.nakala.core.TextRepresenter;
+import de.bwaldvogel.liblinear.Problem;
+import junit.framework.TestCase;
+import libsvm.svm_problem;
+
+import java.util.Arrays;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class TrainingDataLoaderTest extends TestCase {
+
+    private static final String input = "1\trestaurant,bar\tthis is a restaurant and bar.\n" +
+            "2\tbar,nightclub\tthis one is a nightclub and bar, not a restaurant.\n" +
+            "3\tpark\twelcome to our gorgeous park\n";
+
+    private static TextRepresenter getRepresenter() {
+        return TrainingCorpus.initialize(new TFTextRepresenter());
+    }
+
+    public void testLoad() throws Exception {
+        TrainingDataLoader loader = new TrainingDataLoader(getRepresenter(), 1);
+        loader.load(TrainingCorpus.getReader(input));
+        assertEquals(3, loader.getNumberOfDocuments());
+        assertEquals(Arrays.asList("bar", "nightclub", "park", "restaurant"), loader.getLabelList());
+
+        svm_problem problem = loader.toSvmProblem();
+        assertEquals(5, problem.l);
+        // Both records of a document share one node array.
+        assertSame(problem.x[0], problem.x[1]);
+        assertSame(problem.x[2], problem.x[3]);
+        assertNotSame(problem.x[1], problem.x[2]);
+        double[] firstLabels = {problem.y[0], problem.y[1]};
+        Arrays.sort(firstLabels);
+        assertEquals(0d, firstLabels[0]);
+        assertEquals(3d, firstLabels[1]);
+        assertEquals(2d, problem.y[4]);
+
+        // Values are scaled to [0, 1] and indices are 1-based.
+        assertEquals(1, problem.x[4].length);
+        assertEquals(4, problem.x[4][0].index);
+        assertEquals(1d, problem.x[4][0].value);
+        assertNull(loader.getScaler().getScaledData());
+
+        Problem linear = loader.toLibLinearProblem();
+        assertEquals(5, linear.l);
+        assertEquals(4, linear.n);
+        assertSame(linear.x[2], linear.x[3]);
+        assertEquals(problem.x[2].length, linear.x[2].length);
+        for (int i = 0; i < problem.x[2].length; ++i) {
+            assertEquals(problem.x[2][i].index, linear.x[2][i].getIndex());
+            assertEquals(problem.x[2][i].value, linear.x[2][i].getValue());
+        }
+    }
+
+    public void testParallelLoadMatchesSerialLoad() throws Exception {
+        StringBuilder corpus = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            corpus.append(i).append(i % 3 == 0 ? "\tpark\tpark " : "\tbar,restaurant\trestaurant bar ");
+            for (int j = 0; j < i % 7; ++j) {
+                corpus.append(j % 2 == 0 ? "bar " : "nightclub ");
+            }
+            corpus.append('\n');
+        }
+
+        TrainingDataLoader serial = new TrainingDataLoader(getRepresenter(), 1);
+        serial.load(TrainingCorpus.getReader(corpus.toString()));
+        TrainingDataLoader parallel = new TrainingDataLoader(getRepresenter(), 4);
+        parallel.load(TrainingCorpus.getReader(corpus.toString()));
+
+        assertEquals(1000, parallel.getNumberOfDocuments());
+        assertEquals(serial.getLabelList(), parallel.getLabelList());
+        svm_problem expected = serial.toSvmProblem();
+        svm_problem actual = parallel.toSvmProblem();
+        assertEquals(expected.l, actual.l);
+        assertTrue(Arrays.equals(expected.y, actual.y));
+        for (int r = 0; r < expected.l; ++r) {
+            assertEquals(expected.x[r].length, actual.x[r].length);
+            for (int i = 0; i < expected.x[r].length; ++i) {
+                assertEquals(expected.x[r][i].index, actual.x[r][i].index);
+                assertEquals(expected.x[r][i].value, actual.x[r][i].value);
+            }
+        }
+    }
+
+    public void testTargetClass() throws Exception {
+        TrainingDataLoader loader = new TrainingDataLoader(getRepresenter(), 2);
+        loader.setTargetClass("bar");
+        loader.load(TrainingCorpus.getReader(input));
+        assertEquals(Arrays.asList("bar", "other"), loader.getLabelList());
+        svm_problem problem = loader.toSvmProblem();
+        assertEquals(3, problem.l);
+        assertTrue(Arrays.equals(new double[]{0, 0, 1}, problem.y));
+    }
+}
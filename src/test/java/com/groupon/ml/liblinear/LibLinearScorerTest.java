@@ -0,0 +1,125 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml.liblinear;
+
+import com.groupon.nakala.core.SparseRepresentation;
+import com.groupon.nakala.core.SparseVector;
+import de.bwaldvogel.liblinear.*;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class LibLinearScorerTest extends TestCase {
+
+    private static final int DIMENSION = 20;
+
+    private static Model train(int nrClass, Random random) {
+        Problem problem = new Problem();
+        problem.l = 200;
+        problem.n = DIMENSION;
+        problem.x = new Feature[problem.l][];
+        problem.y = new double[problem.l];
+        for (int i = 0; i < problem.l; ++i) {
+            int label = i % nrClass;
+            problem.x[i] = new Feature[]{
+                    new FeatureNode(1 + label, 0.5 + random.nextDouble()),
+                    new FeatureNode(1 + nrClass + random.nextInt(DIMENSION - nrClass), random.nextDouble())};
+            problem.y[i] = label;
+        }
+        Linear.disableDebugOutput();
+        return Linear.train(problem, new Parameter(SolverType.L2R_LR, 1d, 0.01));
+    }
+
+    public void testScore() throws Exception {
+        Random random = new Random(42);
+        for (int nrClass = 2; nrClass <= 4; ++nrClass) {
+            Model model = train(nrClass, random);
+            LibLinearScorer scorer = new LibLinearScorer(model);
+            assertEquals(nrClass, scorer.getNrClass());
+
+            LibLinearScorer.Buffer buffer = scorer.newBuffer();
+            double[] expected = new double[nrClass];
+            double[] actual = new double[nrClass];
+            for (int n = 0; n < 50; ++n) {
+                SparseRepresentation rep = new SparseRepresentation(DIMENSION + 5);
+                for (int k = random.nextInt(6); k > 0; --k) {
+                    // Includes indices the model has never seen.
+                    rep.setEntry(random.nextInt(DIMENSION + 5), random.nextDouble());
+                }
+                Linear.predictProbability(model, rep.toLibLinear(), expected);
+
+                double[] probs = scorer.score(rep, buffer);
+                for (int i = 0; i < nrClass; ++i) {
+                    assertEquals(expected[i], probs[i], 1e-12);
+                }
+
+                scorer.score(rep.toSparseVector(), actual);
+                for (int i = 0; i < nrClass; ++i) {
+                    assertEquals(expected[i], actual[i], 1e-12);
+                }
+
+                // Unsorted ids and values.
+                SparseVector vector = rep.toSparseVector();
+                int[] indices = new int[vector.size()];
+                double[] values = new double[indices.length];
+                for (int i = 0; i < indices.length; ++i) {
+                    indices[i] = vector.getIndex(indices.length - 1 - i);
+                    values[i] = vector.getValue(indices.length - 1 - i);
+                }
+                scorer.score(indices, values, indices.length, actual);
+                for (int i = 0; i < nrClass; ++i) {
+                    assertEquals(expected[i], actual[i], 1e-12);
+                }
+            }
+        }
+    }
+
+    public void testRequiresProbabilityModel() throws Exception {
+        Problem problem = new Problem();
+        problem.l = 2;
+        problem.n = 1;
+        problem.x = new Feature[][]{{new FeatureNode(1, 1d)}, {new FeatureNode(1, -1d)}};
+        problem.y = new double[]{0, 1};
+        Linear.disableDebugOutput();
+        Model model = Linear.train(problem, new Parameter(SolverType.L2R_L2LOSS_SVC, 1d, 0.01));
+        try {
+            new LibLinearScorer(model);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
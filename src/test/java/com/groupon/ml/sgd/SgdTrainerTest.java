@@ -0,0 +1,122 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml.sgd;
+
+import com.groupon.ml.ClassificationAnalysis;
+import com.groupon.ml.TrainingCorpus;
+import com.groupon.nakala.analysis.SingletonAnalysisCollector;
+import com.groupon.nakala.core.*;
+import junit.framework.TestCase;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class SgdTrainerTest extends TestCase {
+
+    private static TextRepresenter getRepresenter() {
+        return TrainingCorpus.initialize(new FeatureWeightTextRepresenter());
+    }
+
+    private SgdTrainerAnalysis train(String loss, String optimizer) throws Exception {
+        Parameters params = new Parameters();
+        params.set(Constants.REPRESENTER, getRepresenter());
+        params.set(Constants.LOSS, loss);
+        params.set(Constants.OPTIMIZER, optimizer);
+        params.set(Constants.EPOCHS, 20);
+        SgdTrainer trainer = new SgdTrainer();
+        trainer.initialize(params);
+        SingletonAnalysisCollector collector =
+                (SingletonAnalysisCollector) trainer.analyze(TrainingCorpus.getReader(TrainingCorpus.PLACES));
+        return (SgdTrainerAnalysis) collector.getAnalysis();
+    }
+
+    private static double[] predict(SgdModel model, TextRepresenter representer, String text) {
+        double[] probs = new double[model.getNrClass()];
+        model.predictProbabilities(representer.represent(text).toSparseVector(), probs);
+        return probs;
+    }
+
+    public void testTraining() throws Exception {
+        TextRepresenter representer = getRepresenter();
+        for (String loss : new String[]{SgdModel.LOGISTIC, SgdModel.HINGE}) {
+            for (String optimizer : new String[]{SgdTrainer.ADAGRAD, SgdTrainer.SGD}) {
+                SgdTrainerAnalysis analysis = train(loss, optimizer);
+                assertEquals(Arrays.asList("bar", "nightclub", "park", "restaurant"), analysis.getLabels());
+                SgdModel model = analysis.getModel();
+                assertEquals(4, model.getNrClass());
+                assertEquals(4, model.getNrFeature());
+
+                double[] probs = predict(model, representer, "a gorgeous park");
+                assertTrue(loss + "/" + optimizer, probs[2] > 0.5);
+                assertTrue(loss + "/" + optimizer, probs[0] < 0.5);
+                probs = predict(model, representer, "nightclub");
+                assertTrue(loss + "/" + optimizer, probs[1] > probs[2]);
+                assertTrue(loss + "/" + optimizer, probs[1] > probs[3]);
+            }
+        }
+    }
+
+    public void testClassifier() throws Exception {
+        SgdTrainerAnalysis analysis = train(SgdModel.LOGISTIC, SgdTrainer.ADAGRAD);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        analysis.getModel().save(new PrintStream(out));
+        SgdModel loaded = SgdModel.load(new BufferedReader(new StringReader(out.toString())));
+        assertEquals(analysis.getModel(), loaded);
+
+        Parameters modelParams = new Parameters();
+        modelParams.set(Constants.RESOURCE_STREAM, new ByteArrayInputStream(out.toByteArray()));
+        ResourceReader model = new ResourceReader();
+        model.initialize(modelParams);
+        Parameters labelParams = new Parameters();
+        labelParams.set(Constants.RESOURCE_STREAM, new ByteArrayInputStream("bar\nnightclub\npark\nrestaurant\n".getBytes()));
+        ResourceReader labels = new ResourceReader();
+        labels.initialize(labelParams);
+
+        Parameters params = new Parameters();
+        params.set(Constants.MODEL, model);
+        params.set(Constants.LABELS, labels);
+        params.set(Constants.REPRESENTER, getRepresenter());
+        SgdTextClassifier classifier = new SgdTextClassifier();
+        classifier.initialize(params);
+        assertEquals(loaded, classifier.getModel());
+
+        ClassificationAnalysis ca = (ClassificationAnalysis) classifier.analyze(
+                new IdentifiableTextContent(new Id("1"), "our park"));
+        assertTrue(ca.getClassifications().get("park") > 0.5);
+        assertTrue(ca.getClassifications().get("bar") < 0.5);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml.svm;
+
+import com.groupon.ml.ClassificationAnalysis;
+import com.groupon.ml.TrainingCorpus;
+import com.groupon.nakala.analysis.SingletonAnalysisCollector;
+import com.groupon.nakala.core.*;
+import com.groupon.util.io.IoUtil;
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class OneVsRestTrainerTest extends TestCase {
+
+    private static TextRepresenter getRepresenter() {
+        return TrainingCorpus.initialize(new FeatureWeightTextRepresenter());
+    }
+
+    public void testTraining() throws Exception {
+        Parameters params = new Parameters();
+        params.set(Constants.REPRESENTER, getRepresenter());
+        params.set(Constants.NUMBER_OF_THREADS, 3);
+        OneVsRestTrainer trainer = new OneVsRestTrainer();
+        trainer.initialize(params);
+        JobFlowMetrics metrics = new JobFlowMetrics();
+        trainer.setMetrics(metrics);
+
+        String input = TrainingCorpus.PLACES;
+        String corpus = input + input + input + input + input;
+        SingletonAnalysisCollector collector =
+                (SingletonAnalysisCollector) trainer.analyze(TrainingCorpus.getReader(corpus));
+        OneVsRestTrainerAnalysis analysis = (OneVsRestTrainerAnalysis) collector.getAnalysis();
+        assertEquals(Arrays.asList("bar", "nightclub", "park", "restaurant"), analysis.getLabels());
+        assertNotNull(analysis.getScaler());
+        assertEquals(4, metrics.getStage("train").getHistogram().getCount());
+
+        SvmModelBundle bundle = analysis.getBundle();
+        assertEquals(4, bundle.size());
+        for (int i = 0; i < bundle.size(); ++i) {
+            assertEquals(analysis.getLabels().get(i), bundle.getTarget(i));
+            assertEquals(2, bundle.getModel(i).nr_class);
+        }
+
+        File file = File.createTempFile("one_vs_rest", ".bundle");
+        file.deleteOnExit();
+        bundle.save(file.getPath());
+        SvmModelBundle loaded = SvmModelBundle.load(new BufferedReader(IoUtil.read(file)));
+        assertEquals(bundle.size(), loaded.size());
+        assertEquals("park", loaded.getTarget(2));
+        assertEquals(bundle.getModel(2).l, loaded.getModel(2).l);
+
+        Parameters modelParams = new Parameters();
+        modelParams.set(Constants.FILE_NAME, file.getPath());
+        ResourceReader modelReader = new ResourceReader();
+        modelReader.initialize(modelParams);
+        Parameters classifierParams = new Parameters();
+        classifierParams.set(Constants.MODEL, modelReader);
+        classifierParams.set(Constants.REPRESENTER, getRepresenter());
+        MultiModelClassifier classifier = new MultiModelClassifier();
+        classifier.initialize(classifierParams);
+
+        ClassificationAnalysis ca = (ClassificationAnalysis) classifier.analyze(
+                new IdentifiableTextContent(new Id("1"), "a gorgeous park"));
+        classifier.shutdown();
+        assertEquals(4, ca.getClassifications().size());
+        assertNull(ca.getScore("other"));
+        assertTrue(ca.getScore("park") > ca.getScore("nightclub"));
+    }
+}
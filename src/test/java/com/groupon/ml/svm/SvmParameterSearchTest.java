@@ -0,0 +1,117 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.ml.svm;
+
+import com.groupon.nakala.core.JobFlowMetrics;
+import junit.framework.TestCase;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+import libsvm.svm_problem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class SvmParameterSearchTest extends TestCase {
+
+    private static svm_problem getProblem(int size) {
+        svm_problem problem = new svm_problem();
+        problem.l = size;
+        problem.x = new svm_node[size][];
+        problem.y = new double[size];
+        for (int i = 0; i < size; ++i) {
+            svm_node node = new svm_node();
+            node.index = 1 + i % 2;
+            node.value = 0.5 + (i % 5) / 10d;
+            problem.x[i] = new svm_node[]{node};
+            problem.y[i] = i % 2;
+        }
+        return problem;
+    }
+
+    private static svm_parameter getParameters() {
+        LibSvmTrainer trainer = new LibSvmTrainer();
+        return trainer.getDefaultSvmParameters();
+    }
+
+    public void testRange() throws Exception {
+        assertEquals(Arrays.asList(-5d, -1d, 3d), SvmParameterSearch.range(-5, 5, 4));
+        assertEquals(Arrays.asList(3d, -1d, -5d), SvmParameterSearch.range(3, -5, -4));
+        assertEquals(Arrays.asList(-5d, -3d), SvmParameterSearch.neighbors(-5, -5, 15, 2));
+        assertEquals(Arrays.asList(1d, 3d), SvmParameterSearch.neighbors(3, 3, -15, -2));
+    }
+
+    public void testAssignFolds() throws Exception {
+        svm_problem problem = getProblem(40);
+        int[] foldOf = SvmParameterSearch.assignFolds(problem, 4);
+        int[][] counts = new int[4][2];
+        for (int i = 0; i < problem.l; ++i) {
+            ++counts[foldOf[i]][(int) problem.y[i]];
+        }
+        for (int[] count : counts) {
+            assertEquals(5, count[0]);
+            assertEquals(5, count[1]);
+        }
+    }
+
+    public void testHalving() throws Exception {
+        SvmParameterSearch search = new SvmParameterSearch(getParameters(), 4, 2);
+        JobFlowMetrics metrics = new JobFlowMetrics();
+        search.setStage(metrics.getStage("param_search"));
+
+        List<double[]> pairs = new ArrayList<double[]>();
+        for (int i = 0; i < 8; ++i) {
+            pairs.add(new double[]{i - 4, -i});
+        }
+        SvmParameterSearch.Candidate best = search.halve(getProblem(40), pairs);
+        // 8 candidates, then 4, then 2 survive a fold each.
+        assertEquals(14, search.getTrainings());
+        assertEquals(14, metrics.getStage("param_search").getHistogram().getCount());
+        assertEquals(30, best.evaluated);
+        assertEquals(1d, best.getAccuracy());
+    }
+
+    public void testSearch() throws Exception {
+        SvmParameterSearch search = new SvmParameterSearch(getParameters(), 5, 4);
+        svm_problem problem = getProblem(50);
+        CvParams best = search.search(problem, problem, -5, 15, 2, 3, -15, -2);
+        assertEquals(1d, best.accuracy);
+        assertTrue(best.c >= Math.pow(2, -5) && best.c <= Math.pow(2, 15));
+        assertTrue(best.gamma >= Math.pow(2, -15) && best.gamma <= Math.pow(2, 3));
+        // Far fewer models than the 110 cross validations of 5 folds each of the full grid.
+        assertTrue(search.getTrainings() < 100);
+    }
+}
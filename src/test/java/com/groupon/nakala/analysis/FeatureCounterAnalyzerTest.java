@@ -32,6 +32,7 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.groupon.nakala.analysis;
 
+import com.groupon.nakala.core.Analyzable;
 import com.groupon.nakala.core.Id;
 import com.groupon.nakala.core.IdentifiableTextContent;
 import com.groupon.nakala.core.Parameters;
@@ -82,4 +83,31 @@ public class FeatureCounterAnalyzerTest extends TestCase {
         assertEquals(1, (int) sca.get("clean"));
         assertEquals(4, sca.size());
     }
+
+    @Test
+    public void testAnalyzeBatch() throws Exception {
+        List<StringNormalizer> normalizers = new ArrayList<StringNormalizer>(1);
+        normalizers.add(new NumberNormalizer());
+        normalizers.add(new CaseNormalizer());
+
+        Parameters params = new Parameters();
+        params.set("tokenizer", new RegexpTokenizerStream());
+        params.set("normalizers", normalizers);
+
+        FeatureCounterAnalyzer featureCounter = new FeatureCounterAnalyzer();
+        featureCounter.initialize(params);
+
+        List<Analyzable> batch = new ArrayList<Analyzable>();
+        batch.add(new IdentifiableTextContent(new Id(1), "This is sentence 1. this is sentence 2. and sentence 3 is here."));
+        batch.add(new IdentifiableTextContent(new Id(2), "My desk is clean."));
+        batch.add(new IdentifiableTextContent(new Id(3), ""));
+
+        List<Analysis> analyses = featureCounter.analyzeBatch(batch);
+        assertEquals(batch.size(), analyses.size());
+        for (int i = 0; i < batch.size(); ++i) {
+            StringCountAnalysis expected = (StringCountAnalysis) featureCounter.analyze(batch.get(i));
+            StringCountAnalysis actual = (StringCountAnalysis) analyses.get(i);
+            assertEquals(expected.entrySet(), actual.entrySet());
+        }
+    }
 }
@@ -139,4 +139,21 @@ public class FuzzyFinderAnalyzerTest {
         Assert.assertEquals(0.0, analyzer.shinglesFound(shinglesTokenizer.getUniqueTokens("ghijkl"),
                 shinglesTokenizer.getUniqueTokens("abcdef")));
     }
+
+    @Test
+    public void testHashedShinglesFound() throws Exception {
+        FuzzyFinderAnalyzer analyzer = new FuzzyFinderAnalyzer();
+        analyzer.initialize(null);
+
+        Assert.assertEquals(1.0, analyzer.shinglesFound(ShingleHashes.uniqueSorted("abcdefg", 4),
+                ShingleHashes.uniqueSorted("abcdefg", 4)));
+        Assert.assertEquals(1.0, analyzer.shinglesFound(ShingleHashes.uniqueSorted("bcde", 4),
+                ShingleHashes.uniqueSorted("abcdef", 4)));
+        Assert.assertEquals(0.5, analyzer.shinglesFound(ShingleHashes.uniqueSorted("abcdefghi", 4),
+                ShingleHashes.uniqueSorted("abcdef", 4)));
+        Assert.assertEquals(0.0, analyzer.shinglesFound(ShingleHashes.uniqueSorted("ghijkl", 4),
+                ShingleHashes.uniqueSorted("abcdef", 4)));
+        Assert.assertEquals(0.0, analyzer.shinglesFound(ShingleHashes.uniqueSorted("abc", 4),
+                ShingleHashes.uniqueSorted("abcdef", 4)));
+    }
 }
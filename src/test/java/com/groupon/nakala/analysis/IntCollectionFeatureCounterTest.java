@@ -0,0 +1,121 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.analysis;
+
+import com.groupon.nakala.core.Analyzable;
+import com.groupon.nakala.core.Constants;
+import com.groupon.nakala.core.Id;
+import com.groupon.nakala.core.IdentifiableTextContent;
+import com.groupon.nakala.core.Parameters;
+import com.groupon.nakala.core.RegexpTokenizerStream;
+import com.groupon.nakala.core.StringSet;
+import com.groupon.nakala.core.TermDictionary;
+import com.groupon.nakala.normalization.CaseNormalizer;
+import com.groupon.nakala.normalization.NumberNormalizer;
+import com.groupon.nakala.normalization.StringNormalizer;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class IntCollectionFeatureCounterTest extends TestCase {
+    private static final String[] TEXTS = {
+            "This is line 1.", "this is line 2, the last line.", "And THIS is the 3rd one", "", "is is is"
+    };
+
+    private Parameters getParameters() {
+        List<StringNormalizer> normalizers = new ArrayList<StringNormalizer>();
+        normalizers.add(new NumberNormalizer());
+        normalizers.add(new CaseNormalizer());
+        StringSet stopwords = new StringSet();
+        stopwords.add("the");
+
+        Parameters params = new Parameters();
+        params.set(Constants.TOKENIZER, new RegexpTokenizerStream());
+        params.set(Constants.NORMALIZERS, normalizers);
+        params.set(Constants.STOPWORDS, stopwords);
+        params.set(Constants.TERM_DICTIONARY, new TermDictionary());
+        return params;
+    }
+
+    private static List<Analyzable> documents(int from, int to) {
+        List<Analyzable> documents = new ArrayList<Analyzable>();
+        for (int i = from; i < to; ++i) {
+            documents.add(new IdentifiableTextContent(new Id(i), TEXTS[i]));
+        }
+        return documents;
+    }
+
+    public void testSameCountsAsCollectionFeatureCounter() throws Exception {
+        CollectionFeatureCounter expected = new CollectionFeatureCounter();
+        expected.initialize(getParameters());
+        Map<String, Integer> expectedCounts = ((StringCountsAnalysisCollector) expected.complete(
+                expected.analyzePartition(documents(0, TEXTS.length)))).getCounts();
+
+        IntCollectionFeatureCounter fc = new IntCollectionFeatureCounter();
+        fc.initialize(getParameters());
+        MergeableAnalysisCollector merged = fc.analyzePartition(documents(0, 2));
+        merged.merge(fc.analyzePartition(documents(2, TEXTS.length)));
+        IntCountsAnalysisCollector counts = (IntCountsAnalysisCollector) fc.complete(merged);
+
+        for (Map.Entry<String, Integer> e : expectedCounts.entrySet()) {
+            assertEquals(e.getKey(), (int) e.getValue(), counts.get(e.getKey()));
+        }
+        assertEquals(0, counts.get("the"));
+        assertEquals(3, counts.get("line"));
+        int distinct = 0;
+        for (int id = 0; id < counts.getDictionary().size(); ++id) {
+            if (counts.get(id) > 0) {
+                ++distinct;
+            }
+        }
+        assertEquals(expectedCounts.size(), distinct);
+    }
+
+    public void testSameIdfsAsIdfCollectionAnalyzer() throws Exception {
+        IdfCollectionAnalyzer expected = new IdfCollectionAnalyzer();
+        expected.initialize(getParameters());
+        Map<String, Double> expectedIdfs = (Map<String, Double>) expected.complete(
+                expected.analyzePartition(documents(0, TEXTS.length)));
+
+        IntIdfCollectionAnalyzer idf = new IntIdfCollectionAnalyzer();
+        idf.initialize(getParameters());
+        PartialResult merged = idf.analyzePartition(documents(0, 3));
+        merged.merge(idf.analyzePartition(documents(3, TEXTS.length)));
+        assertEquals(expectedIdfs, idf.complete(merged));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.analysis;
+
+import com.groupon.nakala.core.*;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class MinHashCandidateAnalyzerTest extends TestCase {
+    private static Place place(String id, String name, String address, String locality) {
+        return new Place().setId(new Id(id)).setName(name).setAddress(address).setLocality(locality)
+                .setPostalCode("").setDescriptions(new TitledContentArray());
+    }
+
+    public void testCandidates() throws Exception {
+        List<Analyzable> reference = new ArrayList<Analyzable>();
+        reference.add(place("r1", "Joe's Pizza", "123 Main Street", "Springfield"));
+        reference.add(place("r2", "Grand Hotel", "1 Ocean Drive", "Miami"));
+        reference.add(place("r3", "Bliss Day Spa", "77 Elm Avenue", "Portland"));
+
+        MinHashIndexBuilder builder = new MinHashIndexBuilder();
+        builder.initialize(new Parameters());
+        PartialResult left = builder.analyzePartition(reference.subList(0, 2));
+        left.merge(builder.analyzePartition(reference.subList(2, 3)));
+        MinHashIndex index = ((MinHashIndexBuilder.MinHashIndexAnalysis)
+                ((SingletonAnalysisCollector) builder.complete(left)).getAnalysis()).getIndex();
+        assertEquals(3, index.size());
+
+        List<Analyzable> incoming = new ArrayList<Analyzable>();
+        incoming.add(place("i1", "JOE'S PIZZA LLC", "123 Main Street", "Springfield"));
+        incoming.add(place("i2", "Bliss Day Spa (Portland)", "77 Elm Ave", "Portland"));
+        incoming.add(place("i3", "Quantum Physics Lab", "9 Science Park", "Boston"));
+
+        Parameters params = new Parameters();
+        params.set(Constants.MINHASH_INDEX, index);
+        MinHashCandidateAnalyzer analyzer = new MinHashCandidateAnalyzer();
+        analyzer.initialize(params);
+        List<Analysis> analyses = ((ListAnalysisCollector) analyzer.complete(analyzer.analyzePartition(incoming)))
+                .getAnalyses();
+
+        assertEquals(2, analyses.size());
+        MultiScoreAnalysis first = (MultiScoreAnalysis) analyses.get(0);
+        assertEquals(1.0, first.get("r1"));
+        assertNull(first.get("r2"));
+        MultiScoreAnalysis second = (MultiScoreAnalysis) analyses.get(1);
+        assertTrue(second.get("r3") >= MinHashCandidateAnalyzer.DEFAULT_MIN_SIMILARITY);
+        assertNull(second.get("r1"));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.analysis.IdfCollectionAnalyzer;
+import com.groupon.nakala.db.CollectionParameters;
+import com.groupon.nakala.db.FlatFileStore;
+import com.groupon.nakala.db.SimpleTextCollectionReader;
+import com.groupon.nakala.normalization.CaseNormalizer;
+import com.groupon.util.io.IoUtil;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class FanOutJobFlowTest extends TestCase {
+
+    private static List<String> sortedLines(String fileName) throws Exception {
+        List<String> lines = new ArrayList<String>();
+        for (String line : IoUtil.readLines(fileName)) {
+            lines.add(line);
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private static String tempFileName() throws Exception {
+        File f = File.createTempFile("nakala", ".tsv");
+        f.deleteOnExit();
+        return f.getAbsolutePath();
+    }
+
+    public void testBranchesMatchSeparateRuns() throws Exception {
+        StringBuilder corpus = new StringBuilder();
+        for (int i = 0; i < 500; ++i) {
+            corpus.append("\tThe word").append(i % 13).append(" and ").append(i % 7).append('\n');
+        }
+        String corpusFile = IoUtil.createTempFile(corpus.toString());
+        String idf1 = tempFileName();
+        String idf2 = tempFileName();
+        String counts = tempFileName();
+
+        String analyzerParameters =
+                "      parameters:\n" +
+                "        tokenizer:\n" +
+                "          class_name: com.groupon.nakala.core.RegexpTokenizerStream\n" +
+                "        normalizers:\n" +
+                "          - class_name: com.groupon.nakala.normalization.CaseNormalizer\n";
+        String yml = "collection_reader:\n" +
+                "  class_name: com.groupon.nakala.db.SimpleTextCollectionReader\n" +
+                "  parameters:\n" +
+                "    separator: \\t\n" +
+                "    text_field: 1\n" +
+                "    file_name: " + corpusFile + "\n" +
+                "branches:\n" +
+                "  - collection_analyzer:\n" +
+                "      class_name: com.groupon.nakala.analysis.IdfCollectionAnalyzer\n" +
+                analyzerParameters +
+                "    data_stores:\n" +
+                "      - class_name: com.groupon.nakala.db.FlatFileStore\n" +
+                "        parameters:\n" +
+                "          file_name: " + idf1 + "\n" +
+                "  - collection_analyzer:\n" +
+                "      class_name: com.groupon.nakala.analysis.IdfCollectionAnalyzer\n" +
+                analyzerParameters +
+                "    data_stores:\n" +
+                "      - class_name: com.groupon.nakala.db.FlatFileStore\n" +
+                "        parameters:\n" +
+                "          file_name: " + idf2 + "\n" +
+                "  - collection_analyzer:\n" +
+                "      class_name: com.groupon.nakala.analysis.CollectionFeatureCounter\n" +
+                analyzerParameters +
+                "    data_stores:\n" +
+                "      - class_name: com.groupon.nakala.db.FlatFileStore\n" +
+                "        parameters:\n" +
+                "          file_name: " + counts + "\n";
+
+        SimpleJobFlowSpecs specs = new SimpleJobFlowSpecs();
+        specs.initialize(new ByteArrayInputStream(yml.getBytes()));
+        assertNull(specs.getCollectionAnalyzer());
+        assertEquals(3, specs.getBranches().size());
+
+        FanOutJobFlow jobFlow = new FanOutJobFlow(specs.getCollectionReader(), specs.getBranches());
+        jobFlow.setQueueSize(5);
+        jobFlow.process();
+
+        CollectionParameters inputParams = new CollectionParameters();
+        inputParams.set(CollectionParameters.FILE_NAME, corpusFile);
+        inputParams.set(CollectionParameters.SEPARATOR, "\t");
+        inputParams.set(CollectionParameters.TEXT_FIELD, 1);
+        SimpleTextCollectionReader cr = new SimpleTextCollectionReader();
+        cr.initialize(inputParams);
+
+        IdfCollectionAnalyzer idf = new IdfCollectionAnalyzer();
+        idf.initialize(new Parameters()
+                .set(Constants.TOKENIZER, new RegexpTokenizerStream())
+                .set(Constants.NORMALIZERS, Collections.singletonList(new CaseNormalizer())));
+        String expected = tempFileName();
+        CollectionParameters outputParams = new CollectionParameters();
+        outputParams.set(CollectionParameters.FILE_NAME, expected);
+        FlatFileStore store = new FlatFileStore();
+        store.initialize(outputParams);
+        idf.analyze(cr).store(store);
+        store.close();
+
+        assertEquals(sortedLines(expected), sortedLines(idf1));
+        assertEquals(sortedLines(expected), sortedLines(idf2));
+        assertTrue(sortedLines(counts).contains("the\t500"));
+    }
+}
@@ -33,8 +33,11 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.groupon.nakala.core;
 
 import junit.framework.TestCase;
+import org.apache.commons.lang3.SerializationUtils;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.ObjectInputStream;
 import java.io.StringReader;
 
 /**
@@ -131,4 +134,73 @@ public class FeaturesTest extends TestCase {
         assertEquals(0.4, features.getWeight("set"));
         assertEquals(0.4, features.getWeight(3));
     }
+
+    @Test
+    public void testGetIndexOfRange() throws Exception {
+        Features features = new Features();
+        features.initialize(new StringReader("this\nis\na\ntest\n"));
+
+        String text = "is this a test or a tester?";
+        assertEquals(1, features.getIndex(text, 0, 2));
+        assertEquals(0, features.getIndex(text, 3, 7));
+        assertEquals(2, features.getIndex(text, 8, 9));
+        assertEquals(3, features.getIndex(text, 10, 14));
+        assertEquals(3, features.getIndex(new StringBuilder(text), 20, 24));
+        assertEquals(-1, features.getIndex(text, 15, 17));
+        assertEquals(-1, features.getIndex(text, 20, 26));
+        assertEquals(-1, features.getIndex(text, 0, 0));
+    }
+
+    @Test
+    public void testMapped() throws Exception {
+        Features features = new Features();
+        features.initialize(new StringReader("caf\u00e9\t0.5\nthis\t2\n\ud83d\ude00\t3\n\u6f22\u5b57\n"));
+        File file = File.createTempFile("features", ".map");
+        file.deleteOnExit();
+        features.writeMapped(file.getPath());
+
+        Features mapped = new Features();
+        Parameters params = new Parameters();
+        params.set(Constants.MAPPED_FILE, file.getPath());
+        mapped.initialize(params);
+
+        assertEquals(features, mapped);
+        assertEquals(4, mapped.size());
+        assertEquals(0, mapped.getIndex("caf\u00e9"));
+        assertEquals(0.5, mapped.getWeight(0));
+        assertEquals(2, mapped.getIndex("x \ud83d\ude00 y", 2, 4));
+        assertEquals(3d, mapped.getWeight("\ud83d\ude00"));
+        assertEquals(1d, mapped.getWeight(3));
+        assertEquals("\u6f22\u5b57", mapped.getFeatureText(3));
+        assertEquals(-1, mapped.getIndex("cafe"));
+        assertEquals(-1, mapped.getIndex("caf\u00e9s"));
+        assertEquals(0d, mapped.getWeight(4));
+        assertNull(mapped.getFeatureText(-1));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        Features features = new Features();
+        features.initialize(new StringReader("this\t0.1\nis\t0.2\n"));
+        Features copy = (Features) SerializationUtils.clone(features);
+        assertEquals(features, copy);
+        assertEquals(1, copy.getIndex("is"));
+        assertEquals(0.2, copy.getWeight(1));
+        assertEquals(new Feature(0, 0.1), copy.getFeature("this"));
+    }
+
+    @Test
+    public void testDeserializeLegacy() throws Exception {
+        // Written by Features before it kept its features in a FeatureTable.
+        ObjectInputStream in = new ObjectInputStream(getClass().getResourceAsStream("/legacy_features.ser"));
+        Features features = (Features) in.readObject();
+        in.close();
+
+        Features expected = new Features();
+        expected.initialize(new StringReader("this\t0.1\nis\t0.2\na\nbig test\t1.5\n"));
+        assertEquals(expected, features);
+        assertEquals(3, features.getIndex("big test"));
+        assertEquals(1.5, features.getWeight(3));
+        assertEquals(1d, features.getWeight("a"));
+    }
 }
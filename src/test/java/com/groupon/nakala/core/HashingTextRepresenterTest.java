@@ -0,0 +1,104 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import com.groupon.nakala.normalization.CaseNormalizer;
+import com.groupon.nakala.normalization.StringNormalizer;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class HashingTextRepresenterTest extends TestCase {
+    private static HashingTextRepresenter representer(List<StringNormalizer> normalizers, Integer ngrams) {
+        Parameters params = new Parameters();
+        params.set(Constants.TOKENIZER, new RegexpTokenizerStream());
+        params.set(Constants.NORMALIZERS, normalizers);
+        params.set(Constants.HASH_BITS, 10);
+        if (ngrams != null) {
+            params.set(Constants.NGRAMS, ngrams);
+        }
+        HashingTextRepresenter representer = new HashingTextRepresenter();
+        representer.initialize(params);
+        return representer;
+    }
+
+    public void testRepresent() throws Exception {
+        List<StringNormalizer> normalizers = new LinkedList<StringNormalizer>();
+        normalizers.add(new CaseNormalizer());
+        HashingTextRepresenter representer = representer(normalizers, null);
+        assertEquals(1024, representer.getDimension());
+        assertNull(representer.getFeatures());
+
+        SparseRepresentation rep = representer.represent("The bar, the BAR and the bar.");
+        assertEquals(1024, rep.getDimension());
+        assertEquals(3, rep.getNonZeroSize());
+        assertEquals(rep, representer.represent("the bar the bar the bar and"));
+        assertEquals(rep, representer.represent(representer.getTokens("The bar, the BAR and the bar.")));
+        double sum = 0;
+        for (int i = 0; i < rep.getDimension(); ++i) {
+            sum += Math.abs(rep.getEntry(i));
+        }
+        assertEquals(7d, sum);
+
+        // Without normalizers tokens are hashed straight from the text, with the same result as from tokens.
+        HashingTextRepresenter raw = representer(new ArrayList<StringNormalizer>(), null);
+        assertEquals(raw.represent(raw.getTokens("The bar, the BAR")), raw.represent("The bar, the BAR"));
+        assertFalse(raw.represent("The bar").equals(rep));
+    }
+
+    public void testNgrams() throws Exception {
+        HashingTextRepresenter bigrams = representer(new ArrayList<StringNormalizer>(), 2);
+        SparseRepresentation rep = bigrams.represent("new york pizza");
+        assertTrue(rep.getNonZeroSize() >= 4);
+        assertFalse(rep.equals(bigrams.represent("york new pizza")));
+        assertEquals(3, representer(new ArrayList<StringNormalizer>(), 1).represent("york new pizza").getNonZeroSize());
+    }
+
+    public void testHashBitsRange() throws Exception {
+        Parameters params = new Parameters();
+        params.set(Constants.TOKENIZER, new RegexpTokenizerStream());
+        params.set(Constants.NORMALIZERS, new ArrayList<StringNormalizer>());
+        params.set(Constants.HASH_BITS, 31);
+        try {
+            new HashingTextRepresenter().initialize(params);
+            fail("Expected too many hash bits to be rejected.");
+        } catch (ResourceInitializationException e) {
+        }
+    }
+}
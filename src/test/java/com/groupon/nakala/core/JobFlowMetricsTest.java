@@ -0,0 +1,115 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import junit.framework.TestCase;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class JobFlowMetricsTest extends TestCase {
+
+    public void testStageAcrossThreads() throws Exception {
+        final JobFlowMetrics metrics = new JobFlowMetrics();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            final int n = 100 * (t + 1);
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    JobFlowMetrics.Stage stage = metrics.getStage("analyze");
+                    for (int i = 0; i < n; ++i) {
+                        stage.record(1000L * (i + 1));
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1000L, metrics.getStage("analyze").getHistogram().getCount());
+        assertEquals(400000L, metrics.getStage("analyze").getHistogram().getMax());
+    }
+
+    public void testJson() throws Exception {
+        JobFlowMetrics metrics = new JobFlowMetrics();
+        JobFlowMetrics.Stage read = metrics.getStage("read");
+        read.record(2000L);
+        read.record(4000L);
+        metrics.getTimer("store").record(3000000000L);
+        List<Integer> queue = new ArrayList<Integer>(Arrays.asList(1, 2, 3));
+        metrics.watchQueue("input_queue", queue);
+
+        JSONObject json = (JSONObject) new JSONParser().parse(metrics.toJson());
+        assertTrue(((Number) json.get("elapsed_seconds")).doubleValue() > 0d);
+
+        JSONObject stages = (JSONObject) json.get("stages");
+        JSONObject readJson = (JSONObject) stages.get("read");
+        assertEquals(2L, readJson.get("count"));
+        assertEquals(3d, ((Number) readJson.get("mean_us")).doubleValue(), 1e-9);
+        assertEquals(4d, ((Number) readJson.get("max_us")).doubleValue(), 1e-9);
+        assertTrue(readJson.containsKey("p99_us"));
+
+        // Timers report totals only.
+        JSONObject storeJson = (JSONObject) stages.get("store");
+        assertEquals(1L, storeJson.get("count"));
+        assertEquals(3d, ((Number) storeJson.get("total_seconds")).doubleValue(), 1e-9);
+        assertFalse(storeJson.containsKey("p50_us"));
+        assertFalse(storeJson.containsKey("per_second"));
+
+        JSONObject queueJson = (JSONObject) ((JSONObject) json.get("queues")).get("input_queue");
+        assertEquals(3L, queueJson.get("depth"));
+    }
+
+    public void testTimedIterable() throws Exception {
+        JobFlowMetrics metrics = new JobFlowMetrics();
+        List<Analyzable> items = new ArrayList<Analyzable>();
+        for (int i = 0; i < 5; ++i) {
+            items.add(new IdentifiableTextContent(new Id(i), "text " + i));
+        }
+        int n = 0;
+        for (Analyzable a : TimedCollectionReader.time(items, metrics.getStage("read"), metrics.getStage("analyze"))) {
+            ++n;
+        }
+        assertEquals(5, n);
+        assertEquals(5L, metrics.getStage("read").getHistogram().getCount());
+        assertEquals(5L, metrics.getStage("analyze").getHistogram().getCount());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class MinHashIndexTest extends TestCase {
+    private static final String[] PLACES = {
+            "joes pizza 123 main street springfield",
+            "the grand hotel 1 ocean drive miami",
+            "bliss day spa 77 elm avenue portland",
+            "blue bottle coffee 300 webster street oakland"};
+
+    private MinHashIndex build() {
+        MinHashIndex index = new MinHashIndex();
+        for (int i = 0; i < PLACES.length; ++i) {
+            index.add(Integer.toString(i), ShingleHashes.uniqueSorted(PLACES[i], 4));
+        }
+        index.add("empty", new long[0]);
+        assertEquals(0, index.size());
+        index.build();
+        return index;
+    }
+
+    public void testQuery() throws Exception {
+        MinHashIndex index = build();
+        assertEquals(PLACES.length, index.size());
+
+        List<MinHashIndex.Candidate> candidates =
+                index.query(ShingleHashes.uniqueSorted("joe's pizza 123 main st springfield", 4), 0.3);
+        assertFalse(candidates.isEmpty());
+        assertEquals("0", candidates.get(0).getId());
+        assertTrue(candidates.get(0).getSimilarity() > 0.3);
+
+        candidates = index.query(ShingleHashes.uniqueSorted(PLACES[1], 4), 0.0);
+        assertEquals("1", candidates.get(0).getId());
+        assertEquals(1.0, candidates.get(0).getSimilarity());
+
+        assertTrue(index.query(ShingleHashes.uniqueSorted("quantum chromodynamics lecture notes", 4), 0.0).isEmpty());
+        assertTrue(index.query(new long[0], 0.0).isEmpty());
+    }
+
+    public void testEstimateSimilarity() throws Exception {
+        MinHashIndex index = new MinHashIndex(50, 4, 1L);
+        long[] a = ShingleHashes.uniqueSorted("abcdefghijklmnopqrstuvwxyz", 4);
+        long[] b = ShingleHashes.uniqueSorted("abcdefghijklmnopqrstuvwxyz0123456789", 4);
+        double exact = ShingleHashes.intersectionSize(a, b) / (double) (a.length + b.length -
+                ShingleHashes.intersectionSize(a, b));
+        assertEquals(exact, index.estimateSimilarity(index.signature(a), index.signature(b)), 0.15);
+    }
+
+    public void testSaveAndLoad() throws Exception {
+        MinHashIndex index = build();
+        File file = File.createTempFile("minhash", ".idx");
+        file.deleteOnExit();
+        index.save(file.getPath());
+
+        Parameters params = new Parameters();
+        params.set(Constants.FILE_NAME, file.getPath());
+        MinHashIndex loaded = new MinHashIndex(3, 2, 7L);
+        loaded.initialize(params);
+        assertEquals(index.size(), loaded.size());
+        assertEquals(index.getBands(), loaded.getBands());
+        assertEquals(index.getRows(), loaded.getRows());
+        for (String place : PLACES) {
+            long[] shingles = ShingleHashes.uniqueSorted(place, 4);
+            assertEquals(index.query(shingles, 0.0).toString(), loaded.query(shingles, 0.0).toString());
+        }
+    }
+}
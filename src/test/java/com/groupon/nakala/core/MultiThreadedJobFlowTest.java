@@ -0,0 +1,95 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.analysis.Analyzer;
+import com.groupon.nakala.analysis.FeatureCounterAnalyzer;
+import com.groupon.nakala.db.CollectionParameters;
+import com.groupon.nakala.db.DataStore;
+import com.groupon.nakala.db.FlatFileStore;
+import com.groupon.nakala.db.SimpleTextCollectionReader;
+import com.groupon.util.io.IoUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class MultiThreadedJobFlowTest extends TestCase {
+
+    public void testEveryLineAnalyzedOnce() throws Exception {
+        int numberOfLines = 5000;
+        StringBuilder corpus = new StringBuilder();
+        Set<String> expected = new HashSet<String>();
+        for (int i = 0; i < numberOfLines; ++i) {
+            corpus.append("word").append(i).append('\n');
+            expected.add("word" + i + ":1");
+        }
+
+        CollectionParameters inputParams = new CollectionParameters();
+        inputParams.set(CollectionParameters.FILE_NAME, IoUtil.createTempFile(corpus.toString()));
+        SimpleTextCollectionReader cr = new SimpleTextCollectionReader();
+        cr.initialize(inputParams);
+
+        Analyzer[] analyzers = new Analyzer[4];
+        for (int i = 0; i < analyzers.length; ++i) {
+            Parameters params = new Parameters();
+            params.set(Constants.TOKENIZER, new RegexpTokenizerStream());
+            analyzers[i] = new FeatureCounterAnalyzer();
+            analyzers[i].initialize(params);
+        }
+
+        File output = File.createTempFile("nakala", ".tsv");
+        output.deleteOnExit();
+        CollectionParameters outputParams = new CollectionParameters();
+        outputParams.set(CollectionParameters.FILE_NAME, output.getAbsolutePath());
+        FlatFileStore store = new FlatFileStore();
+        store.initialize(outputParams);
+
+        MultiThreadedJobFlow jobFlow = new MultiThreadedJobFlow(cr, analyzers, new DataStore[]{store});
+        jobFlow.setQueueSize(10);
+        jobFlow.process();
+
+        int count = 0;
+        Set<String> found = new HashSet<String>();
+        for (String line : IoUtil.readLines(output.getAbsolutePath())) {
+            ++count;
+            found.add(line);
+        }
+        assertEquals(numberOfLines, count);
+        assertEquals(expected, found);
+    }
+}
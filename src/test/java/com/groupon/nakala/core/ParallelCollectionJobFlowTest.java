@@ -0,0 +1,93 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.analysis.CollectionFeatureCounter;
+import com.groupon.nakala.analysis.IdfCollectionAnalyzer;
+import com.groupon.nakala.analysis.StringCountsAnalysisCollector;
+import com.groupon.nakala.db.CollectionParameters;
+import com.groupon.nakala.db.SimpleTextCollectionReader;
+import com.groupon.util.io.IoUtil;
+import junit.framework.TestCase;
+
+import java.util.Map;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class ParallelCollectionJobFlowTest extends TestCase {
+
+    private String corpusFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        StringBuilder corpus = new StringBuilder();
+        for (int i = 0; i < 2000; ++i) {
+            corpus.append("common word").append(i % 37).append(" other").append(i % 5).append('\n');
+        }
+        corpusFile = IoUtil.createTempFile(corpus.toString());
+    }
+
+    private SimpleTextCollectionReader getReader() throws Exception {
+        CollectionParameters params = new CollectionParameters();
+        params.set(CollectionParameters.FILE_NAME, corpusFile);
+        SimpleTextCollectionReader cr = new SimpleTextCollectionReader();
+        cr.initialize(params);
+        return cr;
+    }
+
+    public void testFeatureCountsMatchSequentialRun() throws Exception {
+        CollectionFeatureCounter counter = new CollectionFeatureCounter();
+        counter.initialize(new Parameters().set(Constants.TOKENIZER, new RegexpTokenizerStream()));
+
+        Map<String, Integer> expected = ((StringCountsAnalysisCollector) counter.analyze(getReader())).getCounts();
+
+        ParallelCollectionJobFlow jobFlow = new ParallelCollectionJobFlow(getReader(), counter, 5);
+        jobFlow.setQueueSize(7);
+        Map<String, Integer> actual = ((StringCountsAnalysisCollector) jobFlow.process()).getCounts();
+
+        assertEquals(2000, actual.get("common").intValue());
+        assertEquals(expected, actual);
+    }
+
+    public void testIdfMatchesSequentialRun() throws Exception {
+        IdfCollectionAnalyzer idf = new IdfCollectionAnalyzer();
+        idf.initialize(new Parameters());
+
+        Object expected = idf.analyze(getReader());
+        Object actual = new ParallelCollectionJobFlow(getReader(), idf, 4).process();
+
+        assertEquals(expected, actual);
+        assertEquals(0d, ((Map<String, Double>) actual).get("common"));
+    }
+}
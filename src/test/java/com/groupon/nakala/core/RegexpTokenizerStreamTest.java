@@ -37,9 +37,13 @@ import com.groupon.nakala.normalization.StringNormalizer;
 import junit.framework.TestCase;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * @author npendar@groupon.com
@@ -117,4 +121,94 @@ public class RegexpTokenizerStreamTest extends TestCase {
             assertEquals(tokens2[i], tokens.get(i));
         }
     }
+
+    @Test
+    public void testTokenize() throws Exception {
+        String text = "This, my_friend, is test #42 for caf\u00e9s...";
+        TokenSpans spans = new TokenSpans(1);
+        RegexpTokenizerStream tokenizer = new RegexpTokenizerStream();
+        RegexpTokenizerStream regexp = new RegexpTokenizerStream("\\w+?");
+
+        tokenizer.tokenize(text, spans);
+        List<String> tokens = tokenizer.getTokens(text);
+        assertEquals(tokens.size(), spans.size());
+        for (int i = 0; i < spans.size(); ++i) {
+            assertEquals(tokens.get(i), text.substring(spans.start(i), spans.end(i)));
+        }
+        assertEquals("caf", tokens.get(tokens.size() - 2));
+        assertEquals("s", tokens.get(tokens.size() - 1));
+
+        // The hand-written scanner must agree with the regex engine.
+        Random random = new Random(17);
+        String alphabet = "aZ09_ .,-\u00e9\t";
+        for (int n = 0; n < 200; ++n) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = random.nextInt(20); i > 0; --i) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String s = sb.toString();
+            List<String> expected = new ArrayList<String>();
+            Matcher m = Pattern.compile("\\w+").matcher(s);
+            while (m.find()) {
+                expected.add(m.group());
+            }
+            assertEquals(expected, tokenizer.getTokens(s));
+            tokenizer.tokenize(s, spans);
+            assertEquals(expected.size(), spans.size());
+        }
+
+        regexp.tokenize("ab c", spans);
+        assertEquals(3, spans.size());
+        assertEquals(3, spans.start(2));
+        assertEquals(4, spans.end(2));
+    }
+
+    @Test
+    public void testOpen() throws Exception {
+        for (RegexpTokenizerStream tokenizer : new RegexpTokenizerStream[]{
+                new RegexpTokenizerStream(), new RegexpTokenizerStream("[a-z]+")}) {
+            String text = "this is, a test";
+            TokenCursor first = tokenizer.open(text);
+            TokenCursor second = tokenizer.open(text);
+            assertEquals("this", first.next());
+            assertEquals("this", second.next());
+            assertEquals("is", first.next());
+            assertEquals(5, first.start());
+            assertEquals(7, first.end());
+            assertEquals("is", second.next());
+
+            // setText and next keep working alongside open.
+            tokenizer.setText("other text");
+            assertEquals("a", first.next());
+            assertEquals("other", tokenizer.next());
+            assertEquals("test", first.next());
+            assertNull(first.next());
+            assertEquals("text", tokenizer.next());
+        }
+    }
+
+    @Test
+    public void testSharedBetweenThreads() throws Exception {
+        final RegexpTokenizerStream tokenizer = new RegexpTokenizerStream();
+        final List<String> expected = tokenizer.getTokens("one two three four five six seven eight nine ten");
+        final boolean[] failed = new boolean[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 2000; ++i) {
+                        if (!expected.equals(tokenizer.getTokens("one two three four five six seven eight nine ten"))) {
+                            failed[0] = true;
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(failed[0]);
+    }
 }
@@ -0,0 +1,107 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.nakala.exceptions.ResourceInitializationException;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class ResourceRegistryTest extends TestCase {
+
+    @Override
+    protected void tearDown() throws Exception {
+        ResourceRegistry.clear();
+    }
+
+    public void testConcurrentRequestsLoadOnce() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final Callable<StringBuilder> loader = new Callable<StringBuilder>() {
+            @Override
+            public StringBuilder call() throws Exception {
+                loads.incrementAndGet();
+                Thread.sleep(50);
+                return new StringBuilder("model");
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<StringBuilder>> results = new ArrayList<Future<StringBuilder>>();
+        for (int i = 0; i < 8; ++i) {
+            results.add(executor.submit(new Callable<StringBuilder>() {
+                @Override
+                public StringBuilder call() {
+                    return ResourceRegistry.get(StringBuilder.class, "/models/a.model", loader);
+                }
+            }));
+        }
+        StringBuilder first = results.get(0).get();
+        for (Future<StringBuilder> result : results) {
+            assertSame(first, result.get());
+        }
+        executor.shutdown();
+        assertEquals(1, loads.get());
+
+        assertNotSame(first, ResourceRegistry.get(StringBuilder.class, "/models/b.model", loader));
+        assertNotSame(first, ResourceRegistry.get(StringBuilder.class, null, loader));
+        assertEquals(3, loads.get());
+    }
+
+    public void testFailedLoadIsRetried() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        Callable<String> loader = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new IOException("missing");
+                }
+                return "loaded";
+            }
+        };
+
+        try {
+            ResourceRegistry.get(String.class, "flaky", loader);
+            fail("Expected ResourceInitializationException");
+        } catch (ResourceInitializationException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals("loaded", ResourceRegistry.get(String.class, "flaky", loader));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class ShingleHashesTest extends TestCase {
+    public void testHashes() throws Exception {
+        assertEquals(0, ShingleHashes.hashes("abc", 4).length);
+        long[] hashes = ShingleHashes.hashes("abcabca", 3);
+        assertEquals(5, hashes.length);
+        assertEquals(hashes[0], hashes[3]);
+        assertFalse(hashes[0] == hashes[1]);
+
+        long[] expected = {hashes[0], hashes[1], hashes[2]};
+        Arrays.sort(expected);
+        assertTrue(Arrays.equals(expected, ShingleHashes.uniqueSorted("abcabca", 3)));
+    }
+
+    public void testAgreesWithShinglesTokenizer() throws Exception {
+        ShinglesTokenizerStream tokenizer = new ShinglesTokenizerStream();
+        Random random = new Random(5);
+        for (int size : new int[]{1, 2, 4, 7}) {
+            tokenizer.setShingleSize(size);
+            for (int n = 0; n < 100; ++n) {
+                StringBuilder sb = new StringBuilder();
+                for (int i = random.nextInt(40); i > 0; --i) {
+                    sb.append("ab c\u00e9".charAt(random.nextInt(5)));
+                }
+                String a = sb.toString();
+                String b = a.substring(random.nextInt(a.length() + 1)) + "abc";
+
+                Set<String> common = new HashSet<String>(tokenizer.getUniqueTokens(a));
+                assertEquals(common.size(), ShingleHashes.uniqueSorted(a, size).length);
+                common.retainAll(tokenizer.getUniqueTokens(b));
+                assertEquals(common.size(), ShingleHashes.intersectionSize(ShingleHashes.uniqueSorted(a, size),
+                        ShingleHashes.uniqueSorted(b, size)));
+            }
+        }
+    }
+}
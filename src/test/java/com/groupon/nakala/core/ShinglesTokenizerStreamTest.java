@@ -77,4 +77,19 @@ public class ShinglesTokenizerStreamTest {
             Assert.assertEquals(shingles[i], tokens.get(i));
         }
     }
+
+    @Test
+    public void testOpen() throws Exception {
+        ShinglesTokenizerStream tokenizer = new ShinglesTokenizerStream();
+        TokenCursor first = tokenizer.open(s);
+        TokenCursor second = tokenizer.open(s);
+        Assert.assertEquals(shingles[0], first.next());
+        for (int i = 0; i < shingles.length; ++i) {
+            Assert.assertEquals(shingles[i], second.next());
+            Assert.assertEquals(i, second.start());
+            Assert.assertEquals(i + 4, second.end());
+        }
+        Assert.assertNull(second.next());
+        Assert.assertEquals(shingles[1], first.next());
+    }
 }
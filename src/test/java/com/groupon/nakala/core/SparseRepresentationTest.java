@@ -157,4 +157,19 @@ public class SparseRepresentationTest extends TestCase {
         SparseRepresentation rep = makeRep();
         assertEquals(sparseRep, rep.toSparseFormat().trim());
     }
+
+    @Test
+    public void testToSparseVectorAfterChange() throws Exception {
+        SparseVector v = new SparseVector.Builder(20).add(10, 0.5).add(1, 2).build();
+        SparseRepresentation rep = new SparseRepresentation(v);
+        assertSame(v, rep.toSparseVector());
+        assertEquals(2d, rep.getEntry(1));
+
+        rep.setEntry(5, 3);
+        assertEquals("2:2.0 6:3.0 11:0.5", rep.toSparseVector().toSparseFormat().trim());
+
+        rep.toSparseVector();
+        rep.mapMultiplyToSelf(2);
+        assertEquals("2:4.0 6:6.0 11:1.0", rep.toSparseVector().toSparseFormat().trim());
+    }
 }
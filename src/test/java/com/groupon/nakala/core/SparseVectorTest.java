@@ -0,0 +1,126 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import com.groupon.ml.liblinear.LibLinearUtils;
+import de.bwaldvogel.liblinear.Feature;
+import junit.framework.TestCase;
+import libsvm.svm_node;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class SparseVectorTest extends TestCase {
+    public void testBuilder() throws Exception {
+        SparseVector.Builder builder = new SparseVector.Builder(10);
+        SparseVector v = builder.add(7, 1.5).add(2, 1).add(7, 0.5).add(4, 2).add(4, -2).build();
+        assertEquals(10, v.getDimension());
+        assertEquals(2, v.size());
+        assertEquals(2, v.getIndex(0));
+        assertEquals(1d, v.getValue(0));
+        assertEquals(7, v.getIndex(1));
+        assertEquals(2d, v.getValue(1));
+        assertEquals(0d, v.get(4));
+        assertEquals("3:1.0 8:2.0 ", v.toSparseFormat());
+        assertEquals("x 3:1.0 8:2.0 ", v.appendSparseFormat(new StringBuilder("x ")).toString());
+
+        SparseVector w = builder.reset(5).add(1, 3).add(3, 4).build();
+        assertEquals(5, w.getDimension());
+        assertEquals("2:3.0 4:4.0 ", w.toSparseFormat());
+        assertEquals(0, builder.reset(5).build().size());
+
+        try {
+            builder.add(5, 1);
+            fail("Expected index out of bounds.");
+        } catch (IndexOutOfBoundsException e) {
+        }
+    }
+
+    public void testSet() throws Exception {
+        SparseVector.Builder builder = new SparseVector.Builder(10);
+        SparseVector v = builder.add(3, 1).set(3, 5).add(3, 1).set(6, 2).add(1, 1).set(6, 4).build();
+        assertEquals("2:1.0 4:6.0 7:4.0 ", v.toSparseFormat());
+
+        assertEquals("2:1.0 3:2.0 4:6.0 7:4.0 ", v.set(2, 2).toSparseFormat());
+        assertEquals("2:1.0 7:4.0 ", v.set(3, 0).toSparseFormat());
+        assertSame(v, v.set(5, 0));
+        assertEquals("2:1.0 4:6.0 7:4.0 ", v.toSparseFormat());
+    }
+
+    public void testMatchesReference() throws Exception {
+        Random random = new Random(3);
+        SparseVector.Builder builder = new SparseVector.Builder(1000);
+        for (int n = 0; n < 50; ++n) {
+            SparseRepresentation rep = new SparseRepresentation(1000);
+            Map<Integer, Double> reference = new TreeMap<Integer, Double>();
+            builder.reset(1000);
+            for (int i = random.nextInt(30); i > 0; --i) {
+                int index = random.nextInt(1000);
+                double value = random.nextInt(5) - 2;
+                builder.add(index, value);
+                Double old = reference.get(index);
+                double sum = old == null ? value : old + value;
+                rep.setEntry(index, sum);
+                reference.put(index, sum);
+            }
+            SparseVector v = builder.build();
+            assertEquals(v, rep.toSparseVector());
+            assertEquals(rep, v.toSparseRepresentation());
+
+            StringBuilder expected = new StringBuilder();
+            for (Map.Entry<Integer, Double> e : reference.entrySet()) {
+                if (e.getValue() != 0d) {
+                    expected.append(e.getKey() + 1).append(':').append(e.getValue()).append(' ');
+                }
+            }
+            assertEquals(expected.toString(), v.toSparseFormat());
+
+            svm_node[] nodes = v.toSvmNodes();
+            Feature[] features = v.toLibLinear();
+            Feature[] converted = LibLinearUtils.toLibLinear(nodes);
+            assertEquals(v.size(), nodes.length);
+            assertEquals(converted.length, features.length);
+            for (int i = 0; i < v.size(); ++i) {
+                assertEquals(v.get(nodes[i].index - 1), nodes[i].value);
+                assertEquals(converted[i].getIndex(), features[i].getIndex());
+                assertEquals(converted[i].getValue(), features[i].getValue());
+            }
+            assertEquals(v.size(), v.multiply(2).size());
+            assertEquals(0, v.multiply(0).size());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import junit.framework.TestCase;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class StemCacheTest extends TestCase {
+    private static final String[] WORDS = {"offers", "offering", "babies", "magnificent", "this", "offer"};
+
+    public void testStem() throws Exception {
+        Stemmer stemmer = new Stemmer();
+        for (StemCache.Policy policy : StemCache.Policy.values()) {
+            StemCache cache = new StemCache(100, policy);
+            for (int n = 0; n < 3; ++n) {
+                for (String word : WORDS) {
+                    assertEquals(stemmer.stem(word), cache.stem(word));
+                }
+            }
+            assertNull(cache.stem(null));
+            assertEquals(WORDS.length, cache.size());
+            assertEquals(WORDS.length, cache.getMisses());
+            assertEquals(2 * WORDS.length, cache.getHits());
+            assertEquals(2.0 / 3.0, cache.getHitRate(), 1e-9);
+
+            cache.clear();
+            assertEquals(0, cache.size());
+            assertEquals(0.0, cache.getHitRate());
+        }
+    }
+
+    public void testBounded() throws Exception {
+        for (StemCache.Policy policy : StemCache.Policy.values()) {
+            StemCache cache = new StemCache(64, policy);
+            for (int i = 0; i < 10000; ++i) {
+                cache.stem("word" + i);
+            }
+            assertTrue(policy + " cache grew to " + cache.size(), cache.size() <= 64 + 16);
+            assertEquals(10000, cache.getMisses());
+        }
+
+        StemCache disabled = new StemCache(0, StemCache.Policy.LRU);
+        assertEquals("offer", disabled.stem("offers"));
+        assertEquals(0, disabled.size());
+    }
+
+    public void testConcurrentStemming() throws Exception {
+        final StemCache cache = new StemCache(8, StemCache.Policy.LRU);
+        final String[] expected = new String[WORDS.length];
+        for (int i = 0; i < WORDS.length; ++i) {
+            expected[i] = new Stemmer().stem(WORDS[i]);
+        }
+        final boolean[] failed = new boolean[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 5000; ++i) {
+                        int w = i % WORDS.length;
+                        if (!expected[w].equals(cache.stem(WORDS[w]))) {
+                            failed[0] = true;
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(failed[0]);
+        assertEquals(20000, cache.getHits() + cache.getMisses());
+    }
+}
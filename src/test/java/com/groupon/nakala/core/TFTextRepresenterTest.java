@@ -141,4 +141,24 @@ public class TFTextRepresenterTest extends TestCase {
 
         assertEquals(features, representer.getFeatures());
     }
+
+    @Test
+    public void testRepresentWithoutNormalizers() throws Exception {
+        Features features = new Features();
+        features.initialize(new StringReader("like\ntest\n"));
+
+        Parameters params = new Parameters();
+        params.set("features", features);
+        params.set("normalizers", new ArrayList<StringNormalizer>());
+        params.set("tokenizer", new RegexpTokenizerStream());
+
+        TextRepresenter representer = new TFTextRepresenter();
+        representer.initialize(params);
+
+        String text = "I like testing with test and test.";
+        RealVector representation = representer.represent(text);
+        assertEquals(1d, representation.getEntry(0));
+        assertEquals(2d, representation.getEntry(1));
+        assertEquals(representer.represent(representer.getTokens(text)), representation);
+    }
 }
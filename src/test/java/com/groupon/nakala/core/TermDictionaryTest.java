@@ -0,0 +1,127 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.core;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class TermDictionaryTest extends TestCase {
+
+    public void testIntern() throws Exception {
+        TermDictionary dictionary = new TermDictionary();
+        assertEquals(-1, dictionary.getId("a"));
+        assertEquals(0, dictionary.intern("a"));
+        assertEquals(1, dictionary.intern("b"));
+        assertEquals(0, dictionary.intern("a"));
+        assertEquals(1, dictionary.getId("b"));
+        assertEquals("b", dictionary.getTerm(1));
+        assertNull(dictionary.getTerm(2));
+        assertTrue(Arrays.equals(new int[]{1, 2, 0}, dictionary.intern(Arrays.asList("b", "c", "a"))));
+        assertEquals(3, dictionary.size());
+    }
+
+    public void testConcurrentIntern() throws Exception {
+        final TermDictionary dictionary = new TermDictionary();
+        final int numberOfTerms = 20000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final int[][] ids = new int[4][numberOfTerms];
+        Thread[] threads = new Thread[ids.length];
+        for (int t = 0; t < threads.length; ++t) {
+            final int[] threadIds = ids[t];
+            final int offset = t * 997;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < numberOfTerms; ++i) {
+                        int term = (i + offset) % numberOfTerms;
+                        threadIds[term] = dictionary.intern("term" + term);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Ids are dense and every thread got the same id for the same term.
+        assertEquals(numberOfTerms, dictionary.size());
+        boolean[] seen = new boolean[numberOfTerms];
+        for (int term = 0; term < numberOfTerms; ++term) {
+            int id = ids[0][term];
+            for (int[] threadIds : ids) {
+                assertEquals(id, threadIds[term]);
+            }
+            assertFalse(seen[id]);
+            seen[id] = true;
+            assertEquals("term" + term, dictionary.getTerm(id));
+        }
+    }
+
+    public void testSerialization() throws Exception {
+        TermDictionary dictionary = new TermDictionary();
+        for (int i = 0; i < 10000; ++i) {
+            assertEquals(i, dictionary.intern("term" + i));
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream);
+        objectOutputStream.writeObject(dictionary);
+        objectOutputStream.close();
+
+        ObjectInputStream objectInputStream =
+                new ObjectInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+        TermDictionary copy = (TermDictionary) objectInputStream.readObject();
+        assertEquals(10000, copy.size());
+        for (int i = 0; i < 10000; ++i) {
+            assertEquals(i, copy.getId("term" + i));
+            assertEquals("term" + i, copy.getTerm(i));
+        }
+        assertEquals(-1, copy.getId("term10000"));
+        assertEquals(10000, copy.intern("term10000"));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.db;
+
+import com.groupon.util.io.IoUtil;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class FlatFileStoreTest extends TestCase {
+
+    private FlatFileStore createStore(File file, boolean async) {
+        CollectionParameters params = new CollectionParameters();
+        params.set(CollectionParameters.FILE_NAME, file.getAbsolutePath());
+        params.set(CollectionParameters.ASYNC, async);
+        params.set(CollectionParameters.BUFFER_SIZE, 100);
+        params.set(CollectionParameters.FLUSH_INTERVAL, 50);
+        FlatFileStore store = new FlatFileStore();
+        store.initialize(params);
+        return store;
+    }
+
+    private static File createTempFile() throws Exception {
+        File file = File.createTempFile("nakala", ".tsv");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static void write(FlatFileStore store) {
+        PrintStream ps = store.getPrintStream();
+        for (int i = 0; i < 1000; ++i) {
+            ps.println("line\t" + i + "\tcafé");
+            ps.print(i);
+            ps.print('\t');
+            ps.println(0.5 * i);
+        }
+    }
+
+    public void testAsyncOutputIsByteIdentical() throws Exception {
+        File syncFile = createTempFile();
+        FlatFileStore store = createStore(syncFile, false);
+        write(store);
+        store.close();
+
+        File asyncFile = createTempFile();
+        store = createStore(asyncFile, true);
+        assertTrue(store.isAsync());
+        write(store);
+        store.close();
+
+        assertTrue(Arrays.equals(FileUtils.readFileToByteArray(syncFile), FileUtils.readFileToByteArray(asyncFile)));
+    }
+
+    public void testConcurrentWriters() throws Exception {
+        File file = createTempFile();
+        final FlatFileStore store = createStore(file, true);
+        final int numberOfLines = 5000;
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            final int thread = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < numberOfLines; ++i) {
+                        store.getPrintStream().println(thread + "\t" + i);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        store.close();
+
+        // Lines are whole and in order within each thread.
+        Map<String, Integer> next = new HashMap<String, Integer>();
+        int count = 0;
+        for (String line : IoUtil.readLines(file.getAbsolutePath())) {
+            ++count;
+            String[] pieces = line.split("\t");
+            assertEquals(2, pieces.length);
+            Integer expected = next.get(pieces[0]);
+            assertEquals(expected == null ? 0 : expected.intValue(), Integer.parseInt(pieces[1]));
+            next.put(pieces[0], Integer.parseInt(pieces[1]) + 1);
+        }
+        assertEquals(threads.length * numberOfLines, count);
+    }
+
+    public void testFlushInterval() throws Exception {
+        File file = createTempFile();
+        FlatFileStore store = createStore(file, true);
+        store.getPrintStream().println("first");
+
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (file.length() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20L);
+        }
+        assertEquals("first" + System.getProperty("line.separator"), FileUtils.readFileToString(file));
+        store.close();
+    }
+}
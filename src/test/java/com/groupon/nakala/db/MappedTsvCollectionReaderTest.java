@@ -0,0 +1,121 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.db;
+
+import com.groupon.nakala.core.Analyzable;
+import com.groupon.nakala.core.CategorizedTextContent;
+import com.groupon.nakala.core.IdentifiableTextContent;
+import com.groupon.util.io.IoUtil;
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class MappedTsvCollectionReaderTest extends TestCase {
+    private static final int NUMBER_OF_LINES = 5000;
+
+    private String createCorpus() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NUMBER_OF_LINES; ++i) {
+            sb.append("id").append(i).append('\t')
+                    .append(i % 2 == 0 ? "even" : "odd, x").append('\t')
+                    .append("café number ").append(i).append("\tunused");
+            if (i < NUMBER_OF_LINES - 1) {
+                // Mix line endings; the last line has none.
+                sb.append(i % 3 == 0 ? "\r\n" : "\n");
+            }
+        }
+        return IoUtil.createTempFile(sb.toString());
+    }
+
+    private MappedTsvCollectionReader createReader(boolean withLabels) throws Exception {
+        CollectionParameters cp = new CollectionParameters();
+        cp.set(CollectionParameters.FILE_NAME, createCorpus());
+        cp.set(CollectionParameters.TEXT_FIELD, 2);
+        if (withLabels) {
+            cp.set(CollectionParameters.ID_FIELD, 0);
+            cp.set(CollectionParameters.LABEL_FIELD, 1);
+        }
+        MappedTsvCollectionReader reader = new MappedTsvCollectionReader();
+        reader.initialize(cp);
+        return reader;
+    }
+
+    public void testReader() throws Exception {
+        MappedTsvCollectionReader reader = createReader(true);
+        assertEquals(NUMBER_OF_LINES, reader.getSize());
+
+        int i = 0;
+        for (Analyzable a : reader) {
+            CategorizedTextContent ctc = (CategorizedTextContent) a;
+            assertEquals("id" + i, ctc.getId().toString());
+            assertEquals("café number " + i, ctc.getText());
+            if (i % 2 == 0) {
+                assertEquals(1, ctc.getCategories().size());
+                assertTrue(ctc.hasCategory("even"));
+            } else {
+                assertEquals(2, ctc.getCategories().size());
+                assertTrue(ctc.hasCategory("odd"));
+                assertTrue(ctc.hasCategory("x"));
+            }
+            ++i;
+        }
+        assertEquals(NUMBER_OF_LINES, i);
+        reader.close();
+    }
+
+    public void testSplitsCoverEveryLineOnce() throws Exception {
+        MappedTsvCollectionReader reader = createReader(false);
+        List<Iterable<Analyzable>> splits = reader.split(3);
+        assertEquals(3, splits.size());
+
+        Set<String> seen = new HashSet<String>();
+        for (Iterable<Analyzable> split : splits) {
+            for (Analyzable a : split) {
+                IdentifiableTextContent itc = (IdentifiableTextContent) a;
+                // Without an id field the id is the line number.
+                assertEquals("café number " + itc.getId(), itc.getText());
+                assertTrue(seen.add(itc.getId().toString()));
+            }
+        }
+        assertEquals(NUMBER_OF_LINES, seen.size());
+
+        // No more splits than checkpoints.
+        assertEquals(5, reader.split(100).size());
+        reader.close();
+    }
+}
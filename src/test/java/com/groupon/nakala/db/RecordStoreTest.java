@@ -0,0 +1,152 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.db;
+
+import com.groupon.ml.ClassificationAnalysis;
+import com.groupon.nakala.analysis.PlainTextAnalysis;
+import com.groupon.nakala.analysis.SerializableAnalysis;
+import com.groupon.nakala.analysis.StringCountAnalysis;
+import com.groupon.nakala.core.Id;
+import com.groupon.nakala.exceptions.StoreException;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class RecordStoreTest extends TestCase {
+    private static final int NUMBER_OF_RECORDS = 3000;
+
+    /**
+     * Written with Java serialization.
+     */
+    public static class LegacyAnalysis implements SerializableAnalysis {
+        private static final long serialVersionUID = 1L;
+
+        String value;
+
+        LegacyAnalysis(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public void store(DataStore ds) throws StoreException {
+            ((RecordStore) ds).write(this);
+        }
+    }
+
+    private static String longText() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; ++i) {
+            sb.append("ünïcode ");
+        }
+        return sb.toString();
+    }
+
+    private static File write(boolean compress) throws Exception {
+        File file = File.createTempFile("nakala", ".rec");
+        file.deleteOnExit();
+        CollectionParameters params = new CollectionParameters();
+        params.set(CollectionParameters.FILE_NAME, file.getAbsolutePath());
+        params.set(CollectionParameters.COMPRESS, compress);
+        params.set(CollectionParameters.BLOCK_SIZE, 4096);
+        RecordStore store = new RecordStore();
+        store.initialize(params);
+
+        for (int i = 0; i < NUMBER_OF_RECORDS; ++i) {
+            ClassificationAnalysis ca = new ClassificationAnalysis(new Id(i));
+            ca.addClassification("restaurant", i / 10d);
+            ca.addClassification("hotel", 1 - i / 10d);
+            ca.store(store);
+
+            StringCountAnalysis sca = new StringCountAnalysis();
+            sca.add("word" + i);
+            sca.add("word" + i);
+            sca.add("café");
+            sca.store(store);
+
+            new LegacyAnalysis("legacy " + i).store(store);
+        }
+        new PlainTextAnalysis(longText()).store(store);
+        store.close();
+        return file;
+    }
+
+    private static List<SerializableAnalysis> read(File file) {
+        CollectionParameters params = new CollectionParameters();
+        params.set(CollectionParameters.FILE_NAME, file.getAbsolutePath());
+        RecordReader reader = new RecordReader();
+        reader.initialize(params);
+        List<SerializableAnalysis> analyses = new ArrayList<SerializableAnalysis>();
+        for (SerializableAnalysis a : reader) {
+            analyses.add(a);
+        }
+        reader.close();
+        return analyses;
+    }
+
+    private static void check(List<SerializableAnalysis> analyses) {
+        assertEquals(3 * NUMBER_OF_RECORDS + 1, analyses.size());
+        for (int i = 0; i < NUMBER_OF_RECORDS; ++i) {
+            ClassificationAnalysis ca = (ClassificationAnalysis) analyses.get(3 * i);
+            assertEquals(Integer.toString(i), ca.getId().toString());
+            assertEquals(2, ca.getClassifications().size());
+            assertEquals(i / 10d, ca.getScore("restaurant"));
+            assertEquals(1 - i / 10d, ca.getScore("hotel"));
+
+            StringCountAnalysis sca = (StringCountAnalysis) analyses.get(3 * i + 1);
+            assertEquals(2, sca.size());
+            assertEquals(2, sca.get("word" + i).intValue());
+            assertEquals(1, sca.get("café").intValue());
+
+            assertEquals("legacy " + i, ((LegacyAnalysis) analyses.get(3 * i + 2)).value);
+        }
+        assertEquals(longText(), ((PlainTextAnalysis) analyses.get(3 * NUMBER_OF_RECORDS)).getText());
+    }
+
+    public void testRoundTrip() throws Exception {
+        File file = write(false);
+        check(read(file));
+        // Every iteration starts over.
+        check(read(file));
+    }
+
+    public void testCompressedRoundTrip() throws Exception {
+        File compressed = write(true);
+        check(read(compressed));
+        assertTrue(compressed.length() < write(false).length());
+    }
+}
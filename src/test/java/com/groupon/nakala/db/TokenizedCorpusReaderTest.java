@@ -0,0 +1,120 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.db;
+
+import com.groupon.nakala.analysis.CorpusTokenizer;
+import com.groupon.nakala.core.*;
+import com.groupon.nakala.normalization.CaseNormalizer;
+import com.groupon.nakala.normalization.StringNormalizer;
+import com.groupon.util.io.IoUtil;
+import junit.framework.TestCase;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class TokenizedCorpusReaderTest extends TestCase {
+    String[] s = {"restaurant\t1\tThis is an awesome restaurant",
+            "hotel\t2\tHotel Intercontinental is the best hotel in the world",
+            "spa\t3\tcome to bliss spa for a day of soothing massage",
+            "restaurant,hotel\t4\tHotel awesomely is the best hotel in the world with a café"};
+
+    public void testRoundTrip() throws Exception {
+        Features features = new Features();
+        features.initialize(new StringReader("hotel\t0.1\nspa\t0.5\nrestaurant\t0.2\ncafé\t0.3\n"));
+
+        List<StringNormalizer> normalizers = new ArrayList<StringNormalizer>();
+        normalizers.add(new CaseNormalizer());
+
+        Parameters params = new Parameters();
+        params.set(Constants.FEATURES, features);
+        params.set(Constants.NORMALIZERS, normalizers);
+        params.set(Constants.TOKENIZER, new RegexpTokenizerStream());
+        params.set(Constants.NORMALIZE_BY_LENGTH, true);
+
+        TextRepresenter representer = new TFTextRepresenter();
+        representer.initialize(params);
+
+        Parameters tokenizerParams = new Parameters();
+        tokenizerParams.set(Constants.REPRESENTER, representer);
+        CorpusTokenizer corpusTokenizer = new CorpusTokenizer();
+        corpusTokenizer.initialize(tokenizerParams);
+
+        CollectionParameters cp = new CollectionParameters();
+        cp.set(CollectionParameters.LABEL_FIELD, 0);
+        cp.set(CollectionParameters.ID_FIELD, 1);
+        cp.set(CollectionParameters.TEXT_FIELD, 2);
+        cp.set(CollectionParameters.FILE_NAME, IoUtil.createTempFile(StringUtils.join(s, '\n')));
+        TsvCategorizedTextCollectionReader tsvReader = new TsvCategorizedTextCollectionReader();
+        tsvReader.initialize(cp);
+
+        File corpus = File.createTempFile("corpus", ".bin");
+        corpus.deleteOnExit();
+        CollectionParameters storeParams = new CollectionParameters();
+        storeParams.set(CollectionParameters.FILE_NAME, corpus.getAbsolutePath());
+        TokenizedCorpusStore store = new TokenizedCorpusStore();
+        store.initialize(storeParams);
+        for (Analyzable a : tsvReader) {
+            corpusTokenizer.analyze(a).store(store);
+        }
+        store.close();
+
+        TokenizedCorpusReader reader = new TokenizedCorpusReader();
+        reader.initialize(storeParams);
+        assertEquals(s.length, reader.getSize());
+        assertEquals(Arrays.asList("restaurant", "hotel", "spa"), reader.getLabels());
+
+        // Two passes, as trainers and representers do.
+        for (int pass = 0; pass < 2; ++pass) {
+            reader.reset();
+            int i = 0;
+            for (Analyzable a : reader) {
+                TokenizedTextContent ttc = (TokenizedTextContent) a;
+                String[] pieces = s[i++].split("\t");
+                assertEquals(pieces[1], ttc.getId().toString());
+                assertEquals(new HashSet<String>(Arrays.asList(pieces[0].split(","))), ttc.getCategories());
+                assertEquals(representer.getTokens(pieces[2]), ttc.getTokens());
+                assertEquals(representer.represent(pieces[2]), representer.represent(ttc.getTokens()));
+            }
+            assertEquals(s.length, i);
+        }
+        reader.close();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.nakala.normalization;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class NormalizerChainTest extends TestCase {
+    private static final String[] TEXTS = {
+            "", "42", "42\n", "42\r\n", "42\n\n", "a42", "The 3 Musketeers' 12th book", "Joe's café, 1 2 3!",
+            "x_1 1_x 007 -5- ??", "Dave&apos;s and Ann’s 99 bottles", "  --Hello--World--  ", "ÉCOLE 12é 12 é12",
+            "tab\tand line 7 "
+    };
+
+    public void testSameAsNormalizersInOrder() throws Exception {
+        List<StringNormalizer> normalizers = Arrays.asList(
+                new SNormalizer(), new CaseNormalizer(), new DeaccentNormalizer(), new AllNumberNormalizer(),
+                new NonWordNormalizer(), new NumberNormalizer());
+        Random random = new Random(7);
+        for (int n = 0; n < 500; ++n) {
+            // Random sub-sequences, so every normalizer appears in and out of a fused run.
+            List<StringNormalizer> selected = new ArrayList<StringNormalizer>();
+            for (StringNormalizer normalizer : normalizers) {
+                if (random.nextBoolean()) {
+                    selected.add(normalizer);
+                }
+            }
+            NormalizerChain chain = new NormalizerChain(selected);
+            String text = n < TEXTS.length ? TEXTS[n] : randomText(random);
+            String expected = text;
+            for (StringNormalizer normalizer : selected) {
+                expected = normalizer.normalize(expected);
+            }
+            assertEquals(selected + " on '" + text + "'", expected, chain.normalize(text));
+        }
+    }
+
+    public void testFallbacks() throws Exception {
+        List<StringNormalizer> normalizers = new ArrayList<StringNormalizer>();
+        normalizers.add(new CaseNormalizer());
+        normalizers.add(new MarkupRemover());
+        normalizers.add(new NumberNormalizer());
+        NormalizerChain chain = new NormalizerChain(normalizers);
+        assertEquals(normalizers, chain.getNormalizers());
+        assertEquals("__num__", chain.normalize("<b>12</b>"));
+        assertEquals("straße", chain.normalize("STRAßE"));
+        assertNull(chain.normalize(null));
+
+        String unchanged = "abc";
+        assertSame(unchanged, new NormalizerChain(Arrays.<StringNormalizer>asList(new CaseNormalizer()))
+                .normalize(unchanged));
+    }
+
+    private static String randomText(Random random) {
+        String alphabet = "aB9_ '’s&apos;\n\r-é";
+        StringBuilder sb = new StringBuilder();
+        for (int i = random.nextInt(16); i > 0; --i) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+Copyright (c) 2013, Groupon, Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+Redistributions of source code must retain the above copyright notice,
+this list of conditions and the following disclaimer.
+
+Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+
+Neither the name of GROUPON nor the names of its contributors may be
+used to endorse or promote products derived from this software without
+specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.groupon.util;
+
+import junit.framework.TestCase;
+
+/**
+ * @author npendar@groupon.com
+ */
+public class LatencyHistogramTest extends TestCase {
+
+    public void testBuckets() throws Exception {
+        for (long v : new long[]{0L, 1L, 7L, 8L, 15L, 16L, 17L, 1000L, 123456789L, Long.MAX_VALUE}) {
+            int b = LatencyHistogram.bucket(v);
+            assertTrue(v <= LatencyHistogram.upperBound(b));
+            if (b > 0) {
+                assertTrue(v > LatencyHistogram.upperBound(b - 1));
+            }
+        }
+    }
+
+    public void testPercentiles() throws Exception {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 1000; ++i) {
+            h.record(i * 1000L);
+        }
+        assertEquals(1000L, h.getCount());
+        assertEquals(1000000L, h.getMax());
+        assertEquals(500500d, h.getMean(), 1e-9);
+
+        long p50 = h.getValueAtPercentile(50);
+        assertTrue(p50 >= 500000L && p50 <= 500000L * 1.125);
+        long p99 = h.getValueAtPercentile(99);
+        assertTrue(p99 >= 990000L && p99 <= 1000000L);
+        assertEquals(1000000L, h.getValueAtPercentile(100));
+        assertEquals(0L, new LatencyHistogram().getValueAtPercentile(50));
+    }
+
+    public void testMerge() throws Exception {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10L, 3);
+        b.record(5000L);
+        a.merge(b);
+        assertEquals(4L, a.getCount());
+        assertEquals(5030L, a.getTotal());
+        assertEquals(5000L, a.getMax());
+        assertEquals(10L, a.getValueAtPercentile(75));
+    }
+}